@@ -1264,8 +1264,8 @@ public final class Oid
                     }
                     else
                     {
-                        // We are done with the first arc : convert it
-                        bufPos += convert( oidString, buffer, bufPos, arcNbChars, 0, true );
+                        // We are done with the first arc : convert it. The second arc starts at position 2
+                        bufPos += convert( oidString, buffer, 2, arcNbChars, 0, true );
                     }
                     
                     break;
@@ -1397,9 +1397,9 @@ public final class Oid
 
     /**
      * Returns true if <code>oidString</code> is a valid string representation
-     * of an OID.  This method simply calls {@link #fromString(String)} and 
-     * returns true if no exception was thrown.  As such, it should not be used 
-     * in an attempt to check if a string is a valid OID before calling 
+     * of an OID.  This method checks the same syntax as {@link #fromString(String)},
+     * without encoding the OID : it does not allocate anything. As such, it should
+     * not be used in an attempt to check if a string is a valid OID before calling
      * {@link #fromString(String)}.
      * 
      * @param oidString The string to test
@@ -1407,16 +1407,87 @@ public final class Oid
      */
     public static boolean isOid( String oidString )
     {
-        try
+        if ( ( oidString == null ) || ( oidString.length() < 3 ) )
         {
-            Oid.fromString( oidString );
+            return false;
+        }
+
+        // The first arc is 0, 1 or 2
+        char first = oidString.charAt( 0 );
 
-            return true;
+        if ( ( first < '0' ) || ( first > '2' ) || ( oidString.charAt( 1 ) != '.' ) )
+        {
+            return false;
         }
-        catch ( DecoderException e )
+
+        int pos = skipArc( oidString, 2 );
+
+        if ( pos < 0 )
+        {
+            return false;
+        }
+
+        // Under 0 and 1, the second arc is in [0..39]
+        if ( ( first != '2' ) && ( ( pos > 4 ) || ( ( pos == 4 ) && ( oidString.charAt( 2 ) > '3' ) ) ) )
         {
             return false;
         }
+
+        while ( pos < oidString.length() )
+        {
+            if ( oidString.charAt( pos ) != '.' )
+            {
+                return false;
+            }
+
+            pos = skipArc( oidString, pos + 1 );
+
+            if ( pos < 0 )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Skips an arc, which is either 0 or a number not starting with 0
+     *
+     * @param oidString The OID string
+     * @param pos The arc start position
+     * @return The position following the arc, or -1 if there is no valid arc at this position
+     */
+    private static int skipArc( String oidString, int pos )
+    {
+        int length = oidString.length();
+
+        if ( pos >= length )
+        {
+            return -1;
+        }
+
+        char c = oidString.charAt( pos );
+
+        if ( c == '0' )
+        {
+            return pos + 1;
+        }
+
+        if ( ( c < '1' ) || ( c > '9' ) )
+        {
+            return -1;
+        }
+
+        pos++;
+
+        while ( ( pos < length ) && ( oidString.charAt( pos ) >= '0' ) && ( oidString.charAt( pos ) <= '9' ) )
+        {
+            pos++;
+        }
+
+        return pos;
     }
 
 
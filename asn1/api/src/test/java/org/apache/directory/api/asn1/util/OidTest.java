@@ -914,4 +914,37 @@ public class OidTest
         assertFalse( oid1.equals( oid3 ) );
         assertFalse( oid2.equals( oid3 ) );
     }
+
+
+    /**
+     * Test that isOid accepts the same OIDs as fromString
+     */
+    @Test
+    public void testIsOidMatchesFromString() throws DecoderException
+    {
+        String[] values = { "0.0", "0.39", "0.40", "1.3", "1.39.1", "1.4.0", "1.40", "2.0", "2.999", "2.00",
+            "2.100.3", "1.3.6.1.4.1.18060.0.4.1.2.50", "1.3.06", "1.3.0.1", "1.3..1", "1.3.", "2.25.1a", "2", "02.1",
+            "3.0", "1.3.6.1.4.1.1466.115.121.1.15", "0.0.0", "x.1" };
+
+        for ( String value : values )
+        {
+            boolean expected;
+
+            try
+            {
+                Oid.fromString( value );
+                expected = true;
+            }
+            catch ( DecoderException | NumberFormatException e )
+            {
+                // fromString fails with a NumberFormatException on some invalid OIDs
+                expected = false;
+            }
+
+            assertEquals( expected, Oid.isOid( value ), value );
+        }
+
+        // 2.100 is encoded as 180
+        assertTrue( Arrays.equals( new byte[] { ( byte ) 0x81, 0x34, 0x03 }, Oid.fromString( "2.100.3" ).toBytes() ) );
+    }
 }
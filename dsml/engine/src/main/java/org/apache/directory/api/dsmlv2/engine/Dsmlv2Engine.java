@@ -29,11 +29,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.codec.Charsets;
 import org.apache.directory.api.dsmlv2.DsmlDecorator;
 import org.apache.directory.api.dsmlv2.Dsmlv2Parser;
-import org.apache.directory.api.dsmlv2.ParserUtils;
 import org.apache.directory.api.dsmlv2.request.BatchRequestDsml;
 import org.apache.directory.api.dsmlv2.request.BatchRequestDsml.OnError;
 import org.apache.directory.api.dsmlv2.request.BatchRequestDsml.Processing;
@@ -44,6 +48,7 @@ import org.apache.directory.api.dsmlv2.response.BatchResponseDsml;
 import org.apache.directory.api.dsmlv2.response.BindResponseDsml;
 import org.apache.directory.api.dsmlv2.response.CompareResponseDsml;
 import org.apache.directory.api.dsmlv2.response.DelResponseDsml;
+import org.apache.directory.api.dsmlv2.response.DsmlResponseWriter;
 import org.apache.directory.api.dsmlv2.response.ErrorResponse;
 import org.apache.directory.api.dsmlv2.response.ErrorResponse.ErrorResponseType;
 import org.apache.directory.api.dsmlv2.response.ExtendedResponseDsml;
@@ -76,15 +81,19 @@ import org.apache.directory.api.ldap.model.message.ModifyResponse;
 import org.apache.directory.api.ldap.model.message.Request;
 import org.apache.directory.api.ldap.model.message.Response;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
 import org.apache.directory.api.ldap.model.message.SearchResultDone;
 import org.apache.directory.api.ldap.model.message.SearchResultEntry;
 import org.apache.directory.api.ldap.model.message.SearchResultReference;
 import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
 import org.apache.directory.ldap.client.api.LdapConnection;
 import org.apache.directory.ldap.client.api.LdapNetworkConnection;
+import org.apache.directory.ldap.client.api.SearchCursorImpl;
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
 import org.dom4j.Element;
-import org.dom4j.Namespace;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmlpull.v1.XmlPullParserException;
@@ -127,11 +136,48 @@ public class Dsmlv2Engine
     /** flag to indicate to generate the response in a SOAP envelope */
     protected boolean generateSoapResp = false;
 
+    /** The maximum number of requests sent and not yet answered when processing is parallel */
+    protected int maxPendingRequests = DEFAULT_MAX_PENDING_REQUESTS;
+
+    /** The requests sent and not yet answered when processing is parallel, in the order they were sent */
+    private final Deque<PendingRequest> pendingRequests = new ArrayDeque<>();
+
+    /**
+     * The pending requests which have received a response, in the order they were answered, when unordered.
+     * A new queue is created for each batch : the requests of an aborted batch can still be answered.
+     */
+    private BlockingQueue<PendingRequest> answeredRequests = new LinkedBlockingQueue<>();
+
+    /** The default maximum number of requests sent and not yet answered */
+    public static final int DEFAULT_MAX_PENDING_REQUESTS = 64;
+
     /** A logger for this class */
     private static final Logger LOG = LoggerFactory.getLogger( Dsmlv2Engine.class );
     
     private static final String BODY_ENVELOPE = "</Body></Envelope>";
 
+    /**
+     * A request sent to the server, waiting for its response
+     */
+    private static final class PendingRequest
+    {
+        /** The requestID given in the DSML request */
+        private final int requestId;
+
+        /** The future used to get the response */
+        private final ResponseFuture<? extends Response> future;
+
+        /** Tells if the first response has been received */
+        private volatile boolean answered;
+
+
+        private PendingRequest( int requestId, ResponseFuture<? extends Response> future )
+        {
+            this.requestId = requestId;
+            this.future = future;
+        }
+    }
+
 
     /**
      * Creates a new instance of Dsmlv2Engine.
@@ -166,6 +212,19 @@ public class Dsmlv2Engine
     }
 
 
+    /**
+     * Creates the parser the first time it's needed. It is then reused for all the
+     * processed documents, as setting its input resets it.
+     */
+    private void initParser() throws XmlPullParserException
+    {
+        if ( parser == null )
+        {
+            parser = new Dsmlv2Parser( grammar );
+        }
+    }
+
+
     /**
      * Processes the file given and return the result of the operations
      * 
@@ -175,7 +234,7 @@ public class Dsmlv2Engine
      */
     public String processDSML( String dsmlInput ) throws XmlPullParserException
     {
-        parser = new Dsmlv2Parser( grammar );
+        initParser();
         parser.setInput( dsmlInput );
 
         return processDSML();
@@ -192,7 +251,7 @@ public class Dsmlv2Engine
      */
     public String processDSMLFile( String fileName ) throws XmlPullParserException, IOException
     {
-        parser = new Dsmlv2Parser( grammar );
+        initParser();
         parser.setInputFile( fileName );
 
         return processDSML();
@@ -209,7 +268,7 @@ public class Dsmlv2Engine
      */
     public void processDSMLFile( File file, OutputStream respStream ) throws Exception
     {
-        parser = new Dsmlv2Parser( grammar );
+        initParser();
         parser.setInputFile( file.getAbsolutePath() );
 
         processDSML( respStream );
@@ -241,7 +300,7 @@ public class Dsmlv2Engine
      */
     public void processDSML( InputStream inputStream, String inputEncoding, OutputStream out ) throws Exception
     {
-        parser = new Dsmlv2Parser( grammar );
+        initParser();
         parser.setInput( inputStream, inputEncoding );
         processDSML( out );
     }
@@ -277,21 +336,47 @@ public class Dsmlv2Engine
      * @throws IOException If we had an issue while reading or writing the data
      */
     protected void processDSML( OutputStream outStream ) throws IOException
+    {
+        try
+        {
+            processBatch( outStream );
+        }
+        finally
+        {
+            // The requests of a failed batch must not be written in the next batch response
+            abandonPendingRequests();
+        }
+    }
+
+
+    /**
+     * Cancels the requests of the current batch which are still pending
+     */
+    private void abandonPendingRequests()
+    {
+        for ( PendingRequest pendingRequest : pendingRequests )
+        {
+            pendingRequest.future.cancel( true );
+        }
+
+        pendingRequests.clear();
+        answeredRequests = new LinkedBlockingQueue<>();
+    }
+
+
+    private void processBatch( OutputStream outStream ) throws IOException
     {
         BufferedWriter respWriter = null;
+        DsmlResponseWriter dsmlWriter = null;
 
         if ( outStream != null )
         {
             respWriter = new BufferedWriter( new OutputStreamWriter( outStream, StandardCharsets.UTF_8 ) );
+            dsmlWriter = new DsmlResponseWriter( respWriter );
 
             if ( generateSoapResp )
             {
-                respWriter.write( "<Envelope " );
-
-                Namespace soapNs = new Namespace( null, "http://www.w3.org/2001/12/soap-envelope" );
-                soapNs.write( respWriter );
-
-                respWriter.write( "><Body>" );
+                dsmlWriter.startSoapEnvelope();
             }
         }
 
@@ -357,33 +442,6 @@ public class Dsmlv2Engine
             return;
         }
 
-        String batchResponseTag = null;
-        
-        if ( respWriter != null )
-        {
-            StringBuilder sb = new StringBuilder();
-
-            sb.append( "<batchResponse " );
-
-            sb.append( ParserUtils.DSML_NAMESPACE.asXML() );
-
-            // a space to separate the namespace declarations
-            sb.append( " " );
-
-            sb.append( ParserUtils.XSD_NAMESPACE.asXML() );
-
-            // a space to separate the namespace declarations
-            sb.append( " " );
-
-            sb.append( ParserUtils.XSI_NAMESPACE.asXML() );
-
-            sb.append( " requestID=\"" );
-            sb.append( batchRequest.getRequestID() );
-            sb.append( "\">" );
-
-            batchResponseTag = sb.toString();
-        }
-
         // Processing each request:
         //    - Getting a new request
         //    - Checking if the request is well formed
@@ -427,9 +485,9 @@ public class Dsmlv2Engine
         }
 
         // We can now write the tag, as we don't have an error
-        if ( respWriter != null )
+        if ( dsmlWriter != null )
         {
-            respWriter.write( batchResponseTag );
+            dsmlWriter.startBatchResponse( batchRequest.getRequestID() );
         }
 
         // (Request == null when there's no more request to process)
@@ -458,7 +516,14 @@ public class Dsmlv2Engine
 
             try
             {
-                processRequest( request, respWriter );
+                if ( isParallel() )
+                {
+                    sendRequest( request, respWriter );
+                }
+                else
+                {
+                    processRequest( request, respWriter );
+                }
             }
             catch ( Exception e )
             {
@@ -514,16 +579,41 @@ public class Dsmlv2Engine
             }
         }
 
-        if ( respWriter != null )
+        // Get the responses of the requests processed in parallel that are still pending
+        try
         {
-            respWriter.write( "</batchResponse>" );
+            writePendingResponses( respWriter, 0 );
+        }
+        catch ( Exception e )
+        {
+            if ( LOG.isWarnEnabled() )
+            {
+                LOG.warn( I18n.msg( I18n.MSG_02001_FAILED_PROCESSING_REQUEST ), e );
+            }
+
+            ErrorResponse errorResponse = new ErrorResponse( 0, ErrorResponseType.GATEWAY_INTERNAL_ERROR, I18n.err(
+                I18n.ERR_02005_INTERNAL_ERROR, e.getMessage() ) );
+
+            if ( respWriter != null )
+            {
+                writeResponse( respWriter, errorResponse );
+            }
+            else
+            {
+                batchResponse.addResponse( errorResponse );
+            }
+        }
+
+        if ( dsmlWriter != null )
+        {
+            dsmlWriter.endBatchResponse();
 
             if ( generateSoapResp )
             {
-                respWriter.write( BODY_ENVELOPE );
+                dsmlWriter.endSoapEnvelope();
             }
 
-            respWriter.flush();
+            dsmlWriter.flush();
         }
     }
 
@@ -563,6 +653,27 @@ public class Dsmlv2Engine
     }
 
 
+    /**
+     * @return the maximum number of requests sent and not yet answered when processing is parallel
+     */
+    public int getMaxPendingRequests()
+    {
+        return maxPendingRequests;
+    }
+
+
+    /**
+     * Sets the maximum number of requests sent to the server and not yet answered when the
+     * batch request processing is parallel. A value of 1 processes the requests one by one.
+     *
+     * @param maxPendingRequests the maximum number of pending requests
+     */
+    public void setMaxPendingRequests( int maxPendingRequests )
+    {
+        this.maxPendingRequests = Math.max( 1, maxPendingRequests );
+    }
+
+
     /**
      * @return the batchResponse
      */
@@ -593,6 +704,9 @@ public class Dsmlv2Engine
     {
         ResultCodeEnum resultCode = null;
 
+        // The connection will replace the message ID with its own
+        int requestId = request.getDecorated().getMessageId();
+
         switch ( request.getDecorated().getType() )
         {
             case ABANDON_REQUEST:
@@ -601,6 +715,7 @@ public class Dsmlv2Engine
 
             case ADD_REQUEST:
                 AddResponse response = connection.add( ( AddRequest ) request );
+                restoreRequestId( response, requestId );
                 resultCode = response.getLdapResult().getResultCode();
                 AddResponseDsml addResponseDsml = new AddResponseDsml( connection.getCodecService(), response );
                 writeResponse( respWriter, addResponseDsml );
@@ -609,6 +724,7 @@ public class Dsmlv2Engine
 
             case BIND_REQUEST:
                 BindResponse bindResponse = connection.bind( ( BindRequest ) request );
+                restoreRequestId( bindResponse, requestId );
                 resultCode = bindResponse.getLdapResult().getResultCode();
                 BindResponseDsml authResponseDsml = new BindResponseDsml( connection.getCodecService(), bindResponse );
                 writeResponse( respWriter, authResponseDsml );
@@ -617,6 +733,7 @@ public class Dsmlv2Engine
 
             case COMPARE_REQUEST:
                 CompareResponse compareResponse = connection.compare( ( CompareRequest ) request );
+                restoreRequestId( compareResponse, requestId );
                 resultCode = compareResponse.getLdapResult().getResultCode();
                 CompareResponseDsml compareResponseDsml = new CompareResponseDsml( connection.getCodecService(),
                     compareResponse );
@@ -626,6 +743,7 @@ public class Dsmlv2Engine
 
             case DEL_REQUEST:
                 DeleteResponse delResponse = connection.delete( ( DeleteRequest ) request );
+                restoreRequestId( delResponse, requestId );
                 resultCode = delResponse.getLdapResult().getResultCode();
                 DelResponseDsml delResponseDsml = new DelResponseDsml( connection.getCodecService(), delResponse );
                 writeResponse( respWriter, delResponseDsml );
@@ -634,6 +752,7 @@ public class Dsmlv2Engine
 
             case EXTENDED_REQUEST:
                 ExtendedResponse extendedResponse = connection.extended( ( ExtendedRequest ) request );
+                restoreRequestId( extendedResponse, requestId );
                 resultCode = extendedResponse.getLdapResult().getResultCode();
                 ExtendedResponseDsml extendedResponseDsml = new ExtendedResponseDsml( connection.getCodecService(),
                     extendedResponse );
@@ -643,6 +762,7 @@ public class Dsmlv2Engine
 
             case MODIFY_REQUEST:
                 ModifyResponse modifyResponse = connection.modify( ( ModifyRequest ) request );
+                restoreRequestId( modifyResponse, requestId );
                 resultCode = modifyResponse.getLdapResult().getResultCode();
                 ModifyResponseDsml modifyResponseDsml = new ModifyResponseDsml( connection.getCodecService(),
                     modifyResponse );
@@ -652,6 +772,7 @@ public class Dsmlv2Engine
 
             case MODIFYDN_REQUEST:
                 ModifyDnResponse modifyDnResponse = connection.modifyDn( ( ModifyDnRequest ) request );
+                restoreRequestId( modifyDnResponse, requestId );
                 resultCode = modifyDnResponse.getLdapResult().getResultCode();
                 ModDNResponseDsml modDNResponseDsml = new ModDNResponseDsml( connection.getCodecService(),
                     modifyDnResponse );
@@ -661,104 +782,381 @@ public class Dsmlv2Engine
 
             case SEARCH_REQUEST:
                 SearchCursor searchResponses = connection.search( ( SearchRequest ) request );
+                resultCode = writeSearchResponses( requestId, searchResponses, respWriter );
 
-                SearchResponseDsml searchResponseDsml = new SearchResponseDsml( connection.getCodecService() );
+                break;
 
-                if ( respWriter != null )
-                {
-                    StringBuilder sb = new StringBuilder();
-                    sb.append( "<searchResponse" );
+            case UNBIND_REQUEST:
+                connection.unBind();
+                break;
 
-                    if ( request.getDecorated().getMessageId() > 0 )
-                    {
-                        sb.append( " requestID=\"" );
-                        sb.append( request.getDecorated().getMessageId() );
-                        sb.append( '"' );
-                    }
+            default:
+                throw new IllegalStateException( I18n.err( I18n.ERR_02001_UNEXPECTED_REQUEST_TYPE, request.getDecorated().getType() ) );
+        }
 
-                    sb.append( '>' );
+        checkResultCode( resultCode );
+    }
 
-                    respWriter.write( sb.toString() );
-                }
 
-                while ( searchResponses.next() )
+    /**
+     * Gives back to a response the requestID of its DSML request
+     *
+     * @param response The response
+     * @param requestId The DSML requestID
+     */
+    private static void restoreRequestId( Response response, int requestId )
+    {
+        if ( requestId > 0 )
+        {
+            response.setMessageId( requestId );
+        }
+    }
+
+
+    /**
+     * Turns on the exit flag if the result code is an error and we don't continue on errors
+     *
+     * @param resultCode The operation result code
+     */
+    private void checkResultCode( ResultCodeEnum resultCode )
+    {
+        if ( ( !continueOnError ) && ( resultCode != null ) && ( resultCode != ResultCodeEnum.SUCCESS )
+            && ( resultCode != ResultCodeEnum.COMPARE_TRUE ) && ( resultCode != ResultCodeEnum.COMPARE_FALSE )
+            && ( resultCode != ResultCodeEnum.REFERRAL ) )
+        {
+            // Turning on Exit flag
+            exit = true;
+        }
+    }
+
+
+    /**
+     * Writes the responses of a search request
+     *
+     * @param requestId The search request ID
+     * @param searchResponses The search responses
+     * @param respWriter The writer used to store the DSML response
+     * @return The search result code, or null if we didn't get the SearchResultDone
+     * @exception Exception If we had an error while reading the search responses
+     */
+    private ResultCodeEnum writeSearchResponses( int requestId, SearchCursor searchResponses, BufferedWriter respWriter )
+        throws Exception
+    {
+        ResultCodeEnum resultCode = null;
+        SearchResponseDsml searchResponseDsml = new SearchResponseDsml( connection.getCodecService() );
+        DsmlResponseWriter dsmlWriter = null;
+
+        if ( respWriter != null )
+        {
+            // The entries are streamed, without building the DSML tree
+            dsmlWriter = new DsmlResponseWriter( respWriter );
+            dsmlWriter.startSearchResponse( requestId );
+        }
+
+        while ( searchResponses.next() )
+        {
+            Response searchResponse = searchResponses.get();
+
+            if ( requestId > 0 )
+            {
+                searchResponse.setMessageId( requestId );
+            }
+
+            if ( searchResponse.getType() == MessageTypeEnum.SEARCH_RESULT_ENTRY )
+            {
+                SearchResultEntry searchResultEntry = ( SearchResultEntry ) searchResponse;
+
+                if ( dsmlWriter != null )
                 {
-                    Response searchResponse = searchResponses.get();
-
-                    if ( searchResponse.getType() == MessageTypeEnum.SEARCH_RESULT_ENTRY )
-                    {
-                        SearchResultEntry searchResultEntry = ( SearchResultEntry ) searchResponse;
-
-                        SearchResultEntryDsml searchResultEntryDsml = new SearchResultEntryDsml(
-                            connection.getCodecService(), searchResultEntry );
-                        searchResponseDsml = new SearchResponseDsml( connection.getCodecService(),
-                            searchResultEntryDsml );
-
-                        if ( respWriter != null )
-                        {
-                            writeResponse( respWriter, searchResultEntryDsml );
-                        }
-                        else
-                        {
-                            searchResponseDsml.addResponse( searchResultEntryDsml );
-                        }
-                    }
-                    else if ( searchResponse.getType() == MessageTypeEnum.SEARCH_RESULT_REFERENCE )
-                    {
-                        SearchResultReference searchResultReference = ( SearchResultReference ) searchResponse;
-
-                        SearchResultReferenceDsml searchResultReferenceDsml = new SearchResultReferenceDsml(
-                            connection.getCodecService(), searchResultReference );
-                        searchResponseDsml = new SearchResponseDsml( connection.getCodecService(),
-                            searchResultReferenceDsml );
-
-                        if ( respWriter != null )
-                        {
-                            writeResponse( respWriter, searchResultReferenceDsml );
-                        }
-                        else
-                        {
-                            searchResponseDsml.addResponse( searchResultReferenceDsml );
-                        }
-                    }
+                    dsmlWriter.writeSearchResultEntry( searchResultEntry );
                 }
+                else
+                {
+                    SearchResultEntryDsml searchResultEntryDsml = new SearchResultEntryDsml(
+                        connection.getCodecService(), searchResultEntry );
+                    searchResponseDsml.addResponse( searchResultEntryDsml );
+                }
+            }
+            else if ( searchResponse.getType() == MessageTypeEnum.SEARCH_RESULT_REFERENCE )
+            {
+                SearchResultReference searchResultReference = ( SearchResultReference ) searchResponse;
 
-                SearchResultDone srDone = searchResponses.getSearchResultDone();
+                SearchResultReferenceDsml searchResultReferenceDsml = new SearchResultReferenceDsml(
+                    connection.getCodecService(), searchResultReference );
 
-                if ( srDone != null )
+                if ( respWriter != null )
+                {
+                    writeResponse( respWriter, searchResultReferenceDsml );
+                }
+                else
                 {
-                    resultCode = srDone.getLdapResult().getResultCode();
-
-                    SearchResultDoneDsml srdDsml = new SearchResultDoneDsml( connection.getCodecService(), srDone );
-
-                    if ( respWriter != null )
-                    {
-                        writeResponse( respWriter, srdDsml );
-                        respWriter.write( "</searchResponse>" );
-                    }
-                    else
-                    {
-                        searchResponseDsml.addResponse( srdDsml );
-                        batchResponse.addResponse( searchResponseDsml );
-                    }
+                    searchResponseDsml.addResponse( searchResultReferenceDsml );
                 }
+            }
+        }
+
+        SearchResultDone srDone = searchResponses.getSearchResultDone();
+
+        if ( srDone != null )
+        {
+            if ( requestId > 0 )
+            {
+                srDone.setMessageId( requestId );
+            }
+
+            resultCode = srDone.getLdapResult().getResultCode();
+
+            SearchResultDoneDsml srdDsml = new SearchResultDoneDsml( connection.getCodecService(), srDone );
+
+            if ( dsmlWriter != null )
+            {
+                writeResponse( respWriter, srdDsml );
+                dsmlWriter.endSearchResponse();
+            }
+            else
+            {
+                searchResponseDsml.addResponse( srdDsml );
+                batchResponse.addResponse( searchResponseDsml );
+            }
+        }
+
+        return resultCode;
+    }
+
+
+    /**
+     * Tells if the requests are processed in parallel : the batch request asks for it, and the
+     * connection is able to send requests without waiting for the previous responses.
+     *
+     * @return <code>true</code> if the requests are processed in parallel
+     */
+    protected boolean isParallel()
+    {
+        return ( batchRequest != null ) && ( batchRequest.getProcessing() == Processing.PARALLEL )
+            && ( maxPendingRequests > 1 ) && ( connection instanceof LdapAsyncConnection );
+    }
+
+
+    /**
+     * Sends a request without waiting for its response, unless the request changes the connection
+     * state (abandon, bind and unbind requests), in which case all the pending responses are read
+     * first, and the request is processed synchronously. The responses already received are written,
+     * in the request order unless the batch request response order is unordered.
+     *
+     * @param request the request to send
+     * @param respWriter The writer used to store the DSML response
+     * @exception Exception If we had an error while processing the request
+     */
+    protected void sendRequest( DsmlDecorator<? extends Request> request, BufferedWriter respWriter )
+        throws Exception
+    {
+        LdapAsyncConnection asyncConnection = ( LdapAsyncConnection ) connection;
+
+        // The connection will replace the message ID with its own
+        int requestId = request.getDecorated().getMessageId();
+        ResponseFuture<? extends Response> future;
 
+        switch ( request.getDecorated().getType() )
+        {
+            case ADD_REQUEST:
+                future = asyncConnection.addAsync( ( AddRequest ) request );
                 break;
 
-            case UNBIND_REQUEST:
-                connection.unBind();
+            case COMPARE_REQUEST:
+                future = asyncConnection.compareAsync( ( CompareRequest ) request );
+                break;
+
+            case DEL_REQUEST:
+                future = asyncConnection.deleteAsync( ( DeleteRequest ) request );
+                break;
+
+            case EXTENDED_REQUEST:
+                future = asyncConnection.extendedAsync( ( ExtendedRequest ) request );
+                break;
+
+            case MODIFY_REQUEST:
+                future = asyncConnection.modifyAsync( ( ModifyRequest ) request );
+                break;
+
+            case MODIFYDN_REQUEST:
+                future = asyncConnection.modifyDnAsync( ( ModifyDnRequest ) request );
+                break;
+
+            case SEARCH_REQUEST:
+                future = asyncConnection.searchAsync( ( SearchRequest ) request );
                 break;
 
             default:
-                throw new IllegalStateException( I18n.err( I18n.ERR_02001_UNEXPECTED_REQUEST_TYPE, request.getDecorated().getType() ) );
+                writePendingResponses( respWriter, 0 );
+                processRequest( request, respWriter );
+
+                return;
         }
 
-        if ( ( !continueOnError ) && ( resultCode != null ) && ( resultCode != ResultCodeEnum.SUCCESS )
-            && ( resultCode != ResultCodeEnum.COMPARE_TRUE ) && ( resultCode != ResultCodeEnum.COMPARE_FALSE )
-            && ( resultCode != ResultCodeEnum.REFERRAL ) )
+        final PendingRequest pendingRequest = new PendingRequest( requestId, future );
+        final BlockingQueue<PendingRequest> answered = isUnordered() ? answeredRequests : null;
+        pendingRequests.add( pendingRequest );
+
+        future.addAnswerListener( () ->
         {
-            // Turning on Exit flag
-            exit = true;
+            pendingRequest.answered = true;
+
+            if ( answered != null )
+            {
+                answered.add( pendingRequest );
+            }
+        } );
+
+        writePendingResponses( respWriter, maxPendingRequests - 1 );
+    }
+
+
+    /**
+     * Tells if the responses are written as soon as they are received, whatever the request order
+     *
+     * @return <code>true</code> if the batch request response order is unordered
+     */
+    private boolean isUnordered()
+    {
+        return ( batchRequest != null ) && ( batchRequest.getResponseOrder() == ResponseOrder.UNORDERED );
+    }
+
+
+    /**
+     * Writes the responses of the pending requests that have been received, then waits for
+     * responses until no more than the given number of requests are pending. When the response
+     * order is unordered, we wait for whichever request is answered first, and a search is
+     * streamed as soon as its first response has been received.
+     *
+     * @param respWriter The writer used to store the DSML response
+     * @param maxPending The maximum number of pending requests when we return
+     * @exception Exception If we had an error while reading a response
+     */
+    private void writePendingResponses( BufferedWriter respWriter, int maxPending ) throws Exception
+    {
+        if ( isUnordered() )
+        {
+            // Write all the available responses, in the order they have been received
+            PendingRequest pendingRequest = answeredRequests.poll();
+
+            while ( pendingRequest != null )
+            {
+                pendingRequests.remove( pendingRequest );
+                writePendingResponse( pendingRequest, respWriter );
+                pendingRequest = answeredRequests.poll();
+            }
+
+            // Then wait for the first answered requests
+            long timeout = ( ( LdapAsyncConnection ) connection ).getConfig().getTimeout();
+
+            while ( pendingRequests.size() > maxPending )
+            {
+                pendingRequest = answeredRequests.poll( timeout, TimeUnit.MILLISECONDS );
+
+                if ( pendingRequest == null )
+                {
+                    throw new LdapException( I18n.err( I18n.ERR_02006_NO_RESPONSE,
+                        pendingRequests.peek().requestId ) );
+                }
+
+                pendingRequests.remove( pendingRequest );
+                writePendingResponse( pendingRequest, respWriter );
+            }
+        }
+        else
+        {
+            while ( !pendingRequests.isEmpty() && isAnswered( pendingRequests.peek() ) )
+            {
+                writePendingResponse( pendingRequests.poll(), respWriter );
+            }
+
+            while ( pendingRequests.size() > maxPending )
+            {
+                writePendingResponse( pendingRequests.poll(), respWriter );
+            }
+        }
+    }
+
+
+    /**
+     * Tells if the response of a request has been received. In the request order, search requests
+     * are only written when we wait for them, as their responses are streamed.
+     */
+    private boolean isAnswered( PendingRequest pendingRequest )
+    {
+        return !( pendingRequest.future instanceof SearchFuture ) && pendingRequest.answered;
+    }
+
+
+    /**
+     * Writes the response of a pending request, waiting for it if needed
+     */
+    private void writePendingResponse( PendingRequest pendingRequest, BufferedWriter respWriter ) throws Exception
+    {
+        long timeout = ( ( LdapAsyncConnection ) connection ).getConfig().getTimeout();
+
+        if ( pendingRequest.future instanceof SearchFuture )
+        {
+            SearchCursor searchResponses = new SearchCursorImpl( ( SearchFuture ) pendingRequest.future, timeout,
+                TimeUnit.MILLISECONDS );
+
+            try
+            {
+                checkResultCode( writeSearchResponses( pendingRequest.requestId, searchResponses, respWriter ) );
+            }
+            finally
+            {
+                searchResponses.close();
+            }
+
+            return;
+        }
+
+        Response response = pendingRequest.future.get( timeout, TimeUnit.MILLISECONDS );
+
+        if ( response == null )
+        {
+            pendingRequest.future.cancel( true );
+
+            throw new LdapException( I18n.err( I18n.ERR_02006_NO_RESPONSE, pendingRequest.requestId ) );
+        }
+
+        response.setMessageId( pendingRequest.requestId );
+        checkResultCode( ( ( ResultResponse ) response ).getLdapResult().getResultCode() );
+
+        switch ( response.getType() )
+        {
+            case ADD_RESPONSE:
+                writeResponse( respWriter, new AddResponseDsml( connection.getCodecService(), ( AddResponse ) response ) );
+                break;
+
+            case COMPARE_RESPONSE:
+                writeResponse( respWriter, new CompareResponseDsml( connection.getCodecService(),
+                    ( CompareResponse ) response ) );
+                break;
+
+            case DEL_RESPONSE:
+                writeResponse( respWriter, new DelResponseDsml( connection.getCodecService(),
+                    ( DeleteResponse ) response ) );
+                break;
+
+            case EXTENDED_RESPONSE:
+                writeResponse( respWriter, new ExtendedResponseDsml( connection.getCodecService(),
+                    ( ExtendedResponse ) response ) );
+                break;
+
+            case MODIFY_RESPONSE:
+                writeResponse( respWriter, new ModifyResponseDsml( connection.getCodecService(),
+                    ( ModifyResponse ) response ) );
+                break;
+
+            case MODIFYDN_RESPONSE:
+                writeResponse( respWriter, new ModDNResponseDsml( connection.getCodecService(),
+                    ( ModifyDnResponse ) response ) );
+                break;
+
+            default:
+                throw new IllegalStateException( I18n.err( I18n.ERR_02001_UNEXPECTED_REQUEST_TYPE, response.getType() ) );
         }
     }
 
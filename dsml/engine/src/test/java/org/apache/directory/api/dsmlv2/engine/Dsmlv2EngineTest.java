@@ -0,0 +1,347 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.dsmlv2.engine;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.directory.api.ldap.codec.api.LdapApiServiceFactory;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteResponse;
+import org.apache.directory.api.ldap.model.message.DeleteResponseImpl;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionConfig;
+import org.apache.directory.ldap.client.api.future.DeleteFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Tests the Dsmlv2Engine request processing, against a mocked connection
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class Dsmlv2EngineTest
+{
+    /** The requestID of the written delResponses */
+    private static final Pattern DEL_RESPONSE_ID = Pattern.compile( "<delResponse[^>]* requestID=\"(\\d+)\"" );
+
+
+    private static String batchRequest( String attributes, int nbRequests )
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "<batchRequest xmlns=\"urn:oasis:names:tc:DSML:2:0:core\" " ).append( attributes ).append( '>' );
+
+        for ( int i = 1; i <= nbRequests; i++ )
+        {
+            sb.append( "<delRequest requestID=\"" ).append( i ).append( "\" dn=\"cn=user" ).append( i )
+                .append( ",ou=system\"/>" );
+        }
+
+        sb.append( "</batchRequest>" );
+
+        return sb.toString();
+    }
+
+
+    private static LdapAsyncConnection newConnection()
+    {
+        LdapAsyncConnection connection = mock( LdapAsyncConnection.class );
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setTimeout( 5000L );
+
+        when( connection.isAuthenticated() ).thenReturn( true );
+        when( connection.getConfig() ).thenReturn( config );
+        when( connection.getCodecService() ).thenReturn( LdapApiServiceFactory.getSingleton() );
+
+        return connection;
+    }
+
+
+    private static DeleteResponse newResponse( int messageId, ResultCodeEnum resultCode )
+    {
+        DeleteResponse response = new DeleteResponseImpl( messageId );
+        response.getLdapResult().setResultCode( resultCode );
+
+        return response;
+    }
+
+
+    /**
+     * Mimics the connection, which replaces the request message ID with its own
+     */
+    private static int sent( DeleteRequest request, AtomicInteger messageIds )
+    {
+        int messageId = messageIds.incrementAndGet();
+        request.setMessageId( messageId );
+
+        return messageId;
+    }
+
+
+    private static List<Integer> responseIds( String dsmlResponse )
+    {
+        List<Integer> ids = new ArrayList<>();
+        Matcher matcher = DEL_RESPONSE_ID.matcher( dsmlResponse );
+
+        while ( matcher.find() )
+        {
+            ids.add( Integer.parseInt( matcher.group( 1 ) ) );
+        }
+
+        return ids;
+    }
+
+
+    @Test
+    public void testSequentialOrder() throws Exception
+    {
+        LdapAsyncConnection connection = newConnection();
+        AtomicInteger messageIds = new AtomicInteger( 100 );
+        when( connection.delete( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+            newResponse( sent( invocation.getArgument( 0 ), messageIds ), ResultCodeEnum.SUCCESS ) );
+
+        Dsmlv2Engine engine = new Dsmlv2Engine( connection, "uid=admin,ou=system", "secret" );
+        String response = engine.processDSML( batchRequest( "processing=\"sequential\"", 3 ) );
+
+        // The requestIDs are restored
+        assertEquals( Arrays.asList( 1, 2, 3 ), responseIds( response ) );
+        assertFalse( response.contains( "requestID=\"101\"" ) );
+        verify( connection, times( 3 ) ).delete( any( DeleteRequest.class ) );
+        verify( connection, never() ).deleteAsync( any( DeleteRequest.class ) );
+    }
+
+
+    @Test
+    public void testParallelResponsesInRequestOrder() throws Exception
+    {
+        LdapAsyncConnection connection = newConnection();
+        AtomicInteger messageIds = new AtomicInteger( 100 );
+        List<DeleteFuture> futures = new ArrayList<>();
+
+        // The responses are received in the reverse order, once the last request is sent
+        when( connection.deleteAsync( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            int messageId = sent( invocation.getArgument( 0 ), messageIds );
+            futures.add( new DeleteFuture( connection, messageId ) );
+
+            if ( futures.size() == 3 )
+            {
+                for ( int i = 2; i >= 0; i-- )
+                {
+                    futures.get( i ).set( newResponse( futures.get( i ).getMessageId(), ResultCodeEnum.SUCCESS ) );
+                }
+            }
+
+            return futures.get( futures.size() - 1 );
+        } );
+
+        Dsmlv2Engine engine = new Dsmlv2Engine( connection, "uid=admin,ou=system", "secret" );
+        String response = engine.processDSML( batchRequest( "processing=\"parallel\"", 3 ) );
+
+        assertEquals( Arrays.asList( 1, 2, 3 ), responseIds( response ) );
+        assertFalse( response.contains( "requestID=\"101\"" ) );
+        verify( connection, times( 3 ) ).deleteAsync( any( DeleteRequest.class ) );
+        verify( connection, never() ).delete( any( DeleteRequest.class ) );
+    }
+
+
+    @Test
+    public void testParallelResponsesUnordered() throws Exception
+    {
+        LdapAsyncConnection connection = newConnection();
+        AtomicInteger messageIds = new AtomicInteger( 100 );
+        CountDownLatch othersWritten = new CountDownLatch( 2 );
+
+        // The first request is only answered once the responses of the second and third ones are
+        // written : with a window of 2 requests, the engine must not wait for it before sending them
+        when( connection.deleteAsync( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            int messageId = sent( invocation.getArgument( 0 ), messageIds );
+
+            if ( messageId == 101 )
+            {
+                DeleteFuture future = new DeleteFuture( connection, messageId );
+                Thread answer = new Thread( () ->
+                {
+                    try
+                    {
+                        othersWritten.await( 10, TimeUnit.SECONDS );
+                        future.set( newResponse( messageId, ResultCodeEnum.SUCCESS ) );
+                    }
+                    catch ( InterruptedException ie )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                } );
+                answer.setDaemon( true );
+                answer.start();
+
+                return future;
+            }
+
+            DeleteFuture future = new DeleteFuture( connection, messageId )
+            {
+                @Override
+                public DeleteResponse get( long timeout, TimeUnit unit ) throws InterruptedException
+                {
+                    DeleteResponse response = super.get( timeout, unit );
+                    othersWritten.countDown();
+
+                    return response;
+                }
+            };
+            future.set( newResponse( messageId, ResultCodeEnum.SUCCESS ) );
+
+            return future;
+        } );
+
+        Dsmlv2Engine engine = new Dsmlv2Engine( connection, "uid=admin,ou=system", "secret" );
+        engine.setMaxPendingRequests( 2 );
+        String response = engine.processDSML( batchRequest(
+            "processing=\"parallel\" responseOrder=\"unordered\"", 4 ) );
+        List<Integer> ids = responseIds( response );
+
+        assertFalse( response.contains( "errorResponse" ) );
+        assertEquals( 4, ids.size() );
+        assertEquals( Arrays.asList( 2, 3 ), ids.subList( 0, 2 ) );
+        assertTrue( ids.containsAll( Arrays.asList( 1, 4 ) ) );
+    }
+
+
+    @Test
+    public void testPendingRequestsWindow() throws Exception
+    {
+        LdapAsyncConnection connection = newConnection();
+        AtomicInteger messageIds = new AtomicInteger( 100 );
+        AtomicInteger pending = new AtomicInteger();
+        AtomicInteger maxPending = new AtomicInteger();
+
+        // The responses are only received when the engine waits for them
+        when( connection.deleteAsync( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            int messageId = sent( invocation.getArgument( 0 ), messageIds );
+            maxPending.accumulateAndGet( pending.incrementAndGet(), Math::max );
+
+            return new DeleteFuture( connection, messageId )
+            {
+                @Override
+                public DeleteResponse get( long timeout, TimeUnit unit ) throws InterruptedException
+                {
+                    pending.decrementAndGet();
+                    set( newResponse( messageId, ResultCodeEnum.SUCCESS ) );
+
+                    return super.get( timeout, unit );
+                }
+            };
+        } );
+
+        Dsmlv2Engine engine = new Dsmlv2Engine( connection, "uid=admin,ou=system", "secret" );
+        engine.setMaxPendingRequests( 3 );
+        String response = engine.processDSML( batchRequest( "processing=\"parallel\"", 10 ) );
+
+        assertEquals( 10, responseIds( response ).size() );
+        assertEquals( 3, maxPending.get() );
+        assertEquals( 0, pending.get() );
+    }
+
+
+    @Test
+    public void testParallelExitOnError() throws Exception
+    {
+        LdapAsyncConnection connection = newConnection();
+        AtomicInteger messageIds = new AtomicInteger( 100 );
+        when( connection.deleteAsync( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            int messageId = sent( invocation.getArgument( 0 ), messageIds );
+            DeleteFuture future = new DeleteFuture( connection, messageId );
+            future.set( newResponse( messageId, ResultCodeEnum.NO_SUCH_OBJECT ) );
+
+            return future;
+        } );
+
+        Dsmlv2Engine engine = new Dsmlv2Engine( connection, "uid=admin,ou=system", "secret" );
+        String response = engine.processDSML( batchRequest( "processing=\"parallel\" onError=\"exit\"", 3 ) );
+
+        // The first error stops the batch : the next requests are not sent
+        assertEquals( Arrays.asList( 1 ), responseIds( response ) );
+        assertTrue( response.contains( "noSuchObject" ) );
+        verify( connection, times( 1 ) ).deleteAsync( any( DeleteRequest.class ) );
+    }
+
+
+    @Test
+    public void testFailedBatchRequestsAreDropped() throws Exception
+    {
+        LdapAsyncConnection connection = newConnection();
+        connection.getConfig().setTimeout( 200L );
+        AtomicInteger messageIds = new AtomicInteger( 100 );
+        List<DeleteFuture> futures = new ArrayList<>();
+
+        // The first request is never answered, the other ones are answered at once
+        when( connection.deleteAsync( any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            int messageId = sent( invocation.getArgument( 0 ), messageIds );
+            DeleteFuture future = new DeleteFuture( connection, messageId );
+            futures.add( future );
+
+            if ( messageId != 101 )
+            {
+                future.set( newResponse( messageId, ResultCodeEnum.SUCCESS ) );
+            }
+
+            return future;
+        } );
+
+        Dsmlv2Engine engine = new Dsmlv2Engine( connection, "uid=admin,ou=system", "secret" );
+        String response = engine.processDSML( batchRequest( "processing=\"parallel\"", 2 ) );
+
+        // The batch fails waiting for the first response : the second one is not written
+        assertTrue( response.contains( "errorResponse" ) );
+        assertEquals( Arrays.asList(), responseIds( response ) );
+        assertTrue( futures.get( 0 ).isCancelled() );
+
+        // The next batch only contains its own responses
+        response = engine.processDSML( batchRequest( "processing=\"parallel\"", 1 ) );
+        assertEquals( Arrays.asList( 1 ), responseIds( response ) );
+        assertFalse( response.contains( "errorResponse" ) );
+    }
+}
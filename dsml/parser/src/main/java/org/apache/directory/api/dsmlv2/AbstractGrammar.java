@@ -24,7 +24,6 @@ import java.io.IOException;
 import java.util.HashMap;
 
 import org.apache.directory.api.i18n.I18n;
-import org.apache.directory.api.util.Strings;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -148,9 +147,9 @@ public abstract class AbstractGrammar implements Grammar
     {
         XmlPullParser xpp = container.getParser();
 
-        String tagName = Strings.toLowerCaseAscii( xpp.getName() );
+        Tag tag = Tag.getTag( xpp.getName(), tagType );
 
-        GrammarTransition transition = getTransition( container.getState(), new Tag( tagName, tagType ) );
+        GrammarTransition transition = getTransition( container.getState(), tag );
 
         if ( transition != null )
         {
@@ -164,7 +163,7 @@ public abstract class AbstractGrammar implements Grammar
         }
         else
         {
-            throw new XmlPullParserException( I18n.err( I18n.ERR_03036_MISSING_TAG, new Tag( tagName, tagType ) ), xpp, null );
+            throw new XmlPullParserException( I18n.err( I18n.ERR_03036_MISSING_TAG, tag ), xpp, null );
         }
     }
 }
@@ -28,20 +28,24 @@ import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 import org.apache.directory.api.dsmlv2.request.BatchRequestDsml;
 import org.apache.directory.api.dsmlv2.request.Dsmlv2Grammar;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.message.Request;
-import org.apache.directory.api.util.Strings;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
 
 /**
  * This class represents the DSMLv2 Parser.
  * It can be used to parse a plain DSMLv2 Request input document or the one inside a SOAP envelop.
+ * <br>
+ * A parser instance can be reused to parse many documents, one after the other : setting a new
+ * input resets its state. A parser is not thread safe.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -86,11 +90,7 @@ public class Dsmlv2Parser
 
         this.container.setGrammar( grammar );
 
-        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-        factory.setNamespaceAware( true );
-        XmlPullParser xpp = factory.newPullParser();
-
-        container.setParser( xpp );
+        container.setParser( ParserUtils.newPullParser() );
     }
 
 
@@ -106,11 +106,7 @@ public class Dsmlv2Parser
         this.container.setGrammar( grammar );
         this.grammar = grammar;
 
-        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-        factory.setNamespaceAware( true );
-        XmlPullParser xpp = factory.newPullParser();
-
-        container.setParser( xpp );
+        container.setParser( ParserUtils.newPullParser() );
     }
 
 
@@ -126,6 +122,7 @@ public class Dsmlv2Parser
         try ( Reader reader = new InputStreamReader( Files.newInputStream( Paths.get( ( fileName ) ) ), 
             Charset.defaultCharset() ) )
         {
+            reset();
             container.getParser().setInput( reader );
         }
     }
@@ -140,6 +137,7 @@ public class Dsmlv2Parser
      */
     public void setInput( InputStream inputStream, String inputEncoding ) throws XmlPullParserException
     {
+        reset();
         container.getParser().setInput( inputStream, inputEncoding );
     }
 
@@ -152,10 +150,23 @@ public class Dsmlv2Parser
      */
     public void setInput( String str ) throws XmlPullParserException
     {
+        reset();
         container.getParser().setInput( new StringReader( str ) );
     }
 
 
+    /**
+     * Forgets about the previously parsed document, if any, so that the parser can be
+     * used for a new input
+     */
+    private void reset()
+    {
+        container.setBatchRequest( null );
+        container.setState( null );
+        container.setTransition( null );
+    }
+
+
     /**
      * Launches the parsing on the input
      * This method will parse the whole DSML document, without considering the flag storeMsgInBatchReq
@@ -234,9 +245,9 @@ public class Dsmlv2Parser
     {
         XmlPullParser xpp = container.getParser();
 
-        String tagName = Strings.lowerCase( xpp.getName() );
+        Tag tag = Tag.getTag( xpp.getName(), tagType );
 
-        GrammarTransition transition = container.getTransition( container.getState(), new Tag( tagName, tagType ) );
+        GrammarTransition transition = container.getTransition( container.getState(), tag );
 
         if ( transition != null )
         {
@@ -249,7 +260,7 @@ public class Dsmlv2Parser
         }
         else
         {
-            throw new XmlPullParserException( I18n.err( I18n.ERR_03036_MISSING_TAG, new Tag( tagName, tagType ) ), xpp, null );
+            throw new XmlPullParserException( I18n.err( I18n.ERR_03036_MISSING_TAG, tag ), xpp, null );
         }
     }
 
@@ -345,4 +356,52 @@ public class Dsmlv2Parser
             continue;
         }
     }
+
+
+    /**
+     * Exposes the requests of the current input as a Spliterator, which parses them lazily,
+     * one at a time. Only the requests that have been read but not yet consumed are kept
+     * in memory, as long as the parser has been created with <code>storeMsgInBatchReq</code>
+     * set to false.
+     * <br>
+     * The Spliterator can be split : each split reads the next batch of requests from the
+     * document, and hands them to another consumer, so that a big batch request can be
+     * sharded across threads using a parallel stream. The requests are still read
+     * sequentially from the input.
+     * <br>
+     * A parsing error is reported as an {@link IllegalStateException} wrapping the
+     * {@link XmlPullParserException}.
+     *
+     * @return A Spliterator over the requests of the current input
+     */
+    public Spliterator<DsmlDecorator<? extends Request>> spliterator()
+    {
+        return new Spliterators.AbstractSpliterator<DsmlDecorator<? extends Request>>( Long.MAX_VALUE,
+            Spliterator.ORDERED | Spliterator.NONNULL )
+        {
+            @Override
+            public boolean tryAdvance( Consumer<? super DsmlDecorator<? extends Request>> action )
+            {
+                DsmlDecorator<? extends Request> request;
+
+                try
+                {
+                    request = getNextRequest();
+                }
+                catch ( XmlPullParserException xppe )
+                {
+                    throw new IllegalStateException( xppe.getMessage(), xppe );
+                }
+
+                if ( request == null )
+                {
+                    return false;
+                }
+
+                action.accept( request );
+
+                return true;
+            }
+        };
+    }
 }
@@ -34,10 +34,8 @@ import org.apache.directory.api.dsmlv2.response.Dsmlv2ResponseGrammar;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.model.message.Response;
-import org.apache.directory.api.util.Strings;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
 
 /**
@@ -64,11 +62,7 @@ public class Dsmlv2ResponseParser
 
         this.container.setGrammar( Dsmlv2ResponseGrammar.getInstance() );
 
-        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-        factory.setNamespaceAware( true );
-        XmlPullParser xpp = factory.newPullParser();
-
-        container.setParser( xpp );
+        container.setParser( ParserUtils.newPullParser() );
     }
 
 
@@ -187,9 +181,9 @@ public class Dsmlv2ResponseParser
     {
         XmlPullParser xpp = container.getParser();
 
-        String tagName = Strings.lowerCase( xpp.getName() );
+        Tag tag = Tag.getTag( xpp.getName(), tagType );
 
-        GrammarTransition transition = container.getTransition( container.getState(), new Tag( tagName, tagType ) );
+        GrammarTransition transition = container.getTransition( container.getState(), tag );
 
         if ( transition != null )
         {
@@ -202,7 +196,7 @@ public class Dsmlv2ResponseParser
         }
         else
         {
-            throw new XmlPullParserException( I18n.err( I18n.ERR_03036_MISSING_TAG, new Tag( tagName, tagType ) ), xpp, null );
+            throw new XmlPullParserException( I18n.err( I18n.ERR_03036_MISSING_TAG, tag ), xpp, null );
         }
     }
 
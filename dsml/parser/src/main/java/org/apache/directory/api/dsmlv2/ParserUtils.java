@@ -50,6 +50,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
 
 
 /**
@@ -94,11 +95,37 @@ public final class ParserUtils
      */
     public static final GrammarAction READ_SOAP_HEADER = new ReadSoapHeader();
 
+    /** The namespace aware XPP factory, shared by all the parsers */
+    private static volatile XmlPullParserFactory pullParserFactory;
+
     private ParserUtils()
     {
     }
 
 
+    /**
+     * Creates a new namespace aware XPP parser. The factory is looked up once, and
+     * shared by all the parsers, as looking it up is much more expensive than creating
+     * a parser.
+     *
+     * @return A new XPP parser
+     * @throws XmlPullParserException If the factory or the parser can't be created
+     */
+    public static XmlPullParser newPullParser() throws XmlPullParserException
+    {
+        XmlPullParserFactory factory = pullParserFactory;
+
+        if ( factory == null )
+        {
+            factory = XmlPullParserFactory.newInstance();
+            factory.setNamespaceAware( true );
+            pullParserFactory = factory;
+        }
+
+        return factory.newPullParser();
+    }
+
+
     /**
      * Returns the value of the attribute 'type' of the "XMLSchema-instance' namespace if it exists
      *
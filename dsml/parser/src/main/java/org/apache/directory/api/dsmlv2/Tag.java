@@ -20,6 +20,10 @@
 package org.apache.directory.api.dsmlv2;
 
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.util.Strings;
 
 
@@ -42,12 +46,24 @@ public class Tag
     /** The type of the tag */
     private int type;
 
+    /** Tells if the tag is shared between the parsers, in which case it can't be modified */
+    private final boolean shared;
+
     /** This int represents a START tag */
     public static final int START = 0;
 
     /** This int represents a END tag */
     public static final int END = 1;
 
+    /** The maximum number of tag names kept in the lookup tables */
+    private static final int MAX_INTERNED_TAGS = 512;
+
+    /** The shared START tags, by name as found in the parsed documents */
+    private static final Map<String, Tag> START_TAGS = new ConcurrentHashMap<>();
+
+    /** The shared END tags, by name as found in the parsed documents */
+    private static final Map<String, Tag> END_TAGS = new ConcurrentHashMap<>();
+
 
     /**
      * Creates a new instance of Tag.
@@ -57,8 +73,52 @@ public class Tag
      */
     public Tag( String name, int type )
     {
-        setName( name );
-        setType( type );
+        this( name, type, false );
+    }
+
+
+    private Tag( String name, int type, boolean shared )
+    {
+        // Use the interned lowercased name for the shared tags, so that comparing it with
+        // the grammar tag names is most of the time a reference comparison
+        this.name = shared ? Strings.toLowerCaseAscii( name ).intern() : Strings.toLowerCaseAscii( name );
+        this.type = type;
+        this.shared = shared;
+    }
+
+
+    /**
+     * Gets a shared Tag instance for a tag name, as found in the parsed document. The
+     * tags are kept in a lookup table, so that the parsers don't have to lowercase
+     * the name and to create a new Tag for every element they read. The lookup table
+     * is bounded : once it is full, a new Tag is created for the unknown names.
+     * <br>
+     * The returned Tag may be shared : it can't be modified, its setters throw an
+     * UnsupportedOperationException.
+     *
+     * @param name the name of the tag, not necessarily lowercased
+     * @param type the type of the tag
+     * @return The Tag instance
+     */
+    public static Tag getTag( String name, int type )
+    {
+        Map<String, Tag> tags = ( type == START ) ? START_TAGS : END_TAGS;
+        Tag tag = tags.get( name );
+
+        if ( tag == null )
+        {
+            if ( tags.size() < MAX_INTERNED_TAGS )
+            {
+                tag = new Tag( name, type, true );
+                tags.putIfAbsent( name, tag );
+            }
+            else
+            {
+                tag = new Tag( name, type );
+            }
+        }
+
+        return tag;
     }
 
 
@@ -77,9 +137,15 @@ public class Tag
      * Sets the name of the tag
      *
      * @param name the name to set
+     * @throws UnsupportedOperationException If the tag is shared
      */
     public void setName( String name )
     {
+        if ( shared )
+        {
+            throw new UnsupportedOperationException( I18n.err( I18n.ERR_03046_SHARED_TAG_MODIFICATION, this ) );
+        }
+
         this.name = Strings.toLowerCaseAscii( name );
     }
 
@@ -99,9 +165,15 @@ public class Tag
      * Sets the type of the tag
      *
      * @param type the type to set
+     * @throws UnsupportedOperationException If the tag is shared
      */
     public void setType( int type )
     {
+        if ( shared )
+        {
+            throw new UnsupportedOperationException( I18n.err( I18n.ERR_03046_SHARED_TAG_MODIFICATION, this ) );
+        }
+
         this.type = type;
     }
 
@@ -112,6 +184,11 @@ public class Tag
     @Override
     public boolean equals( Object obj )
     {
+        if ( this == obj )
+        {
+            return true;
+        }
+
         if ( obj instanceof Tag )
         {
             Tag tag = ( Tag ) obj;
@@ -132,7 +209,7 @@ public class Tag
     @Override
     public int hashCode()
     {
-        return name.hashCode() + type << 24;
+        return name.hashCode() + ( type << 24 );
     }
 
 
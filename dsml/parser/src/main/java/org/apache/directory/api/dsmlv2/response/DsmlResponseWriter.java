@@ -0,0 +1,254 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.dsmlv2.response;
+
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.apache.directory.api.dsmlv2.DsmlDecorator;
+import org.apache.directory.api.dsmlv2.DsmlLiterals;
+import org.apache.directory.api.dsmlv2.ParserUtils;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+
+
+/**
+ * Writes a DSML batch response directly to a Writer, one element at a time, without building
+ * a dom4j tree for the whole response. The search result entries, which are the bulk of a big
+ * response, are serialized without any intermediate tree : the memory used while writing a
+ * search response does not depend on the number of returned entries.
+ * <br>
+ * The caller is responsible for calling the start and end methods in the correct order.
+ * This class is not thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DsmlResponseWriter
+{
+    /** The SOAP envelope namespace */
+    private static final String SOAP_ENVELOPE_URI = "http://www.w3.org/2001/12/soap-envelope";
+
+    /** The xsi:type attribute of a binary value */
+    private static final String BINARY_TYPE = ' ' + ParserUtils.XSI + ':' + DsmlLiterals.TYPE + "=\""
+        + ParserUtils.XSD_COLON + ParserUtils.BASE64BINARY + '"';
+
+    /** The underlying writer */
+    private final Writer writer;
+
+
+    /**
+     * Creates a new DsmlResponseWriter instance
+     *
+     * @param writer The Writer to write the response to
+     */
+    public DsmlResponseWriter( Writer writer )
+    {
+        this.writer = writer;
+    }
+
+
+    /**
+     * Writes the SOAP envelope and body start tags
+     *
+     * @throws IOException If the response can't be written
+     */
+    public void startSoapEnvelope() throws IOException
+    {
+        writer.write( "<Envelope xmlns=\"" );
+        writer.write( SOAP_ENVELOPE_URI );
+        writer.write( "\"><Body>" );
+    }
+
+
+    /**
+     * Writes the SOAP body and envelope end tags
+     *
+     * @throws IOException If the response can't be written
+     */
+    public void endSoapEnvelope() throws IOException
+    {
+        writer.write( "</Body></Envelope>" );
+    }
+
+
+    /**
+     * Writes the batchResponse start tag, declaring the DSML, XSD and XSI namespaces
+     *
+     * @param requestId The batch request ID, not written if 0 or negative
+     * @throws IOException If the response can't be written
+     */
+    public void startBatchResponse( int requestId ) throws IOException
+    {
+        writer.write( '<' );
+        writer.write( DsmlLiterals.BATCH_RESPONSE );
+        writer.write( ' ' );
+        writer.write( ParserUtils.DSML_NAMESPACE.asXML() );
+        writer.write( ' ' );
+        writer.write( ParserUtils.XSD_NAMESPACE.asXML() );
+        writer.write( ' ' );
+        writer.write( ParserUtils.XSI_NAMESPACE.asXML() );
+        writeRequestId( requestId );
+        writer.write( '>' );
+    }
+
+
+    /**
+     * Writes the batchResponse end tag
+     *
+     * @throws IOException If the response can't be written
+     */
+    public void endBatchResponse() throws IOException
+    {
+        writeEndTag( DsmlLiterals.BATCH_RESPONSE );
+    }
+
+
+    /**
+     * Writes the searchResponse start tag
+     *
+     * @param requestId The search request ID, not written if 0 or negative
+     * @throws IOException If the response can't be written
+     */
+    public void startSearchResponse( int requestId ) throws IOException
+    {
+        writer.write( '<' );
+        writer.write( DsmlLiterals.SEARCH_RESPONSE );
+        writeRequestId( requestId );
+        writer.write( '>' );
+    }
+
+
+    /**
+     * Writes the searchResponse end tag
+     *
+     * @throws IOException If the response can't be written
+     */
+    public void endSearchResponse() throws IOException
+    {
+        writeEndTag( DsmlLiterals.SEARCH_RESPONSE );
+    }
+
+
+    /**
+     * Writes a searchResultEntry element, without building any intermediate tree. The binary
+     * values are base64 encoded, and use the XSI and XSD namespaces declared by the batchResponse
+     * element.
+     *
+     * @param searchResultEntry The entry to write
+     * @throws IOException If the response can't be written
+     */
+    public void writeSearchResultEntry( SearchResultEntry searchResultEntry ) throws IOException
+    {
+        writer.write( '<' );
+        writer.write( DsmlLiterals.SEARCH_RESULT_ENTRY );
+        writeAttribute( DsmlLiterals.DN, searchResultEntry.getObjectName().getName() );
+        writer.write( '>' );
+
+        for ( Attribute attribute : searchResultEntry.getEntry() )
+        {
+            writer.write( '<' );
+            writer.write( DsmlLiterals.ATTR );
+            writeAttribute( DsmlLiterals.NAME, attribute.getUpId() );
+            writer.write( '>' );
+
+            for ( Value value : attribute )
+            {
+                writer.write( '<' );
+                writer.write( DsmlLiterals.VALUE );
+
+                if ( value.isHumanReadable() )
+                {
+                    writer.write( '>' );
+                    writer.write( StringEscapeUtils.escapeXml11( value.getString() ) );
+                }
+                else
+                {
+                    writer.write( BINARY_TYPE );
+                    writer.write( '>' );
+                    writer.write( ParserUtils.base64Encode( value.getBytes() ) );
+                }
+
+                writeEndTag( DsmlLiterals.VALUE );
+            }
+
+            writeEndTag( DsmlLiterals.ATTR );
+        }
+
+        writeEndTag( DsmlLiterals.SEARCH_RESULT_ENTRY );
+    }
+
+
+    /**
+     * Writes any response, using its dom4j representation. This is meant for the responses
+     * which are not streamed, like the LDAP results.
+     *
+     * @param response The response to write
+     * @throws IOException If the response can't be written
+     */
+    public void writeResponse( DsmlDecorator<?> response ) throws IOException
+    {
+        response.toDsml( null ).write( writer );
+    }
+
+
+    /**
+     * Flushes the underlying writer
+     *
+     * @throws IOException If the writer can't be flushed
+     */
+    public void flush() throws IOException
+    {
+        writer.flush();
+    }
+
+
+    private void writeRequestId( int requestId ) throws IOException
+    {
+        if ( requestId > 0 )
+        {
+            writer.write( ' ' );
+            writer.write( DsmlLiterals.REQUEST_ID );
+            writer.write( "=\"" );
+            writer.write( Integer.toString( requestId ) );
+            writer.write( '"' );
+        }
+    }
+
+
+    private void writeAttribute( String name, String value ) throws IOException
+    {
+        writer.write( ' ' );
+        writer.write( name );
+        writer.write( "=\"" );
+        writer.write( StringEscapeUtils.escapeXml11( value ) );
+        writer.write( '"' );
+    }
+
+
+    private void writeEndTag( String name ) throws IOException
+    {
+        writer.write( "</" );
+        writer.write( name );
+        writer.write( '>' );
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.dsmlv2;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.Request;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Tests for the Dsmlv2Parser streaming and reuse
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class Dsmlv2ParserTest extends AbstractTest
+{
+    private static String batchRequest( int nbRequests )
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "<batchRequest xmlns=\"urn:oasis:names:tc:DSML:2:0:core\">" );
+
+        for ( int i = 0; i < nbRequests; i++ )
+        {
+            sb.append( "<delRequest requestID=\"" ).append( i + 1 ).append( "\" dn=\"cn=user" ).append( i )
+                .append( ",ou=system\"/>" );
+        }
+
+        sb.append( "</batchRequest>" );
+
+        return sb.toString();
+    }
+
+
+    @Test
+    public void testTagLookup()
+    {
+        Tag tag = Tag.getTag( "DelRequest", Tag.START );
+
+        assertEquals( "delrequest", tag.getName() );
+        assertEquals( Tag.START, tag.getType() );
+        assertSame( tag, Tag.getTag( "DelRequest", Tag.START ) );
+        assertNotSame( tag, Tag.getTag( "DelRequest", Tag.END ) );
+        assertEquals( new Tag( "delRequest", Tag.START ), tag );
+        assertEquals( new Tag( "delRequest", Tag.START ).hashCode(), tag.hashCode() );
+    }
+
+
+    @Test
+    public void testSharedTagCantBeModified()
+    {
+        Tag tag = Tag.getTag( "AddRequest", Tag.START );
+
+        assertThrows( UnsupportedOperationException.class, () -> tag.setName( "delRequest" ) );
+        assertThrows( UnsupportedOperationException.class, () -> tag.setType( Tag.END ) );
+        assertEquals( "addrequest", tag.getName() );
+        assertEquals( Tag.START, tag.getType() );
+        assertSame( tag, Tag.getTag( "AddRequest", Tag.START ) );
+
+        // A tag which is not shared can still be modified
+        Tag unshared = new Tag( "addRequest", Tag.START );
+        unshared.setType( Tag.END );
+        assertEquals( Tag.END, unshared.getType() );
+    }
+
+
+    @Test
+    public void testSpliterator() throws Exception
+    {
+        Dsmlv2Parser parser = new Dsmlv2Parser( false );
+        parser.setInput( batchRequest( 100 ) );
+
+        List<DsmlDecorator<? extends Request>> requests = StreamSupport.stream( parser.spliterator(), false )
+            .collect( Collectors.toList() );
+
+        assertEquals( 100, requests.size() );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            DeleteRequest request = ( DeleteRequest ) requests.get( i );
+            assertEquals( i + 1, request.getMessageId() );
+            assertEquals( "cn=user" + i + ",ou=system", request.getName().getName() );
+        }
+
+        // The requests are not stored in the batch request
+        assertTrue( parser.getBatchRequest().getRequests().isEmpty() );
+    }
+
+
+    @Test
+    public void testParallelSpliterator() throws Exception
+    {
+        Dsmlv2Parser parser = new Dsmlv2Parser( false );
+        parser.setInput( batchRequest( 5000 ) );
+
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+
+        StreamSupport.stream( parser.spliterator(), true ).forEach( request -> ids.add( request.getDecorated().getMessageId() ) );
+
+        assertEquals( 5000, ids.size() );
+    }
+
+
+    @Test
+    public void testSpliteratorError() throws Exception
+    {
+        Dsmlv2Parser parser = new Dsmlv2Parser( false );
+        parser.setInput( "<batchRequest xmlns=\"urn:oasis:names:tc:DSML:2:0:core\"><unknownRequest/></batchRequest>" );
+
+        assertThrows( IllegalStateException.class, () -> parser.spliterator().tryAdvance( request -> { } ) );
+    }
+
+
+    @Test
+    public void testParserReuse() throws Exception
+    {
+        Dsmlv2Parser parser = newParser();
+
+        parser.setInput( batchRequest( 3 ) );
+        parser.parseAllRequests();
+        assertEquals( 3, parser.getBatchRequest().getRequests().size() );
+
+        parser.setInput( batchRequest( 2 ) );
+        assertNull( parser.getBatchRequest() );
+        parser.parseAllRequests();
+        assertEquals( 2, parser.getBatchRequest().getRequests().size() );
+        assertEquals( "cn=user1,ou=system",
+            ( ( DeleteRequest ) parser.getBatchRequest().getRequests().get( 1 ) ).getName().getName() );
+    }
+}
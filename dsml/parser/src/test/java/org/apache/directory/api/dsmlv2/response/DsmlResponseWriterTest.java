@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ * 
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ * 
+ */
+package org.apache.directory.api.dsmlv2.response;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.apache.directory.api.dsmlv2.AbstractResponseTest;
+import org.apache.directory.api.dsmlv2.Dsmlv2ResponseParser;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Tests for the streaming DSML response writer
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution( ExecutionMode.CONCURRENT)
+public class DsmlResponseWriterTest extends AbstractResponseTest
+{
+    /**
+     * Write a search response, and check that the parser reads back the same entries
+     */
+    @Test
+    public void testWriteSearchResponse() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        DsmlResponseWriter writer = new DsmlResponseWriter( out );
+
+        writer.startSoapEnvelope();
+        writer.startBatchResponse( 1 );
+        writer.startSearchResponse( 2 );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            Entry entry = new DefaultEntry( "cn=user" + i + ",ou=system",
+                "objectClass: person",
+                "cn: user" + i,
+                "sn: <Smith & Co>",
+                "jpegPhoto", new byte[]
+                    { 0x00, 0x01, ( byte ) 0xFF } );
+
+            SearchResultEntry searchResultEntry = new SearchResultEntryImpl( 2 );
+            searchResultEntry.setEntry( entry );
+            writer.writeSearchResultEntry( searchResultEntry );
+        }
+
+        SearchResultDoneImpl done = new SearchResultDoneImpl( 2 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        writer.writeResponse( new SearchResultDoneDsml( getCodec(), done ) );
+
+        writer.endSearchResponse();
+        writer.endBatchResponse();
+        writer.endSoapEnvelope();
+        writer.flush();
+
+        Dsmlv2ResponseParser parser = new Dsmlv2ResponseParser( getCodec() );
+        parser.setInput( out.toString() );
+        parser.parse();
+
+        SearchResponse searchResponse = ( SearchResponse ) parser.getBatchResponse().getCurrentResponse()
+            .getDecorated();
+        List<SearchResultEntryDsml> entries = searchResponse.getSearchResultEntryList();
+
+        assertEquals( 2, searchResponse.getMessageId() );
+        assertEquals( 10, entries.size() );
+
+        Entry entry = entries.get( 3 ).getEntry();
+
+        assertEquals( "cn=user3,ou=system", entry.getDn().getName() );
+        assertEquals( "<Smith & Co>", entry.get( "sn" ).getString() );
+        assertEquals( "user3", entry.get( "cn" ).getString() );
+        assertArrayEquals( new byte[]
+            { 0x00, 0x01, ( byte ) 0xFF }, entry.get( "jpegPhoto" ).getBytes() );
+        assertEquals( ResultCodeEnum.SUCCESS, searchResponse.getSearchResultDone().getLdapResult().getResultCode() );
+    }
+}
@@ -23,13 +23,19 @@ package org.apache.directory.api.i18n;
 
 import java.text.MessageFormat;
 import java.util.Locale;
-import java.util.MissingResourceException;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
  * Provides i18n handling of error codes.
  * About formatting see also {@link MessageFormat}
+ * <br>
+ * The messages are compiled once, the first time their code is used, and the messages
+ * without argument are translated once. The messages which are often built but seldom
+ * read, like debug logs or the exceptions which are caught and ignored, can be translated
+ * lazily, using {@link #lazyErr(I18n, Object...)} and {@link #lazyMsg(I18n, Object...)}.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -81,6 +87,7 @@ public enum I18n
     ERR_02003_LINE_COLUMN( "ERR_02003_LINE_COLUMN" ),
     ERR_02004_MISSING_REQUEST_ID( "ERR_02004_MISSING_REQUEST_ID" ),
     ERR_02005_INTERNAL_ERROR( "ERR_02005_INTERNAL_ERROR" ),
+    ERR_02006_NO_RESPONSE( "ERR_02006_NO_RESPONSE" ),
 
     // api-dsml-parser                  3000-3999
     ERR_03000_REQUEST_ID_REQUIRED( "ERR_03000_REQUEST_ID_REQUIRED" ),
@@ -129,6 +136,7 @@ public enum I18n
     ERR_03043_UNEXPECTED_DEREF_ALIAS( "ERR_03043_UNEXPECTED_DEREF_ALIAS" ),
     ERR_03044_SHOULD_NOT_BE_A_DECORATOR( "ERR_03044_SHOULD_NOT_BE_A_DECORATOR" ),
     ERR_03045_UNIDENTIFIED_RESPONSE_TYPE( "ERR_03045_UNIDENTIFIED_RESPONSE_TYPE" ),
+    ERR_03046_SHARED_TAG_MODIFICATION( "ERR_03046_SHARED_TAG_MODIFICATION" ),
 
     // api-ldap-client-api              4000-4999
     //     <>                               4000-4100
@@ -214,6 +222,11 @@ public enum I18n
     ERR_04178_CANT_LOAD_KEY_STORE( "ERR_04178_CANT_LOAD_KEY_STORE" ),
     ERR_04179_TRUST_STORE_CANT_BE_READ( "ERR_04179_TRUST_STORE_CANT_BE_READ" ),
     ERR_04180_FILE_DOES_NOT_EXIST_ON_CLASSPATH( "ERR_04180_FILE_DOES_NOT_EXIST_ON_CLASSPATH" ),
+    ERR_04181_NO_SERVER_AVAILABLE( "ERR_04181_NO_SERVER_AVAILABLE" ),
+    ERR_04182_INVALID_SERVER_SET( "ERR_04182_INVALID_SERVER_SET" ),
+    ERR_04183_INVALID_HEDGING_BUDGET( "ERR_04183_INVALID_HEDGING_BUDGET" ),
+    ERR_04184_CIRCUIT_OPEN( "ERR_04184_CIRCUIT_OPEN" ),
+    ERR_04185_POOL_BORROW_TIMEOUT( "ERR_04185_POOL_BORROW_TIMEOUT" ),
 
     //     template                     4200-4300
     // None
@@ -859,6 +872,17 @@ public enum I18n
     ERR_13867_MOD_INCREMENT_NO_ATTRIBUTE( "ERR_13867_MOD_INCREMENT_NO_ATTRIBUTE" ),
     ERR_13868_MOD_INCREMENT_NO_INT_ATTRIBUTE( "ERR_13868_MOD_INCREMENT_NO_INT_ATTRIBUTE" ),
     ERR_13869_MOD_INCREMENT_OVERFLOW( "ERR_13869_MOD_INCREMENT_OVERFLOW" ),
+    ERR_13870_ENTRY_WITHOUT_OBJECT_CLASS( "ERR_13870_ENTRY_WITHOUT_OBJECT_CLASS" ),
+    ERR_13871_ENTRY_UNKNOWN_OBJECT_CLASS( "ERR_13871_ENTRY_UNKNOWN_OBJECT_CLASS" ),
+    ERR_13872_ENTRY_UNKNOWN_ATTRIBUTE_TYPE( "ERR_13872_ENTRY_UNKNOWN_ATTRIBUTE_TYPE" ),
+    ERR_13873_ENTRY_ATTRIBUTE_NOT_ALLOWED( "ERR_13873_ENTRY_ATTRIBUTE_NOT_ALLOWED" ),
+    ERR_13874_ENTRY_MISSING_REQUIRED_ATTRIBUTE( "ERR_13874_ENTRY_MISSING_REQUIRED_ATTRIBUTE" ),
+    ERR_13875_LDIF_DIFF_UNSORTED_STREAM( "ERR_13875_LDIF_DIFF_UNSORTED_STREAM" ),
+    ERR_13876_LDIF_DIFF_NOT_AN_ENTRY( "ERR_13876_LDIF_DIFF_NOT_AN_ENTRY" ),
+    ERR_13877_INVALID_ESCAPED_CHAR( "ERR_13877_INVALID_ESCAPED_CHAR" ),
+    ERR_13878_UNTERMINATED_QUOTED_VALUE( "ERR_13878_UNTERMINATED_QUOTED_VALUE" ),
+    ERR_13879_INVALID_HEXSTRING( "ERR_13879_INVALID_HEXSTRING" ),
+    ERR_13880_UNEXPECTED_CHAR_AFTER_VALUE( "ERR_13880_UNEXPECTED_CHAR_AFTER_VALUE" ),
 
     // api-ldap-model subtree          13900-13999
     ERR_13900_INTEGER_TOKEN_NOT_INTEGER( "ERR_13900_INTEGER_TOKEN_NOT_INTEGER" ),
@@ -1162,6 +1186,15 @@ public enum I18n
     MSG_04176_TRUST_MANAGER_ON_CLASSPATH( "MSG_04176_TRUST_MANAGER_ON_CLASSPATH" ),
     MSG_04177_CONNECTION_TIMEOUT( "MSG_04177_CONNECTION_TIMEOUT" ),
     MSH_04178_CLOSE_LATCH_ABORTED( "MSH_04178_CLOSE_LATCH_ABORTED" ),
+    MSG_04179_SERVER_QUARANTINED( "MSG_04179_SERVER_QUARANTINED" ),
+    MSG_04180_SERVER_RELEASED( "MSG_04180_SERVER_RELEASED" ),
+    MSG_04181_SERVER_STILL_FAILING( "MSG_04181_SERVER_STILL_FAILING" ),
+    MSG_04182_CIRCUIT_OPENED( "MSG_04182_CIRCUIT_OPENED" ),
+    MSG_04183_CIRCUIT_CLOSED( "MSG_04183_CIRCUIT_CLOSED" ),
+    MSG_04184_PERSISTENT_SEARCH_DONE( "MSG_04184_PERSISTENT_SEARCH_DONE" ),
+    MSG_04185_PERSISTENT_SEARCH_STOPPED( "MSG_04185_PERSISTENT_SEARCH_STOPPED" ),
+    MSG_04186_HEDGED_REQUEST_FAILED( "MSG_04186_HEDGED_REQUEST_FAILED" ),
+    MSG_04187_NO_HEDGING_SERVER( "MSG_04187_NO_HEDGING_SERVER" ),
 
     // api-ldap-codec-core              5000-5999
     //     <>                               5000-5099
@@ -1510,6 +1543,12 @@ public enum I18n
     /** The error code */
     private String errorCode;
 
+    /** The compiled message of this code, loaded when first used */
+    private volatile MessageTemplate template;
+
+    /** The translated message of this code, when used without argument */
+    private volatile String translation;
+
     /** The file containing the errors */
     private static final ResourceBundle ERR_BUNDLE = ResourceBundle
         .getBundle( "org/apache/directory/api/i18n/errors", Locale.ROOT );
@@ -1518,6 +1557,18 @@ public enum I18n
     private static final ResourceBundle MSG_BUNDLE = ResourceBundle
         .getBundle( "org/apache/directory/api/i18n/messages", Locale.ROOT );
 
+    /** The maximum number of compiled patterns kept for the messages which are not codes */
+    private static final int MAX_PATTERNS = 1024;
+
+    /** The compiled patterns of the messages which are not codes */
+    private static final Map<String, MessageTemplate> PATTERNS = new ConcurrentHashMap<>();
+
+    /** The marker of a code which has no valid message */
+    private static final MessageTemplate NO_TEMPLATE = MessageTemplate.compile( "" );
+
+    /** An empty list of arguments */
+    private static final Object[] NO_ARGS = new Object[0];
+
 
     /**
      * Creates a new instance of I18n.
@@ -1543,28 +1594,91 @@ public enum I18n
 
 
     /**
+     * @return The compiled message of this code, or NO_TEMPLATE if the message is missing or invalid
+     */
+    private MessageTemplate getTemplate()
+    {
+        MessageTemplate result = template;
+
+        if ( result == null )
+        {
+            // The errors and the messages are not in the same file
+            ResourceBundle bundle = errorCode.startsWith( "ERR_" ) ? ERR_BUNDLE : MSG_BUNDLE;
+
+            try
+            {
+                result = bundle.containsKey( errorCode ) ? MessageTemplate.compile( bundle.getString( errorCode ) )
+                    : NO_TEMPLATE;
+            }
+            catch ( IllegalArgumentException iae )
+            {
+                result = NO_TEMPLATE;
+            }
+
+            template = result;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Translates a code with argument(s). The code is followed by the message, or by the
+     * arguments if the message can't be found or formatted.
      *
-     * Translate an error code with argument(s)
-     *
-     * @param err The error code
+     * @param code The error or message code
      * @param args The argument(s)
-     * @return The translated error
+     * @return The translated code
      */
-    public static String err( I18n err, Object... args )
+    static String translate( I18n code, Object[] args )
     {
+        MessageTemplate codeTemplate = code.getTemplate();
         StringBuilder sb = new StringBuilder();
 
-        sb.append( err ).append( ' ' );
+        sb.append( code ).append( ' ' );
 
-        try
+        if ( codeTemplate != NO_TEMPLATE )
         {
-            return sb.append( format( ERR_BUNDLE.getString( err.getErrorCode() ), args ) ).toString();
+            int length = sb.length();
+
+            try
+            {
+                return codeTemplate.format( sb, args ).toString();
+            }
+            catch ( Exception e )
+            {
+                sb.setLength( length );
+            }
         }
-        catch ( Exception e )
+
+        return appendArgs( sb, args ).toString();
+    }
+
+
+    /**
+     * Translates a code without argument. The translation is computed once.
+     */
+    private static String translate( I18n code )
+    {
+        String result = code.translation;
+
+        if ( result == null )
         {
-            boolean comma = false;
-            sb.append( '(' );
+            result = translate( code, NO_ARGS );
+            code.translation = result;
+        }
+
+        return result;
+    }
 
+
+    private static StringBuilder appendArgs( StringBuilder sb, Object[] args )
+    {
+        boolean comma = false;
+        sb.append( '(' );
+
+        if ( args != null )
+        {
             for ( Object obj : args )
             {
                 if ( comma )
@@ -1578,9 +1692,47 @@ public enum I18n
 
                 sb.append( obj );
             }
-
-            return sb.append( ')' ).toString();
         }
+
+        return sb.append( ')' );
+    }
+
+
+    /**
+     * Translate an error code without argument. The translation is computed once.
+     *
+     * @param err The error code
+     * @return The translated error
+     */
+    public static String err( I18n err )
+    {
+        return translate( err );
+    }
+
+
+    /**
+     *
+     * Translate an error code with argument(s)
+     *
+     * @param err The error code
+     * @param args The argument(s)
+     * @return The translated error
+     */
+    public static String err( I18n err, Object... args )
+    {
+        return translate( err, args );
+    }
+
+
+    /**
+     * Translate a message code without argument. The translation is computed once.
+     *
+     * @param msg The message code
+     * @return The translated message
+     */
+    public static String msg( I18n msg )
+    {
+        return translate( msg );
     }
 
 
@@ -1594,36 +1746,60 @@ public enum I18n
      */
     public static String msg( I18n msg, Object... args )
     {
-        StringBuilder sb = new StringBuilder();
+        return translate( msg, args );
+    }
 
-        sb.append( msg ).append( ' ' );
-        try
-        {
-            return sb.append( format( ERR_BUNDLE.getString( msg.getErrorCode() ), args ) ).toString();
-        }
-        catch ( Exception e )
+
+    /**
+     * Creates an error which is translated when it is read, for instance by a logger
+     * when the log level is enabled, or when the message of an exception is read.
+     *
+     * @param err The error code
+     * @param args The argument(s)
+     * @return The lazily translated error
+     */
+    public static LazyMessage lazyErr( I18n err, Object... args )
+    {
+        return new LazyMessage( err, args );
+    }
+
+
+    /**
+     * Creates a message which is translated when it is read, for instance by a logger
+     * when the log level is enabled.
+     *
+     * @param msg The message code
+     * @param args The argument(s)
+     * @return The lazily translated message
+     */
+    public static LazyMessage lazyMsg( I18n msg, Object... args )
+    {
+        return new LazyMessage( msg, args );
+    }
+
+
+    /**
+     * Gets the compiled pattern of a message, from the messages file if the message is a
+     * message code, or the message itself
+     */
+    private static MessageTemplate getPattern( String msg, boolean isCode )
+    {
+        MessageTemplate result = PATTERNS.get( msg );
+
+        if ( result == null )
         {
-            boolean comma = false;
-            sb.append( '(' );
+            String pattern = ( isCode && MSG_BUNDLE.containsKey( msg ) ) ? MSG_BUNDLE.getString( msg ) : msg;
+            result = MessageTemplate.compile( pattern );
 
-            for ( Object obj : args )
+            // The messages are usually constants, but not always : the cache is bounded
+            if ( PATTERNS.size() < MAX_PATTERNS )
             {
-                if ( comma )
-                {
-                    sb.append( ',' );
-                }
-                else
-                {
-                    comma = true;
-                }
-
-                sb.append( obj );
+                PATTERNS.put( msg, result );
             }
-
-            return sb.append( ')' ).toString();
         }
-    }
 
+        return result;
+    }
 
 
     /**
@@ -1637,42 +1813,25 @@ public enum I18n
     {
         try
         {
-            return format( MSG_BUNDLE.getString( msg ), args );
+            return getPattern( msg, true ).format( new StringBuilder(), args ).toString();
         }
-        catch ( MissingResourceException mre )
+        catch ( Exception e )
         {
-            try
-            {
-                return format( msg, args );
-            }
-            catch ( Exception e )
-            {
-                StringBuilder sb = new StringBuilder();
-                boolean comma = false;
-                sb.append( msg ).append( " (" );
-
-                for ( Object obj : args )
-                {
-                    if ( comma )
-                    {
-                        sb.append( ',' );
-                    }
-                    else
-                    {
-                        comma = true;
-                    }
-
-                    sb.append( obj );
-                }
-
-                return sb.append( ')' ).toString();
-            }
+            return appendArgs( new StringBuilder().append( msg ).append( ' ' ), args ).toString();
         }
     }
 
 
+    /**
+     * Formats a pattern with argument(s), like a {@link MessageFormat} using the root Locale.
+     * The compiled patterns are cached.
+     *
+     * @param pattern The pattern
+     * @param args The argument(s)
+     * @return The formatted pattern
+     */
     public static String format( String pattern, Object... args )
     {
-        return new MessageFormat( pattern, Locale.ROOT ).format( args );
+        return getPattern( pattern, false ).format( new StringBuilder(), args ).toString();
     }
 }
@@ -0,0 +1,100 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.i18n;
+
+
+import java.util.function.Supplier;
+
+
+/**
+ * A message which is only translated and formatted when it is read, and then only once.
+ * It can be given to a logger as a parameter, as it is formatted by its
+ * {@link #toString()} method :
+ * <pre>
+ * LOG.debug( "{}", I18n.lazyMsg( I18n.MSG_01000_TAG_DECODED, tag ) );
+ * </pre>
+ * or used as the message of an exception which is often created but seldom read. The
+ * arguments must not be modified before the message is read.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class LazyMessage implements Supplier<String>
+{
+    /** The error or message code */
+    private final I18n code;
+
+    /** The arguments */
+    private final Object[] args;
+
+    /** The formatted message, once read */
+    private volatile String message;
+
+
+    /**
+     * Creates a new LazyMessage instance
+     *
+     * @param code The error or message code
+     * @param args The arguments
+     */
+    LazyMessage( I18n code, Object[] args )
+    {
+        this.code = code;
+        this.args = args;
+    }
+
+
+    /**
+     * @return The error or message code
+     */
+    public I18n getCode()
+    {
+        return code;
+    }
+
+
+    /**
+     * Formats the message, if not already done
+     *
+     * @return The translated message
+     */
+    @Override
+    public String get()
+    {
+        String result = message;
+
+        if ( result == null )
+        {
+            result = I18n.translate( code, args );
+            message = result;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @return The translated message
+     */
+    @Override
+    public String toString()
+    {
+        return get();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.i18n;
+
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * A precompiled message pattern. The patterns only containing simple arguments, like
+ * <code>{0}</code>, are formatted by concatenating their literal parts and their arguments,
+ * producing the same result as a {@link MessageFormat} without parsing the pattern again.
+ * The other patterns, and the arguments which would be formatted by a MessageFormat (a
+ * Date, or a Number which is not a small integer), use a copy of the compiled MessageFormat.
+ * <br>
+ * The instances are immutable and thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class MessageTemplate
+{
+    /** The compiled MessageFormat */
+    private final MessageFormat messageFormat;
+
+    /** The literal parts of a simple pattern, one more than the arguments, or null */
+    private final String[] literals;
+
+    /** The argument index of each argument of a simple pattern */
+    private final int[] arguments;
+
+
+    private MessageTemplate( MessageFormat messageFormat, String[] literals, int[] arguments )
+    {
+        this.messageFormat = messageFormat;
+        this.literals = literals;
+        this.arguments = arguments;
+    }
+
+
+    /**
+     * Compiles a pattern
+     *
+     * @param pattern The pattern
+     * @return The compiled pattern
+     * @throws IllegalArgumentException If the pattern is invalid
+     */
+    static MessageTemplate compile( String pattern )
+    {
+        MessageFormat messageFormat = new MessageFormat( pattern, Locale.ROOT );
+        List<String> literals = new ArrayList<>();
+        List<Integer> arguments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean inQuote = false;
+        int pos = 0;
+
+        // Same quoting rules as the MessageFormat
+        while ( pos < pattern.length() )
+        {
+            char c = pattern.charAt( pos );
+
+            if ( c == '\'' )
+            {
+                if ( ( pos + 1 < pattern.length() ) && ( pattern.charAt( pos + 1 ) == '\'' ) )
+                {
+                    literal.append( c );
+                    pos++;
+                }
+                else
+                {
+                    inQuote = !inQuote;
+                }
+            }
+            else if ( ( c == '{' ) && !inQuote )
+            {
+                int end = pattern.indexOf( '}', pos );
+                int index = parseIndex( pattern, pos + 1, end );
+
+                if ( index < 0 )
+                {
+                    // A formatted argument : the MessageFormat will be used
+                    return new MessageTemplate( messageFormat, null, null );
+                }
+
+                literals.add( literal.toString() );
+                literal.setLength( 0 );
+                arguments.add( index );
+                pos = end;
+            }
+            else
+            {
+                literal.append( c );
+            }
+
+            pos++;
+        }
+
+        literals.add( literal.toString() );
+        int[] indexes = new int[arguments.size()];
+
+        for ( int i = 0; i < indexes.length; i++ )
+        {
+            indexes[i] = arguments.get( i );
+        }
+
+        return new MessageTemplate( messageFormat, literals.toArray( new String[0] ), indexes );
+    }
+
+
+    /**
+     * Parses the index of a simple argument
+     *
+     * @return The index, or -1 if the argument is not a simple argument
+     */
+    private static int parseIndex( String pattern, int start, int end )
+    {
+        if ( ( end <= start ) || ( end - start > 4 ) )
+        {
+            return -1;
+        }
+
+        int index = 0;
+
+        for ( int i = start; i < end; i++ )
+        {
+            char c = pattern.charAt( i );
+
+            if ( ( c < '0' ) || ( c > '9' ) )
+            {
+                return -1;
+            }
+
+            index = index * 10 + ( c - '0' );
+        }
+
+        return index;
+    }
+
+
+    /**
+     * Formats the arguments, appending the result to a StringBuilder
+     *
+     * @param sb The StringBuilder
+     * @param args The arguments
+     * @return The StringBuilder
+     */
+    StringBuilder format( StringBuilder sb, Object[] args )
+    {
+        if ( ( literals == null ) || needsMessageFormat( args ) )
+        {
+            // The compiled MessageFormat is copied, as its formats are not thread safe
+            return sb.append( ( ( MessageFormat ) messageFormat.clone() ).format( args ) );
+        }
+
+        for ( int i = 0; i < arguments.length; i++ )
+        {
+            sb.append( literals[i] );
+            int index = arguments[i];
+
+            if ( ( args == null ) || ( index >= args.length ) )
+            {
+                sb.append( '{' ).append( index ).append( '}' );
+            }
+            else
+            {
+                sb.append( args[index] );
+            }
+        }
+
+        return sb.append( literals[arguments.length] );
+    }
+
+
+    /**
+     * Tells if an argument would be formatted by the MessageFormat. The integers formatted
+     * without grouping separator are simply appended.
+     */
+    private static boolean needsMessageFormat( Object[] args )
+    {
+        if ( args == null )
+        {
+            return false;
+        }
+
+        for ( Object arg : args )
+        {
+            if ( arg instanceof Number )
+            {
+                if ( !( ( arg instanceof Integer ) || ( arg instanceof Long ) || ( arg instanceof Short )
+                    || ( arg instanceof Byte ) ) )
+                {
+                    return true;
+                }
+
+                long value = ( ( Number ) arg ).longValue();
+
+                if ( ( value <= -1000L ) || ( value >= 1000L ) )
+                {
+                    return true;
+                }
+            }
+            else if ( arg instanceof Date )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.i18n;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the I18n class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class I18nTest
+{
+    private static void assertFormat( String pattern, Object... args )
+    {
+        assertEquals( new MessageFormat( pattern, Locale.ROOT ).format( args ), I18n.format( pattern, args ) );
+    }
+
+
+    @Test
+    public void testFormatLikeMessageFormat()
+    {
+        assertFormat( "No argument" );
+        assertFormat( "{0} and {1}, then {0}", "a", "b" );
+        assertFormat( "Missing {0} and {2}", "a" );
+        assertFormat( "Null {0}", ( Object ) null );
+        assertFormat( "Quotes : ''{0}'' '{1}' it''s", "a", "b" );
+        assertFormat( "Small {0} {1} {2}", 12, -999L, ( short ) 7 );
+        assertFormat( "Large {0} {1}", 123456, 1.5d );
+        assertFormat( "Decimal {0}", new BigDecimal( "1234.5" ) );
+        assertFormat( "Date {0}", new Date( 0L ) );
+        assertFormat( "Formatted {0,number,#.##} {1}", 1.234d, "x" );
+        assertFormat( "Unmatched } brace {0}", 'c' );
+
+        assertThrows( IllegalArgumentException.class, () -> I18n.format( "Unmatched {0", "a" ) );
+    }
+
+
+    @Test
+    public void testErrAndMsg()
+    {
+        String err = I18n.err( I18n.ERR_04184_CIRCUIT_OPEN, "localhost:389", 5 );
+
+        assertEquals( "ERR_04184_CIRCUIT_OPEN The server localhost:389 is not used after 5 consecutive timeouts",
+            err );
+
+        // The messages are read from the messages file
+        assertEquals( "MSG_04183_CIRCUIT_CLOSED Closing the circuit of localhost:389",
+            I18n.msg( I18n.MSG_04183_CIRCUIT_CLOSED, "localhost:389" ) );
+
+        // The messages without argument are translated once
+        assertSame( I18n.err( I18n.ERR_04119_TIMEOUT ), I18n.err( I18n.ERR_04119_TIMEOUT ) );
+        assertTrue( I18n.err( I18n.ERR_04119_TIMEOUT ).startsWith( "ERR_04119_TIMEOUT " ) );
+    }
+
+
+    @Test
+    public void testLazyMessage()
+    {
+        StringBuilder argument = new StringBuilder( "first" );
+        LazyMessage message = I18n.lazyErr( I18n.ERR_04184_CIRCUIT_OPEN, argument, 5 );
+
+        assertSame( I18n.ERR_04184_CIRCUIT_OPEN, message.getCode() );
+
+        // The message is built when first read, and then kept
+        argument.setLength( 0 );
+        argument.append( "second" );
+        assertEquals( I18n.err( I18n.ERR_04184_CIRCUIT_OPEN, "second", 5 ), message.toString() );
+
+        argument.append( "third" );
+        assertEquals( I18n.err( I18n.ERR_04184_CIRCUIT_OPEN, "second", 5 ), message.get() );
+    }
+}
@@ -48,7 +48,7 @@ public class ApiLdapModelOsgiTest extends ApiOsgiTestBase
     protected void useBundleClasses() throws Exception
     {
         new Dn( "dc=example,dc=com" ); // uses FastDnParser
-        new Dn( "cn=a+sn=b,dc=example,dc=com" ); // uses ComplexDnparser (antlr based)
+        new Dn( "cn=a+sn=b,dc=example,dc=com" ); // multi-valued RDN
         new Value( "foo" );
         new DefaultAttribute( "cn" );
         new DefaultEntry();
@@ -41,6 +41,7 @@ import java.util.Set;
 import org.apache.directory.api.ldap.model.entry.Attribute;
 import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
 import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.entry.ValueIndex;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
 import org.apache.directory.api.ldap.model.schema.AttributeType;
@@ -2125,4 +2126,32 @@ public class SchemaAwareAttributeTest
         assertTrue( dsaSer.contains( password ) );
         assertFalse( dsaSer.isHumanReadable() );
     }
+
+
+    /**
+     * Test that a ValueIndex keeps the user provided values
+     */
+    @Test
+    public void testValueIndex() throws LdapException
+    {
+        AttributeType atMember = schemaManager.lookupAttributeTypeRegistry( "member" );
+        DefaultAttribute members = new DefaultAttribute( atMember, "uid=User1, ou=People,dc=Example,dc=com",
+            "uid=user2,ou=people,dc=example,dc=com" );
+        ValueIndex index = new ValueIndex( members );
+
+        assertTrue( index.contains( new Value( atMember, "UID=user1,ou=people,dc=example,dc=com" ) ) );
+
+        Set<String> upValues = new HashSet<>();
+
+        for ( Value value : index )
+        {
+            assertEquals( atMember, value.getAttributeType() );
+            assertTrue( members.contains( value ) );
+            upValues.add( value.getString() );
+        }
+
+        assertEquals( new HashSet<>( Arrays.asList( "uid=User1, ou=People,dc=Example,dc=com",
+            "uid=user2,ou=people,dc=example,dc=com" ) ), upValues );
+        assertEquals( members, index.toAttribute() );
+    }
 }
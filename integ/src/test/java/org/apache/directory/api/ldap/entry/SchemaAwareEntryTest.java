@@ -1255,4 +1255,39 @@ public class SchemaAwareEntryTest
         assertTrue( entry.containsAttribute( "userCertificate;binary" ) );
         assertTrue( entry.containsAttribute( "userCertificate" ) );
     }
+
+
+    /**
+     * Test that a compact entry keeps its single valued attributes unchanged
+     */
+    @Test
+    public void testCompactEntry() throws LdapException
+    {
+        DefaultEntry entry = new DefaultEntry( schemaManager, "cn=test,ou=system" );
+        entry.add( "objectClass", "top", "person" );
+        entry.add( "CN", "test" );
+        entry.add( "sn", "Test" );
+        entry.add( "userPassword", BYTES1 );
+        Entry expected = entry.clone();
+
+        entry.compact();
+        assertTrue( entry.isCompact() );
+        assertEquals( expected, entry );
+        assertEquals( expected, entry.clone() );
+
+        Attribute cn = entry.get( "cn" );
+        assertEquals( "CN", cn.getUpId() );
+        assertEquals( expected.get( "cn" ).getId(), cn.getId() );
+        assertEquals( expected.get( "cn" ).hashCode(), cn.hashCode() );
+        assertTrue( cn.isHumanReadable() );
+        assertFalse( entry.get( "userPassword" ).isHumanReadable() );
+        assertTrue( entry.contains( "userPassword", BYTES1 ) );
+
+        // The values are still checked against the schema
+        entry.add( "cn", "test2" );
+        expected.add( "cn", "test2" );
+        assertTrue( entry.contains( "cn", "TEST2" ) );
+        assertEquals( expected.get( "cn" ).getUpId(), entry.get( "cn" ).getUpId() );
+        assertEquals( expected, entry );
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.schema;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapSchemaViolationException;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.schema.EntryValidator;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.model.schema.registries.ObjectClassClosures;
+import org.apache.directory.api.ldap.model.schema.registries.ObjectClassClosures.Closure;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the EntryValidator class, and the ObjectClass closures it uses
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class EntryValidatorTest
+{
+    private static SchemaManager schemaManager;
+    private static EntryValidator validator;
+
+
+    @BeforeAll
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+        validator = new EntryValidator( schemaManager );
+    }
+
+
+    @Test
+    public void testClosures() throws Exception
+    {
+        ObjectClassClosures closures = schemaManager.getRegistries().getObjectClassClosures();
+
+        // The closures are computed once for a given Registries
+        assertSame( closures, schemaManager.getRegistries().getObjectClassClosures() );
+
+        Closure person = closures.getClosure( "person" );
+        assertNotNull( person );
+
+        // Inherited from top
+        assertTrue( person.isRequired( closures.indexOf( schemaManager.getAttributeType( "objectClass" ) ) ) );
+        assertTrue( person.isRequired( closures.indexOf( schemaManager.getAttributeType( "cn" ) ) ) );
+        assertTrue( person.isRequired( closures.indexOf( schemaManager.getAttributeType( "sn" ) ) ) );
+        assertTrue( person.isAllowed( closures.indexOf( schemaManager.getAttributeType( "telephoneNumber" ) ) ) );
+        assertFalse( person.isAllowed( closures.indexOf( schemaManager.getAttributeType( "mail" ) ) ) );
+        assertEquals( 3, person.getMustCount() );
+
+        // inetOrgPerson inherits from organizationalPerson and person
+        Closure inetOrgPerson = closures.getClosure( "2.16.840.1.113730.3.2.2" );
+        assertTrue( inetOrgPerson.isAllowed( closures.indexOf( schemaManager.getAttributeType( "mail" ) ) ) );
+        assertTrue( inetOrgPerson.isAllowed( closures.indexOf( schemaManager.getAttributeType( "ou" ) ) ) );
+        assertTrue( inetOrgPerson.isRequired( closures.indexOf( schemaManager.getAttributeType( "sn" ) ) ) );
+
+        Closure set = closures.getClosure( Arrays.asList( "top", "person", "extensibleObject", "unknownOC" ) );
+        assertTrue( set.isExtensible() );
+        assertTrue( set.isAllowed( closures.indexOf( schemaManager.getAttributeType( "mail" ) ) ) );
+        assertEquals( Arrays.asList( "unknownOC" ), set.getUnknownObjectClasses() );
+    }
+
+
+    @Test
+    public void testValidEntries() throws Exception
+    {
+        Entry entry = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: person",
+            "cn: test",
+            "sn: Test",
+            "telephoneNumber: 1234",
+            "entryUUID: f290425c-8272-4e62-8a67-92b06f38dbf5" );
+
+        assertTrue( validator.isValid( entry ) );
+        validator.check( entry );
+
+        // A non schema aware entry
+        Entry plain = new DefaultEntry( "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: inetOrgPerson",
+            "cn: test",
+            "sn: Test",
+            "mail: test@example.com" );
+
+        assertTrue( validator.isValid( plain ) );
+
+        // extensibleObject allows any AttributeType
+        Entry extensible = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: person",
+            "objectClass: extensibleObject",
+            "cn: test",
+            "sn: Test",
+            "mail: test@example.com" );
+
+        assertTrue( validator.isValid( extensible ) );
+    }
+
+
+    @Test
+    public void testOperationalRequiredAttributes() throws Exception
+    {
+        // subentry requires subtreeSpecification, accessControlSubentry requires prescriptiveACI :
+        // both are operational AttributeTypes
+        Entry subentry = new DefaultEntry( schemaManager, "cn=subentry,ou=system",
+            "objectClass: top",
+            "objectClass: subentry",
+            "objectClass: accessControlSubentry",
+            "cn: subentry",
+            "subtreeSpecification: { base \"ou=users\" }",
+            "prescriptiveACI: { identificationTag \"test\", precedence 14, authenticationLevel none, "
+                + "itemOrUserFirst userFirst: { userClasses { allUsers }, userPermissions { { protectedItems "
+                + "{ entry }, grantsAndDenials { grantRead, grantBrowse } } } } }" );
+
+        assertTrue( validator.isValid( subentry ) );
+        validator.check( subentry );
+
+        Entry missingSubtreeSpecification = new DefaultEntry( schemaManager, "cn=subentry,ou=system",
+            "objectClass: top",
+            "objectClass: subentry",
+            "cn: subentry" );
+
+        LdapSchemaViolationException lsve = assertThrows( LdapSchemaViolationException.class,
+            () -> validator.check( missingSubtreeSpecification ) );
+        assertTrue( lsve.getMessage().contains( "subtreeSpecification" ) );
+    }
+
+
+    @Test
+    public void testInvalidEntries() throws Exception
+    {
+        Entry missingSn = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: person",
+            "cn: test" );
+
+        assertFalse( validator.isValid( missingSn ) );
+
+        LdapSchemaViolationException lsve = assertThrows( LdapSchemaViolationException.class,
+            () -> validator.check( missingSn ) );
+        assertEquals( ResultCodeEnum.OBJECT_CLASS_VIOLATION, lsve.getResultCode() );
+        assertTrue( lsve.getMessage().contains( "sn" ) );
+
+        Entry notAllowed = new DefaultEntry( schemaManager, "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: person",
+            "cn: test",
+            "sn: Test",
+            "mail: test@example.com" );
+
+        assertFalse( validator.isValid( notAllowed ) );
+
+        Entry unknownOc = new DefaultEntry( "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: notAnObjectClass",
+            "cn: test" );
+
+        assertFalse( validator.isValid( unknownOc ) );
+
+        Entry unknownAt = new DefaultEntry( "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: extensibleObject",
+            "notAnAttributeType: test" );
+
+        assertFalse( validator.isValid( unknownAt ) );
+
+        Entry noObjectClass = new DefaultEntry( "cn=test,ou=system",
+            "cn: test" );
+
+        assertFalse( validator.isValid( noObjectClass ) );
+    }
+}
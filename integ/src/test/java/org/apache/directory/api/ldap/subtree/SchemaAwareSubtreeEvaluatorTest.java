@@ -0,0 +1,104 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.api.ldap.subtree;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.filter.EqualityNode;
+import org.apache.directory.api.ldap.model.filter.OrNode;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.ObjectClass;
+import org.apache.directory.api.ldap.model.subtree.BaseSubtreeSpecification;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification;
+import org.apache.directory.api.ldap.model.subtree.SubtreeEvaluator;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the SubtreeEvaluator class with a SchemaManager
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class SchemaAwareSubtreeEvaluatorTest
+{
+    @Test
+    public void testRefinementsAreResolvedOnce() throws Exception
+    {
+        AtomicInteger lookups = new AtomicInteger();
+
+        DefaultSchemaManager schemaManager = new DefaultSchemaManager()
+        {
+            @Override
+            public ObjectClass lookupObjectClassRegistry( String oid ) throws LdapException
+            {
+                lookups.incrementAndGet();
+
+                return super.lookupObjectClassRegistry( oid );
+            }
+        };
+
+        SubtreeEvaluator evaluator = new SubtreeEvaluator( schemaManager );
+        Dn ap = new Dn( schemaManager, "dc=example,dc=com" );
+
+        // or: { item: person, item: 2.5.6.9 (groupOfNames) }
+        OrNode or = new OrNode( new EqualityNode<String>( "objectClass", "person" ),
+            new EqualityNode<String>( "objectClass", "2.5.6.9" ) );
+        CompiledSubtreeSpecification spec = evaluator.compile( new BaseSubtreeSpecification( or ), ap );
+
+        Entry person = new DefaultEntry( schemaManager, "cn=person,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: 2.5.6.6",
+            "cn: person",
+            "sn: person" );
+        Entry group = new DefaultEntry( schemaManager, "cn=group,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: groupOfNames",
+            "cn: group",
+            "member: cn=person,dc=example,dc=com" );
+        Entry device = new DefaultEntry( schemaManager, "cn=device,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: device",
+            "cn: device" );
+        int compileLookups = lookups.get();
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            assertTrue( spec.contains( person.getDn(), evaluator.getObjectClasses( person ) ) );
+            assertTrue( spec.contains( group.getDn(), evaluator.getObjectClasses( group ) ) );
+            assertFalse( spec.contains( device.getDn(), evaluator.getObjectClasses( device ) ) );
+        }
+
+        // The entries objectClasses are never looked up in the schema
+        assertEquals( compileLookups, lookups.get() );
+    }
+}
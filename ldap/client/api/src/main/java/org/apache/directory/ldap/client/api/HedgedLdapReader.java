@@ -0,0 +1,758 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.codec.metrics.LatencyHistogram;
+import org.apache.directory.api.ldap.model.constants.LdapConstants;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapOperationException;
+import org.apache.directory.api.ldap.model.message.CompareRequest;
+import org.apache.directory.api.ldap.model.message.CompareRequestImpl;
+import org.apache.directory.api.ldap.model.message.CompareResponse;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.LdapResult;
+import org.apache.directory.api.ldap.model.message.Request;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Sends the read-only operations (lookup, search and compare) through a
+ * {@link LoadBalancingLdapConnectionPool}, hedging the slow ones : when the first server
+ * hasn't answered after a delay computed from the observed latencies (the 95th percentile
+ * by default), the same request is sent to another server. The first successful answer is
+ * used, and the other request is abandoned.
+ * <br>
+ * The hedged requests are limited by a budget : each request adds a fraction of a token
+ * (5% by default) to a bucket, up to a maximum burst, and each hedged request uses one
+ * token. When the bucket is empty, the slow requests are not hedged, so the extra load
+ * never exceeds the configured percentage of the requests.
+ * <br>
+ * A search is entirely read before being returned, as only one of the answers can be used :
+ * it is only meant for searches returning a limited number of entries.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class HedgedLdapReader implements Closeable
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( HedgedLdapReader.class );
+
+    /** The default latency percentile used as the hedging delay */
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95d;
+
+    /** The default hedging delay, in milliseconds, used until enough latencies are known */
+    public static final long DEFAULT_INITIAL_HEDGE_DELAY = 50L;
+
+    /** The default minimal hedging delay, in milliseconds */
+    public static final long DEFAULT_MINIMUM_HEDGE_DELAY = 1L;
+
+    /** The default percentage of the requests which can be hedged */
+    public static final double DEFAULT_BUDGET_PERCENTAGE = 5d;
+
+    /** The default maximum number of hedged requests which can be sent in a row */
+    public static final int DEFAULT_BUDGET_BURST = 10;
+
+    /** The number of latencies needed before using the percentile */
+    private static final long MINIMUM_SAMPLES = 100L;
+
+    /** The pool giving the connections */
+    private final LoadBalancingLdapConnectionPool pool;
+
+    /** The executor running the requests */
+    private final ExecutorService executor;
+
+    /** Tells if the executor has been created by this instance */
+    private final boolean ownExecutor;
+
+    /** The latencies of the successful requests, in nanoseconds */
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /** The latency percentile used as the hedging delay */
+    private volatile double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+    /** The hedging delay used until enough latencies are known, in nanoseconds */
+    private volatile long initialHedgeDelay = TimeUnit.MILLISECONDS.toNanos( DEFAULT_INITIAL_HEDGE_DELAY );
+
+    /** The minimal hedging delay, in nanoseconds */
+    private volatile long minimumHedgeDelay = TimeUnit.MILLISECONDS.toNanos( DEFAULT_MINIMUM_HEDGE_DELAY );
+
+    /** The fraction of a token added to the budget by each request */
+    private double budgetRatio = DEFAULT_BUDGET_PERCENTAGE / 100d;
+
+    /** The maximum number of tokens in the budget */
+    private double budgetBurst = DEFAULT_BUDGET_BURST;
+
+    /** The available tokens, guarded by the budget lock */
+    private double budgetTokens;
+
+    /** The lock protecting the budget */
+    private final Object budgetLock = new Object();
+
+    /** The number of hedged requests */
+    private final LongAdder hedgesSent = new LongAdder();
+
+    /** The number of hedged requests which answered first */
+    private final LongAdder hedgesWon = new LongAdder();
+
+    /** The number of slow requests not hedged because the budget was exhausted */
+    private final LongAdder hedgesSkipped = new LongAdder();
+
+    /**
+     * A read operation executed on a connection
+     *
+     * @param <Q> The request type
+     * @param <R> The result type
+     */
+    @FunctionalInterface
+    private interface ReadOperation<Q extends Request, R>
+    {
+        R execute( LdapConnection connection, Q request ) throws Exception;
+    }
+
+
+    /**
+     * Creates a new HedgedLdapReader instance, running the requests in its own daemon threads
+     *
+     * @param pool The pool giving the connections
+     */
+    public HedgedLdapReader( LoadBalancingLdapConnectionPool pool )
+    {
+        this( pool, Executors.newCachedThreadPool( runnable ->
+        {
+            Thread thread = new Thread( runnable, "HedgedLdapReader" );
+            thread.setDaemon( true );
+
+            return thread;
+        } ), true );
+    }
+
+
+    /**
+     * Creates a new HedgedLdapReader instance
+     *
+     * @param pool The pool giving the connections
+     * @param executor The executor running the requests. It must be able to run two
+     * requests at the same time for each reading thread, and is not shutdown on close.
+     */
+    public HedgedLdapReader( LoadBalancingLdapConnectionPool pool, ExecutorService executor )
+    {
+        this( pool, executor, false );
+    }
+
+
+    private HedgedLdapReader( LoadBalancingLdapConnectionPool pool, ExecutorService executor, boolean ownExecutor )
+    {
+        this.pool = pool;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+
+    /**
+     * Sets the latency percentile used as the hedging delay
+     *
+     * @param hedgePercentile The percentile, in ]0, 100]
+     */
+    public void setHedgePercentile( double hedgePercentile )
+    {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+
+    /**
+     * Sets the hedging delay used until enough latencies are known
+     *
+     * @param initialHedgeDelay The delay, in milliseconds
+     */
+    public void setInitialHedgeDelay( long initialHedgeDelay )
+    {
+        this.initialHedgeDelay = TimeUnit.MILLISECONDS.toNanos( initialHedgeDelay );
+    }
+
+
+    /**
+     * Sets the minimal hedging delay
+     *
+     * @param minimumHedgeDelay The delay, in milliseconds
+     */
+    public void setMinimumHedgeDelay( long minimumHedgeDelay )
+    {
+        this.minimumHedgeDelay = TimeUnit.MILLISECONDS.toNanos( minimumHedgeDelay );
+    }
+
+
+    /**
+     * Sets the hedging budget
+     *
+     * @param percentage The maximum percentage of the requests which can be hedged, in [0, 100]
+     * @param burst The maximum number of hedged requests which can be sent in a row
+     */
+    public void setBudget( double percentage, int burst )
+    {
+        if ( ( percentage < 0d ) || ( percentage > 100d ) || ( burst <= 0 ) )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04183_INVALID_HEDGING_BUDGET, percentage, burst ) );
+        }
+
+        synchronized ( budgetLock )
+        {
+            budgetRatio = percentage / 100d;
+            budgetBurst = burst;
+            budgetTokens = Math.min( budgetTokens, budgetBurst );
+        }
+    }
+
+
+    /**
+     * @return The latencies of the successful requests, in nanoseconds
+     */
+    public LatencyHistogram getLatencies()
+    {
+        return latencies;
+    }
+
+
+    /**
+     * @return The number of hedged requests
+     */
+    public long getHedgesSent()
+    {
+        return hedgesSent.sum();
+    }
+
+
+    /**
+     * @return The number of hedged requests which answered before the first request
+     */
+    public long getHedgesWon()
+    {
+        return hedgesWon.sum();
+    }
+
+
+    /**
+     * @return The number of slow requests which have not been hedged because of the budget
+     */
+    public long getHedgesSkipped()
+    {
+        return hedgesSkipped.sum();
+    }
+
+
+    /**
+     * @return The current hedging delay, in nanoseconds
+     */
+    long getHedgeDelay()
+    {
+        long delay;
+
+        if ( latencies.getCount() < MINIMUM_SAMPLES )
+        {
+            delay = initialHedgeDelay;
+        }
+        else
+        {
+            delay = latencies.getValueAtPercentile( hedgePercentile );
+        }
+
+        return Math.max( delay, minimumHedgeDelay );
+    }
+
+
+    /**
+     * Adds the request share to the budget
+     */
+    private void deposit()
+    {
+        synchronized ( budgetLock )
+        {
+            budgetTokens = Math.min( budgetTokens + budgetRatio, budgetBurst );
+        }
+    }
+
+
+    /**
+     * Takes a token from the budget
+     *
+     * @return <code>true</code> if a token was available
+     */
+    private boolean withdraw()
+    {
+        synchronized ( budgetLock )
+        {
+            if ( budgetTokens >= 1d )
+            {
+                budgetTokens -= 1d;
+
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+
+    /**
+     * Reads an entry, using a base scope search.
+     *
+     * @param dn The entry Dn
+     * @param attributes The attributes to return
+     * @return The entry, or <code>null</code> if it does not exist
+     * @throws LdapException If the entry can't be read
+     */
+    public Entry lookup( Dn dn, String... attributes ) throws LdapException
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( dn );
+        searchRequest.setScope( SearchScope.OBJECT );
+        searchRequest.setFilter( LdapConstants.OBJECT_CLASS_STAR );
+        searchRequest.addAttributes( attributes );
+
+        try
+        {
+            List<Entry> entries = search( searchRequest );
+
+            return entries.isEmpty() ? null : entries.get( 0 );
+        }
+        catch ( LdapOperationException e )
+        {
+            if ( e.getResultCode() == ResultCodeEnum.NO_SUCH_OBJECT )
+            {
+                return null;
+            }
+
+            throw e;
+        }
+    }
+
+
+    /**
+     * Searches for entries.
+     *
+     * @param baseDn The base Dn
+     * @param filter The filter
+     * @param scope The scope
+     * @param attributes The attributes to return
+     * @return The found entries
+     * @throws LdapException If the search failed
+     */
+    public List<Entry> search( Dn baseDn, String filter, SearchScope scope, String... attributes )
+        throws LdapException
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( baseDn );
+        searchRequest.setFilter( filter );
+        searchRequest.setScope( scope );
+        searchRequest.addAttributes( attributes );
+
+        return search( searchRequest );
+    }
+
+
+    /**
+     * Searches for entries. The given request is not sent as is : each server gets a copy.
+     *
+     * @param searchRequest The search request
+     * @return The found entries
+     * @throws LdapException If the search failed
+     */
+    public List<Entry> search( final SearchRequest searchRequest ) throws LdapException
+    {
+        return read( () -> copy( searchRequest ), HedgedLdapReader::search );
+    }
+
+
+    /**
+     * Compares an attribute value.
+     *
+     * @param dn The entry Dn
+     * @param attributeId The attribute
+     * @param value The value
+     * @return <code>true</code> if the entry has the value
+     * @throws LdapException If the comparison failed
+     */
+    public boolean compare( final Dn dn, final String attributeId, final String value ) throws LdapException
+    {
+        return read( () ->
+        {
+            CompareRequest compareRequest = new CompareRequestImpl();
+            compareRequest.setName( dn );
+            compareRequest.setAttributeId( attributeId );
+            compareRequest.setAssertionValue( value );
+
+            return compareRequest;
+        }, HedgedLdapReader::compare );
+    }
+
+
+    private static SearchRequest copy( SearchRequest searchRequest )
+    {
+        SearchRequest copy = new SearchRequestImpl();
+        copy.setBase( searchRequest.getBase() );
+        copy.setScope( searchRequest.getScope() );
+        copy.setDerefAliases( searchRequest.getDerefAliases() );
+        copy.setSizeLimit( searchRequest.getSizeLimit() );
+        copy.setTimeLimit( searchRequest.getTimeLimit() );
+        copy.setTypesOnly( searchRequest.getTypesOnly() );
+        copy.setFilter( searchRequest.getFilter() );
+        copy.addAttributes( searchRequest.getAttributes().toArray( Strings.EMPTY_STRING_ARRAY ) );
+        copy.addAllControls( searchRequest.getControls().values().toArray( new Control[0] ) );
+
+        return copy;
+    }
+
+
+    private static List<Entry> search( LdapConnection connection, SearchRequest searchRequest ) throws Exception
+    {
+        List<Entry> entries = new ArrayList<>();
+
+        try ( SearchCursor cursor = connection.search( searchRequest ) )
+        {
+            while ( cursor.next() )
+            {
+                if ( cursor.isEntry() )
+                {
+                    entries.add( cursor.getEntry() );
+                }
+            }
+
+            SearchResultDone done = cursor.getSearchResultDone();
+
+            if ( done != null )
+            {
+                checkResult( done.getLdapResult() );
+            }
+        }
+
+        return entries;
+    }
+
+
+    private static Boolean compare( LdapConnection connection, CompareRequest compareRequest ) throws Exception
+    {
+        CompareResponse compareResponse = connection.compare( compareRequest );
+        LdapResult result = compareResponse.getLdapResult();
+
+        if ( ( result.getResultCode() != ResultCodeEnum.COMPARE_TRUE )
+            && ( result.getResultCode() != ResultCodeEnum.COMPARE_FALSE ) )
+        {
+            checkResult( result );
+        }
+
+        return compareResponse.isTrue();
+    }
+
+
+    private static void checkResult( LdapResult result ) throws LdapOperationException
+    {
+        if ( result.getResultCode() != ResultCodeEnum.SUCCESS )
+        {
+            throw new LdapOperationException( result.getResultCode(), result.getDiagnosticMessage() );
+        }
+    }
+
+
+    /**
+     * Sends a request to a first server, then to a second one if the first one is too slow
+     * and the budget allows it, and returns the first successful answer.
+     */
+    private <Q extends Request, R> R read( Callable<Q> requestFactory, ReadOperation<Q, R> operation )
+        throws LdapException
+    {
+        CompletionService<R> completionService = new ExecutorCompletionService<>( executor );
+        // The request is created first : the connection would leak if its creation failed
+        Q request = newRequest( requestFactory );
+        Attempt<Q, R> primary = new Attempt<>( pool.getConnection(), request, operation );
+        Attempt<Q, R> hedge = null;
+        Future<R> primaryFuture = completionService.submit( primary );
+        Future<R> hedgeFuture = null;
+        deposit();
+
+        try
+        {
+            Future<R> done = completionService.poll( getHedgeDelay(), TimeUnit.NANOSECONDS );
+
+            if ( done == null )
+            {
+                if ( withdraw() )
+                {
+                    hedge = startHedge( primary, requestFactory, operation );
+
+                    if ( hedge != null )
+                    {
+                        hedgeFuture = completionService.submit( hedge );
+                        hedgesSent.increment();
+                    }
+                }
+                else
+                {
+                    hedgesSkipped.increment();
+                }
+
+                done = completionService.take();
+            }
+
+            int pending = hedge == null ? 1 : 2;
+            Throwable failure = null;
+
+            while ( true )
+            {
+                pending--;
+
+                try
+                {
+                    R result = done.get();
+
+                    if ( done == hedgeFuture )
+                    {
+                        hedgesWon.increment();
+                        primary.abandon();
+                    }
+                    else if ( hedge != null )
+                    {
+                        hedge.abandon();
+                    }
+
+                    return result;
+                }
+                catch ( ExecutionException e )
+                {
+                    Throwable cause = e.getCause();
+
+                    if ( failure == null )
+                    {
+                        failure = cause;
+                    }
+
+                    // The server has answered : the other one will most certainly answer the same
+                    if ( ( cause instanceof LdapOperationException ) || ( pending == 0 ) )
+                    {
+                        break;
+                    }
+
+                    if ( LOG.isDebugEnabled() )
+                    {
+                        LOG.debug( I18n.msg( I18n.MSG_04186_HEDGED_REQUEST_FAILED,
+                            done == primaryFuture ? primary : hedge ), cause );
+                    }
+
+                    done = completionService.take();
+                }
+            }
+
+            primary.abandon();
+
+            if ( hedge != null )
+            {
+                hedge.abandon();
+            }
+
+            if ( failure instanceof LdapException )
+            {
+                throw ( LdapException ) failure;
+            }
+
+            throw new LdapException( failure.getMessage(), failure );
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+            primary.abandon();
+
+            if ( hedge != null )
+            {
+                hedge.abandon();
+            }
+
+            throw new LdapException( ie.getMessage(), ie );
+        }
+    }
+
+
+    private static <Q extends Request> Q newRequest( Callable<Q> requestFactory ) throws LdapException
+    {
+        try
+        {
+            return requestFactory.call();
+        }
+        catch ( LdapException le )
+        {
+            throw le;
+        }
+        catch ( Exception e )
+        {
+            throw new LdapException( e.getMessage(), e );
+        }
+    }
+
+
+    /**
+     * Creates the hedged request, using a connection to another server
+     *
+     * @return The hedged attempt, or <code>null</code> if there is no other server
+     */
+    private <Q extends Request, R> Attempt<Q, R> startHedge( Attempt<Q, R> primary, Callable<Q> requestFactory,
+        ReadOperation<Q, R> operation ) throws LdapException
+    {
+        LdapConnection connection;
+
+        try
+        {
+            connection = pool.getConnection( Collections.singleton(
+                ( ( LoadBalancedLdapConnection ) primary.connection ).getServer() ) );
+        }
+        catch ( LdapException le )
+        {
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04187_NO_HEDGING_SERVER ), le );
+            }
+
+            return null;
+        }
+
+        try
+        {
+            return new Attempt<>( connection, newRequest( requestFactory ), operation );
+        }
+        catch ( LdapException le )
+        {
+            pool.releaseConnection( connection );
+
+            throw le;
+        }
+    }
+
+
+    /**
+     * Closes the executor, if it has been created by this instance. The pool is not closed.
+     */
+    @Override
+    public void close()
+    {
+        if ( ownExecutor )
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * A request sent to one server. The connection is released as soon as the operation is done.
+     */
+    private final class Attempt<Q extends Request, R> implements Callable<R>
+    {
+        /** The connection to the server */
+        private final LdapConnection connection;
+
+        /** The request */
+        private final Q request;
+
+        /** The operation */
+        private final ReadOperation<Q, R> operation;
+
+        /** Tells if the operation is done, guarded by this */
+        private boolean finished;
+
+
+        private Attempt( LdapConnection connection, Q request, ReadOperation<Q, R> operation )
+        {
+            this.connection = connection;
+            this.request = request;
+            this.operation = operation;
+        }
+
+
+        @Override
+        public R call() throws Exception
+        {
+            long start = System.nanoTime();
+
+            try
+            {
+                R result = operation.execute( connection, request );
+                latencies.record( System.nanoTime() - start );
+
+                return result;
+            }
+            finally
+            {
+                synchronized ( this )
+                {
+                    finished = true;
+                }
+
+                try
+                {
+                    pool.releaseConnection( connection );
+                }
+                catch ( LdapException le )
+                {
+                    LOG.warn( le.getMessage(), le );
+                }
+            }
+        }
+
+
+        /**
+         * Abandons the request, if it has been sent and is not done yet
+         */
+        private synchronized void abandon()
+        {
+            if ( !finished && ( request.getMessageId() > 0 ) )
+            {
+                connection.abandon( request.getMessageId() );
+            }
+        }
+
+
+        @Override
+        public String toString()
+        {
+            return String.valueOf( request.getMessageId() );
+        }
+    }
+}
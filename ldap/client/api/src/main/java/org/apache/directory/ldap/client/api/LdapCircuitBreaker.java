@@ -0,0 +1,402 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.codec.metrics.LatencyHistogram;
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.ldap.client.api.exception.LdapCircuitOpenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Protects the callers from the servers which have stopped answering, and adapts the
+ * operation timeouts to the latency of each server. It keeps a {@link Circuit} per server,
+ * shared by all the connections using the same {@link LdapConnectionConfig} :
+ * <ul>
+ *   <li>The circuit is <em>closed</em> while the server answers : the requests are sent.</li>
+ *   <li>After a number of consecutive timeouts (5 by default), the circuit is <em>open</em> :
+ *   the requests fail immediately with a {@link LdapCircuitOpenException}, instead of
+ *   waiting for a timeout.</li>
+ *   <li>After a delay (30 seconds by default), the circuit is <em>half open</em> : the next
+ *   request first validates its connection with the {@link LdapConnectionValidator}. The
+ *   circuit is closed if the connection is valid, open again otherwise. The other requests
+ *   fail until then.</li>
+ * </ul>
+ * The search and compare timeouts are derived from the server latencies of the same
+ * operation : once enough latencies are known, a request times out after a multiple (3 by
+ * default) of a latency percentile (the 99th by default), but never before a minimal timeout
+ * (1 second by default), and never after the configured timeout. The other operations always
+ * use the configured timeouts : a write which times out may still be applied by the server.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapCircuitBreaker
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( LdapCircuitBreaker.class );
+
+    /** The default number of consecutive timeouts opening the circuit */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /** The default time the circuit stays open, in milliseconds */
+    public static final long DEFAULT_OPEN_DURATION = 30000L;
+
+    /** The default latency percentile used to compute the timeouts */
+    public static final double DEFAULT_TIMEOUT_PERCENTILE = 99d;
+
+    /** The default multiplier applied to the latency percentile */
+    public static final double DEFAULT_TIMEOUT_MULTIPLIER = 3d;
+
+    /** The default minimal timeout, in milliseconds */
+    public static final long DEFAULT_MINIMUM_TIMEOUT = 1000L;
+
+    /** The number of latencies needed before adapting the timeouts */
+    private static final long MINIMUM_SAMPLES = 100L;
+
+    /** The circuits, by server */
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    /** The number of consecutive timeouts opening the circuit */
+    private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+    /** The time the circuit stays open, in milliseconds */
+    private volatile long openDuration = DEFAULT_OPEN_DURATION;
+
+    /** The latency percentile used to compute the timeouts */
+    private volatile double timeoutPercentile = DEFAULT_TIMEOUT_PERCENTILE;
+
+    /** The multiplier applied to the latency percentile */
+    private volatile double timeoutMultiplier = DEFAULT_TIMEOUT_MULTIPLIER;
+
+    /** The minimal timeout, in milliseconds */
+    private volatile long minimumTimeout = DEFAULT_MINIMUM_TIMEOUT;
+
+    /** The validator used to probe a server when the circuit is half open */
+    private volatile LdapConnectionValidator validator = new LookupLdapConnectionValidator();
+
+    /**
+     * The state of a circuit
+     */
+    public enum State
+    {
+        /** The requests are sent */
+        CLOSED,
+
+        /** The requests fail immediately */
+        OPEN,
+
+        /** A request is validating the server */
+        HALF_OPEN
+    }
+
+
+    /**
+     * Gets the circuit of a server, creating it if needed
+     *
+     * @param host The server host
+     * @param port The server port
+     * @return The server circuit
+     */
+    public Circuit getCircuit( String host, int port )
+    {
+        return circuits.computeIfAbsent( host + ':' + port, Circuit::new );
+    }
+
+
+    /**
+     * @param failureThreshold The number of consecutive timeouts opening the circuit
+     */
+    public void setFailureThreshold( int failureThreshold )
+    {
+        this.failureThreshold = failureThreshold;
+    }
+
+
+    /**
+     * @param openDuration The time the circuit stays open before being half open, in milliseconds
+     */
+    public void setOpenDuration( long openDuration )
+    {
+        this.openDuration = openDuration;
+    }
+
+
+    /**
+     * @param timeoutPercentile The latency percentile used to compute the timeouts, in ]0, 100]
+     */
+    public void setTimeoutPercentile( double timeoutPercentile )
+    {
+        this.timeoutPercentile = timeoutPercentile;
+    }
+
+
+    /**
+     * @param timeoutMultiplier The multiplier applied to the latency percentile
+     */
+    public void setTimeoutMultiplier( double timeoutMultiplier )
+    {
+        this.timeoutMultiplier = timeoutMultiplier;
+    }
+
+
+    /**
+     * @param minimumTimeout The minimal timeout, in milliseconds
+     */
+    public void setMinimumTimeout( long minimumTimeout )
+    {
+        this.minimumTimeout = minimumTimeout;
+    }
+
+
+    /**
+     * Sets the validator used to probe a server when its circuit is half open. The default
+     * {@link LookupLdapConnectionValidator} requires an authenticated connection.
+     *
+     * @param validator The validator
+     */
+    public void setValidator( LdapConnectionValidator validator )
+    {
+        this.validator = validator;
+    }
+
+
+    /**
+     * The circuit of a server
+     */
+    public final class Circuit
+    {
+        /** The server, as host:port */
+        private final String server;
+
+        /** The latencies of the answered requests, in nanoseconds, per request type */
+        private final ConcurrentMap<MessageTypeEnum, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+        /** The circuit state, guarded by this */
+        private State state = State.CLOSED;
+
+        /** The number of consecutive timeouts, guarded by this */
+        private int consecutiveTimeouts;
+
+        /** The time the circuit has been opened, in milliseconds, guarded by this */
+        private long openedAt;
+
+        /** The thread validating the server while the circuit is half open, guarded by this */
+        private Thread prober;
+
+
+        private Circuit( String server )
+        {
+            this.server = server;
+        }
+
+
+        /**
+         * @return The circuit state
+         */
+        public synchronized State getState()
+        {
+            return state;
+        }
+
+
+        /**
+         * @param requestType The request type
+         * @return The latencies of the answered requests of this type, in nanoseconds
+         */
+        public LatencyHistogram getLatencies( MessageTypeEnum requestType )
+        {
+            LatencyHistogram histogram = latencies.get( requestType );
+
+            if ( histogram == null )
+            {
+                histogram = latencies.computeIfAbsent( requestType, t -> new LatencyHistogram() );
+            }
+
+            return histogram;
+        }
+
+
+        /**
+         * Computes the timeout of a request. Only the search and compare timeouts are adapted.
+         *
+         * @param requestType The request type
+         * @param configuredTimeout The configured timeout, in milliseconds
+         * @return The adapted timeout, in milliseconds
+         */
+        public long getTimeout( MessageTypeEnum requestType, long configuredTimeout )
+        {
+            if ( ( configuredTimeout <= 0L ) || ( ( requestType != MessageTypeEnum.SEARCH_REQUEST )
+                && ( requestType != MessageTypeEnum.COMPARE_REQUEST ) ) )
+            {
+                return configuredTimeout;
+            }
+
+            LatencyHistogram histogram = latencies.get( requestType );
+
+            if ( ( histogram == null ) || ( histogram.getCount() < MINIMUM_SAMPLES ) )
+            {
+                return configuredTimeout;
+            }
+
+            long latency = histogram.getValueAtPercentile( timeoutPercentile );
+            long timeout = ( long ) Math.ceil( timeoutMultiplier * latency / TimeUnit.MILLISECONDS.toNanos( 1L ) );
+
+            return Math.min( configuredTimeout, Math.max( timeout, minimumTimeout ) );
+        }
+
+
+        /**
+         * Checks that a request can be sent. When the circuit is half open, the first caller
+         * validates the connection.
+         *
+         * @param connection The connection the request will be sent on
+         * @throws LdapCircuitOpenException If the circuit is open
+         */
+        public void checkRequest( LdapConnection connection ) throws LdapCircuitOpenException
+        {
+            synchronized ( this )
+            {
+                if ( ( state == State.CLOSED ) || ( prober == Thread.currentThread() ) )
+                {
+                    return;
+                }
+
+                if ( ( state == State.HALF_OPEN ) || ( System.currentTimeMillis() - openedAt < openDuration ) )
+                {
+                    throw new LdapCircuitOpenException( I18n.err( I18n.ERR_04184_CIRCUIT_OPEN, server,
+                        consecutiveTimeouts ) );
+                }
+
+                state = State.HALF_OPEN;
+                prober = Thread.currentThread();
+            }
+
+            boolean valid = false;
+
+            try
+            {
+                valid = validator.validate( connection );
+            }
+            finally
+            {
+                synchronized ( this )
+                {
+                    prober = null;
+
+                    if ( valid )
+                    {
+                        close();
+                    }
+                    else
+                    {
+                        open();
+                    }
+                }
+            }
+
+            if ( !valid )
+            {
+                throw new LdapCircuitOpenException( I18n.err( I18n.ERR_04184_CIRCUIT_OPEN, server,
+                    consecutiveTimeouts ) );
+            }
+        }
+
+
+        /**
+         * Records an answered request : the circuit is closed
+         *
+         * @param requestType The request type
+         * @param duration The request duration, in nanoseconds
+         */
+        public void requestAnswered( MessageTypeEnum requestType, long duration )
+        {
+            getLatencies( requestType ).record( duration );
+
+            synchronized ( this )
+            {
+                if ( state == State.CLOSED )
+                {
+                    consecutiveTimeouts = 0;
+                }
+                else if ( state == State.HALF_OPEN )
+                {
+                    close();
+                }
+            }
+        }
+
+
+        /**
+         * Records a timed out request : the circuit is opened after too many consecutive timeouts,
+         * or if it was half open
+         */
+        public synchronized void requestTimedOut()
+        {
+            consecutiveTimeouts++;
+
+            if ( ( state == State.HALF_OPEN ) || ( ( state == State.CLOSED )
+                && ( consecutiveTimeouts >= failureThreshold ) ) )
+            {
+                open();
+            }
+        }
+
+
+        private void open()
+        {
+            if ( state != State.OPEN )
+            {
+                LOG.warn( I18n.msg( I18n.MSG_04182_CIRCUIT_OPENED, server, consecutiveTimeouts ) );
+            }
+
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+
+
+        private void close()
+        {
+            if ( state != State.CLOSED )
+            {
+                LOG.info( I18n.msg( I18n.MSG_04183_CIRCUIT_CLOSED, server ) );
+            }
+
+            state = State.CLOSED;
+            consecutiveTimeouts = 0;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized String toString()
+        {
+            return server + " : " + state;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import javax.net.ssl.TrustManagerFactory;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.BinaryAttributeDetector;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
+import org.apache.directory.api.ldap.codec.metrics.LdapMetrics;
 import org.apache.directory.api.util.Network;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -127,6 +128,21 @@ public class LdapConnectionConfig
     /** The Service to use internally when creating connections */
     private LdapApiService ldapApiService;
 
+    /** The metrics receiving the connection events */
+    private LdapMetrics metrics = LdapMetrics.NOOP;
+
+    /** Tells if the identical concurrent lookups share the same request */
+    private boolean coalesceLookups;
+
+    /** The circuit breaker adapting the timeouts and protecting from unresponsive servers */
+    private LdapCircuitBreaker circuitBreaker;
+
+    /** The size of the TLS client session cache, negative to keep the JSSE default */
+    private int sslSessionCacheSize = -1;
+
+    /** The timeout of the cached TLS client sessions in seconds, negative to keep the JSSE default */
+    private int sslSessionTimeout = -1;
+
 
     /**
      * Creates a default LdapConnectionConfig instance
@@ -137,6 +153,42 @@ public class LdapConnectionConfig
     }
 
 
+    /**
+     * Creates a copy of a LdapConnectionConfig instance. The arrays and the objects
+     * held by the configuration are shared with the copy.
+     *
+     * @param config The configuration to copy
+     */
+    public LdapConnectionConfig( LdapConnectionConfig config )
+    {
+        useSsl = config.useSsl;
+        timeout = config.timeout;
+        connectTimeout = config.connectTimeout;
+        writeOperationTimeout = config.writeOperationTimeout;
+        readOperationTimeout = config.readOperationTimeout;
+        closeTimeout = config.closeTimeout;
+        sendTimeout = config.sendTimeout;
+        useTls = config.useTls;
+        ldapPort = config.ldapPort;
+        ldapHost = config.ldapHost;
+        name = config.name;
+        credentials = config.credentials;
+        keyManagers = config.keyManagers;
+        secureRandom = config.secureRandom;
+        trustManagers = config.trustManagers;
+        enabledCipherSuites = config.enabledCipherSuites;
+        enabledProtocols = config.enabledProtocols;
+        sslProtocol = config.sslProtocol;
+        binaryAttributeDetector = config.binaryAttributeDetector;
+        ldapApiService = config.ldapApiService;
+        metrics = config.metrics;
+        coalesceLookups = config.coalesceLookups;
+        circuitBreaker = config.circuitBreaker;
+        sslSessionCacheSize = config.sslSessionCacheSize;
+        sslSessionTimeout = config.sslSessionTimeout;
+    }
+
+
     /**
      * Sets the default trust manager based on the SunX509 trustManagement algorithm
      **/
@@ -722,4 +774,111 @@ public class LdapConnectionConfig
     {
         this.ldapApiService = ldapApiService;
     }
+
+
+    /**
+     * @return The metrics receiving the events of the connections using this configuration
+     */
+    public LdapMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+
+    /**
+     * Sets the metrics receiving the events of the connections using this configuration. By
+     * default, nothing is recorded.
+     *
+     * @param metrics The metrics, or null to record nothing
+     */
+    public void setMetrics( LdapMetrics metrics )
+    {
+        this.metrics = metrics == null ? LdapMetrics.NOOP : metrics;
+    }
+
+
+    /**
+     * @return <code>true</code> if the identical concurrent lookups share the same request
+     */
+    public boolean isCoalesceLookups()
+    {
+        return coalesceLookups;
+    }
+
+
+    /**
+     * Tells the connections to coalesce the identical concurrent lookups : when a thread looks up
+     * an entry while another thread is already looking it up with the same attributes and controls,
+     * no other request is sent, and it gets a copy of the first thread result. Disabled by default.
+     *
+     * @param coalesceLookups <code>true</code> to coalesce the identical concurrent lookups
+     */
+    public void setCoalesceLookups( boolean coalesceLookups )
+    {
+        this.coalesceLookups = coalesceLookups;
+    }
+
+
+    /**
+     * @return The circuit breaker used by the connections, null if none
+     */
+    public LdapCircuitBreaker getCircuitBreaker()
+    {
+        return circuitBreaker;
+    }
+
+
+    /**
+     * Sets the circuit breaker used by the connections. It adapts the operation timeouts to the
+     * server latencies, and fails the requests immediately after too many consecutive timeouts.
+     * It can be shared by configurations using different servers. Not used by default.
+     *
+     * @param circuitBreaker The circuit breaker, or null to use the configured timeouts
+     */
+    public void setCircuitBreaker( LdapCircuitBreaker circuitBreaker )
+    {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+
+    /**
+     * @return The size of the TLS client session cache, negative for the JSSE default
+     */
+    public int getSslSessionCacheSize()
+    {
+        return sslSessionCacheSize;
+    }
+
+
+    /**
+     * Sets the number of TLS sessions kept by the SSLContext, to be resumed by the next
+     * connections to the same server. 0 means no limit.
+     *
+     * @param sslSessionCacheSize The size of the TLS client session cache, negative for the JSSE default
+     */
+    public void setSslSessionCacheSize( int sslSessionCacheSize )
+    {
+        this.sslSessionCacheSize = sslSessionCacheSize;
+    }
+
+
+    /**
+     * @return The timeout of the cached TLS client sessions in seconds, negative for the JSSE default
+     */
+    public int getSslSessionTimeout()
+    {
+        return sslSessionTimeout;
+    }
+
+
+    /**
+     * Sets the time a TLS session can be resumed. 0 means no limit.
+     *
+     * @param sslSessionTimeout The timeout of the cached TLS client sessions in seconds, negative
+     * for the JSSE default
+     */
+    public void setSslSessionTimeout( int sslSessionTimeout )
+    {
+        this.sslSessionTimeout = sslSessionTimeout;
+    }
 }
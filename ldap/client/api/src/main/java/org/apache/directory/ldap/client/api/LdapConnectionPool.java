@@ -21,11 +21,20 @@
 package org.apache.directory.ldap.client.api;
 
 
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.pool2.DestroyMode;
 import org.apache.commons.pool2.PooledObjectFactory;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
+import org.apache.directory.api.ldap.codec.metrics.LdapMetrics;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +45,11 @@ import org.slf4j.LoggerFactory;
  * 
  * This class is just a wrapper around the commons GenericObjectPool, and has
  * a more meaningful name to represent the pool type.
+ * <br>
+ * When many virtual threads share a small pool, the pool should be made
+ * {@link #setVirtualThreadFriendly(boolean) virtual thread friendly} : the borrowers
+ * exceeding the pool capacity then wait on a {@link Semaphore}, which parks a virtual
+ * thread without pinning its carrier, instead of waiting in the commons-pool internal monitors.
  * 
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -45,6 +59,15 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
 
     private PooledObjectFactory<LdapConnection> factory;
 
+    /** The metrics receiving the time spent waiting for a connection */
+    private volatile LdapMetrics metrics = LdapMetrics.NOOP;
+
+    /** The permits of the borrowers, null if the pool is not virtual thread friendly */
+    private volatile Semaphore borrowPermits;
+
+    /** The connections borrowed with a permit */
+    private final Set<LdapConnection> permitHolders = ConcurrentHashMap.newKeySet();
+
 
     /**
      * Instantiates a new LDAP connection pool.
@@ -72,6 +95,7 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
         LdapApiService apiService, long timeout, GenericObjectPoolConfig poolConfig )
     {
         this( newPoolableConnectionFactory( connectionConfig, apiService, timeout ), poolConfig );
+        setMetrics( connectionConfig.getMetrics() );
     }
 
 
@@ -119,10 +143,20 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
     public LdapConnection getConnection() throws LdapException
     {
         LdapConnection connection;
+        LdapMetrics poolMetrics = metrics;
 
         try
         {
-            connection = super.borrowObject();
+            if ( poolMetrics.isEnabled() )
+            {
+                long start = System.nanoTime();
+                connection = super.borrowObject();
+                poolMetrics.connectionBorrowed( System.nanoTime() - start );
+            }
+            else
+            {
+                connection = super.borrowObject();
+            }
             
             if ( LOG.isTraceEnabled() )
             {
@@ -146,6 +180,174 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
     }
 
 
+    /**
+     * Creates connections and adds them to the idle connections, so that the first borrowers
+     * don't wait for the connection, TLS handshake and bind.
+     *
+     * @param count The number of connections to create
+     * @throws LdapException If a connection can't be created
+     */
+    public void prewarm( int count ) throws LdapException
+    {
+        try
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                super.addObject();
+            }
+        }
+        catch ( LdapException | RuntimeException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            LOG.error( I18n.err( I18n.ERR_04107_UNEXPECTED_THROWN_EXCEPTION, e.getMessage() ), e );
+            throw new RuntimeException( e );
+        }
+    }
+
+
+    /**
+     * Makes the pool virtual thread friendly, or not. The number of threads borrowing a
+     * connection at the same time is limited to the maximum number of connections, the
+     * other borrowers being parked on a {@link Semaphore} : the borrowers never wait
+     * in the commons-pool monitors, which would pin the carriers of the virtual threads.
+     * It has no effect on a pool without a maximum number of connections.
+     * <br>
+     * This method must be called after the maximum number of connections has been set.
+     *
+     * @param virtualThreadFriendly <code>true</code> to park the waiting borrowers on a Semaphore
+     */
+    public void setVirtualThreadFriendly( boolean virtualThreadFriendly )
+    {
+        if ( virtualThreadFriendly && ( getMaxTotal() > 0 ) )
+        {
+            // The connections already borrowed hold a permit
+            borrowPermits = new Semaphore( Math.max( 0, getMaxTotal() - permitHolders.size() ), true );
+        }
+        else
+        {
+            borrowPermits = null;
+        }
+    }
+
+
+    /**
+     * @return <code>true</code> if the waiting borrowers are parked on a Semaphore
+     */
+    public boolean isVirtualThreadFriendly()
+    {
+        return borrowPermits != null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LdapConnection borrowObject( Duration borrowMaxWaitDuration ) throws Exception
+    {
+        Semaphore permits = borrowPermits;
+
+        if ( permits == null )
+        {
+            return super.borrowObject( borrowMaxWaitDuration );
+        }
+
+        // The time spent waiting for a permit is deducted from the time left to the pool
+        Duration remaining = borrowMaxWaitDuration;
+
+        if ( !getBlockWhenExhausted() || borrowMaxWaitDuration.isZero() )
+        {
+            if ( !permits.tryAcquire() )
+            {
+                throw new NoSuchElementException( I18n.err( I18n.ERR_04185_POOL_BORROW_TIMEOUT, getMaxTotal() ) );
+            }
+        }
+        else if ( borrowMaxWaitDuration.isNegative() )
+        {
+            permits.acquire();
+        }
+        else
+        {
+            long deadline = System.nanoTime() + borrowMaxWaitDuration.toNanos();
+
+            if ( !permits.tryAcquire( borrowMaxWaitDuration.toNanos(), TimeUnit.NANOSECONDS ) )
+            {
+                throw new NoSuchElementException( I18n.err( I18n.ERR_04185_POOL_BORROW_TIMEOUT, getMaxTotal() ) );
+            }
+
+            // Once the deadline has passed, the pool only lends a connection if it does not have to wait
+            long remainingNanos = deadline - System.nanoTime();
+            remaining = remainingNanos > 0L ? Duration.ofNanos( remainingNanos ) : Duration.ZERO;
+        }
+
+        try
+        {
+            LdapConnection connection = super.borrowObject( remaining );
+            permitHolders.add( connection );
+
+            return connection;
+        }
+        catch ( Exception | Error e )
+        {
+            permits.release();
+
+            throw e;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void returnObject( LdapConnection connection )
+    {
+        // The permit is released first : once returned, the connection can be borrowed again
+        releasePermit( connection );
+        super.returnObject( connection );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidateObject( LdapConnection connection, DestroyMode destroyMode ) throws Exception
+    {
+        releasePermit( connection );
+        super.invalidateObject( connection, destroyMode );
+    }
+
+
+    private void releasePermit( LdapConnection connection )
+    {
+        if ( permitHolders.remove( connection ) )
+        {
+            Semaphore permits = borrowPermits;
+
+            if ( permits != null )
+            {
+                permits.release();
+            }
+        }
+    }
+
+
+    /**
+     * Sets the metrics receiving the time spent waiting for a connection. The pools
+     * created from a {@link LdapConnectionConfig} use the configuration metrics.
+     *
+     * @param metrics The metrics, or null to record nothing
+     */
+    public void setMetrics( LdapMetrics metrics )
+    {
+        this.metrics = metrics == null ? LdapMetrics.NOOP : metrics;
+    }
+
+
     private static ValidatingPoolableLdapConnectionFactory newPoolableConnectionFactory(
         LdapConnectionConfig connectionConfig, LdapApiService apiService,
         long timeout )
@@ -168,7 +370,7 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
     {
         try
         {
-            super.returnObject( connection );
+            returnObject( connection );
 
             if ( LOG.isTraceEnabled() )
             {
@@ -69,6 +69,7 @@ import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.api.ldap.codec.api.MessageEncoderException;
 import org.apache.directory.api.ldap.codec.api.SaslFilter;
 import org.apache.directory.api.ldap.codec.api.SchemaBinaryAttributeDetector;
+import org.apache.directory.api.ldap.codec.metrics.LdapMetrics;
 import org.apache.directory.api.ldap.extras.controls.ad.TreeDelete;
 import org.apache.directory.api.ldap.extras.controls.ad.TreeDeleteImpl;
 import org.apache.directory.api.ldap.extras.extended.startTls.StartTlsRequestImpl;
@@ -113,6 +114,7 @@ import org.apache.directory.api.ldap.model.message.ExtendedResponse;
 import org.apache.directory.api.ldap.model.message.IntermediateResponse;
 import org.apache.directory.api.ldap.model.message.LdapResult;
 import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
 import org.apache.directory.api.ldap.model.message.ModifyDnRequest;
 import org.apache.directory.api.ldap.model.message.ModifyDnRequestImpl;
 import org.apache.directory.api.ldap.model.message.ModifyDnResponse;
@@ -124,6 +126,7 @@ import org.apache.directory.api.ldap.model.message.OpaqueExtendedResponse;
 import org.apache.directory.api.ldap.model.message.Request;
 import org.apache.directory.api.ldap.model.message.Response;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
 import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
 import org.apache.directory.api.ldap.model.message.SearchResultDone;
@@ -158,6 +161,7 @@ import org.apache.directory.api.util.StringConstants;
 import org.apache.directory.api.util.Strings;
 import org.apache.directory.ldap.client.api.callback.SaslCallbackHandler;
 import org.apache.directory.ldap.client.api.exception.InvalidConnectionException;
+import org.apache.directory.ldap.client.api.exception.LdapCircuitOpenException;
 import org.apache.directory.ldap.client.api.exception.LdapConnectionTimeOutException;
 import org.apache.directory.ldap.client.api.future.AddFuture;
 import org.apache.directory.ldap.client.api.future.BindFuture;
@@ -242,6 +246,21 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     /** a map to hold the ResponseFutures for all operations */
     private Map<Integer, ResponseFuture<? extends Response>> futureMap = new ConcurrentHashMap<>();
 
+    /** The metrics, from the configuration */
+    private final LdapMetrics metrics;
+
+    /** The lookups being processed, only used when the lookups are coalesced */
+    private final RequestCoalescer<SearchRequestKey, Entry> lookupCoalescer;
+
+    /** The server circuit, null if there is no circuit breaker */
+    private final LdapCircuitBreaker.Circuit circuit;
+
+    /** Tells if the requests are timed, for the metrics or the circuit breaker */
+    private final boolean timeRequests;
+
+    /** The type and start time of the requests waiting for their response, only used when the requests are timed */
+    private final Map<Integer, RequestTiming> requestTimings = new ConcurrentHashMap<>();
+
     /** list of controls supported by the server */
     private List<String> supportedControls;
 
@@ -284,6 +303,25 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     static final String TIME_OUT_ERROR = I18n.err( I18n.ERR_04170_TIMEOUT_OCCURED );
 
     static final String NO_RESPONSE_ERROR = I18n.err( I18n.ERR_04169_RESPONSE_QUEUE_EMPTIED );
+
+    /**
+     * The type and start time of a request, kept until its final response is received
+     */
+    private static final class RequestTiming
+    {
+        /** The request type */
+        private final MessageTypeEnum requestType;
+
+        /** The time the request was sent, in nanoseconds */
+        private final long start;
+
+
+        private RequestTiming( MessageTypeEnum requestType, long start )
+        {
+            this.requestType = requestType;
+            this.start = start;
+        }
+    }
     
    //------------------------- The constructors --------------------------//
     /**
@@ -318,6 +356,11 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     {
         super( ldapApiService );
         this.config = config;
+        this.metrics = config.getMetrics();
+        this.circuit = config.getCircuitBreaker() == null ? null
+            : config.getCircuitBreaker().getCircuit( config.getLdapHost(), config.getLdapPort() );
+        this.timeRequests = metrics.isEnabled() || ( circuit != null );
+        this.lookupCoalescer = config.isCoalesceLookups() ? new RequestCoalescer<>( Entry::clone ) : null;
 
         if ( config.getBinaryAttributeDetector() == null )
         {
@@ -628,14 +671,135 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     }
 
 
-    private void addToFutureMap( int messageId, ResponseFuture<? extends Response> future )
+    private void addToFutureMap( Request request, ResponseFuture<? extends Response> future )
     {
+        int messageId = request.getMessageId();
+
         if ( LOG.isDebugEnabled() )
         {
             LOG.debug( I18n.msg( I18n.MSG_04106_ADDING, messageId, future.getClass().getName() ) );
         }
         
         futureMap.put( messageId, future );
+
+        if ( timeRequests )
+        {
+            requestTimings.put( messageId, new RequestTiming( request.getType(), System.nanoTime() ) );
+            metrics.operationStarted( request.getType() );
+        }
+    }
+
+
+    /**
+     * Records the final response of a request in the metrics and the circuit
+     *
+     * @param response The final response
+     */
+    private void requestCompleted( ResultResponse response )
+    {
+        RequestTiming timing = requestTimings.remove( response.getMessageId() );
+
+        if ( timing != null )
+        {
+            long duration = System.nanoTime() - timing.start;
+            metrics.operationCompleted( timing.requestType, response.getLdapResult().getResultCode(), duration );
+
+            if ( circuit != null )
+            {
+                circuit.requestAnswered( timing.requestType, duration );
+            }
+        }
+    }
+
+
+    /**
+     * Records a request that will never get its response in the metrics
+     *
+     * @param messageId The request message ID
+     * @param timedOut <code>true</code> if the request has timed out, <code>false</code> if it has been
+     * abandoned
+     */
+    private void requestAborted( int messageId, boolean timedOut )
+    {
+        RequestTiming timing = requestTimings.remove( messageId );
+
+        if ( timing != null )
+        {
+            if ( timedOut )
+            {
+                metrics.operationTimedOut( timing.requestType );
+            }
+            else
+            {
+                metrics.operationAbandoned( timing.requestType );
+            }
+        }
+    }
+
+
+    /**
+     * Records the requests lost with the connection in the metrics
+     */
+    private void requestsFailed()
+    {
+        for ( Integer messageId : requestTimings.keySet() )
+        {
+            RequestTiming timing = requestTimings.remove( messageId );
+
+            if ( timing != null )
+            {
+                metrics.operationFailed( timing.requestType );
+            }
+        }
+    }
+
+
+    /**
+     * Creates the exception thrown when a request has timed out
+     *
+     * @param messageId The request message ID
+     * @return The exception to throw
+     */
+    private LdapException timeOut( int messageId )
+    {
+        if ( circuit != null )
+        {
+            circuit.requestTimedOut();
+        }
+
+        if ( timeRequests )
+        {
+            requestAborted( messageId, true );
+        }
+
+        return new LdapException( TIME_OUT_ERROR );
+    }
+
+
+    /**
+     * Adapts a configured read timeout to the server latencies, if there is a circuit breaker
+     *
+     * @param requestType The request type, a search or a compare
+     * @param configuredTimeout The configured timeout, in milliseconds
+     * @return The timeout to use, in milliseconds
+     */
+    private long adaptTimeout( MessageTypeEnum requestType, long configuredTimeout )
+    {
+        return circuit == null ? configuredTimeout : circuit.getTimeout( requestType, configuredTimeout );
+    }
+
+
+    /**
+     * Checks that the server circuit is not open
+     *
+     * @throws LdapCircuitOpenException If the server has timed out too many times
+     */
+    private void checkCircuit() throws LdapCircuitOpenException
+    {
+        if ( circuit != null )
+        {
+            circuit.checkRequest( this );
+        }
     }
 
 
@@ -934,6 +1098,11 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             }
 
             futureMap.clear();
+
+            if ( timeRequests )
+            {
+                requestsFailed();
+            }
         } );
     }
     
@@ -1176,7 +1345,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Add" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( addFuture.getMessageId() );
             }
 
             if ( addResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -1248,12 +1417,13 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         connect();
 
         checkSession();
+        checkCircuit();
 
         int newId = messageId.incrementAndGet();
 
         addRequest.setMessageId( newId );
         AddFuture addFuture = new AddFuture( this, newId );
-        addToFutureMap( newId, addFuture );
+        addToFutureMap( addRequest, addFuture );
 
         // Send the request to the server
         writeRequest( addRequest );
@@ -1335,6 +1505,11 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
         ResponseFuture<? extends Response> rf = getFromFutureMap( abandonId );
 
+        if ( timeRequests )
+        {
+            requestAborted( abandonId, false );
+        }
+
         // if the listener is not null, this is a async operation and no need to
         // send cancel signal on future, sending so will leave a dangling poison object in the corresponding queue
         // this is a sync operation send cancel signal to the corresponding ResponseFuture
@@ -1571,7 +1746,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( bindFuture.getMessageId() );
             }
 
             if ( bindResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -1670,7 +1845,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         // Create a future for this Bind operation
         BindFuture bindFuture = new BindFuture( this, newId );
 
-        addToFutureMap( newId, bindFuture );
+        addToFutureMap( bindRequest, bindFuture );
 
         writeRequest( bindRequest );
 
@@ -1732,7 +1907,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( bindFuture.getMessageId() );
             }
 
             if ( bindResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -1804,7 +1979,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( bindFuture.getMessageId() );
             }
 
             if ( bindResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -1912,7 +2087,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( bindFuture.getMessageId() );
             }
 
             if ( bindResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -1998,7 +2173,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( bindFuture.getMessageId() );
             }
 
             if ( bindResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -2070,7 +2245,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( bindFuture.getMessageId() );
             }
 
             if ( bindResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -2142,7 +2317,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( bindFuture.getMessageId() );
             }
 
             if ( bindResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -2359,6 +2534,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
         // If the session has not been establish, or is closed, we get out immediately
         checkSession();
+        checkCircuit();
 
         int newId = messageId.incrementAndGet();
         searchRequest.setMessageId( newId );
@@ -2375,7 +2551,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         }
 
         SearchFuture searchFuture = new SearchFuture( this, searchRequest.getMessageId() );
-        addToFutureMap( searchRequest.getMessageId(), searchFuture );
+        addToFutureMap( searchRequest, searchFuture );
 
         // Send the request to the server
         writeRequest( searchRequest );
@@ -2409,7 +2585,8 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
             throw new IllegalArgumentException( msg );
         }
-        long localSearchTimeout = getTimeout( readOperationTimeout, searchRequest.getTimeLimit() );
+        long localSearchTimeout = getTimeout( adaptTimeout( MessageTypeEnum.SEARCH_REQUEST, readOperationTimeout ),
+            searchRequest.getTimeLimit() );
         return search( searchRequest, localSearchTimeout );
     }
 
@@ -2437,7 +2614,29 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
         SearchFuture searchFuture = searchAsync( searchRequest );
 
-        return new SearchCursorImpl( searchFuture, localSearchTimeout, TimeUnit.MILLISECONDS );
+        if ( circuit == null )
+        {
+            return new SearchCursorImpl( searchFuture, localSearchTimeout, TimeUnit.MILLISECONDS );
+        }
+
+        // The cursor waits for the responses itself : report its timeouts to the circuit
+        return new SearchCursorImpl( searchFuture, localSearchTimeout, TimeUnit.MILLISECONDS )
+        {
+            @Override
+            public boolean next() throws LdapException, CursorException
+            {
+                try
+                {
+                    return super.next();
+                }
+                catch ( LdapConnectionTimeOutException e )
+                {
+                    circuit.requestTimedOut();
+
+                    throw e;
+                }
+            }
+        };
     }
 
     //------------------------ The LDAP operations ------------------------//
@@ -2990,6 +3189,11 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             return;
         }
 
+        if ( timeRequests && ( response instanceof ResultResponse ) )
+        {
+            requestCompleted( ( ResultResponse ) response );
+        }
+
         switch ( response.getType() )
         {
             case ADD_RESPONSE:
@@ -3213,7 +3417,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Modify" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( modifyFuture.getMessageId() );
             }
 
             if ( modifyResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -3291,12 +3495,13 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         connect();
 
         checkSession();
+        checkCircuit();
 
         int newId = messageId.incrementAndGet();
         modRequest.setMessageId( newId );
 
         ModifyFuture modifyFuture = new ModifyFuture( this, newId );
-        addToFutureMap( newId, modifyFuture );
+        addToFutureMap( modRequest, modifyFuture );
 
         // Send the request to the server
         writeRequest( modRequest );
@@ -3609,7 +3814,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "ModifyDn" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( modifyDnFuture.getMessageId() );
             }
 
             if ( modifyDnResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -3693,12 +3898,13 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         connect();
 
         checkSession();
+        checkCircuit();
 
         int newId = messageId.incrementAndGet();
         modDnRequest.setMessageId( newId );
 
         ModifyDnFuture modifyDnFuture = new ModifyDnFuture( this, newId );
-        addToFutureMap( newId, modifyDnFuture );
+        addToFutureMap( modDnRequest, modifyDnFuture );
 
         // Send the request to the server
         writeRequest( modDnRequest );
@@ -3831,7 +4037,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Delete" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( deleteFuture.getMessageId() );
             }
 
             if ( delResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -3903,13 +4109,14 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         connect();
 
         checkSession();
+        checkCircuit();
 
         int newId = messageId.incrementAndGet();
 
         deleteRequest.setMessageId( newId );
 
         DeleteFuture deleteFuture = new DeleteFuture( this, newId );
-        addToFutureMap( newId, deleteFuture );
+        addToFutureMap( deleteRequest, deleteFuture );
 
         // Send the request to the server
         writeRequest( deleteRequest );
@@ -4033,7 +4240,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         {
             // Read the response, waiting for it if not available immediately
             // Get the response, blocking
-            CompareResponse compareResponse = compareFuture.get( readOperationTimeout, TimeUnit.MILLISECONDS );
+            CompareResponse compareResponse = compareFuture.get( adaptTimeout( MessageTypeEnum.COMPARE_REQUEST, readOperationTimeout ), TimeUnit.MILLISECONDS );
 
             if ( compareResponse == null )
             {
@@ -4043,7 +4250,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Compare" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( compareFuture.getMessageId() );
             }
 
             if ( compareResponse.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -4115,13 +4322,14 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         connect();
 
         checkSession();
+        checkCircuit();
 
         int newId = messageId.incrementAndGet();
 
         compareRequest.setMessageId( newId );
 
         CompareFuture compareFuture = new CompareFuture( this, newId );
-        addToFutureMap( newId, compareFuture );
+        addToFutureMap( compareRequest, compareFuture );
 
         // Send the request to the server
         writeRequest( compareRequest );
@@ -4242,7 +4450,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Extended" ) );
                 }
                 
-                throw new LdapException( TIME_OUT_ERROR );
+                throw timeOut( extendedFuture.getMessageId() );
             }
 
             if ( response.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
@@ -4314,13 +4522,14 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         connect();
 
         checkSession();
+        checkCircuit();
 
         int newId = messageId.incrementAndGet();
 
         extendedRequest.setMessageId( newId );
         ExtendedFuture extendedFuture = new ExtendedFuture( this, newId );
         extendedFuture.setExtendedRequest( extendedRequest );
-        addToFutureMap( newId, extendedFuture );
+        addToFutureMap( extendedRequest, extendedFuture );
 
         // Send the request to the server
         writeRequest( extendedRequest );
@@ -4420,36 +4629,47 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     @Override
     public Entry lookup( Dn dn, Control[] controls, String... attributes ) throws LdapException
     {
-        Entry entry = null;
+        final SearchRequest searchRequest = new SearchRequestImpl();
 
-        try
+        searchRequest.setBase( dn );
+        searchRequest.setFilter( LdapConstants.OBJECT_CLASS_STAR );
+        searchRequest.setScope( SearchScope.OBJECT );
+        searchRequest.addAttributes( attributes );
+        searchRequest.setDerefAliases( AliasDerefMode.DEREF_ALWAYS );
+
+        if ( ( controls != null ) && ( controls.length > 0 ) )
+        {
+            searchRequest.addAllControls( controls );
+        }
+
+        if ( lookupCoalescer != null )
         {
-            SearchRequest searchRequest = new SearchRequestImpl();
+            return lookupCoalescer.execute( new SearchRequestKey( searchRequest ), () -> lookup( searchRequest ) );
+        }
 
-            searchRequest.setBase( dn );
-            searchRequest.setFilter( LdapConstants.OBJECT_CLASS_STAR );
-            searchRequest.setScope( SearchScope.OBJECT );
-            searchRequest.addAttributes( attributes );
-            searchRequest.setDerefAliases( AliasDerefMode.DEREF_ALWAYS );
+        return lookup( searchRequest );
+    }
 
-            if ( ( controls != null ) && ( controls.length > 0 ) )
-            {
-                searchRequest.addAllControls( controls );
-            }
 
-            try ( Cursor<Response> cursor = search( searchRequest ) )
+    /**
+     * Sends the search request of a lookup, and reads the entry
+     */
+    private Entry lookup( SearchRequest searchRequest ) throws LdapException
+    {
+        Entry entry = null;
+
+        try ( Cursor<Response> cursor = search( searchRequest ) )
+        {
+            // Read the response
+            if ( cursor.next() )
             {
-                // Read the response
-                if ( cursor.next() )
-                {
-                    // cursor will always hold SearchResultEntry objects cause there is no ManageDsaITControl passed with search request
-                    entry = ( ( SearchResultEntry ) cursor.get() ).getEntry();
-                }
-    
-                // Pass through the SaerchResultDone, or stop
-                // if we have other responses
-                cursor.next();
+                // cursor will always hold SearchResultEntry objects cause there is no ManageDsaITControl passed with search request
+                entry = ( ( SearchResultEntry ) cursor.get() ).getEntry();
             }
+
+            // Pass through the SaerchResultDone, or stop
+            // if we have other responses
+            cursor.next();
         }
         catch ( CursorException e )
         {
@@ -4776,6 +4996,11 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     private void clearMaps()
     {
         futureMap.clear();
+
+        if ( timeRequests )
+        {
+            requestsFailed();
+        }
     }
 
 
@@ -4845,6 +5070,11 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         ldapMessageContainer.setDnFactory( new DefaultDnFactory( schemaManager, 1000 ) );
 
         session.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR, ldapMessageContainer );
+
+        if ( metrics.isEnabled() )
+        {
+            session.setAttribute( LdapMetrics.SESSION_ATTR, metrics );
+        }
     }
 
 
@@ -4988,9 +5218,8 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     {
         try
         {
-            SSLContext sslContext = SSLContext.getInstance( config.getSslProtocol() );
-            
-            sslContext.init( config.getKeyManagers(), config.getTrustManagers(), config.getSecureRandom() );
+            // The shared SSLContext keeps the TLS sessions, to be resumed by the next connections
+            SSLContext sslContext = SslContextCache.getSslContext( config );
 
             SslFilter sslFilter = new SslFilter( sslContext );
             //sslFilter.setUseClientMode( true );
@@ -5088,7 +5317,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         BindFuture bindFuture = new BindFuture( this, newId );
 
         // Store it in the future Map
-        addToFutureMap( newId, bindFuture );
+        addToFutureMap( bindRequest, bindFuture );
 
         try
         {
@@ -5157,7 +5386,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                         LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                     }
                     
-                    throw new LdapException( TIME_OUT_ERROR );
+                    throw timeOut( bindRequest.getMessageId() );
                 }
 
                 result = bindResponse.getLdapResult().getResultCode();
@@ -5186,7 +5415,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                         LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                     }
                     
-                    throw new LdapException( TIME_OUT_ERROR );
+                    throw timeOut( bindRequest.getMessageId() );
                 }
 
                 result = bindResponse.getLdapResult().getResultCode();
@@ -5210,7 +5439,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     bindRequest.setMessageId( newId );
                     bindRequest.setCredentials( response );
 
-                    addToFutureMap( newId, bindFuture );
+                    addToFutureMap( bindRequest, bindFuture );
 
                     writeRequest( bindRequest );
 
@@ -5224,7 +5453,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                             LOG.error( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, "Bind" ) );
                         }
                         
-                        throw new LdapException( TIME_OUT_ERROR );
+                        throw timeOut( bindRequest.getMessageId() );
                     }
 
                     result = bindResponse.getLdapResult().getResultCode();
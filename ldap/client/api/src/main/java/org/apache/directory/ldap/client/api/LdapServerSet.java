@@ -0,0 +1,377 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.i18n.I18n;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A set of equivalent LDAP servers, like the replicas of a directory, and the state
+ * used to spread the load over them : the number of requests in progress, the latency
+ * and the quarantine of each server. The server to use is selected using a
+ * {@link ServerSelectionStrategy}.
+ * <br>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapServerSet
+{
+    /** The logger */
+    private static final Logger LOG = LoggerFactory.getLogger( LdapServerSet.class );
+
+    /** The default weight of a new latency sample in the moving average */
+    public static final double DEFAULT_LATENCY_WEIGHT = 0.2d;
+
+    /** The servers */
+    private final List<Server> servers = new CopyOnWriteArrayList<>();
+
+    /** The selection strategy */
+    private final ServerSelectionStrategy strategy;
+
+    /** The weight of a new latency sample in the moving average */
+    private final double latencyWeight;
+
+    /** The number of selections done so far */
+    private final AtomicInteger sequence = new AtomicInteger();
+
+
+    /**
+     * A server of the set, with its current state
+     */
+    public static final class Server
+    {
+        /** The server host */
+        private final String host;
+
+        /** The server port */
+        private final int port;
+
+        /** The weight of a new latency sample */
+        private final double latencyWeight;
+
+        /** The number of requests in progress */
+        private final AtomicInteger outstandingRequests = new AtomicInteger();
+
+        /** The moving average of the latency, in nanoseconds, 0 when unknown */
+        private volatile long latency;
+
+        /** The quarantine flag */
+        private volatile boolean quarantined;
+
+
+        private Server( String host, int port, double latencyWeight )
+        {
+            this.host = host;
+            this.port = port;
+            this.latencyWeight = latencyWeight;
+        }
+
+
+        /**
+         * @return The server host
+         */
+        public String getHost()
+        {
+            return host;
+        }
+
+
+        /**
+         * @return The server port
+         */
+        public int getPort()
+        {
+            return port;
+        }
+
+
+        /**
+         * @return The number of requests in progress on this server
+         */
+        public int getOutstandingRequests()
+        {
+            return outstandingRequests.get();
+        }
+
+
+        /**
+         * @return The exponentially weighted moving average of the latency of this
+         * server, in nanoseconds. 0 if no latency has been measured yet.
+         */
+        public long getLatency()
+        {
+            return latency;
+        }
+
+
+        /**
+         * @return <code>true</code> if the server is quarantined
+         */
+        public boolean isQuarantined()
+        {
+            return quarantined;
+        }
+
+
+        /**
+         * Records the start of a request
+         */
+        void requestStarted()
+        {
+            outstandingRequests.incrementAndGet();
+        }
+
+
+        /**
+         * Records the end of a request
+         *
+         * @param duration The request latency, in nanoseconds, or a negative value if it
+         * should not be part of the moving average
+         */
+        void requestCompleted( long duration )
+        {
+            outstandingRequests.decrementAndGet();
+
+            if ( duration >= 0L )
+            {
+                recordLatency( duration );
+            }
+        }
+
+
+        /**
+         * Adds a latency sample to the moving average
+         *
+         * @param duration The latency, in nanoseconds
+         */
+        synchronized void recordLatency( long duration )
+        {
+            if ( latency == 0L )
+            {
+                latency = Math.max( 1L, duration );
+            }
+            else
+            {
+                latency = Math.max( 1L, ( long ) ( latencyWeight * duration + ( 1d - latencyWeight ) * latency ) );
+            }
+        }
+
+
+        /**
+         * Sets the quarantine flag
+         *
+         * @param quarantined The new flag value
+         * @return <code>true</code> if the flag has changed
+         */
+        synchronized boolean setQuarantined( boolean quarantined )
+        {
+            boolean changed = this.quarantined != quarantined;
+            this.quarantined = quarantined;
+
+            return changed;
+        }
+
+
+        /**
+         * @see Object#toString()
+         */
+        @Override
+        public String toString()
+        {
+            return host + ':' + port;
+        }
+    }
+
+
+    /**
+     * Creates a new LdapServerSet instance, using the default latency weight
+     *
+     * @param strategy The selection strategy
+     */
+    public LdapServerSet( ServerSelectionStrategy strategy )
+    {
+        this( strategy, DEFAULT_LATENCY_WEIGHT );
+    }
+
+
+    /**
+     * Creates a new LdapServerSet instance
+     *
+     * @param strategy The selection strategy
+     * @param latencyWeight The weight of a new latency sample in the moving average, between
+     * 0 (excluded) and 1. The higher, the faster a latency change is taken into account.
+     */
+    public LdapServerSet( ServerSelectionStrategy strategy, double latencyWeight )
+    {
+        if ( ( strategy == null ) || ( latencyWeight <= 0d ) || ( latencyWeight > 1d ) )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04182_INVALID_SERVER_SET, strategy,
+                latencyWeight ) );
+        }
+
+        this.strategy = strategy;
+        this.latencyWeight = latencyWeight;
+    }
+
+
+    /**
+     * Adds a server to the set
+     *
+     * @param host The server host
+     * @param port The server port
+     * @return The added server
+     */
+    public Server addServer( String host, int port )
+    {
+        Server server = new Server( host, port, latencyWeight );
+        servers.add( server );
+
+        return server;
+    }
+
+
+    /**
+     * @return The servers, in the order they were added
+     */
+    public List<Server> getServers()
+    {
+        return Collections.unmodifiableList( servers );
+    }
+
+
+    /**
+     * @return The selection strategy
+     */
+    public ServerSelectionStrategy getStrategy()
+    {
+        return strategy;
+    }
+
+
+    /**
+     * Selects a server, using the strategy
+     *
+     * @return The selected server, or null if the set is empty
+     */
+    public Server select()
+    {
+        return select( Collections.<Server>emptySet() );
+    }
+
+
+    /**
+     * Selects a server, using the strategy. The quarantined servers are only selected
+     * when all the other servers are either quarantined or excluded.
+     *
+     * @param excluded The servers that must not be selected, like the ones already tried
+     * @return The selected server, or null if all the servers are excluded
+     */
+    public Server select( Collection<Server> excluded )
+    {
+        List<Server> candidates = new ArrayList<>( servers.size() );
+        List<Server> quarantined = null;
+
+        for ( Server server : servers )
+        {
+            if ( excluded.contains( server ) )
+            {
+                continue;
+            }
+
+            if ( server.isQuarantined() )
+            {
+                if ( quarantined == null )
+                {
+                    quarantined = new ArrayList<>();
+                }
+
+                quarantined.add( server );
+            }
+            else
+            {
+                candidates.add( server );
+            }
+        }
+
+        if ( candidates.isEmpty() )
+        {
+            if ( quarantined == null )
+            {
+                return null;
+            }
+
+            // Better try a quarantined server than failing
+            candidates = quarantined;
+        }
+
+        return strategy.select( candidates, sequence.getAndIncrement() );
+    }
+
+
+    /**
+     * Quarantines a server : it won't be selected until it is released
+     *
+     * @param server The server to quarantine
+     * @param cause The failure that caused the quarantine
+     */
+    public void quarantine( Server server, Throwable cause )
+    {
+        if ( server.setQuarantined( true ) && LOG.isInfoEnabled() )
+        {
+            LOG.info( I18n.msg( I18n.MSG_04179_SERVER_QUARANTINED, server,
+                cause == null ? null : cause.getMessage() ) );
+        }
+    }
+
+
+    /**
+     * Releases a server from the quarantine
+     *
+     * @param server The server to release
+     */
+    public void release( Server server )
+    {
+        if ( server.setQuarantined( false ) && LOG.isInfoEnabled() )
+        {
+            LOG.info( I18n.msg( I18n.MSG_04180_SERVER_RELEASED, server ) );
+        }
+    }
+
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return strategy + " " + servers;
+    }
+}
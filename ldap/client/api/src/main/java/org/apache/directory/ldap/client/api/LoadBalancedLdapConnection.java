@@ -0,0 +1,765 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import org.apache.directory.api.asn1.util.Oid;
+import org.apache.directory.api.ldap.model.cursor.EntryCursor;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Modification;
+import org.apache.directory.api.ldap.model.entry.ModificationOperation;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddResponse;
+import org.apache.directory.api.ldap.model.message.BindRequest;
+import org.apache.directory.api.ldap.model.message.BindResponse;
+import org.apache.directory.api.ldap.model.message.CompareRequest;
+import org.apache.directory.api.ldap.model.message.CompareResponse;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteResponse;
+import org.apache.directory.api.ldap.model.message.ExtendedRequest;
+import org.apache.directory.api.ldap.model.message.ExtendedResponse;
+import org.apache.directory.api.ldap.model.message.ModifyDnRequest;
+import org.apache.directory.api.ldap.model.message.ModifyDnResponse;
+import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.apache.directory.api.ldap.model.message.ModifyResponse;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+
+
+/**
+ * A connection to one of the servers of a {@link LdapServerSet}. The requests sent
+ * through this connection are counted as in progress on the server until their response
+ * is received, and their latency feeds the server moving average. The searches are only
+ * counted while the request is sent, as the entries are read later on from the cursor :
+ * their latency is not measured.
+ * <br>
+ * When a request fails and the connection is lost, the server is quarantined.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LoadBalancedLdapConnection extends LdapConnectionWrapper
+{
+    /** The server set */
+    private final LdapServerSet serverSet;
+
+    /** The server this connection is connected to */
+    private final LdapServerSet.Server server;
+
+
+    /**
+     * An operation sent to the server
+     *
+     * @param <R> The operation result
+     */
+    private interface Operation<R>
+    {
+        R execute() throws LdapException;
+    }
+
+
+    /**
+     * Creates a new LoadBalancedLdapConnection instance
+     *
+     * @param connection The wrapped connection
+     * @param serverSet The server set
+     * @param server The server the wrapped connection is connected to
+     */
+    LoadBalancedLdapConnection( LdapConnection connection, LdapServerSet serverSet, LdapServerSet.Server server )
+    {
+        super( connection );
+        this.serverSet = serverSet;
+        this.server = server;
+    }
+
+
+    /**
+     * @return The server this connection is connected to
+     */
+    public LdapServerSet.Server getServer()
+    {
+        return server;
+    }
+
+
+    private <R> R track( Operation<R> operation, boolean measureLatency ) throws LdapException
+    {
+        server.requestStarted();
+        long start = System.nanoTime();
+        long duration = -1L;
+
+        try
+        {
+            R result = operation.execute();
+
+            if ( measureLatency )
+            {
+                duration = System.nanoTime() - start;
+            }
+
+            return result;
+        }
+        catch ( LdapException | RuntimeException e )
+        {
+            if ( !connection.isConnected() )
+            {
+                serverSet.quarantine( server, e );
+            }
+
+            throw e;
+        }
+        finally
+        {
+            server.requestCompleted( duration );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AddResponse add( AddRequest addRequest ) throws LdapException
+    {
+        return track( () -> connection.add( addRequest ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bind() throws LdapException
+    {
+        track( () ->
+        {
+            connection.bind();
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void anonymousBind() throws LdapException
+    {
+        track( () ->
+        {
+            connection.anonymousBind();
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bind( String name ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.bind( name );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bind( String name, String credentials ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.bind( name, credentials );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bind( Dn name ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.bind( name );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bind( Dn name, String credentials ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.bind( name, credentials );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BindResponse bind( BindRequest bindRequest ) throws LdapException
+    {
+        return track( () -> connection.bind( bindRequest ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BindResponse bind( SaslRequest saslRequest ) throws LdapException
+    {
+        return track( () -> connection.bind( saslRequest ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryCursor search( Dn baseDn, String filter, SearchScope scope, String... attributes )
+        throws LdapException
+    {
+        return track( () -> connection.search( baseDn, filter, scope, attributes ), false );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryCursor search( String baseDn, String filter, SearchScope scope, String... attributes )
+        throws LdapException
+    {
+        return track( () -> connection.search( baseDn, filter, scope, attributes ), false );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchCursor search( SearchRequest searchRequest ) throws LdapException
+    {
+        return track( () -> connection.search( searchRequest ), false );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void modify( Dn dn, Modification... modifications ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.modify( dn, modifications );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void modify( String dn, Modification... modifications ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.modify( dn, modifications );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void modify( Entry entry, ModificationOperation modOp ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.modify( entry, modOp );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ModifyResponse modify( ModifyRequest modRequest ) throws LdapException
+    {
+        return track( () -> connection.modify( modRequest ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rename( String entryDn, String newRdn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.rename( entryDn, newRdn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rename( Dn entryDn, Rdn newRdn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.rename( entryDn, newRdn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rename( String entryDn, String newRdn, boolean deleteOldRdn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.rename( entryDn, newRdn, deleteOldRdn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rename( Dn entryDn, Rdn newRdn, boolean deleteOldRdn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.rename( entryDn, newRdn, deleteOldRdn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void move( String entryDn, String newSuperiorDn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.move( entryDn, newSuperiorDn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void move( Dn entryDn, Dn newSuperiorDn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.move( entryDn, newSuperiorDn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveAndRename( Dn entryDn, Dn newDn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.moveAndRename( entryDn, newDn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveAndRename( String entryDn, String newDn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.moveAndRename( entryDn, newDn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveAndRename( Dn entryDn, Dn newDn, boolean deleteOldRdn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.moveAndRename( entryDn, newDn, deleteOldRdn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveAndRename( String entryDn, String newDn, boolean deleteOldRdn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.moveAndRename( entryDn, newDn, deleteOldRdn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ModifyDnResponse modifyDn( ModifyDnRequest modDnRequest ) throws LdapException
+    {
+        return track( () -> connection.modifyDn( modDnRequest ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete( String dn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.delete( dn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete( Dn dn ) throws LdapException
+    {
+        track( () ->
+        {
+            connection.delete( dn );
+
+            return null;
+        }, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeleteResponse delete( DeleteRequest deleteRequest ) throws LdapException
+    {
+        return track( () -> connection.delete( deleteRequest ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean compare( String dn, String attributeName, String value ) throws LdapException
+    {
+        return track( () -> connection.compare( dn, attributeName, value ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean compare( String dn, String attributeName, byte[] value ) throws LdapException
+    {
+        return track( () -> connection.compare( dn, attributeName, value ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean compare( String dn, String attributeName, Value value ) throws LdapException
+    {
+        return track( () -> connection.compare( dn, attributeName, value ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean compare( Dn dn, String attributeName, String value ) throws LdapException
+    {
+        return track( () -> connection.compare( dn, attributeName, value ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean compare( Dn dn, String attributeName, byte[] value ) throws LdapException
+    {
+        return track( () -> connection.compare( dn, attributeName, value ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean compare( Dn dn, String attributeName, Value value ) throws LdapException
+    {
+        return track( () -> connection.compare( dn, attributeName, value ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompareResponse compare( CompareRequest compareRequest ) throws LdapException
+    {
+        return track( () -> connection.compare( compareRequest ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExtendedResponse extended( String oid ) throws LdapException
+    {
+        return track( () -> connection.extended( oid ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExtendedResponse extended( String oid, byte[] value ) throws LdapException
+    {
+        return track( () -> connection.extended( oid, value ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExtendedResponse extended( Oid oid ) throws LdapException
+    {
+        return track( () -> connection.extended( oid ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExtendedResponse extended( Oid oid, byte[] value ) throws LdapException
+    {
+        return track( () -> connection.extended( oid, value ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExtendedResponse extended( ExtendedRequest extendedRequest ) throws LdapException
+    {
+        return track( () -> connection.extended( extendedRequest ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists( String dn ) throws LdapException
+    {
+        return track( () -> connection.exists( dn ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists( Dn dn ) throws LdapException
+    {
+        return track( () -> connection.exists( dn ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getRootDse() throws LdapException
+    {
+        return track( () -> connection.getRootDse(), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getRootDse( String... attributes ) throws LdapException
+    {
+        return track( () -> connection.getRootDse( attributes ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( Dn dn ) throws LdapException
+    {
+        return track( () -> connection.lookup( dn ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( String dn ) throws LdapException
+    {
+        return track( () -> connection.lookup( dn ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( Dn dn, String... attributes ) throws LdapException
+    {
+        return track( () -> connection.lookup( dn, attributes ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( Dn dn, Control[] controls, String... attributes ) throws LdapException
+    {
+        return track( () -> connection.lookup( dn, controls, attributes ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( String dn, String... attributes ) throws LdapException
+    {
+        return track( () -> connection.lookup( dn, attributes ), true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry lookup( String dn, Control[] controls, String... attributes ) throws LdapException
+    {
+        return track( () -> connection.lookup( dn, controls, attributes ), true );
+    }
+}
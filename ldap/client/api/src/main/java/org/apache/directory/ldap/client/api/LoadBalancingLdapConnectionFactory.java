@@ -0,0 +1,409 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.codec.api.LdapApiService;
+import org.apache.directory.api.ldap.model.exception.LdapAuthenticationException;
+import org.apache.directory.api.ldap.model.exception.LdapAuthenticationNotSupportedException;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapNoPermissionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A LdapConnectionFactory spreading the connections over the servers of a {@link LdapServerSet}.
+ * Each server uses a copy of the given {@link LdapConnectionConfig}, with its own host and
+ * port. The returned connections are {@link LoadBalancedLdapConnection}s, which record the
+ * server load and latency.
+ * <br>
+ * A server that can't be reached is quarantined, and the next selected server is tried.
+ * The quarantined servers are checked in the background, using a {@link LdapConnectionValidator},
+ * and released as soon as they are valid again.
+ * <br>
+ * The factory must be closed to stop the health checks.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LoadBalancingLdapConnectionFactory implements LdapConnectionFactory, Closeable
+{
+    /** The logger */
+    private static final Logger LOG = LoggerFactory.getLogger( LoadBalancingLdapConnectionFactory.class );
+
+    /** The default delay between two checks of the quarantined servers : 10 seconds */
+    public static final long DEFAULT_HEALTH_CHECK_INTERVAL = 10000L;
+
+    /** The configuration shared by all the servers */
+    private final LdapConnectionConfig connectionConfig;
+
+    /** The servers */
+    private final LdapServerSet serverSet;
+
+    /** The connection factory of each server */
+    private final Map<LdapServerSet.Server, LdapConnectionFactory> factories = new ConcurrentHashMap<>();
+
+    /** The health check executor, null if the health checks are disabled */
+    private final ScheduledExecutorService healthChecker;
+
+    /** The validator used to check the quarantined servers */
+    private volatile LdapConnectionValidator validator = new LookupLdapConnectionValidator();
+
+    /** The codec, if not the default one */
+    private volatile LdapApiService apiService;
+
+    /** The timeout */
+    private volatile long timeout;
+
+
+    /**
+     * Creates a new LoadBalancingLdapConnectionFactory instance, checking the quarantined
+     * servers every {@link #DEFAULT_HEALTH_CHECK_INTERVAL} milliseconds.
+     *
+     * @param config The configuration shared by all the servers. Its host and port are ignored.
+     * @param serverSet The servers
+     */
+    public LoadBalancingLdapConnectionFactory( LdapConnectionConfig config, LdapServerSet serverSet )
+    {
+        this( config, serverSet, DEFAULT_HEALTH_CHECK_INTERVAL );
+    }
+
+
+    /**
+     * Creates a new LoadBalancingLdapConnectionFactory instance
+     *
+     * @param config The configuration shared by all the servers. Its host and port are ignored.
+     * @param serverSet The servers
+     * @param healthCheckInterval The delay between two checks of the quarantined servers, in
+     * milliseconds. The background checks are disabled if 0 or negative.
+     */
+    public LoadBalancingLdapConnectionFactory( LdapConnectionConfig config, LdapServerSet serverSet,
+        long healthCheckInterval )
+    {
+        this.connectionConfig = config;
+        this.serverSet = serverSet;
+        this.timeout = config.getTimeout();
+
+        if ( healthCheckInterval > 0L )
+        {
+            healthChecker = Executors.newSingleThreadScheduledExecutor( runnable ->
+            {
+                Thread thread = new Thread( runnable, "LdapServerSet health check" );
+                thread.setDaemon( true );
+
+                return thread;
+            } );
+
+            healthChecker.scheduleWithFixedDelay( this::checkQuarantinedServers, healthCheckInterval,
+                healthCheckInterval, TimeUnit.MILLISECONDS );
+        }
+        else
+        {
+            healthChecker = null;
+        }
+    }
+
+
+    /**
+     * Tells if a failure is caused by the server, and not by the request itself, like
+     * a wrong password. A server failure is a reason to try another server.
+     *
+     * @param exception The failure
+     * @return <code>true</code> if the failure is caused by the server
+     */
+    static boolean isServerFailure( LdapException exception )
+    {
+        return !( ( exception instanceof LdapAuthenticationException )
+            || ( exception instanceof LdapAuthenticationNotSupportedException )
+            || ( exception instanceof LdapNoPermissionException ) );
+    }
+
+
+    /**
+     * Creates the connection factory of a server
+     *
+     * @param config The server configuration, with its host and port
+     * @return The server connection factory
+     */
+    protected LdapConnectionFactory createServerFactory( LdapConnectionConfig config )
+    {
+        DefaultLdapConnectionFactory factory = new DefaultLdapConnectionFactory( config );
+        factory.setLdapApiService( apiService );
+        factory.setTimeOut( timeout );
+
+        return factory;
+    }
+
+
+    /**
+     * Gets the connection factory of a server. It creates connections to this server
+     * only, without any load balancing.
+     *
+     * @param server The server
+     * @return The server connection factory
+     */
+    public LdapConnectionFactory getServerFactory( LdapServerSet.Server server )
+    {
+        return factories.computeIfAbsent( server, s ->
+        {
+            LdapConnectionConfig config = new LdapConnectionConfig( connectionConfig );
+            config.setLdapHost( s.getHost() );
+            config.setLdapPort( s.getPort() );
+
+            return createServerFactory( config );
+        } );
+    }
+
+
+    /**
+     * @return The servers
+     */
+    public LdapServerSet getServerSet()
+    {
+        return serverSet;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LdapConnection bindConnection( LdapConnection connection ) throws LdapException
+    {
+        if ( connection instanceof LoadBalancedLdapConnection )
+        {
+            getServerFactory( ( ( LoadBalancedLdapConnection ) connection ).getServer() ).bindConnection( connection );
+
+            return connection;
+        }
+
+        // Not one of our connections : bind it as the default factory would
+        return new DefaultLdapConnectionFactory( connectionConfig ).bindConnection( connection );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LdapConnection configureConnection( LdapConnection connection )
+    {
+        connection.setTimeOut( timeout );
+        connection.setBinaryAttributeDetector( connectionConfig.getBinaryAttributeDetector() );
+
+        return connection;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LdapApiService getLdapApiService()
+    {
+        return apiService;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LdapConnection newLdapConnection() throws LdapException
+    {
+        List<LdapServerSet.Server> tried = new ArrayList<>();
+        LdapException failure = null;
+        LdapServerSet.Server server = serverSet.select( tried );
+
+        while ( server != null )
+        {
+            tried.add( server );
+
+            try
+            {
+                LdapConnection connection = getServerFactory( server ).newLdapConnection();
+                serverSet.release( server );
+
+                return new LoadBalancedLdapConnection( connection, serverSet, server );
+            }
+            catch ( LdapException e )
+            {
+                if ( !isServerFailure( e ) )
+                {
+                    throw e;
+                }
+
+                serverSet.quarantine( server, e );
+                failure = e;
+            }
+
+            server = serverSet.select( tried );
+        }
+
+        throw new LdapException( I18n.err( I18n.ERR_04181_NO_SERVER_AVAILABLE, serverSet ), failure );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LdapConnection newUnboundLdapConnection()
+    {
+        LdapServerSet.Server server = serverSet.select();
+
+        if ( server == null )
+        {
+            throw new IllegalStateException( I18n.err( I18n.ERR_04181_NO_SERVER_AVAILABLE, serverSet ) );
+        }
+
+        return new LoadBalancedLdapConnection( getServerFactory( server ).newUnboundLdapConnection(), serverSet,
+            server );
+    }
+
+
+    /**
+     * Sets the LdapApiService (codec) to be used by the connections created
+     * by this factory. It must be set before the first connection is created.
+     *
+     * @param apiService The codec to used by connections created by this factory
+     */
+    public void setLdapApiService( LdapApiService apiService )
+    {
+        this.apiService = apiService;
+        factories.clear();
+    }
+
+
+    /**
+     * Sets the timeout that will be used by all connections created by this
+     * factory. It must be set before the first connection is created.
+     *
+     * @param timeout The timeout in millis.
+     *
+     * @see LdapConnection#setTimeOut(long)
+     */
+    public void setTimeOut( long timeout )
+    {
+        this.timeout = timeout;
+        factories.clear();
+    }
+
+
+    /**
+     * Sets the validator used to check the quarantined servers. The default one is a
+     * {@link LookupLdapConnectionValidator}.
+     *
+     * @param validator The validator
+     */
+    public void setValidator( LdapConnectionValidator validator )
+    {
+        this.validator = validator;
+    }
+
+
+    /**
+     * Checks a server : a connection is opened, then validated. The check duration
+     * is recorded as a latency sample.
+     *
+     * @param server The server to check
+     * @return <code>true</code> if the server is valid
+     */
+    public boolean checkServer( LdapServerSet.Server server )
+    {
+        long start = System.nanoTime();
+        LdapConnection connection = null;
+
+        try
+        {
+            connection = getServerFactory( server ).newLdapConnection();
+
+            if ( validator.validate( connection ) )
+            {
+                server.recordLatency( System.nanoTime() - start );
+
+                return true;
+            }
+        }
+        catch ( LdapException | RuntimeException e )
+        {
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( I18n.msg( I18n.MSG_04181_SERVER_STILL_FAILING, server, e.getMessage() ) );
+            }
+        }
+        finally
+        {
+            if ( connection != null )
+            {
+                try
+                {
+                    connection.close();
+                }
+                catch ( IOException ioe )
+                {
+                    LOG.debug( I18n.msg( I18n.MSG_04159_UNABLE_TO_CLOSE_CONNECTION, ioe.getMessage() ) );
+                }
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Checks all the quarantined servers, releasing the ones which are valid again.
+     * This is done periodically in the background, unless the health checks are disabled.
+     */
+    public void checkQuarantinedServers()
+    {
+        for ( LdapServerSet.Server server : serverSet.getServers() )
+        {
+            if ( server.isQuarantined() && checkServer( server ) )
+            {
+                serverSet.release( server );
+            }
+        }
+    }
+
+
+    /**
+     * Stops the health checks
+     */
+    @Override
+    public void close()
+    {
+        if ( healthChecker != null )
+        {
+            healthChecker.shutdownNow();
+        }
+    }
+}
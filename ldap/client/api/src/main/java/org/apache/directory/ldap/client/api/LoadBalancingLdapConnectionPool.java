@@ -0,0 +1,201 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+
+
+/**
+ * A set of {@link LdapConnectionPool}s, one per server of a {@link LdapServerSet}. Each
+ * borrowed connection is taken from the pool of the server selected by the server set
+ * strategy, and must be released through this class so that it goes back to its pool.
+ * <br>
+ * A server which can't give a connection is quarantined, and the next selected server
+ * is tried.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LoadBalancingLdapConnectionPool implements Closeable
+{
+    /** The load balancing connection factory */
+    private final LoadBalancingLdapConnectionFactory connectionFactory;
+
+    /** The configuration of each server pool */
+    private final GenericObjectPoolConfig poolConfig;
+
+    /** The server pools */
+    private final Map<LdapServerSet.Server, LdapConnectionPool> pools = new ConcurrentHashMap<>();
+
+
+    /**
+     * Creates a new LoadBalancingLdapConnectionPool instance
+     *
+     * @param connectionFactory The factory giving access to each server
+     * @param poolConfig The configuration of each server pool
+     */
+    public LoadBalancingLdapConnectionPool( LoadBalancingLdapConnectionFactory connectionFactory,
+        GenericObjectPoolConfig poolConfig )
+    {
+        this.connectionFactory = connectionFactory;
+        this.poolConfig = poolConfig;
+    }
+
+
+    /**
+     * Gets the pool of a server, creating it if needed
+     *
+     * @param server The server
+     * @return The server pool
+     */
+    public LdapConnectionPool getPool( LdapServerSet.Server server )
+    {
+        return pools.computeIfAbsent( server, s -> new LdapConnectionPool(
+            new ValidatingPoolableLdapConnectionFactory( connectionFactory.getServerFactory( s ) ), poolConfig ) );
+    }
+
+
+    /**
+     * Gives a LdapConnection fetched from the pool of the selected server.
+     *
+     * @return A {@link LoadBalancedLdapConnection}
+     * @throws LdapException If no server can give a connection
+     */
+    public LdapConnection getConnection() throws LdapException
+    {
+        return getConnection( Collections.<LdapServerSet.Server>emptySet() );
+    }
+
+
+    /**
+     * Gives a LdapConnection fetched from the pool of the selected server, ignoring
+     * some servers.
+     *
+     * @param excluded The servers that must not be used
+     * @return A {@link LoadBalancedLdapConnection}
+     * @throws LdapException If no other server can give a connection
+     */
+    public LdapConnection getConnection( Collection<LdapServerSet.Server> excluded ) throws LdapException
+    {
+        LdapServerSet serverSet = connectionFactory.getServerSet();
+        List<LdapServerSet.Server> tried = new ArrayList<>( excluded );
+        LdapException failure = null;
+        LdapServerSet.Server server = serverSet.select( tried );
+
+        while ( server != null )
+        {
+            tried.add( server );
+
+            try
+            {
+                LdapConnection connection = getPool( server ).getConnection();
+                serverSet.release( server );
+
+                return new LoadBalancedLdapConnection( connection, serverSet, server );
+            }
+            catch ( LdapException e )
+            {
+                if ( !LoadBalancingLdapConnectionFactory.isServerFailure( e ) )
+                {
+                    throw e;
+                }
+
+                serverSet.quarantine( server, e );
+                failure = e;
+            }
+
+            server = serverSet.select( tried );
+        }
+
+        throw new LdapException( I18n.err( I18n.ERR_04181_NO_SERVER_AVAILABLE, serverSet ), failure );
+    }
+
+
+    /**
+     * Places the given LdapConnection back in the pool it was borrowed from.
+     *
+     * @param connection The connection given by {@link #getConnection()}
+     * @throws LdapException If an error occurs while releasing the connection
+     */
+    public void releaseConnection( LdapConnection connection ) throws LdapException
+    {
+        LoadBalancedLdapConnection balanced = ( LoadBalancedLdapConnection ) connection;
+
+        getPool( balanced.getServer() ).releaseConnection( balanced.wrapped() );
+    }
+
+
+    /**
+     * Creates connections to each available server, so that the first borrowers don't wait
+     * for the connection, TLS handshake and bind. A server which can't give a connection
+     * is quarantined.
+     *
+     * @param count The number of connections to create for each server
+     */
+    public void prewarm( int count )
+    {
+        LdapServerSet serverSet = connectionFactory.getServerSet();
+
+        for ( LdapServerSet.Server server : serverSet.getServers() )
+        {
+            if ( server.isQuarantined() )
+            {
+                continue;
+            }
+
+            try
+            {
+                getPool( server ).prewarm( count );
+            }
+            catch ( LdapException e )
+            {
+                if ( LoadBalancingLdapConnectionFactory.isServerFailure( e ) )
+                {
+                    serverSet.quarantine( server, e );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Closes all the server pools
+     */
+    @Override
+    public void close()
+    {
+        for ( LdapConnectionPool pool : pools.values() )
+        {
+            pool.close();
+        }
+
+        pools.clear();
+    }
+}
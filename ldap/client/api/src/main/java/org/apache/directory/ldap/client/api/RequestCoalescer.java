@@ -0,0 +1,159 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.UnaryOperator;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+
+
+/**
+ * Coalesces the identical concurrent requests : while a request is being processed, the
+ * threads sending the same request (as defined by the key equality) don't send it again,
+ * they wait for the result of the first one. Nothing is kept once the request is done :
+ * this is not a cache.
+ *
+ * @param <K> The request key type, usually a {@link SearchRequestKey}
+ * @param <V> The result type
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class RequestCoalescer<K, V>
+{
+    /** The requests being processed */
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /** The function giving the waiting threads their own copy of the result */
+    private final UnaryOperator<V> copier;
+
+    /**
+     * The request to execute
+     *
+     * @param <V> The result type
+     */
+    @FunctionalInterface
+    public interface Request<V>
+    {
+        /**
+         * Executes the request
+         *
+         * @return The result
+         * @throws LdapException If the request failed
+         */
+        V execute() throws LdapException;
+    }
+
+
+    /**
+     * Creates a new RequestCoalescer instance
+     *
+     * @param copier The function giving each waiting thread its own copy of a non null result,
+     * for mutable results like entries
+     */
+    public RequestCoalescer( UnaryOperator<V> copier )
+    {
+        this.copier = copier;
+    }
+
+
+    /**
+     * Executes a request, unless the same request is already being executed by another
+     * thread : in this case, waits for its result. The failures are shared too.
+     *
+     * @param key The request key
+     * @param request The request
+     * @return The result
+     * @throws LdapException If the request failed
+     */
+    public V execute( K key, Request<V> request ) throws LdapException
+    {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent( key, future );
+
+        if ( running != null )
+        {
+            return await( running );
+        }
+
+        try
+        {
+            V result = request.execute();
+            future.complete( result );
+
+            return result;
+        }
+        catch ( LdapException | RuntimeException | Error e )
+        {
+            future.completeExceptionally( e );
+
+            throw e;
+        }
+        finally
+        {
+            inFlight.remove( key, future );
+        }
+    }
+
+
+    private V await( CompletableFuture<V> running ) throws LdapException
+    {
+        try
+        {
+            V result = running.get();
+
+            return result == null ? null : copier.apply( result );
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new LdapException( ie.getMessage(), ie );
+        }
+        catch ( ExecutionException ee )
+        {
+            Throwable cause = ee.getCause();
+
+            if ( cause instanceof LdapException )
+            {
+                throw ( LdapException ) cause;
+            }
+
+            if ( cause instanceof Error )
+            {
+                throw ( Error ) cause;
+            }
+
+            throw ( RuntimeException ) cause;
+        }
+    }
+
+
+    /**
+     * @return The number of requests being executed
+     */
+    public int getInFlight()
+    {
+        return inFlight.size();
+    }
+}
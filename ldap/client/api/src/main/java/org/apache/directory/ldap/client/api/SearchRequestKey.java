@@ -0,0 +1,234 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+
+
+/**
+ * A canonical key of a read request, built from the fields of a SearchRequest : two
+ * requests with the same key get the same result. The requested attributes are compared
+ * ignoring their case and order, the filter is compared using its string representation,
+ * and the message ID is ignored.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class SearchRequestKey
+{
+    /** The base Dn */
+    private final Dn baseDn;
+
+    /** The scope */
+    private final SearchScope scope;
+
+    /** The filter, null for a lookup */
+    private final String filter;
+
+    /** The requested attributes, lower cased and sorted */
+    private final Set<String> attributes;
+
+    /** The size limit */
+    private final long sizeLimit;
+
+    /** The time limit */
+    private final int timeLimit;
+
+    /** The alias dereferencing mode */
+    private final AliasDerefMode derefAliases;
+
+    /** The types only flag */
+    private final boolean typesOnly;
+
+    /** The controls */
+    private final Set<Control> controls;
+
+    /** The precomputed hash code */
+    private final int hashCode;
+
+
+    /**
+     * Creates the key of a lookup, which only depends on the entry Dn and the requested attributes
+     *
+     * @param dn The entry Dn
+     * @param attributes The requested attributes
+     */
+    public SearchRequestKey( Dn dn, String... attributes )
+    {
+        baseDn = dn;
+        scope = SearchScope.OBJECT;
+        filter = null;
+        this.attributes = normalize( attributes );
+        sizeLimit = 0L;
+        timeLimit = 0;
+        derefAliases = null;
+        typesOnly = false;
+        controls = Collections.emptySet();
+        hashCode = computeHashCode();
+    }
+
+
+    /**
+     * Creates the key of a search request
+     *
+     * @param searchRequest The search request
+     */
+    public SearchRequestKey( SearchRequest searchRequest )
+    {
+        baseDn = searchRequest.getBase();
+        scope = searchRequest.getScope();
+        filter = String.valueOf( searchRequest.getFilter() );
+        attributes = normalize( searchRequest.getAttributes().toArray( new String[0] ) );
+        sizeLimit = searchRequest.getSizeLimit();
+        timeLimit = searchRequest.getTimeLimit();
+        derefAliases = searchRequest.getDerefAliases();
+        typesOnly = searchRequest.getTypesOnly();
+        controls = new HashSet<>( searchRequest.getControls().values() );
+        hashCode = computeHashCode();
+    }
+
+
+    private static Set<String> normalize( String[] attributes )
+    {
+        Set<String> normalized = new TreeSet<>();
+
+        if ( attributes != null )
+        {
+            for ( String attribute : attributes )
+            {
+                normalized.add( attribute.toLowerCase( Locale.ROOT ) );
+            }
+        }
+
+        return normalized;
+    }
+
+
+    private int computeHashCode()
+    {
+        int h = 37;
+        h = h * 17 + baseDn.hashCode();
+        h = h * 17 + scope.hashCode();
+        h = h * 17 + ( filter == null ? 0 : filter.hashCode() );
+        h = h * 17 + attributes.hashCode();
+        h = h * 17 + Long.hashCode( sizeLimit );
+        h = h * 17 + timeLimit;
+        h = h * 17 + ( derefAliases == null ? 0 : derefAliases.hashCode() );
+        h = h * 17 + ( typesOnly ? 1 : 0 );
+
+        return h * 17 + controls.hashCode();
+    }
+
+
+    /**
+     * @return The base Dn
+     */
+    public Dn getBaseDn()
+    {
+        return baseDn;
+    }
+
+
+    /**
+     * @return The scope
+     */
+    public SearchScope getScope()
+    {
+        return scope;
+    }
+
+
+    /**
+     * Tells if the result of the request may contain the given entry, considering only
+     * the base Dn and the scope.
+     *
+     * @param dn The entry Dn
+     * @return <code>true</code> if the entry is in the scope of the request
+     */
+    public boolean isInScope( Dn dn )
+    {
+        switch ( scope )
+        {
+            case OBJECT:
+                return baseDn.equals( dn );
+
+            case ONELEVEL:
+                return baseDn.equals( dn.getParent() );
+
+            default:
+                return dn.isDescendantOf( baseDn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+
+        if ( !( o instanceof SearchRequestKey ) )
+        {
+            return false;
+        }
+
+        SearchRequestKey that = ( SearchRequestKey ) o;
+
+        return ( hashCode == that.hashCode ) && ( sizeLimit == that.sizeLimit ) && ( timeLimit == that.timeLimit )
+            && ( typesOnly == that.typesOnly ) && ( scope == that.scope ) && ( derefAliases == that.derefAliases )
+            && baseDn.equals( that.baseDn ) && ( filter == null ? that.filter == null : filter.equals( that.filter ) )
+            && attributes.equals( that.attributes ) && controls.equals( that.controls );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return baseDn + " " + scope + " " + filter + " " + attributes;
+    }
+}
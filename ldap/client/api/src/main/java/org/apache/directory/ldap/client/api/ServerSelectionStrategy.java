@@ -0,0 +1,111 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.List;
+
+
+/**
+ * The strategies used by a {@link LdapServerSet} to select the server a new connection or
+ * a new request is sent to. The quarantined servers are never proposed to the strategy,
+ * unless all the servers are quarantined.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public enum ServerSelectionStrategy
+{
+    /** Each server is used in turn */
+    ROUND_ROBIN
+    {
+        @Override
+        LdapServerSet.Server select( List<LdapServerSet.Server> servers, int sequence )
+        {
+            return servers.get( Math.floorMod( sequence, servers.size() ) );
+        }
+    },
+
+    /** The server with the fewest requests in progress is used */
+    LEAST_OUTSTANDING_REQUESTS
+    {
+        @Override
+        LdapServerSet.Server select( List<LdapServerSet.Server> servers, int sequence )
+        {
+            return selectLowest( servers, sequence, false );
+        }
+    },
+
+    /**
+     * The server with the lowest expected latency is used. The expected latency is the
+     * exponentially weighted moving average of the measured latencies, multiplied by the
+     * number of requests in progress plus one, so that a fast server does not get all
+     * the load.
+     */
+    EWMA_LATENCY
+    {
+        @Override
+        LdapServerSet.Server select( List<LdapServerSet.Server> servers, int sequence )
+        {
+            return selectLowest( servers, sequence, true );
+        }
+    };
+
+    /**
+     * Selects a server
+     *
+     * @param servers The candidate servers, never empty
+     * @param sequence A number incremented for each selection
+     * @return The selected server
+     */
+    abstract LdapServerSet.Server select( List<LdapServerSet.Server> servers, int sequence );
+
+
+    /**
+     * Selects the server with the lowest cost. The scan starts at a position derived from
+     * the sequence, so that the ties are spread over the servers.
+     */
+    private static LdapServerSet.Server selectLowest( List<LdapServerSet.Server> servers, int sequence,
+        boolean useLatency )
+    {
+        int size = servers.size();
+        int start = Math.floorMod( sequence, size );
+        LdapServerSet.Server selected = null;
+        long lowest = Long.MAX_VALUE;
+
+        for ( int i = 0; i < size; i++ )
+        {
+            LdapServerSet.Server server = servers.get( ( start + i ) % size );
+            long cost = server.getOutstandingRequests();
+
+            if ( useLatency )
+            {
+                cost = server.getLatency() * ( cost + 1L );
+            }
+
+            if ( cost < lowest )
+            {
+                lowest = cost;
+                selected = server;
+            }
+        }
+
+        return selected;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+
+/**
+ * A cache of the SSLContexts used by the connections. Building a SSLContext is expensive,
+ * but above all, the TLS sessions are cached by the SSLContext : a connection using the
+ * same SSLContext as a previous connection to the same server resumes its TLS session
+ * (using a session ID, or a session ticket with TLS 1.3) instead of doing a full handshake.
+ * <br>
+ * The SSLContexts are shared by the configurations with the same fingerprint : the same SSL
+ * protocol, session cache settings, and the same key managers, trust managers and secure
+ * random instances. The configurations copied with
+ * {@link LdapConnectionConfig#LdapConnectionConfig(LdapConnectionConfig)} share their SSLContext.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class SslContextCache
+{
+    /** The maximum number of cached SSLContexts */
+    private static final int MAXIMUM_SIZE = 64;
+
+    /** The cached SSLContexts */
+    private static final Cache<Fingerprint, SSLContext> CACHE = Caffeine.newBuilder()
+        .maximumSize( MAXIMUM_SIZE )
+        .expireAfterAccess( 1L, TimeUnit.HOURS )
+        .build();
+
+
+    private SslContextCache()
+    {
+    }
+
+
+    /**
+     * The fingerprint of the SSL configuration. The managers and the secure random are
+     * compared by identity.
+     */
+    private static final class Fingerprint
+    {
+        /** The SSL protocol */
+        private final String sslProtocol;
+
+        /** The key managers */
+        private final KeyManager[] keyManagers;
+
+        /** The trust managers */
+        private final TrustManager[] trustManagers;
+
+        /** The secure random */
+        private final SecureRandom secureRandom;
+
+        /** The client session cache size */
+        private final int sessionCacheSize;
+
+        /** The client session timeout */
+        private final int sessionTimeout;
+
+        /** The precomputed hash code */
+        private final int hashCode;
+
+
+        private Fingerprint( LdapConnectionConfig config )
+        {
+            sslProtocol = config.getSslProtocol();
+            keyManagers = config.getKeyManagers() == null ? null : config.getKeyManagers().clone();
+            trustManagers = config.getTrustManagers() == null ? null : config.getTrustManagers().clone();
+            secureRandom = config.getSecureRandom();
+            sessionCacheSize = config.getSslSessionCacheSize();
+            sessionTimeout = config.getSslSessionTimeout();
+
+            int h = 37;
+            h = h * 17 + Objects.hashCode( sslProtocol );
+            h = h * 17 + identityHashCode( keyManagers );
+            h = h * 17 + identityHashCode( trustManagers );
+            h = h * 17 + System.identityHashCode( secureRandom );
+            h = h * 17 + sessionCacheSize;
+            hashCode = h * 17 + sessionTimeout;
+        }
+
+
+        private static int identityHashCode( Object[] objects )
+        {
+            if ( objects == null )
+            {
+                return 0;
+            }
+
+            int h = 1;
+
+            for ( Object object : objects )
+            {
+                h = h * 31 + System.identityHashCode( object );
+            }
+
+            return h;
+        }
+
+
+        private static boolean sameElements( Object[] objects1, Object[] objects2 )
+        {
+            if ( ( objects1 == null ) || ( objects2 == null ) )
+            {
+                return objects1 == objects2;
+            }
+
+            if ( objects1.length != objects2.length )
+            {
+                return false;
+            }
+
+            for ( int i = 0; i < objects1.length; i++ )
+            {
+                if ( objects1[i] != objects2[i] )
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+
+            if ( !( o instanceof Fingerprint ) )
+            {
+                return false;
+            }
+
+            Fingerprint that = ( Fingerprint ) o;
+
+            return ( hashCode == that.hashCode ) && ( secureRandom == that.secureRandom )
+                && ( sessionCacheSize == that.sessionCacheSize ) && ( sessionTimeout == that.sessionTimeout )
+                && Objects.equals( sslProtocol, that.sslProtocol ) && sameElements( keyManagers, that.keyManagers )
+                && sameElements( trustManagers, that.trustManagers );
+        }
+    }
+
+
+    /**
+     * Gets the SSLContext of a configuration, creating it if needed
+     *
+     * @param config The connection configuration
+     * @return The shared SSLContext
+     * @throws GeneralSecurityException If the SSLContext can't be created
+     */
+    public static SSLContext getSslContext( LdapConnectionConfig config ) throws GeneralSecurityException
+    {
+        Fingerprint fingerprint = new Fingerprint( config );
+        SSLContext sslContext = CACHE.getIfPresent( fingerprint );
+
+        if ( sslContext == null )
+        {
+            // Two threads may create the same context : only the first one is kept
+            sslContext = createSslContext( config );
+            SSLContext cached = CACHE.asMap().putIfAbsent( fingerprint, sslContext );
+
+            if ( cached != null )
+            {
+                sslContext = cached;
+            }
+        }
+
+        return sslContext;
+    }
+
+
+    /**
+     * Creates a SSLContext, not cached
+     *
+     * @param config The connection configuration
+     * @return The SSLContext
+     * @throws GeneralSecurityException If the SSLContext can't be created
+     */
+    public static SSLContext createSslContext( LdapConnectionConfig config ) throws GeneralSecurityException
+    {
+        SSLContext sslContext = SSLContext.getInstance( config.getSslProtocol() );
+        sslContext.init( config.getKeyManagers(), config.getTrustManagers(), config.getSecureRandom() );
+
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+
+        if ( sessionContext != null )
+        {
+            if ( config.getSslSessionCacheSize() >= 0 )
+            {
+                sessionContext.setSessionCacheSize( config.getSslSessionCacheSize() );
+            }
+
+            if ( config.getSslSessionTimeout() >= 0 )
+            {
+                sessionContext.setSessionTimeout( config.getSslSessionTimeout() );
+            }
+        }
+
+        return sslContext;
+    }
+
+
+    /**
+     * Removes all the cached SSLContexts, for instance after a certificate change
+     */
+    public static void clear()
+    {
+        CACHE.invalidateAll();
+    }
+}
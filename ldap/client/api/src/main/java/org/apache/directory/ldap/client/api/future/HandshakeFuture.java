@@ -24,10 +24,13 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
- * A Future to manage StartTLS handshake
+ * A Future to manage StartTLS handshake. The waiting threads are parked using a
+ * {@link ReentrantLock}, which does not pin the carrier of a virtual thread.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -37,7 +40,13 @@ public class HandshakeFuture implements Future<Boolean>
     private volatile boolean done = false;
 
     /** flag to determine if this future is cancelled */
-    protected boolean cancelled = false;
+    protected volatile boolean cancelled = false;
+
+    /** The lock protecting the state of the handshake */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The condition signaled when the handshake is completed or cancelled */
+    private final Condition completed = lock.newCondition();
 
     /**
      * Creates a new instance of HandshakeFuture.
@@ -52,24 +61,42 @@ public class HandshakeFuture implements Future<Boolean>
      * Cancel the Future
      *
      */
-    public synchronized void cancel()
+    public void cancel()
     {
-        // set the cancel flag first
-        cancelled = true;
+        lock.lock();
 
-        // Notify the future
-        notifyAll();
+        try
+        {
+            // set the cancel flag first
+            cancelled = true;
+
+            // Notify the future
+            completed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
     /**
      * Set the Future to done when the TLS handshake has completed
      */
-    public synchronized void secured()
+    public void secured()
     {
-        done = true;
+        lock.lock();
+
+        try
+        {
+            done = true;
 
-        notifyAll();
+            completed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -77,20 +104,29 @@ public class HandshakeFuture implements Future<Boolean>
      * {@inheritDoc}
      */
     @Override
-    public synchronized boolean cancel( boolean mayInterruptIfRunning )
+    public boolean cancel( boolean mayInterruptIfRunning )
     {
-        if ( cancelled )
+        lock.lock();
+
+        try
         {
-            return cancelled;
-        }
+            if ( cancelled )
+            {
+                return cancelled;
+            }
 
-        // set the cancel flag first
-        cancelled = true;
+            // set the cancel flag first
+            cancelled = true;
 
-        // Notify the future
-        notifyAll();
+            // Notify the future
+            completed.signalAll();
 
-        return cancelled;
+            return cancelled;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -98,14 +134,23 @@ public class HandshakeFuture implements Future<Boolean>
      * {@inheritDoc}
      */
     @Override
-    public synchronized Boolean get() throws InterruptedException, ExecutionException
+    public Boolean get() throws InterruptedException, ExecutionException
     {
-        while ( !done && !cancelled )
+        lock.lock();
+
+        try
         {
-            wait();
-        }
+            while ( !done && !cancelled )
+            {
+                completed.await();
+            }
 
-        return done;
+            return done;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -113,16 +158,27 @@ public class HandshakeFuture implements Future<Boolean>
      * {@inheritDoc}
      */
     @Override
-    public synchronized Boolean get( long timeout, TimeUnit unit )
+    public Boolean get( long timeout, TimeUnit unit )
         throws InterruptedException, ExecutionException, TimeoutException
     {
-        // no need to wait if already done or cancelled
-        if ( !done && !cancelled )
+        lock.lock();
+
+        try
         {
-            wait( unit.toMillis( timeout ) );
-        }
+            long remaining = unit.toNanos( timeout );
 
-        return done;
+            // no need to wait if already done or cancelled
+            while ( !done && !cancelled && ( remaining > 0L ) )
+            {
+                remaining = completed.awaitNanos( remaining );
+            }
+
+            return done;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -20,9 +20,12 @@
 package org.apache.directory.ldap.client.api.future;
 
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.message.Response;
@@ -52,6 +55,15 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     /** The connection used by the request */
     protected LdapConnection connection;
 
+    /** The lock protecting the listeners */
+    private final ReentrantLock listenersLock = new ReentrantLock();
+
+    /** A flag set to TRUE when a response has been set or the future cancelled, written under the lock */
+    private volatile boolean answered = false;
+
+    /** The listeners waiting for the first response, guarded by the lock */
+    private List<Runnable> listeners;
+
 
     /**
      * Creates a new instance of ResponseFuture.
@@ -67,6 +79,15 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     }
 
 
+    /**
+     * @return The message ID of the request
+     */
+    public int getMessageId()
+    {
+        return messageId;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -87,6 +108,8 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
             // then clear the queue, cause the might be some incoming messages before this abandon request
             // hits the server
             queue.clear();
+
+            notifyListeners();
         }
 
         return cancelled;
@@ -114,6 +137,79 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     public void set( R response ) throws InterruptedException
     {
         queue.add( response );
+        notifyListeners();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addAnswerListener( Runnable listener )
+    {
+        listenersLock.lock();
+
+        try
+        {
+            if ( !answered )
+            {
+                if ( listeners == null )
+                {
+                    listeners = new ArrayList<>( 1 );
+                }
+
+                listeners.add( listener );
+
+                return;
+            }
+        }
+        finally
+        {
+            listenersLock.unlock();
+        }
+
+        listener.run();
+    }
+
+
+    /**
+     * Calls the listeners waiting for the first response, outside of the lock
+     */
+    private void notifyListeners()
+    {
+        // Avoid locking for each search entry
+        if ( answered )
+        {
+            return;
+        }
+
+        List<Runnable> answerListeners;
+
+        listenersLock.lock();
+
+        try
+        {
+            if ( answered )
+            {
+                return;
+            }
+
+            answered = true;
+            answerListeners = listeners;
+            listeners = null;
+        }
+        finally
+        {
+            listenersLock.unlock();
+        }
+
+        if ( answerListeners != null )
+        {
+            for ( Runnable listener : answerListeners )
+            {
+                listener.run();
+            }
+        }
     }
 
 
@@ -177,6 +273,7 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     {
         // set the cancel flag first
         cancelled = true;
+        notifyListeners();
     }
 
 
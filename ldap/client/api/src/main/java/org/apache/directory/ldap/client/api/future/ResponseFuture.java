@@ -60,4 +60,14 @@ public interface ResponseFuture<R extends Response> extends Future<R>
      *
      */
     void cancel();
+
+
+    /**
+     * Registers a listener called once, when the first response is set in this Future or when
+     * it is cancelled. The listener is called immediately if this has already happened. It is
+     * called by the thread setting the response, which must not be blocked.
+     *
+     * @param listener The listener
+     */
+    void addAnswerListener( Runnable listener );
 }
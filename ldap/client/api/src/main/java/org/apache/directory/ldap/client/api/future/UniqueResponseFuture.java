@@ -19,7 +19,11 @@
  */
 package org.apache.directory.ldap.client.api.future;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.directory.api.ldap.model.message.Response;
 import org.apache.directory.ldap.client.api.LdapConnection;
@@ -27,6 +31,9 @@ import org.apache.directory.ldap.client.api.LdapConnection;
 /**
  * A Future implementation used in LdapConnection operations for operations
  * that only get one single response.
+ * <br>
+ * The waiting threads are parked using a {@link ReentrantLock} instead of a monitor, so that
+ * a virtual thread waiting for a response does not pin its carrier thread.
  *
  * @param <R> The result type returned by this Future's <tt>get</tt> method
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
@@ -51,6 +58,18 @@ public abstract class UniqueResponseFuture<R extends Response> implements Respon
     /** A flag set to TRUE when the response has been received */
     private volatile boolean done = false;
 
+    /** The lock protecting the response */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The condition signaled when the response is set */
+    private final Condition responseSet = lock.newCondition();
+
+    /** A flag set to TRUE when the response has been set or the future cancelled, guarded by the lock */
+    private boolean answered = false;
+
+    /** The listeners waiting for the response, guarded by the lock */
+    private List<Runnable> listeners;
+
     /**
      * Creates a new instance of UniqueResponseFuture.
      *
@@ -64,19 +83,37 @@ public abstract class UniqueResponseFuture<R extends Response> implements Respon
     }
 
 
+    /**
+     * @return The message ID of the request
+     */
+    public int getMessageId()
+    {
+        return messageId;
+    }
+
+
     /**
      * {@inheritDoc}
      * @throws InterruptedException if the operation has been cancelled by client
      */
     @Override
-    public synchronized R get() throws InterruptedException
+    public R get() throws InterruptedException
     {
-        while ( !done && !cancelled )
+        lock.lock();
+
+        try
         {
-            wait();
-        }
+            while ( !done && !cancelled )
+            {
+                responseSet.await();
+            }
 
-        return response;
+            return response;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -85,15 +122,26 @@ public abstract class UniqueResponseFuture<R extends Response> implements Respon
      * @throws InterruptedException if the operation has been cancelled by client
      */
     @Override
-    public synchronized R get( long timeout, TimeUnit unit ) throws InterruptedException
+    public R get( long timeout, TimeUnit unit ) throws InterruptedException
     {
-        // no need to wait if already done or cancelled
-        if ( !done && !cancelled )
+        lock.lock();
+
+        try
         {
-            wait( unit.toMillis( timeout ) );
-        }
+            long remaining = unit.toNanos( timeout );
+
+            // no need to wait if already done or cancelled
+            while ( !done && !cancelled && ( remaining > 0L ) )
+            {
+                remaining = responseSet.awaitNanos( remaining );
+            }
 
-        return response;
+            return response;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -103,13 +151,68 @@ public abstract class UniqueResponseFuture<R extends Response> implements Respon
      * @param response The response to add into the Future
      * @throws InterruptedException if the operation has been cancelled by client
      */
-    public synchronized void set( R response ) throws InterruptedException
+    public void set( R response ) throws InterruptedException
     {
-        this.response = response;
+        List<Runnable> answerListeners;
 
-        done = response != null;
+        lock.lock();
+
+        try
+        {
+            this.response = response;
+
+            done = response != null;
+            answered = true;
+
+            responseSet.signalAll();
+
+            answerListeners = listeners;
+            listeners = null;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        // The listeners are called outside of the lock
+        if ( answerListeners != null )
+        {
+            for ( Runnable listener : answerListeners )
+            {
+                listener.run();
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addAnswerListener( Runnable listener )
+    {
+        lock.lock();
+
+        try
+        {
+            if ( !answered )
+            {
+                if ( listeners == null )
+                {
+                    listeners = new ArrayList<>( 1 );
+                }
+
+                listeners.add( listener );
+
+                return;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
 
-        notifyAll();
+        listener.run();
     }
 
 
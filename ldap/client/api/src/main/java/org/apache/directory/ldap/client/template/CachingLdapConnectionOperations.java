@@ -0,0 +1,853 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.template;
+
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.LdapConstants;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddResponse;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteResponse;
+import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.apache.directory.api.ldap.model.message.ModifyResponse;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.EntryChange;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearch;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearchImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
+import org.apache.directory.ldap.client.api.SearchRequestKey;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.directory.ldap.client.api.search.FilterBuilder;
+import org.apache.directory.ldap.client.template.exception.LdapRuntimeException;
+import org.apache.directory.ldap.client.template.exception.PasswordException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+
+/**
+ * A {@link LdapConnectionOperations} decorator caching the lookup and search results.
+ * The results are cached by base Dn, scope, filter, requested attributes, size limit,
+ * alias dereferencing mode, types only flag and controls, during a time to live. The
+ * entries are cached, not the mapped objects : the {@link EntryMapper} is called on each
+ * hit, with a copy of the cached entries.
+ * <br>
+ * The cache is bounded by a weight : each cached result weighs one, plus one per entry.
+ * When many threads ask for the same missing result, only one of them sends the request,
+ * the other ones wait for its result.
+ * <br>
+ * The add, delete and modify operations sent through this instance invalidate the cached
+ * results which may contain the modified entry. The changes done by other clients can be
+ * handled using {@link #invalidateOnChanges(LdapAsyncConnection, Dn)}, or by calling
+ * {@link #invalidate(Dn)} from any other notification mechanism. A result read from the
+ * server while a cached result is invalidated is returned, but not cached, as it may have
+ * been read before the change.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CachingLdapConnectionOperations implements LdapConnectionOperations
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( CachingLdapConnectionOperations.class );
+
+    /** The mapper used to get the entries from the decorated operations */
+    private static final EntryMapper<Entry> IDENTITY_MAPPER = entry -> entry;
+
+    /** The time the persistent search listener waits for a change before checking the connection, in milliseconds */
+    private static final long LISTENER_POLL_INTERVAL = 1000L;
+
+    /** The decorated operations */
+    private final LdapConnectionOperations delegate;
+
+    /** The cached results */
+    private final Cache<SearchRequestKey, List<Entry>> cache;
+
+    /** The number of invalidations, used to discard the results loaded while invalidating */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** The factory used to create the search requests */
+    private ModelFactory modelFactory = new ModelFactoryImpl();
+
+
+    /**
+     * Creates a new CachingLdapConnectionOperations instance
+     *
+     * @param delegate The decorated operations
+     * @param maximumWeight The maximum weight of the cached results : one per result, plus one per entry
+     * @param timeToLive The time a result is kept after having been read
+     * @param unit The time to live unit
+     */
+    public CachingLdapConnectionOperations( LdapConnectionOperations delegate, long maximumWeight, long timeToLive,
+        TimeUnit unit )
+    {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight( maximumWeight )
+            .weigher( ( SearchRequestKey key, List<Entry> entries ) -> entries.size() + 1 )
+            .expireAfterWrite( timeToLive, unit )
+            .recordStats()
+            .build();
+    }
+
+
+    private static <T> T map( Entry entry, EntryMapper<T> entryMapper )
+    {
+        try
+        {
+            // The mapper gets a copy : the cached entry must not be modified
+            return entryMapper.map( entry.clone() );
+        }
+        catch ( LdapException e )
+        {
+            throw new LdapRuntimeException( e );
+        }
+    }
+
+
+    /**
+     * Gets a cached result, or loads it. The loaded result is not cached if an invalidation
+     * happened while loading it, as it may be stale.
+     *
+     * @param key The result key
+     * @param loader The loader reading the result from the server
+     * @return The result
+     */
+    private List<Entry> get( SearchRequestKey key, Supplier<List<Entry>> loader )
+    {
+        long[] loadGeneration = { -1L };
+
+        List<Entry> entries = cache.get( key, k ->
+        {
+            loadGeneration[0] = generation.get();
+
+            return loader.get();
+        } );
+
+        if ( ( loadGeneration[0] != -1L ) && ( loadGeneration[0] != generation.get() ) )
+        {
+            // The invalidation may have missed the result, which was not stored yet
+            cache.asMap().remove( key, entries );
+        }
+
+        return entries;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AddResponse add( AddRequest addRequest )
+    {
+        try
+        {
+            return delegate.add( addRequest );
+        }
+        finally
+        {
+            invalidate( addRequest.getEntryDn() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AddResponse add( Dn dn, Attribute... attributes )
+    {
+        try
+        {
+            return delegate.add( dn, attributes );
+        }
+        finally
+        {
+            invalidate( dn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AddResponse add( Dn dn, RequestBuilder<AddRequest> requestBuilder )
+    {
+        try
+        {
+            return delegate.add( dn, requestBuilder );
+        }
+        finally
+        {
+            invalidate( dn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PasswordWarning authenticate( String baseDn, String filter, SearchScope scope, char[] password )
+        throws PasswordException
+    {
+        return delegate.authenticate( baseDn, filter, scope, password );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PasswordWarning authenticate( Dn baseDn, String filter, SearchScope scope, char[] password )
+        throws PasswordException
+    {
+        return delegate.authenticate( baseDn, filter, scope, password );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PasswordWarning authenticate( SearchRequest searchRequest, char[] password ) throws PasswordException
+    {
+        return delegate.authenticate( searchRequest, password );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PasswordWarning authenticate( Dn userDn, char[] password ) throws PasswordException
+    {
+        return delegate.authenticate( userDn, password );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeleteResponse delete( DeleteRequest deleteRequest )
+    {
+        try
+        {
+            return delegate.delete( deleteRequest );
+        }
+        finally
+        {
+            invalidate( deleteRequest.getName() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeleteResponse delete( Dn dn )
+    {
+        try
+        {
+            return delegate.delete( dn );
+        }
+        finally
+        {
+            invalidate( dn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeleteResponse delete( Dn dn, RequestBuilder<DeleteRequest> requestBuilder )
+    {
+        try
+        {
+            return delegate.delete( dn, requestBuilder );
+        }
+        finally
+        {
+            invalidate( dn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <br>
+     * The changes done by the callback are not known : the cache is not invalidated.
+     */
+    @Override
+    public <T> T execute( ConnectionCallback<T> connectionCallback )
+    {
+        return delegate.execute( connectionCallback );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T lookup( Dn dn, EntryMapper<T> entryMapper )
+    {
+        return lookup( dn, null, entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T lookup( final Dn dn, final String[] attributes, EntryMapper<T> entryMapper )
+    {
+        SearchRequestKey key = new SearchRequestKey( dn, attributes );
+
+        List<Entry> entries = get( key, () ->
+        {
+            Entry entry = delegate.lookup( dn, attributes, IDENTITY_MAPPER );
+
+            return entry == null ? Collections.<Entry>emptyList() : Collections.singletonList( entry );
+        } );
+
+        return entries.isEmpty() ? null : map( entries.get( 0 ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void modifyPassword( Dn userDn, char[] newPassword ) throws PasswordException
+    {
+        try
+        {
+            delegate.modifyPassword( userDn, newPassword );
+        }
+        finally
+        {
+            invalidate( userDn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void modifyPassword( Dn userDn, char[] oldPassword, char[] newPassword ) throws PasswordException
+    {
+        try
+        {
+            delegate.modifyPassword( userDn, oldPassword, newPassword );
+        }
+        finally
+        {
+            invalidate( userDn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void modifyPassword( Dn userDn, char[] oldPassword, char[] newPassword, boolean asAdmin )
+        throws PasswordException
+    {
+        try
+        {
+            delegate.modifyPassword( userDn, oldPassword, newPassword, asAdmin );
+        }
+        finally
+        {
+            invalidate( userDn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ModifyResponse modify( ModifyRequest modifyRequest )
+    {
+        try
+        {
+            return delegate.modify( modifyRequest );
+        }
+        finally
+        {
+            invalidate( modifyRequest.getName() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ModifyResponse modify( Dn dn, RequestBuilder<ModifyRequest> requestBuilder )
+    {
+        try
+        {
+            return delegate.modify( dn, requestBuilder );
+        }
+        finally
+        {
+            invalidate( dn );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends ResultResponse> T responseOrException( T response )
+    {
+        return delegate.responseOrException( response );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<T> search( String baseDn, FilterBuilder filter, SearchScope scope,
+        EntryMapper<T> entryMapper )
+    {
+        return search( modelFactory.newSearchRequest( baseDn, filter, scope ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<T> search( String baseDn, String filter, SearchScope scope,
+        EntryMapper<T> entryMapper )
+    {
+        return search( modelFactory.newSearchRequest( baseDn, filter, scope ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<T> search( Dn baseDn, FilterBuilder filter, SearchScope scope,
+        EntryMapper<T> entryMapper )
+    {
+        return search( modelFactory.newSearchRequest( baseDn, filter, scope ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<T> search( Dn baseDn, String filter, SearchScope scope,
+        EntryMapper<T> entryMapper )
+    {
+        return search( modelFactory.newSearchRequest( baseDn, filter, scope ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<T> search( String baseDn, FilterBuilder filter, SearchScope scope,
+        String[] attributes, EntryMapper<T> entryMapper )
+    {
+        return search( modelFactory.newSearchRequest( baseDn, filter, scope, attributes ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<T> search( String baseDn, String filter, SearchScope scope,
+        String[] attributes, EntryMapper<T> entryMapper )
+    {
+        return search( modelFactory.newSearchRequest( baseDn, filter, scope, attributes ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<T> search( Dn baseDn, FilterBuilder filter, SearchScope scope,
+        String[] attributes, EntryMapper<T> entryMapper )
+    {
+        return search( modelFactory.newSearchRequest( baseDn, filter, scope, attributes ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<T> search( Dn baseDn, String filter, SearchScope scope,
+        String[] attributes, EntryMapper<T> entryMapper )
+    {
+        return search( modelFactory.newSearchRequest( baseDn, filter, scope, attributes ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<T> search( final SearchRequest searchRequest, EntryMapper<T> entryMapper )
+    {
+        SearchRequestKey key = new SearchRequestKey( searchRequest );
+
+        List<Entry> entries = get( key, () ->
+            Collections.unmodifiableList( delegate.search( searchRequest, IDENTITY_MAPPER ) ) );
+
+        List<T> results = new ArrayList<>( entries.size() );
+
+        for ( Entry entry : entries )
+        {
+            results.add( map( entry, entryMapper ) );
+        }
+
+        return results;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T searchFirst( String baseDn, FilterBuilder filter, SearchScope scope,
+        EntryMapper<T> entryMapper )
+    {
+        return searchFirst( modelFactory.newSearchRequest( baseDn, filter, scope ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T searchFirst( String baseDn, String filter, SearchScope scope,
+        EntryMapper<T> entryMapper )
+    {
+        return searchFirst( modelFactory.newSearchRequest( baseDn, filter, scope ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T searchFirst( Dn baseDn, FilterBuilder filter, SearchScope scope,
+        EntryMapper<T> entryMapper )
+    {
+        return searchFirst( modelFactory.newSearchRequest( baseDn, filter, scope ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T searchFirst( Dn baseDn, String filter, SearchScope scope,
+        EntryMapper<T> entryMapper )
+    {
+        return searchFirst( modelFactory.newSearchRequest( baseDn, filter, scope ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T searchFirst( String baseDn, FilterBuilder filter, SearchScope scope,
+        String[] attributes, EntryMapper<T> entryMapper )
+    {
+        return searchFirst( modelFactory.newSearchRequest( baseDn, filter, scope, attributes ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T searchFirst( String baseDn, String filter, SearchScope scope,
+        String[] attributes, EntryMapper<T> entryMapper )
+    {
+        return searchFirst( modelFactory.newSearchRequest( baseDn, filter, scope, attributes ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T searchFirst( Dn baseDn, FilterBuilder filter, SearchScope scope,
+        String[] attributes, EntryMapper<T> entryMapper )
+    {
+        return searchFirst( modelFactory.newSearchRequest( baseDn, filter, scope, attributes ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T searchFirst( Dn baseDn, String filter, SearchScope scope,
+        String[] attributes, EntryMapper<T> entryMapper )
+    {
+        return searchFirst( modelFactory.newSearchRequest( baseDn, filter, scope, attributes ), entryMapper );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T searchFirst( SearchRequest searchRequest, EntryMapper<T> entryMapper )
+    {
+        // Same as the template : the size limit is set to 1 while searching
+        long originalSizeLimit = searchRequest.getSizeLimit();
+
+        try
+        {
+            searchRequest.setSizeLimit( 1 );
+            List<T> entries = search( searchRequest, entryMapper );
+
+            return entries.isEmpty() ? null : entries.get( 0 );
+        }
+        finally
+        {
+            searchRequest.setSizeLimit( originalSizeLimit );
+        }
+    }
+
+
+    /**
+     * Removes the cached results which may contain the given entry : the lookups of
+     * this entry, and the searches whose scope contains it.
+     *
+     * @param dn The modified entry Dn
+     */
+    public void invalidate( Dn dn )
+    {
+        if ( dn == null )
+        {
+            invalidateAll();
+
+            return;
+        }
+
+        generation.incrementAndGet();
+        cache.asMap().keySet().removeIf( key -> key.isInScope( dn ) );
+    }
+
+
+    /**
+     * Removes all the cached results
+     */
+    public void invalidateAll()
+    {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+
+    /**
+     * Starts a persistent search on the given connection, invalidating the cached results
+     * which may contain each changed entry. The changes are read by a daemon thread. If the
+     * persistent search stops, or if its connection is closed, all the cached results are
+     * removed, as some changes may have been missed.
+     *
+     * @param connection The connection used for the persistent search. It must not be used
+     * for anything else, and its timeout does not apply.
+     * @param baseDn The base of the persistent search
+     * @return A Closeable stopping the persistent search
+     * @throws LdapException If the persistent search can't be sent
+     */
+    public Closeable invalidateOnChanges( LdapAsyncConnection connection, Dn baseDn ) throws LdapException
+    {
+        PersistentSearch persistentSearch = new PersistentSearchImpl();
+        persistentSearch.setChangesOnly( true );
+        persistentSearch.setReturnECs( true );
+        persistentSearch.setChangeTypes( PersistentSearch.CHANGE_TYPES_MAX );
+
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( baseDn );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setFilter( LdapConstants.OBJECT_CLASS_STAR );
+        searchRequest.addAttributes( SchemaConstants.NO_ATTRIBUTE );
+        searchRequest.addControl( persistentSearch );
+
+        final SearchFuture searchFuture = connection.searchAsync( searchRequest );
+
+        final Thread listener = new Thread( () ->
+        {
+            try
+            {
+                while ( !Thread.currentThread().isInterrupted() )
+                {
+                    // A closed connection cancels the search without adding a response to the queue
+                    Response response = searchFuture.get( LISTENER_POLL_INTERVAL, TimeUnit.MILLISECONDS );
+
+                    if ( response == null )
+                    {
+                        if ( searchFuture.isCancelled() || !connection.isConnected() )
+                        {
+                            LOG.warn( I18n.msg( I18n.MSG_04185_PERSISTENT_SEARCH_STOPPED, baseDn ) );
+
+                            break;
+                        }
+
+                        continue;
+                    }
+
+                    if ( response instanceof SearchResultDone )
+                    {
+                        LOG.warn( I18n.msg( I18n.MSG_04184_PERSISTENT_SEARCH_DONE, baseDn,
+                            ( ( SearchResultDone ) response ).getLdapResult() ) );
+
+                        break;
+                    }
+
+                    if ( response instanceof SearchResultEntry )
+                    {
+                        SearchResultEntry searchResultEntry = ( SearchResultEntry ) response;
+                        invalidate( searchResultEntry.getObjectName() );
+
+                        EntryChange entryChange = ( EntryChange ) searchResultEntry.getControl( EntryChange.OID );
+
+                        if ( ( entryChange != null ) && ( entryChange.getPreviousDn() != null ) )
+                        {
+                            invalidate( entryChange.getPreviousDn() );
+                        }
+                    }
+                }
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                invalidateAll();
+            }
+        }, "CachingLdapConnectionOperations " + baseDn );
+
+        listener.setDaemon( true );
+        listener.start();
+
+        return () ->
+        {
+            searchFuture.cancel( true );
+            listener.interrupt();
+        };
+    }
+
+
+    /**
+     * @return The number of results read from the cache
+     */
+    public long getHitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+
+    /**
+     * @return The number of results read from the server
+     */
+    public long getMissCount()
+    {
+        return cache.stats().missCount();
+    }
+
+
+    /**
+     * @return The ratio of results read from the cache, 1.0 if there was no request
+     */
+    public double getHitRate()
+    {
+        return cache.stats().hitRate();
+    }
+
+
+    /**
+     * @return The number of results removed from the cache because of its weight
+     */
+    public long getEvictionCount()
+    {
+        return cache.stats().evictionCount();
+    }
+
+
+    /**
+     * @return The current number of cached results
+     */
+    public long getSize()
+    {
+        return cache.estimatedSize();
+    }
+
+
+    /**
+     * Sets the <code>modelFactory</code> implementation used to create the search requests.
+     *
+     * @param modelFactory The model factory implementation
+     */
+    public void setModelFactory( ModelFactory modelFactory )
+    {
+        this.modelFactory = modelFactory;
+    }
+}
@@ -47,6 +47,8 @@ import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.ldap.client.api.EntryCursorImpl;
 import org.apache.directory.ldap.client.api.LdapConnection;
 import org.apache.directory.ldap.client.api.LdapConnectionPool;
+import org.apache.directory.ldap.client.api.RequestCoalescer;
+import org.apache.directory.ldap.client.api.SearchRequestKey;
 import org.apache.directory.ldap.client.api.search.FilterBuilder;
 import org.apache.directory.ldap.client.template.exception.LdapRequestUnsuccessfulException;
 import org.apache.directory.ldap.client.template.exception.LdapRuntimeException;
@@ -79,6 +81,8 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
     private final PasswordPolicyResponse passwordPolicyRequestControl;
     private PasswordPolicyResponder passwordPolicyResponder;
     private ModelFactory modelFactory;
+    private RequestCoalescer<SearchRequestKey, Entry> lookupCoalescer;
+    private RequestCoalescer<SearchRequestKey, List<Entry>> searchCoalescer;
 
 
     /**
@@ -342,21 +346,43 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
      * {@inheritDoc}
      */
     @Override
-    public <T> T lookup( Dn dn, String[] attributes, EntryMapper<T> entryMapper )
+    public <T> T lookup( final Dn dn, final String[] attributes, EntryMapper<T> entryMapper )
     {
-        LdapConnection connection = null;
         try
         {
-            connection = connectionPool.getConnection();
-            Entry entry = attributes == null
-                ? connection.lookup( dn )
-                : connection.lookup( dn, attributes );
+            Entry entry;
+
+            if ( lookupCoalescer == null )
+            {
+                entry = lookupEntry( dn, attributes );
+            }
+            else
+            {
+                entry = lookupCoalescer.execute( new SearchRequestKey( dn, attributes ),
+                    () -> lookupEntry( dn, attributes ) );
+            }
+
             return entry == null ? null : entryMapper.map( entry );
         }
         catch ( LdapException e )
         {
             throw new LdapRuntimeException( e );
         }
+    }
+
+
+    private Entry lookupEntry( Dn dn, String[] attributes ) throws LdapException
+    {
+        LdapConnection connection = null;
+
+        try
+        {
+            connection = connectionPool.getConnection();
+
+            return attributes == null
+                ? connection.lookup( dn )
+                : connection.lookup( dn, attributes );
+        }
         finally
         {
             returnLdapConnection( connection );
@@ -816,25 +842,53 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
      * {@inheritDoc}
      */
     @Override
-    public <T> List<T> search( SearchRequest searchRequest,
+    public <T> List<T> search( final SearchRequest searchRequest,
         EntryMapper<T> entryMapper )
     {
-        List<T> entries = new ArrayList<>();
-
-        LdapConnection connection = null;
         try
         {
-            connection = connectionPool.getConnection();
+            List<Entry> entries;
 
-            for ( Entry entry : new EntryCursorImpl( connection.search( searchRequest ) ) )
+            if ( searchCoalescer == null )
+            {
+                entries = searchEntries( searchRequest );
+            }
+            else
+            {
+                entries = searchCoalescer.execute( new SearchRequestKey( searchRequest ),
+                    () -> searchEntries( searchRequest ) );
+            }
+
+            List<T> results = new ArrayList<>( entries.size() );
+
+            for ( Entry entry : entries )
             {
-                entries.add( entryMapper.map( entry ) );
+                results.add( entryMapper.map( entry ) );
             }
+
+            return results;
         }
         catch ( LdapException e )
         {
             throw new LdapRuntimeException( e );
         }
+    }
+
+
+    private List<Entry> searchEntries( SearchRequest searchRequest ) throws LdapException
+    {
+        List<Entry> entries = new ArrayList<>();
+        LdapConnection connection = null;
+
+        try
+        {
+            connection = connectionPool.getConnection();
+
+            for ( Entry entry : new EntryCursorImpl( connection.search( searchRequest ) ) )
+            {
+                entries.add( entry );
+            }
+        }
         finally
         {
             returnLdapConnection( connection );
@@ -844,6 +898,19 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
     }
 
 
+    private static List<Entry> copy( List<Entry> entries )
+    {
+        List<Entry> copies = new ArrayList<>( entries.size() );
+
+        for ( Entry entry : entries )
+        {
+            copies.add( entry.clone() );
+        }
+
+        return copies;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -993,4 +1060,27 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
     {
         this.passwordPolicyResponder = passwordPolicyResponder;
     }
+
+
+    /**
+     * Tells this template to coalesce the identical concurrent lookups and searches : when
+     * a thread sends a read request while another thread is already sending the same request,
+     * it waits for the result of the first request and gets a copy of the entries, instead of
+     * sending another request. Disabled by default.
+     *
+     * @param coalesceReads <code>true</code> to coalesce the identical concurrent reads
+     */
+    public void setCoalesceReads( boolean coalesceReads )
+    {
+        if ( coalesceReads )
+        {
+            lookupCoalescer = new RequestCoalescer<>( Entry::clone );
+            searchCoalescer = new RequestCoalescer<>( LdapConnectionTemplate::copy );
+        }
+        else
+        {
+            lookupCoalescer = null;
+            searchCoalescer = null;
+        }
+    }
 }
@@ -0,0 +1,207 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapOperationException;
+import org.apache.directory.api.ldap.model.message.CompareRequest;
+import org.apache.directory.api.ldap.model.message.CompareResponse;
+import org.apache.directory.api.ldap.model.message.CompareResponseImpl;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the HedgedLdapReader class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class HedgedLdapReaderTest
+{
+    private static CompareResponse newCompareResponse( ResultCodeEnum resultCode )
+    {
+        CompareResponse compareResponse = new CompareResponseImpl();
+        compareResponse.getLdapResult().setResultCode( resultCode );
+
+        return compareResponse;
+    }
+
+
+    /**
+     * A connection answering the compare requests once the request is abandoned, or
+     * after 10 seconds
+     */
+    private static LdapConnection newSlowConnection( ResultCodeEnum resultCode ) throws LdapException
+    {
+        CountDownLatch abandoned = new CountDownLatch( 1 );
+        LdapConnection connection = mock( LdapConnection.class );
+
+        when( connection.compare( any( CompareRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            invocation.getArgument( 0, CompareRequest.class ).setMessageId( 1 );
+            abandoned.await( 10, TimeUnit.SECONDS );
+
+            return newCompareResponse( resultCode );
+        } );
+
+        doAnswer( invocation ->
+        {
+            abandoned.countDown();
+
+            return null;
+        } ).when( connection ).abandon( anyInt() );
+
+        return connection;
+    }
+
+
+    private static LoadBalancingLdapConnectionPool newPool( LdapConnection primary, LdapConnection secondary )
+        throws LdapException
+    {
+        LdapServerSet serverSet = new LdapServerSet( ServerSelectionStrategy.ROUND_ROBIN );
+        LdapServerSet.Server server1 = serverSet.addServer( "host1", 389 );
+        LdapServerSet.Server server2 = serverSet.addServer( "host2", 389 );
+        LoadBalancingLdapConnectionPool pool = mock( LoadBalancingLdapConnectionPool.class );
+
+        when( pool.getConnection() ).thenReturn( new LoadBalancedLdapConnection( primary, serverSet, server1 ) );
+        when( pool.getConnection( anyCollection() ) ).thenReturn(
+            new LoadBalancedLdapConnection( secondary, serverSet, server2 ) );
+
+        return pool;
+    }
+
+
+    @Test
+    public void testHedgedRequestWins() throws Exception
+    {
+        LdapConnection slow = newSlowConnection( ResultCodeEnum.COMPARE_FALSE );
+        LdapConnection fast = mock( LdapConnection.class );
+        when( fast.compare( any( CompareRequest.class ) ) ).thenReturn(
+            newCompareResponse( ResultCodeEnum.COMPARE_TRUE ) );
+
+        try ( HedgedLdapReader reader = new HedgedLdapReader( newPool( slow, fast ) ) )
+        {
+            reader.setInitialHedgeDelay( 10L );
+            reader.setBudget( 100d, 1 );
+
+            assertTrue( reader.compare( new Dn( "cn=test" ), "cn", "test" ) );
+            assertEquals( 1L, reader.getHedgesSent() );
+            assertEquals( 1L, reader.getHedgesWon() );
+            assertEquals( 0L, reader.getHedgesSkipped() );
+
+            // The slow request has been abandoned
+            verify( slow ).abandon( 1 );
+        }
+    }
+
+
+    @Test
+    public void testBudgetExhausted() throws Exception
+    {
+        LdapConnection slow = newSlowConnection( ResultCodeEnum.COMPARE_TRUE );
+        LdapConnection other = mock( LdapConnection.class );
+
+        try ( HedgedLdapReader reader = new HedgedLdapReader( newPool( slow, other ) ) )
+        {
+            reader.setInitialHedgeDelay( 10L );
+
+            // The first request only gives 5% of a token : the slow request waits
+            reader.setBudget( 5d, 1 );
+
+            // Answer after 100 ms
+            new Thread( () ->
+            {
+                try
+                {
+                    Thread.sleep( 100L );
+                }
+                catch ( InterruptedException ie )
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                slow.abandon( 0 );
+            } ).start();
+
+            assertTrue( reader.compare( new Dn( "cn=test" ), "cn", "test" ) );
+            assertEquals( 0L, reader.getHedgesSent() );
+            assertEquals( 1L, reader.getHedgesSkipped() );
+            verify( other, never() ).compare( any( CompareRequest.class ) );
+        }
+    }
+
+
+    @Test
+    public void testOperationError() throws Exception
+    {
+        LdapConnection primary = mock( LdapConnection.class );
+        when( primary.compare( any( CompareRequest.class ) ) ).thenReturn(
+            newCompareResponse( ResultCodeEnum.NO_SUCH_ATTRIBUTE ) );
+        LdapConnection other = mock( LdapConnection.class );
+
+        try ( HedgedLdapReader reader = new HedgedLdapReader( newPool( primary, other ) ) )
+        {
+            reader.setInitialHedgeDelay( 1000L );
+
+            LdapOperationException loe = assertThrows( LdapOperationException.class,
+                () -> reader.compare( new Dn( "cn=test" ), "cn", "test" ) );
+            assertEquals( ResultCodeEnum.NO_SUCH_ATTRIBUTE, loe.getResultCode() );
+            assertEquals( 0L, reader.getHedgesSent() );
+        }
+    }
+
+
+    @Test
+    public void testInvalidRequest() throws Exception
+    {
+        LoadBalancingLdapConnectionPool pool = newPool( mock( LdapConnection.class ), mock( LdapConnection.class ) );
+        SearchRequest searchRequest = mock( SearchRequest.class );
+        when( searchRequest.getBase() ).thenThrow( new IllegalStateException( "invalid" ) );
+
+        try ( HedgedLdapReader reader = new HedgedLdapReader( pool ) )
+        {
+            assertThrows( LdapException.class, () -> reader.search( searchRequest ) );
+
+            // No connection has been borrowed
+            verify( pool, never() ).getConnection();
+        }
+    }
+}
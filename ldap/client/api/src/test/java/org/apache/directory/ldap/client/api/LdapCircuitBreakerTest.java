@@ -0,0 +1,143 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.ldap.client.api.LdapCircuitBreaker.Circuit;
+import org.apache.directory.ldap.client.api.LdapCircuitBreaker.State;
+import org.apache.directory.ldap.client.api.exception.LdapCircuitOpenException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the LdapCircuitBreaker class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class LdapCircuitBreakerTest
+{
+    @Test
+    public void testCircuitStates() throws Exception
+    {
+        LdapConnection connection = mock( LdapConnection.class );
+        LdapConnectionValidator validator = mock( LdapConnectionValidator.class );
+        when( validator.validate( connection ) ).thenReturn( false, true );
+
+        LdapCircuitBreaker circuitBreaker = new LdapCircuitBreaker();
+        circuitBreaker.setFailureThreshold( 3 );
+        circuitBreaker.setOpenDuration( 0L );
+        circuitBreaker.setValidator( validator );
+        Circuit circuit = circuitBreaker.getCircuit( "host1", 389 );
+        assertSame( circuit, circuitBreaker.getCircuit( "host1", 389 ) );
+
+        // An answer resets the consecutive timeouts
+        circuit.requestTimedOut();
+        circuit.requestTimedOut();
+        circuit.requestAnswered( MessageTypeEnum.SEARCH_REQUEST, 1000L );
+        circuit.requestTimedOut();
+        circuit.requestTimedOut();
+        assertEquals( State.CLOSED, circuit.getState() );
+        circuit.checkRequest( connection );
+        verify( validator, never() ).validate( connection );
+
+        circuit.requestTimedOut();
+        assertEquals( State.OPEN, circuit.getState() );
+
+        // Half open : the server is probed, and is still failing
+        assertThrows( LdapCircuitOpenException.class, () -> circuit.checkRequest( connection ) );
+        assertEquals( State.OPEN, circuit.getState() );
+
+        // Then it's back
+        circuit.checkRequest( connection );
+        assertEquals( State.CLOSED, circuit.getState() );
+        verify( validator, times( 2 ) ).validate( connection );
+
+        // The circuit of another server is independent
+        assertEquals( State.CLOSED, circuitBreaker.getCircuit( "host2", 389 ).getState() );
+    }
+
+
+    @Test
+    public void testOpenCircuitFailsFast() throws Exception
+    {
+        LdapConnection connection = mock( LdapConnection.class );
+        LdapConnectionValidator validator = mock( LdapConnectionValidator.class );
+        LdapCircuitBreaker circuitBreaker = new LdapCircuitBreaker();
+        circuitBreaker.setFailureThreshold( 1 );
+        circuitBreaker.setValidator( validator );
+        Circuit circuit = circuitBreaker.getCircuit( "host1", 389 );
+
+        circuit.requestTimedOut();
+
+        // The open duration has not elapsed : no probe
+        assertThrows( LdapCircuitOpenException.class, () -> circuit.checkRequest( connection ) );
+        verify( validator, never() ).validate( connection );
+    }
+
+
+    @Test
+    public void testAdaptiveTimeout()
+    {
+        LdapCircuitBreaker circuitBreaker = new LdapCircuitBreaker();
+        circuitBreaker.setMinimumTimeout( 100L );
+        Circuit circuit = circuitBreaker.getCircuit( "host1", 389 );
+
+        // Not enough latencies
+        assertEquals( 30000L, circuit.getTimeout( MessageTypeEnum.SEARCH_REQUEST, 30000L ) );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            circuit.requestAnswered( MessageTypeEnum.SEARCH_REQUEST, TimeUnit.MILLISECONDS.toNanos( 50L ) );
+            circuit.requestAnswered( MessageTypeEnum.COMPARE_REQUEST, TimeUnit.MILLISECONDS.toNanos( 200L ) );
+            circuit.requestAnswered( MessageTypeEnum.MODIFY_REQUEST, TimeUnit.MILLISECONDS.toNanos( 10L ) );
+        }
+
+        // 3 times the 99th percentile of each operation, around 50 ms and 200 ms
+        assertEquals( 150d, circuit.getTimeout( MessageTypeEnum.SEARCH_REQUEST, 30000L ), 10d );
+        assertEquals( 600d, circuit.getTimeout( MessageTypeEnum.COMPARE_REQUEST, 30000L ), 40d );
+
+        // The writes keep their configured timeout
+        assertEquals( 30000L, circuit.getTimeout( MessageTypeEnum.MODIFY_REQUEST, 30000L ) );
+        assertEquals( 30000L, circuit.getTimeout( MessageTypeEnum.ADD_REQUEST, 30000L ) );
+
+        // Never above the configured timeout, nor below the minimum
+        assertEquals( 120L, circuit.getTimeout( MessageTypeEnum.SEARCH_REQUEST, 120L ) );
+        circuitBreaker.setMinimumTimeout( 500L );
+        assertEquals( 500L, circuit.getTimeout( MessageTypeEnum.SEARCH_REQUEST, 30000L ) );
+
+        // An infinite timeout is kept
+        assertEquals( 0L, circuit.getTimeout( MessageTypeEnum.SEARCH_REQUEST, 0L ) );
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the virtual thread friendly mode of the LdapConnectionPool
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class LdapConnectionPoolTest
+{
+    private static LdapConnectionPool createPool( int maxTotal )
+    {
+        LdapConnectionPool pool = new LdapConnectionPool( new BasePooledObjectFactory<LdapConnection>()
+        {
+            @Override
+            public LdapConnection create()
+            {
+                return mock( LdapConnection.class );
+            }
+
+
+            @Override
+            public PooledObject<LdapConnection> wrap( LdapConnection connection )
+            {
+                return new DefaultPooledObject<>( connection );
+            }
+        } );
+
+        pool.setMaxTotal( maxTotal );
+        pool.setMaxWaitMillis( 100L );
+        pool.setVirtualThreadFriendly( true );
+
+        return pool;
+    }
+
+
+    @Test
+    public void testExhaustedPool() throws Exception
+    {
+        try ( LdapConnectionPool pool = createPool( 2 ) )
+        {
+            assertTrue( pool.isVirtualThreadFriendly() );
+
+            LdapConnection connection1 = pool.getConnection();
+            LdapConnection connection2 = pool.getConnection();
+
+            assertThrows( NoSuchElementException.class, () -> pool.getConnection() );
+
+            pool.releaseConnection( connection1 );
+            assertNotNull( pool.getConnection() );
+
+            pool.invalidateObject( connection2 );
+            assertNotNull( pool.getConnection() );
+
+            pool.setVirtualThreadFriendly( false );
+            assertFalse( pool.isVirtualThreadFriendly() );
+        }
+    }
+
+
+    @Test
+    public void testConcurrentBorrowers() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 32 );
+
+        try ( LdapConnectionPool pool = createPool( 4 ) )
+        {
+            pool.setMaxWaitMillis( -1L );
+            List<Future<?>> futures = new ArrayList<>();
+
+            for ( int i = 0; i < 2000; i++ )
+            {
+                futures.add( executor.submit( () ->
+                {
+                    LdapConnection connection = pool.getConnection();
+                    pool.releaseConnection( connection );
+
+                    return null;
+                } ) );
+            }
+
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+
+            // All the permits have been released
+            assertEquals( 0, pool.getNumActive() );
+            assertTrue( pool.getNumIdle() <= 4 );
+
+            for ( int i = 0; i < 4; i++ )
+            {
+                assertNotNull( pool.getConnection() );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void testBorrowDeadline() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try ( LdapConnectionPool pool = createPool( 2 ) )
+        {
+            pool.setMaxWaitMillis( 1000L );
+            pool.setMaxIdle( 0 );
+
+            pool.getConnection();
+            LdapConnection connection = pool.getConnection();
+
+            // The released permit can't be used : the pool only allows one connection now
+            pool.setMaxTotal( 1 );
+            executor.submit( () ->
+            {
+                Thread.sleep( 500L );
+                pool.releaseConnection( connection );
+
+                return null;
+            } );
+
+            long start = System.nanoTime();
+            assertThrows( NoSuchElementException.class, () -> pool.getConnection() );
+            long elapsed = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+            // The time spent waiting for the permit is deducted from the pool wait
+            assertTrue( elapsed < 1400L, "Waited " + elapsed + "ms" );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // A zero maximum wait lends the available connections, without waiting for the others
+        try ( LdapConnectionPool pool = createPool( 1 ) )
+        {
+            pool.setMaxWaitMillis( 0L );
+
+            LdapConnection connection = pool.getConnection();
+            assertNotNull( connection );
+            assertThrows( NoSuchElementException.class, () -> pool.getConnection() );
+
+            pool.releaseConnection( connection );
+            assertNotNull( pool.getConnection() );
+        }
+    }
+}
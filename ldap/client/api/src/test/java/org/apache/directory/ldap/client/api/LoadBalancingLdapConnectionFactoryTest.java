@@ -0,0 +1,319 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.directory.api.ldap.model.exception.LdapAuthenticationException;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapOtherException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the LdapServerSet, LoadBalancingLdapConnectionFactory and LoadBalancingLdapConnectionPool classes
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class LoadBalancingLdapConnectionFactoryTest
+{
+    /**
+     * A factory using a mocked connection factory per server
+     */
+    private static class MockLoadBalancingFactory extends LoadBalancingLdapConnectionFactory
+    {
+        private final Map<String, LdapConnectionFactory> serverFactories;
+
+
+        MockLoadBalancingFactory( LdapServerSet serverSet, Map<String, LdapConnectionFactory> serverFactories )
+        {
+            super( new LdapConnectionConfig(), serverSet, 0L );
+            this.serverFactories = serverFactories;
+        }
+
+
+        @Override
+        protected LdapConnectionFactory createServerFactory( LdapConnectionConfig config )
+        {
+            return serverFactories.get( config.getLdapHost() );
+        }
+    }
+
+
+    private static LdapConnection newConnection() throws LdapException
+    {
+        LdapConnection connection = mock( LdapConnection.class );
+        when( connection.isConnected() ).thenReturn( true );
+        when( connection.isAuthenticated() ).thenReturn( true );
+
+        return connection;
+    }
+
+
+    private static LdapConnectionFactory newFactory( LdapConnection connection ) throws LdapException
+    {
+        LdapConnectionFactory factory = mock( LdapConnectionFactory.class );
+        when( factory.newLdapConnection() ).thenReturn( connection );
+        when( factory.bindConnection( any( LdapConnection.class ) ) ).thenReturn( connection );
+        when( factory.configureConnection( any( LdapConnection.class ) ) ).thenReturn( connection );
+
+        return factory;
+    }
+
+
+    private static LdapConnectionFactory newFailingFactory( LdapException failure ) throws LdapException
+    {
+        LdapConnectionFactory factory = mock( LdapConnectionFactory.class );
+        when( factory.newLdapConnection() ).thenThrow( failure );
+
+        return factory;
+    }
+
+
+    @Test
+    public void testRoundRobin()
+    {
+        LdapServerSet serverSet = new LdapServerSet( ServerSelectionStrategy.ROUND_ROBIN );
+        LdapServerSet.Server server1 = serverSet.addServer( "host1", 389 );
+        LdapServerSet.Server server2 = serverSet.addServer( "host2", 389 );
+        LdapServerSet.Server server3 = serverSet.addServer( "host3", 389 );
+
+        assertSame( server1, serverSet.select() );
+        assertSame( server2, serverSet.select() );
+        assertSame( server3, serverSet.select() );
+        assertSame( server1, serverSet.select() );
+
+        // A quarantined server is skipped
+        serverSet.quarantine( server2, null );
+        assertTrue( server2.isQuarantined() );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertFalse( serverSet.select() == server2 );
+        }
+
+        // Unless there is no other choice
+        assertSame( server2, serverSet.select( Arrays.asList( server1, server3 ) ) );
+        assertNull( serverSet.select( serverSet.getServers() ) );
+
+        serverSet.release( server2 );
+        assertFalse( server2.isQuarantined() );
+    }
+
+
+    @Test
+    public void testLeastOutstandingRequests()
+    {
+        LdapServerSet serverSet = new LdapServerSet( ServerSelectionStrategy.LEAST_OUTSTANDING_REQUESTS );
+        LdapServerSet.Server server1 = serverSet.addServer( "host1", 389 );
+        LdapServerSet.Server server2 = serverSet.addServer( "host2", 389 );
+
+        server1.requestStarted();
+        server1.requestStarted();
+        server2.requestStarted();
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            assertSame( server2, serverSet.select() );
+        }
+
+        server2.requestStarted();
+        server2.requestStarted();
+        server1.requestCompleted( -1L );
+        assertEquals( 1, server1.getOutstandingRequests() );
+        assertEquals( 3, server2.getOutstandingRequests() );
+        assertSame( server1, serverSet.select() );
+    }
+
+
+    @Test
+    public void testEwmaLatency()
+    {
+        LdapServerSet serverSet = new LdapServerSet( ServerSelectionStrategy.EWMA_LATENCY, 0.5d );
+        LdapServerSet.Server fast = serverSet.addServer( "fast", 389 );
+        LdapServerSet.Server slow = serverSet.addServer( "slow", 389 );
+
+        fast.recordLatency( 1000L );
+        slow.recordLatency( 10000L );
+        assertEquals( 1000L, fast.getLatency() );
+
+        fast.recordLatency( 3000L );
+        assertEquals( 2000L, fast.getLatency() );
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            assertSame( fast, serverSet.select() );
+        }
+
+        // The load is taken into account
+        for ( int i = 0; i < 5; i++ )
+        {
+            fast.requestStarted();
+        }
+
+        assertSame( slow, serverSet.select() );
+
+        assertThrows( IllegalArgumentException.class, () -> new LdapServerSet( ServerSelectionStrategy.EWMA_LATENCY, 0d ) );
+    }
+
+
+    @Test
+    public void testFailOver() throws Exception
+    {
+        LdapServerSet serverSet = new LdapServerSet( ServerSelectionStrategy.ROUND_ROBIN );
+        LdapServerSet.Server down = serverSet.addServer( "down", 389 );
+        LdapServerSet.Server up = serverSet.addServer( "up", 389 );
+        LdapConnection connection = newConnection();
+
+        // The first connection fails, the next ones succeed
+        LdapConnectionFactory downFactory = mock( LdapConnectionFactory.class );
+        when( downFactory.newLdapConnection() ).thenThrow( new LdapOtherException( "Connection refused" ) )
+            .thenReturn( newConnection() );
+
+        Map<String, LdapConnectionFactory> factories = new HashMap<>();
+        factories.put( "down", downFactory );
+        factories.put( "up", newFactory( connection ) );
+
+        try ( LoadBalancingLdapConnectionFactory factory = new MockLoadBalancingFactory( serverSet, factories ) )
+        {
+            LdapConnection balanced = factory.newLdapConnection();
+
+            assertSame( up, ( ( LoadBalancedLdapConnection ) balanced ).getServer() );
+            assertSame( connection, ( ( LoadBalancedLdapConnection ) balanced ).wrapped() );
+            assertTrue( down.isQuarantined() );
+
+            // The next connections go to the remaining server
+            assertSame( up, ( ( LoadBalancedLdapConnection ) factory.newLdapConnection() ).getServer() );
+
+            // The health check releases the server once it is valid again
+            factory.setValidator( c -> false );
+            factory.checkQuarantinedServers();
+            assertTrue( down.isQuarantined() );
+
+            factory.setValidator( c -> true );
+            factory.checkQuarantinedServers();
+            assertFalse( down.isQuarantined() );
+            assertTrue( down.getLatency() > 0L );
+        }
+    }
+
+
+    @Test
+    public void testNoServerAvailable() throws Exception
+    {
+        LdapServerSet serverSet = new LdapServerSet( ServerSelectionStrategy.ROUND_ROBIN );
+        LdapServerSet.Server server1 = serverSet.addServer( "host1", 389 );
+        LdapServerSet.Server server2 = serverSet.addServer( "host2", 389 );
+
+        Map<String, LdapConnectionFactory> factories = new HashMap<>();
+        factories.put( "host1", newFailingFactory( new LdapOtherException( "Connection refused" ) ) );
+        factories.put( "host2", newFailingFactory( new LdapAuthenticationException( "Invalid credentials" ) ) );
+
+        try ( LoadBalancingLdapConnectionFactory factory = new MockLoadBalancingFactory( serverSet, factories ) )
+        {
+            // A wrong password is not a server failure
+            assertThrows( LdapAuthenticationException.class, () -> factory.newLdapConnection() );
+            assertTrue( server1.isQuarantined() );
+            assertFalse( server2.isQuarantined() );
+
+            factories.put( "host2", newFailingFactory( new LdapOtherException( "Connection refused" ) ) );
+            LoadBalancingLdapConnectionFactory otherFactory = new MockLoadBalancingFactory( serverSet, factories );
+            assertThrows( LdapException.class, () -> otherFactory.newLdapConnection() );
+            assertTrue( server2.isQuarantined() );
+        }
+    }
+
+
+    @Test
+    public void testTrackedRequests() throws Exception
+    {
+        LdapServerSet serverSet = new LdapServerSet( ServerSelectionStrategy.EWMA_LATENCY );
+        LdapServerSet.Server server = serverSet.addServer( "host", 389 );
+        LdapConnection connection = newConnection();
+        when( connection.exists( any( Dn.class ) ) ).thenReturn( true );
+        when( connection.lookup( any( String.class ) ) ).thenThrow( new LdapOtherException( "Connection lost" ) );
+
+        LdapConnection balanced = new LoadBalancedLdapConnection( connection, serverSet, server );
+
+        assertTrue( balanced.exists( Dn.ROOT_DSE ) );
+        assertEquals( 0, server.getOutstandingRequests() );
+        assertTrue( server.getLatency() > 0L );
+
+        // A failure on a connected connection does not quarantine the server
+        assertThrows( LdapOtherException.class, () -> balanced.lookup( "" ) );
+        assertFalse( server.isQuarantined() );
+
+        when( connection.isConnected() ).thenReturn( false );
+        assertThrows( LdapOtherException.class, () -> balanced.lookup( "" ) );
+        assertTrue( server.isQuarantined() );
+        assertEquals( 0, server.getOutstandingRequests() );
+    }
+
+
+    @Test
+    public void testPoolPerServer() throws Exception
+    {
+        LdapServerSet serverSet = new LdapServerSet( ServerSelectionStrategy.ROUND_ROBIN );
+        LdapServerSet.Server server1 = serverSet.addServer( "host1", 389 );
+        LdapServerSet.Server server2 = serverSet.addServer( "host2", 389 );
+
+        Map<String, LdapConnectionFactory> factories = new HashMap<>();
+        factories.put( "host1", newFactory( newConnection() ) );
+        factories.put( "host2", newFactory( newConnection() ) );
+
+        try ( LoadBalancingLdapConnectionFactory factory = new MockLoadBalancingFactory( serverSet, factories );
+            LoadBalancingLdapConnectionPool pool = new LoadBalancingLdapConnectionPool( factory,
+                new GenericObjectPoolConfig() ) )
+        {
+            LdapConnection connection1 = pool.getConnection();
+            LdapConnection connection2 = pool.getConnection();
+
+            assertSame( server1, ( ( LoadBalancedLdapConnection ) connection1 ).getServer() );
+            assertSame( server2, ( ( LoadBalancedLdapConnection ) connection2 ).getServer() );
+            assertEquals( 1, pool.getPool( server1 ).getNumActive() );
+            assertEquals( 1, pool.getPool( server2 ).getNumActive() );
+
+            pool.releaseConnection( connection2 );
+            assertEquals( 0, pool.getPool( server2 ).getNumActive() );
+            assertEquals( 1, pool.getPool( server2 ).getNumIdle() );
+
+            pool.releaseConnection( connection1 );
+            assertEquals( 0, pool.getPool( server1 ).getNumActive() );
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapNoSuchObjectException;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the RequestCoalescer and SearchRequestKey classes
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class RequestCoalescerTest
+{
+    private static SearchRequest newSearchRequest( String filter, String... attributes ) throws LdapException
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( new Dn( "ou=people,dc=example,dc=com" ) );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setFilter( filter );
+        searchRequest.addAttributes( attributes );
+
+        return searchRequest;
+    }
+
+
+    @Test
+    public void testSearchRequestKey() throws Exception
+    {
+        SearchRequest searchRequest = newSearchRequest( "(cn=user)", "cn", "sn" );
+        SearchRequestKey key = new SearchRequestKey( searchRequest );
+
+        // The message ID, the attributes order and case don't matter
+        SearchRequest other = newSearchRequest( "(cn=user)", "SN", "cn" );
+        other.setMessageId( 12 );
+        assertEquals( key, new SearchRequestKey( other ) );
+        assertEquals( key.hashCode(), new SearchRequestKey( other ).hashCode() );
+
+        // The filter, scope and size limit do
+        assertNotEquals( key, new SearchRequestKey( newSearchRequest( "(cn=other)", "cn", "sn" ) ) );
+        other.setScope( SearchScope.ONELEVEL );
+        assertNotEquals( key, new SearchRequestKey( other ) );
+        other.setScope( SearchScope.SUBTREE );
+        other.setSizeLimit( 1L );
+        assertNotEquals( key, new SearchRequestKey( other ) );
+
+        assertTrue( key.isInScope( new Dn( "cn=user,ou=people,dc=example,dc=com" ) ) );
+        assertTrue( key.isInScope( new Dn( "ou=people,dc=example,dc=com" ) ) );
+        assertTrue( !key.isInScope( new Dn( "ou=groups,dc=example,dc=com" ) ) );
+    }
+
+
+    @Test
+    public void testCoalescing() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger requests = new AtomicInteger();
+        final Entry entry = new DefaultEntry( "cn=user,ou=people,dc=example,dc=com", "cn: user" );
+        final RequestCoalescer<SearchRequestKey, Entry> coalescer = new RequestCoalescer<>( Entry::clone );
+        final SearchRequestKey key = new SearchRequestKey( entry.getDn(), "cn" );
+        final List<Entry> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            Thread thread = new Thread( () ->
+            {
+                try
+                {
+                    Entry result = coalescer.execute( key, () ->
+                    {
+                        requests.incrementAndGet();
+
+                        try
+                        {
+                            release.await( 10, TimeUnit.SECONDS );
+                        }
+                        catch ( InterruptedException ie )
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+
+                        return entry;
+                    } );
+
+                    synchronized ( results )
+                    {
+                        results.add( result );
+                    }
+                }
+                catch ( LdapException le )
+                {
+                    throw new IllegalStateException( le );
+                }
+            } );
+
+            threads.add( thread );
+            thread.start();
+        }
+
+        Thread.sleep( 100L );
+        release.countDown();
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        // One request, and each thread but the first one gets its own copy
+        assertEquals( 1, requests.get() );
+        assertEquals( 10, results.size() );
+        int same = 0;
+
+        for ( Entry result : results )
+        {
+            assertEquals( entry, result );
+
+            if ( result == entry )
+            {
+                same++;
+            }
+        }
+
+        assertEquals( 1, same );
+        assertEquals( 0, coalescer.getInFlight() );
+
+        // Nothing is kept once the request is done
+        assertNotSame( entry, coalescer.execute( key, () -> entry.clone() ) );
+    }
+
+
+    @Test
+    public void testFailure() throws Exception
+    {
+        RequestCoalescer<SearchRequestKey, Entry> coalescer = new RequestCoalescer<>( Entry::clone );
+        SearchRequestKey key = new SearchRequestKey( new Dn( "cn=missing" ) );
+        LdapNoSuchObjectException failure = new LdapNoSuchObjectException( "missing" );
+
+        assertSame( failure, assertThrows( LdapNoSuchObjectException.class, () -> coalescer.execute( key, () ->
+        {
+            throw failure;
+        } ) ) );
+        assertEquals( 0, coalescer.getInFlight() );
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.security.SecureRandom;
+
+import javax.net.ssl.SSLContext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the SslContextCache class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class SslContextCacheTest
+{
+    @Test
+    public void testSharedContext() throws Exception
+    {
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setSecureRandom( new SecureRandom() );
+        LdapConnectionConfig copy = new LdapConnectionConfig( config );
+
+        SSLContext sslContext = SslContextCache.getSslContext( config );
+
+        assertSame( sslContext, SslContextCache.getSslContext( config ) );
+        assertSame( sslContext, SslContextCache.getSslContext( copy ) );
+
+        // Another secure random gives another context
+        copy.setSecureRandom( new SecureRandom() );
+        assertNotSame( sslContext, SslContextCache.getSslContext( copy ) );
+    }
+
+
+    @Test
+    public void testSessionCacheSettings() throws Exception
+    {
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setSecureRandom( new SecureRandom() );
+        config.setSslSessionCacheSize( 100 );
+        config.setSslSessionTimeout( 600 );
+
+        SSLContext sslContext = SslContextCache.getSslContext( config );
+
+        assertEquals( 100, sslContext.getClientSessionContext().getSessionCacheSize() );
+        assertEquals( 600, sslContext.getClientSessionContext().getSessionTimeout() );
+
+        LdapConnectionConfig other = new LdapConnectionConfig( config );
+        other.setSslSessionCacheSize( 10 );
+
+        assertNotSame( sslContext, SslContextCache.getSslContext( other ) );
+    }
+}
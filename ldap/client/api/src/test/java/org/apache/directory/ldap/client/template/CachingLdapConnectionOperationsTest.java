@@ -0,0 +1,263 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.template;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.apache.directory.api.ldap.model.message.ModifyRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the CachingLdapConnectionOperations class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class CachingLdapConnectionOperationsTest
+{
+    private static final EntryMapper<String> CN_MAPPER = entry -> entry.get( "cn" ).getString();
+
+
+    @SuppressWarnings("unchecked")
+    private static LdapConnectionOperations newDelegate( Entry... entries )
+    {
+        LdapConnectionOperations delegate = mock( LdapConnectionOperations.class );
+        when( delegate.search( any( SearchRequest.class ), any( EntryMapper.class ) ) ).thenReturn(
+            new ArrayList<>( Arrays.asList( entries ) ) );
+
+        return delegate;
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSearchIsCached() throws Exception
+    {
+        Entry entry = new DefaultEntry( "cn=user,ou=people,dc=example,dc=com", "cn: user" );
+        LdapConnectionOperations delegate = newDelegate( entry );
+        CachingLdapConnectionOperations operations = new CachingLdapConnectionOperations( delegate, 100L, 1L,
+            TimeUnit.MINUTES );
+
+        assertEquals( Arrays.asList( "user" ), operations.search( "ou=people,dc=example,dc=com", "(cn=user)",
+            SearchScope.SUBTREE, CN_MAPPER ) );
+
+        // Same search, with different attribute case : read from the cache
+        assertEquals( Arrays.asList( "user" ), operations.search( "ou=people,dc=example,dc=com", "(cn=user)",
+            SearchScope.SUBTREE, new String[] { "CN" }, CN_MAPPER ) );
+        assertEquals( Arrays.asList( "user" ), operations.search( "ou=people,dc=example,dc=com", "(cn=user)",
+            SearchScope.SUBTREE, new String[] { "cn" }, CN_MAPPER ) );
+        assertEquals( 1L, operations.getHitCount() );
+        assertEquals( 2L, operations.getMissCount() );
+
+        // Another scope is another result
+        operations.search( "ou=people,dc=example,dc=com", "(cn=user)", SearchScope.ONELEVEL, CN_MAPPER );
+        assertEquals( 3L, operations.getMissCount() );
+        verify( delegate, times( 3 ) ).search( any( SearchRequest.class ), any( EntryMapper.class ) );
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvalidation() throws Exception
+    {
+        Dn userDn = new Dn( "cn=user,ou=people,dc=example,dc=com" );
+        LdapConnectionOperations delegate = newDelegate( new DefaultEntry( userDn, "cn: user" ) );
+        when( delegate.lookup( eq( userDn ), any(), any( EntryMapper.class ) ) ).thenReturn( null );
+        CachingLdapConnectionOperations operations = new CachingLdapConnectionOperations( delegate, 100L, 1L,
+            TimeUnit.MINUTES );
+
+        // A missing entry is cached too
+        assertNull( operations.lookup( userDn, CN_MAPPER ) );
+        assertNull( operations.lookup( userDn, CN_MAPPER ) );
+        verify( delegate, times( 1 ) ).lookup( eq( userDn ), any(), any( EntryMapper.class ) );
+
+        operations.search( "ou=people,dc=example,dc=com", "(cn=*)", SearchScope.SUBTREE, CN_MAPPER );
+        operations.search( "ou=people,dc=example,dc=com", "(cn=*)", SearchScope.ONELEVEL, CN_MAPPER );
+        operations.search( "ou=groups,dc=example,dc=com", "(cn=*)", SearchScope.SUBTREE, CN_MAPPER );
+        assertEquals( 4L, operations.getSize() );
+
+        // Modifying the entry removes the lookup and the searches which may contain it
+        ModifyRequest modifyRequest = new ModifyRequestImpl();
+        modifyRequest.setName( userDn );
+        operations.modify( modifyRequest );
+        assertEquals( 1L, operations.getSize() );
+
+        operations.invalidateAll();
+        assertEquals( 0L, operations.getSize() );
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSingleFlight() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final Entry entry = new DefaultEntry( "cn=group,ou=groups,dc=example,dc=com", "cn: group" );
+        LdapConnectionOperations delegate = mock( LdapConnectionOperations.class );
+        when( delegate.search( any( SearchRequest.class ), any( EntryMapper.class ) ) ).thenAnswer( invocation ->
+        {
+            release.await( 10, TimeUnit.SECONDS );
+            List<Entry> entries = new ArrayList<>();
+            entries.add( entry );
+
+            return entries;
+        } );
+
+        final CachingLdapConnectionOperations operations = new CachingLdapConnectionOperations( delegate, 100L, 1L,
+            TimeUnit.MINUTES );
+        List<Thread> threads = new ArrayList<>();
+
+        for ( int i = 0; i < 8; i++ )
+        {
+            Thread thread = new Thread( () -> operations.search( "ou=groups,dc=example,dc=com", "(cn=group)",
+                SearchScope.SUBTREE, CN_MAPPER ) );
+            threads.add( thread );
+            thread.start();
+        }
+
+        Thread.sleep( 100L );
+        release.countDown();
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        // Only one request has been sent
+        verify( delegate, times( 1 ) ).search( any( SearchRequest.class ), any( EntryMapper.class ) );
+        assertEquals( 1L, operations.getMissCount() );
+        assertEquals( 7L, operations.getHitCount() );
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCachedEntriesAreCopied() throws Exception
+    {
+        Entry entry = new DefaultEntry( "cn=user,ou=people,dc=example,dc=com", "cn: user" );
+        LdapConnectionOperations delegate = newDelegate( entry );
+        CachingLdapConnectionOperations operations = new CachingLdapConnectionOperations( delegate, 100L, 1L,
+            TimeUnit.MINUTES );
+        EntryMapper<String> modifyingMapper = e ->
+        {
+            String cn = e.get( "cn" ).getString();
+            e.put( "cn", "modified" );
+
+            return cn;
+        };
+
+        // The mapper can't modify the cached entries
+        assertEquals( Arrays.asList( "user" ), operations.search( "ou=people,dc=example,dc=com", "(cn=user)",
+            SearchScope.SUBTREE, modifyingMapper ) );
+        assertEquals( Arrays.asList( "user" ), operations.search( "ou=people,dc=example,dc=com", "(cn=user)",
+            SearchScope.SUBTREE, modifyingMapper ) );
+        assertEquals( 1L, operations.getHitCount() );
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvalidationWhileLoading() throws Exception
+    {
+        final CountDownLatch loading = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final Dn userDn = new Dn( "cn=user,ou=people,dc=example,dc=com" );
+        LdapConnectionOperations delegate = mock( LdapConnectionOperations.class );
+        when( delegate.lookup( eq( userDn ), any(), any( EntryMapper.class ) ) ).thenAnswer( invocation ->
+        {
+            loading.countDown();
+            release.await( 10, TimeUnit.SECONDS );
+
+            return new DefaultEntry( userDn, "cn: user" );
+        } );
+
+        final CachingLdapConnectionOperations operations = new CachingLdapConnectionOperations( delegate, 100L, 1L,
+            TimeUnit.MINUTES );
+        Thread reader = new Thread( () -> operations.lookup( userDn, CN_MAPPER ) );
+        reader.start();
+
+        // The entry is modified while the lookup is in flight : its result must not be cached
+        loading.await( 10, TimeUnit.SECONDS );
+        operations.invalidate( userDn );
+        release.countDown();
+        reader.join();
+
+        assertEquals( 0L, operations.getSize() );
+        assertEquals( "user", operations.lookup( userDn, CN_MAPPER ) );
+        verify( delegate, times( 2 ) ).lookup( eq( userDn ), any(), any( EntryMapper.class ) );
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvalidateOnConnectionClosed() throws Exception
+    {
+        LdapConnectionOperations delegate = newDelegate( new DefaultEntry( "cn=user,ou=people,dc=example,dc=com",
+            "cn: user" ) );
+        CachingLdapConnectionOperations operations = new CachingLdapConnectionOperations( delegate, 100L, 1L,
+            TimeUnit.MINUTES );
+        LdapAsyncConnection connection = mock( LdapAsyncConnection.class );
+        SearchFuture searchFuture = new SearchFuture( connection, 1 );
+        when( connection.searchAsync( any( SearchRequest.class ) ) ).thenReturn( searchFuture );
+        when( connection.isConnected() ).thenReturn( true );
+
+        operations.invalidateOnChanges( connection, new Dn( "dc=example,dc=com" ) );
+        operations.search( "ou=people,dc=example,dc=com", "(cn=*)", SearchScope.SUBTREE, CN_MAPPER );
+        assertEquals( 1L, operations.getSize() );
+
+        // A closed connection only cancels the future : the listener must notice it
+        when( connection.isConnected() ).thenReturn( false );
+        searchFuture.cancel();
+
+        long deadline = System.currentTimeMillis() + 10000L;
+
+        while ( ( operations.getSize() != 0L ) && ( System.currentTimeMillis() < deadline ) )
+        {
+            Thread.sleep( 10L );
+        }
+
+        assertEquals( 0L, operations.getSize() );
+    }
+}
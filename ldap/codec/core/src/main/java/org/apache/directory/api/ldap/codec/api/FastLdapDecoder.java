@@ -0,0 +1,980 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.codec.api;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.asn1.DecoderException;
+import org.apache.directory.api.asn1.ber.tlv.BerValue;
+import org.apache.directory.api.asn1.ber.tlv.BooleanDecoder;
+import org.apache.directory.api.asn1.ber.tlv.BooleanDecoderException;
+import org.apache.directory.api.asn1.ber.tlv.IntegerDecoder;
+import org.apache.directory.api.asn1.ber.tlv.IntegerDecoderException;
+import org.apache.directory.api.asn1.ber.tlv.LongDecoder;
+import org.apache.directory.api.asn1.ber.tlv.LongDecoderException;
+import org.apache.directory.api.asn1.ber.tlv.TLVStateEnum;
+import org.apache.directory.api.asn1.ber.tlv.UniversalTag;
+import org.apache.directory.api.asn1.util.Oid;
+import org.apache.directory.api.ldap.codec.LdapStatesEnum;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultModification;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Modification;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.filter.AndNode;
+import org.apache.directory.api.ldap.model.filter.ApproximateNode;
+import org.apache.directory.api.ldap.model.filter.BranchNode;
+import org.apache.directory.api.ldap.model.filter.EqualityNode;
+import org.apache.directory.api.ldap.model.filter.ExprNode;
+import org.apache.directory.api.ldap.model.filter.GreaterEqNode;
+import org.apache.directory.api.ldap.model.filter.LessEqNode;
+import org.apache.directory.api.ldap.model.filter.NotNode;
+import org.apache.directory.api.ldap.model.filter.OrNode;
+import org.apache.directory.api.ldap.model.filter.PresenceNode;
+import org.apache.directory.api.ldap.model.filter.SubstringNode;
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.BindResponseImpl;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.LdapResult;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.ModifyRequestImpl;
+import org.apache.directory.api.ldap.model.message.Request;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.OpaqueControl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.DnFactory;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * A recursive descent decoder for the most frequent LDAP messages : SearchResultEntry,
+ * SearchResultDone, BindResponse, SearchRequest and ModifyRequest. It decodes a complete
+ * PDU in a single pass, without going through the {@link org.apache.directory.api.ldap.codec.LdapMessageGrammar}
+ * state machine.
+ * <br>
+ * It only decodes a PDU when the buffer contains all of it, and when the container has not
+ * already started to decode a PDU. Any other PDU, including a malformed one, a PDU using a
+ * rarely used element (a referral, an extensible match filter...) or a fragmented one, is
+ * left untouched, and must be decoded by the grammar, which produces the expected errors.
+ * The decoded messages are the same as the ones produced by the grammar.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class FastLdapDecoder
+{
+    /** The tag of the controls, an [0] SEQUENCE */
+    private static final byte CONTROLS_TAG = ( byte ) LdapCodecConstants.CONTROLS_TAG;
+
+    /** Thrown when the PDU can't be decoded by this decoder. It's never seen outside this class */
+    private static final FallbackException FALLBACK = new FallbackException();
+
+    /** The PDU bytes */
+    private final byte[] bytes;
+
+    /** The container the decoded message is stored into */
+    private final LdapMessageContainer<Message> container;
+
+    /** The current position in the PDU */
+    private int pos;
+
+    /**
+     * Signals that the grammar has to decode the PDU. It has no stack trace.
+     */
+    private static final class FallbackException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+
+        private FallbackException()
+        {
+            super( null, null, false, false );
+        }
+    }
+
+
+    private FastLdapDecoder( byte[] bytes, int pos, LdapMessageContainer<Message> container )
+    {
+        this.bytes = bytes;
+        this.pos = pos;
+        this.container = container;
+    }
+
+
+    /**
+     * Decodes the PDU starting at the buffer's position, if it's complete and if it's one of the
+     * supported messages. When the PDU has been decoded, the container contains the message,
+     * its state is {@link TLVStateEnum#PDU_DECODED}, and the buffer's position is set after the
+     * PDU. Otherwise, the buffer and the container are left untouched and the PDU has to be
+     * decoded using the grammar.
+     *
+     * @param buffer The buffer containing the PDU
+     * @param container The container which will contain the decoded message
+     * @return <code>true</code> if the PDU has been decoded
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean decode( ByteBuffer buffer, LdapMessageContainer<? extends Message> container )
+    {
+        if ( ( container.getCurrentTLV() != null ) || ( container.getState() != TLVStateEnum.TAG_STATE_START )
+            || ( container.getTransition() != LdapStatesEnum.START_STATE ) )
+        {
+            // The container is already decoding a PDU
+            return false;
+        }
+
+        int start = buffer.position();
+        int remaining = buffer.remaining();
+
+        if ( ( remaining < 2 ) || ( buffer.get( start ) != UniversalTag.SEQUENCE.getValue() ) )
+        {
+            return false;
+        }
+
+        // Get the PDU length, to check that we have all of it
+        int first = buffer.get( start + 1 ) & 0x00FF;
+        int length;
+        int header;
+
+        if ( first < 0x80 )
+        {
+            length = first;
+            header = 2;
+        }
+        else
+        {
+            int nbBytes = first & 0x7F;
+
+            if ( ( nbBytes == 0 ) || ( nbBytes > 4 ) || ( remaining < 2 + nbBytes ) )
+            {
+                return false;
+            }
+
+            length = 0;
+
+            for ( int i = 0; i < nbBytes; i++ )
+            {
+                length = ( length << 8 ) | ( buffer.get( start + 2 + i ) & 0x00FF );
+            }
+
+            header = 2 + nbBytes;
+        }
+
+        if ( ( length <= 0 ) || ( length > remaining - header ) || ( length > container.getMaxPDUSize() ) )
+        {
+            return false;
+        }
+
+        int pduLength = header + length;
+        byte[] pdu;
+        int offset;
+
+        if ( buffer.hasArray() )
+        {
+            pdu = buffer.array();
+            offset = buffer.arrayOffset() + start;
+        }
+        else
+        {
+            pdu = new byte[pduLength];
+            buffer.duplicate().get( pdu );
+            offset = 0;
+        }
+
+        LdapMessageContainer<Message> ldapContainer = ( LdapMessageContainer<Message> ) container;
+        FastLdapDecoder decoder = new FastLdapDecoder( pdu, offset + header, ldapContainer );
+
+        try
+        {
+            Message message = decoder.decodeMessage( offset + pduLength );
+
+            ldapContainer.setMessage( message );
+            ldapContainer.setState( TLVStateEnum.PDU_DECODED );
+            buffer.position( start + pduLength );
+
+            return true;
+        }
+        catch ( FallbackException | DecoderException | LdapException | RuntimeException e )
+        {
+            // Let the grammar decode this PDU, it will report the error if any
+            ldapContainer.clean();
+
+            return false;
+        }
+    }
+
+
+    /**
+     * Decodes the LdapMessage content, up to the given end.
+     */
+    private Message decodeMessage( int end ) throws FallbackException, DecoderException, LdapException
+    {
+        int messageId = readInt( UniversalTag.INTEGER.getValue(), 0, Integer.MAX_VALUE, end );
+        container.setMessageId( messageId );
+
+        if ( pos >= end )
+        {
+            throw FALLBACK;
+        }
+
+        byte tag = bytes[pos++];
+        int opEnd = readLength( end );
+        Message message;
+
+        switch ( tag )
+        {
+            case LdapCodecConstants.SEARCH_RESULT_ENTRY_TAG:
+                message = decodeSearchResultEntry( messageId, opEnd );
+                break;
+
+            case LdapCodecConstants.SEARCH_RESULT_DONE_TAG:
+                message = new SearchResultDoneImpl( messageId );
+                container.setMessage( message );
+                decodeLdapResult( ( ResultResponse ) message, opEnd );
+                break;
+
+            case LdapCodecConstants.BIND_RESPONSE_TAG:
+                message = decodeBindResponse( messageId, opEnd );
+                break;
+
+            case LdapCodecConstants.SEARCH_REQUEST_TAG:
+                message = decodeSearchRequest( messageId, opEnd );
+                break;
+
+            case LdapCodecConstants.MODIFY_REQUEST_TAG:
+                message = decodeModifyRequest( messageId, opEnd );
+                break;
+
+            default:
+                throw FALLBACK;
+        }
+
+        checkEnd( opEnd );
+
+        if ( pos < end )
+        {
+            decodeControls( message, end );
+        }
+
+        checkEnd( end );
+
+        return message;
+    }
+
+
+    /**
+     * SearchResultEntry ::= [APPLICATION 4] SEQUENCE {
+     *     objectName      LDAPDN,
+     *     attributes      PartialAttributeList }
+     *
+     * PartialAttributeList ::= SEQUENCE OF partialAttribute PartialAttribute
+     */
+    private Message decodeSearchResultEntry( int messageId, int end ) throws FallbackException, LdapException
+    {
+        SearchResultEntryImpl searchResultEntry = new SearchResultEntryImpl( messageId );
+        container.setMessage( searchResultEntry );
+        searchResultEntry.setObjectName( readDn( end, true ) );
+
+        int attributesEnd = readTag( UniversalTag.SEQUENCE.getValue(), end );
+        Entry entry = searchResultEntry.getEntry();
+
+        while ( pos < attributesEnd )
+        {
+            int attributeEnd = readTag( UniversalTag.SEQUENCE.getValue(), attributesEnd );
+            int typeLength = readTag( UniversalTag.OCTET_STRING.getValue(), attributeEnd ) - pos;
+
+            if ( typeLength == 0 )
+            {
+                throw FALLBACK;
+            }
+
+            byte[] type = new byte[typeLength];
+            System.arraycopy( bytes, pos, type, 0, typeLength );
+            pos += typeLength;
+
+            Attribute attribute = new DefaultAttribute( type );
+            entry.put( attribute );
+            decodeValues( attribute, attributeEnd );
+            checkEnd( attributeEnd );
+        }
+
+        checkEnd( attributesEnd );
+
+        return searchResultEntry;
+    }
+
+
+    /**
+     * BindResponse ::= [APPLICATION 1] SEQUENCE {
+     *     COMPONENTS OF LDAPResult,
+     *     serverSaslCreds    [7] OCTET STRING OPTIONAL }
+     */
+    private Message decodeBindResponse( int messageId, int end ) throws FallbackException, DecoderException
+    {
+        BindResponseImpl bindResponse = new BindResponseImpl( messageId );
+        container.setMessage( bindResponse );
+        decodeLdapResult( bindResponse, end );
+
+        if ( pos < end )
+        {
+            int credsEnd = readTag( ( byte ) LdapCodecConstants.SERVER_SASL_CREDENTIAL_TAG, end );
+            bindResponse.setServerSaslCreds( readBytes( credsEnd ) );
+        }
+
+        return bindResponse;
+    }
+
+
+    /**
+     * LDAPResult ::= SEQUENCE {
+     *     resultCode         ENUMERATED { ... },
+     *     matchedDN          LDAPDN,
+     *     diagnosticMessage  LDAPString,
+     *     referral           [3] Referral OPTIONAL }
+     *
+     * The referrals are left to the grammar.
+     */
+    private void decodeLdapResult( ResultResponse response, int end ) throws FallbackException, DecoderException
+    {
+        LdapResult ldapResult = response.getLdapResult();
+        ResultCodeEnum resultCode = ResultCodeEnum.getResultCode( readInt( UniversalTag.ENUMERATED.getValue(), 0,
+            ResultCodeEnum.E_SYNC_REFRESH_REQUIRED.getResultCode(), end ) );
+        container.setLdapResult( ldapResult );
+        ldapResult.setResultCode( resultCode );
+
+        int matchedDnEnd = readTag( UniversalTag.OCTET_STRING.getValue(), end );
+
+        if ( pos == matchedDnEnd )
+        {
+            ldapResult.setMatchedDn( Dn.EMPTY_DN );
+        }
+        else
+        {
+            switch ( resultCode )
+            {
+                case NO_SUCH_OBJECT:
+                case ALIAS_PROBLEM:
+                case INVALID_DN_SYNTAX:
+                case ALIAS_DEREFERENCING_PROBLEM:
+                    ldapResult.setMatchedDn( createDn( readString( matchedDnEnd ), true ) );
+                    break;
+
+                default:
+                    ldapResult.setMatchedDn( Dn.EMPTY_DN );
+                    pos = matchedDnEnd;
+                    break;
+            }
+        }
+
+        int messageEnd = readTag( UniversalTag.OCTET_STRING.getValue(), end );
+        ldapResult.setDiagnosticMessage( readString( messageEnd ) );
+    }
+
+
+    /**
+     * SearchRequest ::= [APPLICATION 3] SEQUENCE {
+     *     baseObject      LDAPDN,
+     *     scope           ENUMERATED { ... },
+     *     derefAliases    ENUMERATED { ... },
+     *     sizeLimit       INTEGER (0 ..  maxInt),
+     *     timeLimit       INTEGER (0 ..  maxInt),
+     *     typesOnly       BOOLEAN,
+     *     filter          Filter,
+     *     attributes      AttributeSelection }
+     */
+    private Message decodeSearchRequest( int messageId, int end ) throws FallbackException, LdapException
+    {
+        SearchRequestImpl searchRequest = new SearchRequestImpl();
+        searchRequest.setMessageId( messageId );
+        container.setMessage( searchRequest );
+
+        // The base object is not created using the DnFactory by the grammar either
+        searchRequest.setBase( readDn( end, false ) );
+        searchRequest.setScope( SearchScope.getSearchScope( readInt( UniversalTag.ENUMERATED.getValue(),
+            LdapCodecConstants.SCOPE_BASE_OBJECT, LdapCodecConstants.SCOPE_WHOLE_SUBTREE, end ) ) );
+        searchRequest.setDerefAliases( AliasDerefMode.getDerefMode( readInt( UniversalTag.ENUMERATED.getValue(),
+            LdapCodecConstants.NEVER_DEREF_ALIASES, LdapCodecConstants.DEREF_ALWAYS, end ) ) );
+
+        int sizeLimitEnd = readTag( UniversalTag.INTEGER.getValue(), end );
+
+        try
+        {
+            searchRequest.setSizeLimit( LongDecoder.parse( new BerValue( readBytes( sizeLimitEnd ) ), 0,
+                Integer.MAX_VALUE ) );
+        }
+        catch ( LongDecoderException lde )
+        {
+            throw FALLBACK;
+        }
+
+        searchRequest.setTimeLimit( readInt( UniversalTag.INTEGER.getValue(), 0, Integer.MAX_VALUE, end ) );
+
+        int typesOnlyEnd = readTag( UniversalTag.BOOLEAN.getValue(), end );
+
+        try
+        {
+            searchRequest.setTypesOnly( BooleanDecoder.parse( new BerValue( readBytes( typesOnlyEnd ) ) ) );
+        }
+        catch ( BooleanDecoderException bde )
+        {
+            throw FALLBACK;
+        }
+
+        searchRequest.setFilter( decodeFilter( end ) );
+
+        int attributesEnd = readTag( UniversalTag.SEQUENCE.getValue(), end );
+
+        while ( pos < attributesEnd )
+        {
+            int attributeEnd = readTag( UniversalTag.OCTET_STRING.getValue(), attributesEnd );
+
+            if ( pos < attributeEnd )
+            {
+                String attributeDescription = readString( attributeEnd );
+
+                // If the attributeDescription is empty, we won't add it
+                if ( !Strings.isEmpty( attributeDescription.trim() ) )
+                {
+                    searchRequest.addAttributes( attributeDescription );
+                }
+            }
+        }
+
+        checkEnd( attributesEnd );
+
+        return searchRequest;
+    }
+
+
+    /**
+     * Decodes a Filter, producing the same ExprNode as the grammar. The extensible
+     * match filters are left to the grammar.
+     */
+    private ExprNode decodeFilter( int end ) throws FallbackException, LdapException
+    {
+        if ( pos >= end )
+        {
+            throw FALLBACK;
+        }
+
+        int tag = bytes[pos++] & 0x00FF;
+        int filterEnd = readLength( end );
+
+        switch ( tag )
+        {
+            case LdapCodecConstants.AND_FILTER_TAG:
+                return decodeBranch( new AndNode(), filterEnd );
+
+            case LdapCodecConstants.OR_FILTER_TAG:
+                return decodeBranch( new OrNode(), filterEnd );
+
+            case LdapCodecConstants.NOT_FILTER_TAG:
+                NotNode notNode = new NotNode();
+                notNode.addNode( decodeFilter( filterEnd ) );
+                checkEnd( filterEnd );
+
+                return notNode;
+
+            case LdapCodecConstants.EQUALITY_MATCH_FILTER_TAG:
+            case LdapCodecConstants.GREATER_OR_EQUAL_FILTER_TAG:
+            case LdapCodecConstants.LESS_OR_EQUAL_FILTER_TAG:
+            case LdapCodecConstants.APPROX_MATCH_FILTER_TAG:
+                return decodeAttributeValueAssertion( tag, filterEnd );
+
+            case LdapCodecConstants.SUBSTRINGS_FILTER_TAG:
+                return decodeSubstrings( filterEnd );
+
+            case LdapCodecConstants.PRESENT_FILTER_TAG:
+                return new PresenceNode( readString( filterEnd ) );
+
+            default:
+                throw FALLBACK;
+        }
+    }
+
+
+    private ExprNode decodeBranch( BranchNode branch, int end ) throws FallbackException, LdapException
+    {
+        if ( pos == end )
+        {
+            throw FALLBACK;
+        }
+
+        while ( pos < end )
+        {
+            branch.addNode( decodeFilter( end ) );
+        }
+
+        return branch;
+    }
+
+
+    private ExprNode decodeAttributeValueAssertion( int tag, int end ) throws FallbackException, LdapException
+    {
+        int attributeDescEnd = readTag( UniversalTag.OCTET_STRING.getValue(), end );
+
+        if ( pos == attributeDescEnd )
+        {
+            throw FALLBACK;
+        }
+
+        String attributeDesc = readString( attributeDescEnd );
+        int assertionEnd = readTag( UniversalTag.OCTET_STRING.getValue(), end );
+        byte[] assertion = readBytes( assertionEnd );
+        checkEnd( end );
+
+        switch ( tag )
+        {
+            case LdapCodecConstants.EQUALITY_MATCH_FILTER_TAG:
+                return new EqualityNode( attributeDesc, assertion );
+
+            case LdapCodecConstants.GREATER_OR_EQUAL_FILTER_TAG:
+                return new GreaterEqNode( attributeDesc, assertion );
+
+            case LdapCodecConstants.LESS_OR_EQUAL_FILTER_TAG:
+                return new LessEqNode( attributeDesc, assertion );
+
+            default:
+                return new ApproximateNode( attributeDesc, assertion );
+        }
+    }
+
+
+    /**
+     * SubstringFilter ::= SEQUENCE {
+     *     type           AttributeDescription,
+     *     substrings     SEQUENCE SIZE (1..MAX) OF substring CHOICE {
+     *         initial [0] AssertionValue,  -- can occur at most once
+     *         any     [1] AssertionValue,
+     *         final   [2] AssertionValue } -- can occur at most once
+     *     }
+     */
+    private ExprNode decodeSubstrings( int end ) throws FallbackException, LdapException
+    {
+        int typeEnd = readTag( UniversalTag.OCTET_STRING.getValue(), end );
+
+        if ( pos == typeEnd )
+        {
+            throw FALLBACK;
+        }
+
+        String type = readString( typeEnd );
+        int substringsEnd = readTag( UniversalTag.SEQUENCE.getValue(), end );
+        String initialString = null;
+        String finalString = null;
+        List<String> anyString = new ArrayList<>();
+
+        if ( pos == substringsEnd )
+        {
+            throw FALLBACK;
+        }
+
+        while ( pos < substringsEnd )
+        {
+            if ( finalString != null )
+            {
+                // Nothing can follow the final substring
+                throw FALLBACK;
+            }
+
+            int tag = bytes[pos++] & 0x00FF;
+            int substringEnd = readLength( substringsEnd );
+
+            if ( pos == substringEnd )
+            {
+                throw FALLBACK;
+            }
+
+            String substring = readString( substringEnd );
+
+            switch ( tag )
+            {
+                case LdapCodecConstants.SUBSTRINGS_FILTER_INITIAL_TAG:
+                    if ( ( initialString != null ) || !anyString.isEmpty() )
+                    {
+                        throw FALLBACK;
+                    }
+
+                    initialString = substring;
+                    break;
+
+                case LdapCodecConstants.SUBSTRINGS_FILTER_ANY_TAG:
+                    anyString.add( substring );
+                    break;
+
+                case LdapCodecConstants.SUBSTRINGS_FILTER_FINAL_TAG:
+                    finalString = substring;
+                    break;
+
+                default:
+                    throw FALLBACK;
+            }
+        }
+
+        checkEnd( end );
+
+        return new SubstringNode( anyString, type, initialString, finalString );
+    }
+
+
+    /**
+     * ModifyRequest ::= [APPLICATION 6] SEQUENCE {
+     *     object          LDAPDN,
+     *     changes         SEQUENCE OF change SEQUENCE {
+     *         operation       ENUMERATED { ... },
+     *         modification    PartialAttribute } }
+     */
+    private Message decodeModifyRequest( int messageId, int end ) throws FallbackException, LdapException
+    {
+        ModifyRequestImpl modifyRequest = new ModifyRequestImpl();
+        modifyRequest.setMessageId( messageId );
+        container.setMessage( modifyRequest );
+        modifyRequest.setName( readDn( end, true ) );
+
+        int changesEnd = readTag( UniversalTag.SEQUENCE.getValue(), end );
+
+        while ( pos < changesEnd )
+        {
+            int changeEnd = readTag( UniversalTag.SEQUENCE.getValue(), changesEnd );
+            int operation = readInt( UniversalTag.ENUMERATED.getValue(), LdapCodecConstants.OPERATION_ADD,
+                LdapCodecConstants.OPERATION_INCREMENT, changeEnd );
+
+            Modification modification = new DefaultModification();
+            modification.setOperation( operation );
+            modifyRequest.addModification( modification );
+
+            int modificationEnd = readTag( UniversalTag.SEQUENCE.getValue(), changeEnd );
+            int typeEnd = readTag( UniversalTag.OCTET_STRING.getValue(), modificationEnd );
+
+            if ( pos == typeEnd )
+            {
+                throw FALLBACK;
+            }
+
+            Attribute attribute = new DefaultAttribute( readString( typeEnd ) );
+            modification.setAttribute( attribute );
+            decodeValues( attribute, modificationEnd );
+            checkEnd( modificationEnd );
+            checkEnd( changeEnd );
+        }
+
+        checkEnd( changesEnd );
+
+        return modifyRequest;
+    }
+
+
+    /**
+     * vals SET OF value AttributeValue
+     */
+    private void decodeValues( Attribute attribute, int end ) throws FallbackException, LdapException
+    {
+        int valuesEnd = readTag( UniversalTag.SET.getValue(), end );
+        boolean isBinary = container.isBinary( attribute.getId() );
+
+        while ( pos < valuesEnd )
+        {
+            int valueEnd = readTag( UniversalTag.OCTET_STRING.getValue(), valuesEnd );
+
+            if ( pos == valueEnd )
+            {
+                attribute.add( "" );
+            }
+            else if ( isBinary )
+            {
+                attribute.add( readBytes( valueEnd ) );
+            }
+            else
+            {
+                attribute.add( readString( valueEnd ) );
+            }
+        }
+
+        checkEnd( valuesEnd );
+    }
+
+
+    /**
+     * Controls ::= SEQUENCE OF control Control
+     *
+     * Control ::= SEQUENCE {
+     *     controlType             LDAPOID,
+     *     criticality             BOOLEAN DEFAULT FALSE,
+     *     controlValue            OCTET STRING OPTIONAL }
+     */
+    private void decodeControls( Message message, int end ) throws FallbackException, DecoderException
+    {
+        int controlsEnd = readTag( CONTROLS_TAG, end );
+        LdapApiService codec = container.getLdapCodecService();
+
+        while ( pos < controlsEnd )
+        {
+            int controlEnd = readTag( UniversalTag.SEQUENCE.getValue(), controlsEnd );
+            int oidEnd = readTag( UniversalTag.OCTET_STRING.getValue(), controlEnd );
+
+            if ( pos == oidEnd )
+            {
+                throw FALLBACK;
+            }
+
+            String oid = Strings.utf8ToString( bytes, pos, oidEnd - pos );
+            pos = oidEnd;
+
+            if ( !Oid.isOid( oid ) )
+            {
+                throw FALLBACK;
+            }
+
+            ControlFactory<?> controlFactory;
+
+            if ( message instanceof Request )
+            {
+                controlFactory = codec.getRequestControlFactories().get( oid );
+            }
+            else
+            {
+                controlFactory = codec.getResponseControlFactories().get( oid );
+            }
+
+            Control control;
+
+            if ( controlFactory == null )
+            {
+                control = new OpaqueControl( oid );
+            }
+            else
+            {
+                control = controlFactory.newControl();
+            }
+
+            message.addControl( control );
+
+            if ( ( pos < controlEnd ) && ( bytes[pos] == UniversalTag.BOOLEAN.getValue() ) )
+            {
+                pos++;
+                int criticalityEnd = readLength( controlEnd );
+
+                try
+                {
+                    control.setCritical( BooleanDecoder.parse( new BerValue( readBytes( criticalityEnd ) ) ) );
+                }
+                catch ( BooleanDecoderException bde )
+                {
+                    throw FALLBACK;
+                }
+            }
+
+            if ( pos < controlEnd )
+            {
+                int valueEnd = readTag( UniversalTag.OCTET_STRING.getValue(), controlEnd );
+
+                if ( pos == valueEnd )
+                {
+                    throw FALLBACK;
+                }
+
+                byte[] value = readBytes( valueEnd );
+
+                if ( controlFactory == null )
+                {
+                    // We don't know about this control, so it's an opaque control
+                    ( ( OpaqueControl ) control ).setEncodedValue( value );
+                }
+                else
+                {
+                    controlFactory.decodeValue( control, value );
+                }
+            }
+
+            checkEnd( controlEnd );
+        }
+
+        checkEnd( controlsEnd );
+    }
+
+
+    /**
+     * Reads a Dn, using the DnFactory if asked to and if there is one
+     */
+    private Dn readDn( int end, boolean useDnFactory ) throws FallbackException
+    {
+        int dnEnd = readTag( UniversalTag.OCTET_STRING.getValue(), end );
+
+        if ( pos == dnEnd )
+        {
+            return Dn.EMPTY_DN;
+        }
+
+        return createDn( readString( dnEnd ), useDnFactory );
+    }
+
+
+    private Dn createDn( String dnStr, boolean useDnFactory ) throws FallbackException
+    {
+        try
+        {
+            DnFactory dnFactory = container.getDnFactory();
+
+            if ( useDnFactory && ( dnFactory != null ) )
+            {
+                return dnFactory.create( dnStr );
+            }
+            else
+            {
+                return new Dn( dnStr );
+            }
+        }
+        catch ( LdapException le )
+        {
+            throw FALLBACK;
+        }
+    }
+
+
+    /**
+     * Reads an INTEGER or an ENUMERATED, checking that it's in the given interval
+     */
+    private int readInt( byte tag, int min, int max, int end ) throws FallbackException
+    {
+        int intEnd = readTag( tag, end );
+
+        if ( pos == intEnd )
+        {
+            throw FALLBACK;
+        }
+
+        try
+        {
+            return IntegerDecoder.parse( new BerValue( readBytes( intEnd ) ), min, max );
+        }
+        catch ( IntegerDecoderException ide )
+        {
+            throw FALLBACK;
+        }
+    }
+
+
+    /**
+     * Checks the tag of the next TLV, and reads its length
+     *
+     * @return The position of the end of the TLV value
+     */
+    private int readTag( byte tag, int end ) throws FallbackException
+    {
+        if ( ( pos >= end ) || ( bytes[pos] != tag ) )
+        {
+            throw FALLBACK;
+        }
+
+        pos++;
+
+        return readLength( end );
+    }
+
+
+    /**
+     * Reads a definite length, checking that the TLV value fits in its enclosing TLV
+     *
+     * @return The position of the end of the TLV value
+     */
+    private int readLength( int end ) throws FallbackException
+    {
+        if ( pos >= end )
+        {
+            throw FALLBACK;
+        }
+
+        int length = bytes[pos++] & 0x00FF;
+
+        if ( length >= 0x80 )
+        {
+            int nbBytes = length & 0x7F;
+
+            if ( ( nbBytes == 0 ) || ( nbBytes > 4 ) || ( pos + nbBytes > end ) )
+            {
+                throw FALLBACK;
+            }
+
+            length = 0;
+
+            for ( int i = 0; i < nbBytes; i++ )
+            {
+                length = ( length << 8 ) | ( bytes[pos++] & 0x00FF );
+            }
+
+            if ( length < 0 )
+            {
+                throw FALLBACK;
+            }
+        }
+
+        if ( length > end - pos )
+        {
+            throw FALLBACK;
+        }
+
+        return pos + length;
+    }
+
+
+    private byte[] readBytes( int end )
+    {
+        if ( pos == end )
+        {
+            return Strings.EMPTY_BYTES;
+        }
+
+        byte[] value = new byte[end - pos];
+        System.arraycopy( bytes, pos, value, 0, value.length );
+        pos = end;
+
+        return value;
+    }
+
+
+    private String readString( int end )
+    {
+        if ( pos == end )
+        {
+            return "";
+        }
+
+        String value = Strings.utf8ToString( bytes, pos, end - pos );
+        pos = end;
+
+        return value;
+    }
+
+
+    private void checkEnd( int end ) throws FallbackException
+    {
+        if ( pos != end )
+        {
+            throw FALLBACK;
+        }
+    }
+}
@@ -61,17 +61,20 @@ public class SaslFilter extends IoFilterAdapter
     public static final String DISABLE_SECURITY_LAYER_ONCE = SaslFilter.class.getName() + ".DisableSecurityLayerOnce";
 
     /**
-     * A session attribute key that holds the received bytes of partially received
-     * SASL message.
+     * A session attribute key that holds the buffer receiving the SASL messages which
+     * are split across several reads. The buffer is reused for the next messages.
      */
     public static final String BYTES = SaslFilter.class.getName() + ".Buffer";
 
     /**
-     * A session attribute key that holds the offset of partially received
-     * SASL message.
+     * A session attribute key that holds the number of bytes, including the 4 bytes
+     * length, of the partially received SASL message.
      */
     public static final String OFFSET = SaslFilter.class.getName() + ".Offset";
 
+    /** The size of the SASL message length */
+    private static final int LENGTH_SIZE = 4;
+
     /** The SASL client, only set if the filter is used at the client side. */
     private final SaslClient saslClient;
 
@@ -158,59 +161,106 @@ public class SaslFilter extends IoFilterAdapter
          * Unwrap the data for mechanisms that support QoP (DIGEST-MD5, GSSAPI).
          */
         IoBuffer buf = ( IoBuffer ) message;
+
         while ( buf.hasRemaining() )
         {
+            int offset = ( int ) session.getAttribute( OFFSET, 0 );
+
             /*
-             * Check for a previously received partial SASL message which is stored in the session.
-             * Otherwise read the first 4 bytes which is the length and allocate the bytes.
-             * Ensure the buffer size doesn't exceed the negotiated max buffer size.
+             * The SASL messages completely contained in the received buffer are unwrapped
+             * from the buffer itself, without any copy.
              */
-            byte[] bytes = ( byte[] ) session.getAttribute( BYTES, null );
-            int offset = ( int ) session.getAttribute( OFFSET, -1 );
-            if ( bytes == null )
+            if ( ( offset == 0 ) && buf.hasArray() && ( buf.remaining() >= LENGTH_SIZE ) )
             {
-                int bufferSize = buf.getInt();
-                if ( bufferSize > maxBufferSize )
+                int length = checkLength( buf.getInt( buf.position() ) );
+
+                if ( buf.remaining() - LENGTH_SIZE >= length )
                 {
-                    throw new IllegalStateException(
-                        bufferSize + " exceeds the negotiated receive buffer size limit: " + maxBufferSize );
+                    LOG.debug( "Will use SASL to unwrap received message of length:  {}", length );
+                    byte[] token = unwrap( buf.array(), buf.arrayOffset() + buf.position() + LENGTH_SIZE, length );
+                    buf.skip( LENGTH_SIZE + length );
+                    nextFilter.messageReceived( session, IoBuffer.wrap( token ) );
+
+                    continue;
                 }
-                bytes = new byte[bufferSize];
-                offset = 0;
             }
 
             /*
-             * Get the buffer as bytes. Handle the case that only a part of the SASL message was received.
+             * Otherwise, the SASL message is split across reads : the received bytes, including
+             * the length, are accumulated in a buffer kept in the session, and reused for the
+             * next messages.
              */
-            int length = Math.min( bytes.length - offset, buf.remaining() );
-            buf.get( bytes, offset, length );
+            byte[] bytes = ( byte[] ) session.getAttribute( BYTES, null );
+
+            if ( bytes == null )
+            {
+                bytes = new byte[LENGTH_SIZE];
+                session.setAttribute( BYTES, bytes );
+            }
+
+            if ( offset < LENGTH_SIZE )
+            {
+                int length = Math.min( LENGTH_SIZE - offset, buf.remaining() );
+                buf.get( bytes, offset, length );
+                offset += length;
+
+                if ( offset < LENGTH_SIZE )
+                {
+                    LOG.debug( "Partial SASL message length received:  {}/{}", offset, LENGTH_SIZE );
+                    session.setAttribute( OFFSET, offset );
+                    break;
+                }
+            }
+
+            int messageLength = checkLength( ( ( bytes[0] & 0xFF ) << 24 ) | ( ( bytes[1] & 0xFF ) << 16 )
+                | ( ( bytes[2] & 0xFF ) << 8 ) | ( bytes[3] & 0xFF ) );
+
+            if ( bytes.length < LENGTH_SIZE + messageLength )
+            {
+                byte[] newBytes = new byte[LENGTH_SIZE + messageLength];
+                System.arraycopy( bytes, 0, newBytes, 0, offset );
+                bytes = newBytes;
+                session.setAttribute( BYTES, bytes );
+            }
 
             /*
-             * Check if the full SASL message was received. If not store the partially received data in
-             * the session so it can be resumed when the next message is received.
+             * Handle the case that only a part of the SASL message was received.
              */
+            int length = Math.min( LENGTH_SIZE + messageLength - offset, buf.remaining() );
+            buf.get( bytes, offset, length );
             offset += length;
-            if ( offset < bytes.length )
+
+            if ( offset < LENGTH_SIZE + messageLength )
             {
-                LOG.debug( "Partial SASL message received:  {}/{}", offset, bytes.length );
-                session.setAttribute( BYTES, bytes );
+                LOG.debug( "Partial SASL message received:  {}/{}", offset - LENGTH_SIZE, messageLength );
                 session.setAttribute( OFFSET, offset );
                 break;
             }
 
             /*
-             * Unwrap the SASL message and forward it to the next filter.
+             * Unwrap the SASL message and forward it to the next filter. The buffer is kept
+             * for the next message.
              */
-            LOG.debug( "Will use SASL to unwrap received message of length:  {}", bytes.length );
-            byte[] token = unwrap( bytes, 0, bytes.length );
+            session.setAttribute( OFFSET, 0 );
+            LOG.debug( "Will use SASL to unwrap received message of length:  {}", messageLength );
+            byte[] token = unwrap( bytes, LENGTH_SIZE, messageLength );
             nextFilter.messageReceived( session, IoBuffer.wrap( token ) );
+        }
+    }
 
-            /*
-             * Finally clear the session attributes.
-             */
-            session.removeAttribute( BYTES );
-            session.removeAttribute( OFFSET );
+
+    /**
+     * Ensure the received SASL message size doesn't exceed the negotiated max buffer size.
+     */
+    private int checkLength( int length )
+    {
+        if ( ( length < 0 ) || ( length > maxBufferSize ) )
+        {
+            throw new IllegalStateException(
+                length + " exceeds the negotiated receive buffer size limit: " + maxBufferSize );
         }
+
+        return length;
     }
 
 
@@ -244,32 +294,51 @@ public class SaslFilter extends IoFilterAdapter
          */
 
         /*
-         * Get the buffer as bytes.
+         * Get the buffer as bytes. A buffer backed by an array is wrapped directly from its
+         * array, the other buffers are copied chunk by chunk into an array reused for all the
+         * chunks of this message only, as several threads may write on the session.
          */
         IoBuffer buf = ( IoBuffer ) writeRequest.getMessage();
         int bufferLength = buf.remaining();
-        byte[] bufferBytes = new byte[bufferLength];
-        buf.get( bufferBytes );
 
-        LOG.info( "Will use SASL to wrap message of length:  {}", bufferLength );
+        LOG.debug( "Will use SASL to wrap message of length:  {}", bufferLength );
 
         /*
          * Ensure to not send larger SASL message than negotiated.
          */
         int max = maxBufferSize - 200;
+        byte[] wrapBuffer = null;
+
         for ( int offset = 0; offset < bufferLength; offset += max )
         {
             int length = Math.min( bufferLength - offset, max );
-            byte[] saslLayer = wrap( bufferBytes, offset, length );
+            byte[] saslLayer;
+
+            if ( buf.hasArray() )
+            {
+                saslLayer = wrap( buf.array(), buf.arrayOffset() + buf.position(), length );
+                buf.skip( length );
+            }
+            else
+            {
+                if ( wrapBuffer == null )
+                {
+                    // The first chunk is the largest one
+                    wrapBuffer = new byte[length];
+                }
+
+                buf.get( wrapBuffer, 0, length );
+                saslLayer = wrap( wrapBuffer, 0, length );
+            }
 
             /*
              * Prepend 4 byte length.
              */
-            IoBuffer saslLayerBuffer = IoBuffer.allocate( 4 + saslLayer.length );
+            IoBuffer saslLayerBuffer = IoBuffer.allocate( LENGTH_SIZE + saslLayer.length );
             saslLayerBuffer.putInt( saslLayer.length );
             saslLayerBuffer.put( saslLayer );
             saslLayerBuffer.position( 0 );
-            saslLayerBuffer.limit( 4 + saslLayer.length );
+            saslLayerBuffer.limit( LENGTH_SIZE + saslLayer.length );
 
             LOG.debug( "Sending encrypted token of length {}.", saslLayerBuffer.limit() );
             nextFilter.filterWrite( session, new DefaultWriteRequest( saslLayerBuffer, writeRequest.getFuture() ) );
@@ -0,0 +1,341 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.codec.metrics;
+
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+
+
+/**
+ * A LdapMetrics implementation keeping everything in memory :
+ * <ul>
+ *   <li>a latency histogram per request type and result code</li>
+ *   <li>the number of requests in progress, the number of timeouts, abandons and failures per request type</li>
+ *   <li>histograms of the pool wait, encoding and decoding durations</li>
+ *   <li>the number of bytes sent and received</li>
+ * </ul>
+ * A single instance can be shared by many connections and pools.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class HistogramLdapMetrics implements LdapMetrics
+{
+    /** The number of message types */
+    private static final int TYPE_COUNT = MessageTypeEnum.values().length;
+
+    /** The latency histograms, per request type and result code */
+    private final ConcurrentMap<MessageTypeEnum, ConcurrentMap<ResultCodeEnum, LatencyHistogram>> latencies =
+        new ConcurrentHashMap<>();
+
+    /** The requests in progress, per request type */
+    private final AtomicIntegerArray inFlight = new AtomicIntegerArray( TYPE_COUNT );
+
+    /** The timed out requests, per request type */
+    private final AtomicLongArray timeouts = new AtomicLongArray( TYPE_COUNT );
+
+    /** The abandoned requests, per request type */
+    private final AtomicLongArray abandons = new AtomicLongArray( TYPE_COUNT );
+
+    /** The requests lost with their connection, per request type */
+    private final AtomicLongArray failures = new AtomicLongArray( TYPE_COUNT );
+
+    /** The time spent waiting for a pooled connection */
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+
+    /** The time spent encoding */
+    private final LatencyHistogram encoding = new LatencyHistogram();
+
+    /** The time spent decoding */
+    private final LatencyHistogram decoding = new LatencyHistogram();
+
+    /** The number of bytes sent */
+    private final LongAdder bytesSent = new LongAdder();
+
+    /** The number of bytes received */
+    private final LongAdder bytesReceived = new LongAdder();
+
+    /** The number of decoded messages */
+    private final LongAdder messagesReceived = new LongAdder();
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled()
+    {
+        return true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void operationStarted( MessageTypeEnum requestType )
+    {
+        inFlight.incrementAndGet( requestType.ordinal() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void operationCompleted( MessageTypeEnum requestType, ResultCodeEnum resultCode, long duration )
+    {
+        inFlight.decrementAndGet( requestType.ordinal() );
+
+        ConcurrentMap<ResultCodeEnum, LatencyHistogram> histograms = latencies.get( requestType );
+
+        if ( histograms == null )
+        {
+            histograms = latencies.computeIfAbsent( requestType, t -> new ConcurrentHashMap<>() );
+        }
+
+        LatencyHistogram histogram = histograms.get( resultCode );
+
+        if ( histogram == null )
+        {
+            histogram = histograms.computeIfAbsent( resultCode, c -> new LatencyHistogram() );
+        }
+
+        histogram.record( duration );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void operationTimedOut( MessageTypeEnum requestType )
+    {
+        inFlight.decrementAndGet( requestType.ordinal() );
+        timeouts.incrementAndGet( requestType.ordinal() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void operationAbandoned( MessageTypeEnum requestType )
+    {
+        inFlight.decrementAndGet( requestType.ordinal() );
+        abandons.incrementAndGet( requestType.ordinal() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void operationFailed( MessageTypeEnum requestType )
+    {
+        inFlight.decrementAndGet( requestType.ordinal() );
+        failures.incrementAndGet( requestType.ordinal() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connectionBorrowed( long duration )
+    {
+        poolWait.record( duration );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void messageEncoded( int bytes, long duration )
+    {
+        bytesSent.add( bytes );
+        encoding.record( duration );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bytesDecoded( int bytes, int messages, long duration )
+    {
+        bytesReceived.add( bytes );
+        messagesReceived.add( messages );
+        decoding.record( duration );
+    }
+
+
+    /**
+     * Gets the latency histogram of a request type and a result code
+     *
+     * @param requestType The request type
+     * @param resultCode The result code
+     * @return The histogram, or null if no such response has been received
+     */
+    public LatencyHistogram getLatency( MessageTypeEnum requestType, ResultCodeEnum resultCode )
+    {
+        Map<ResultCodeEnum, LatencyHistogram> histograms = latencies.get( requestType );
+
+        return histograms == null ? null : histograms.get( resultCode );
+    }
+
+
+    /**
+     * Gets the latency histograms of a request type
+     *
+     * @param requestType The request type
+     * @return The histograms per result code, empty if no response has been received
+     */
+    public Map<ResultCodeEnum, LatencyHistogram> getLatencies( MessageTypeEnum requestType )
+    {
+        Map<ResultCodeEnum, LatencyHistogram> histograms = latencies.get( requestType );
+
+        if ( histograms == null )
+        {
+            return Collections.emptyMap();
+        }
+
+        return Collections.unmodifiableMap( histograms );
+    }
+
+
+    /**
+     * @param requestType The request type
+     * @return The number of requests of this type waiting for their response
+     */
+    public int getInFlight( MessageTypeEnum requestType )
+    {
+        return inFlight.get( requestType.ordinal() );
+    }
+
+
+    /**
+     * @return The number of requests waiting for their response
+     */
+    public int getInFlight()
+    {
+        int total = 0;
+
+        for ( int i = 0; i < TYPE_COUNT; i++ )
+        {
+            total += inFlight.get( i );
+        }
+
+        return total;
+    }
+
+
+    /**
+     * @param requestType The request type
+     * @return The number of requests of this type which have timed out
+     */
+    public long getTimeouts( MessageTypeEnum requestType )
+    {
+        return timeouts.get( requestType.ordinal() );
+    }
+
+
+    /**
+     * @param requestType The request type
+     * @return The number of requests of this type which have been abandoned
+     */
+    public long getAbandons( MessageTypeEnum requestType )
+    {
+        return abandons.get( requestType.ordinal() );
+    }
+
+
+    /**
+     * @param requestType The request type
+     * @return The number of requests of this type lost with their connection
+     */
+    public long getFailures( MessageTypeEnum requestType )
+    {
+        return failures.get( requestType.ordinal() );
+    }
+
+
+    /**
+     * @return The histogram of the time spent waiting for a pooled connection
+     */
+    public LatencyHistogram getPoolWait()
+    {
+        return poolWait;
+    }
+
+
+    /**
+     * @return The histogram of the time spent encoding the requests
+     */
+    public LatencyHistogram getEncoding()
+    {
+        return encoding;
+    }
+
+
+    /**
+     * @return The histogram of the time spent decoding the responses
+     */
+    public LatencyHistogram getDecoding()
+    {
+        return decoding;
+    }
+
+
+    /**
+     * @return The number of bytes sent
+     */
+    public long getBytesSent()
+    {
+        return bytesSent.sum();
+    }
+
+
+    /**
+     * @return The number of bytes received
+     */
+    public long getBytesReceived()
+    {
+        return bytesReceived.sum();
+    }
+
+
+    /**
+     * @return The number of messages received
+     */
+    public long getMessagesReceived()
+    {
+        return messagesReceived.sum();
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.codec.metrics;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A lock free histogram of durations, in nanoseconds, with a bounded relative error.
+ * <br>
+ * As in a HDR histogram, the values are stored in buckets which width grows with the
+ * value : each power of two range is split into 32 buckets, so the values are known with
+ * a relative error below 3.2%, whatever their magnitude. The values below 64 are exact.
+ * Recording a value is a few arithmetic operations and an atomic increment, without any
+ * allocation.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LatencyHistogram
+{
+    /** The number of bits used for the buckets of a power of two range */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** The number of buckets in a power of two range */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** The mask used to get the bucket in a power of two range */
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    /** The number of buckets needed to store any positive long */
+    private static final int BUCKET_COUNT = ( 63 - SUB_BUCKET_BITS ) * SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+    /** The counts per bucket */
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKET_COUNT );
+
+    /** The number of recorded values */
+    private final LongAdder count = new LongAdder();
+
+    /** The sum of the recorded values */
+    private final LongAdder sum = new LongAdder();
+
+    /** The highest recorded value */
+    private final AtomicLong max = new AtomicLong();
+
+
+    /**
+     * Gets the index of the bucket containing a value
+     *
+     * @param value The value, positive
+     * @return The bucket index
+     */
+    static int bucketIndex( long value )
+    {
+        if ( value < ( SUB_BUCKET_COUNT << 1 ) )
+        {
+            return ( int ) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BUCKET_BITS;
+
+        return ( shift << SUB_BUCKET_BITS ) + ( int ) ( value >>> shift );
+    }
+
+
+    /**
+     * Gets the highest value stored in a bucket
+     *
+     * @param index The bucket index
+     * @return The highest value of the bucket
+     */
+    static long bucketHighestValue( int index )
+    {
+        if ( index < ( SUB_BUCKET_COUNT << 1 ) )
+        {
+            return index;
+        }
+
+        int shift = ( index >>> SUB_BUCKET_BITS ) - 1;
+        long top = ( index & SUB_BUCKET_MASK ) | SUB_BUCKET_COUNT;
+
+        return ( ( top + 1L ) << shift ) - 1L;
+    }
+
+
+    /**
+     * Records a value
+     *
+     * @param value The value, in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record( long value )
+    {
+        long recorded = Math.max( 0L, value );
+
+        counts.incrementAndGet( bucketIndex( recorded ) );
+        count.increment();
+        sum.add( recorded );
+
+        long currentMax = max.get();
+
+        while ( ( recorded > currentMax ) && !max.compareAndSet( currentMax, recorded ) )
+        {
+            currentMax = max.get();
+        }
+    }
+
+
+    /**
+     * @return The number of recorded values
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+
+    /**
+     * @return The highest recorded value, 0 if no value has been recorded
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+
+    /**
+     * @return The mean of the recorded values, 0 if no value has been recorded
+     */
+    public double getMean()
+    {
+        long total = count.sum();
+
+        return total == 0L ? 0d : ( double ) sum.sum() / total;
+    }
+
+
+    /**
+     * Gets the value under which a given percentage of the recorded values are. The
+     * result is the highest value of the bucket the percentile falls in, capped by the
+     * highest recorded value.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The value at the given percentile, 0 if no value has been recorded
+     */
+    public long getValueAtPercentile( double percentile )
+    {
+        long total = 0L;
+
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            total += counts.get( i );
+        }
+
+        if ( total == 0L )
+        {
+            return 0L;
+        }
+
+        long rank = Math.max( 1L, ( long ) Math.ceil( Math.min( 100d, Math.max( 0d, percentile ) ) * total / 100d ) );
+        long seen = 0L;
+
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            seen += counts.get( i );
+
+            if ( seen >= rank )
+            {
+                return Math.min( bucketHighestValue( i ), max.get() );
+            }
+        }
+
+        return max.get();
+    }
+
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return "count=" + getCount() + ", mean=" + ( long ) getMean() + ", p50=" + getValueAtPercentile( 50d )
+            + ", p99=" + getValueAtPercentile( 99d ) + ", max=" + getMax();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.codec.metrics;
+
+
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+
+
+/**
+ * The metrics SPI of the LDAP client. An implementation receives the events of the
+ * connections, of the connection pools and of the LDAP codec filters, and is free to
+ * aggregate them the way it wants. {@link HistogramLdapMetrics} keeps latency histograms
+ * in memory.
+ * <br>
+ * The events are sent from the I/O threads as well as from the application threads : an
+ * implementation must be thread safe, and must not block. When {@link #isEnabled()}
+ * returns <code>false</code>, no event is sent and no time is measured : this is what the
+ * default {@link #NOOP} implementation does.
+ * <br>
+ * All the durations are in nanoseconds.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface LdapMetrics
+{
+    /** The IoSession attribute used to give the metrics to the codec filters */
+    String SESSION_ATTR = "LDAP_METRICS";
+
+    /** The metrics implementation that records nothing */
+    LdapMetrics NOOP = new NoopLdapMetrics();
+
+
+    /**
+     * Tells if the metrics are recorded. The callers don't measure anything when
+     * the metrics are disabled.
+     *
+     * @return <code>true</code> if the events must be sent
+     */
+    boolean isEnabled();
+
+
+    /**
+     * A request has been sent, and is waiting for its response
+     *
+     * @param requestType The request type
+     */
+    void operationStarted( MessageTypeEnum requestType );
+
+
+    /**
+     * The final response of a request has been received
+     *
+     * @param requestType The request type
+     * @param resultCode The response result code
+     * @param duration The time elapsed since the request was sent
+     */
+    void operationCompleted( MessageTypeEnum requestType, ResultCodeEnum resultCode, long duration );
+
+
+    /**
+     * No response has been received for a request before the timeout
+     *
+     * @param requestType The request type
+     */
+    void operationTimedOut( MessageTypeEnum requestType );
+
+
+    /**
+     * A request has been abandoned before its final response was received
+     *
+     * @param requestType The request type
+     */
+    void operationAbandoned( MessageTypeEnum requestType );
+
+
+    /**
+     * A request will never get its response, because the connection has been closed
+     *
+     * @param requestType The request type
+     */
+    void operationFailed( MessageTypeEnum requestType );
+
+
+    /**
+     * A connection has been borrowed from a pool
+     *
+     * @param duration The time spent waiting for the connection
+     */
+    void connectionBorrowed( long duration );
+
+
+    /**
+     * Some messages have been encoded, and are about to be written on the wire
+     *
+     * @param bytes The number of encoded bytes
+     * @param duration The time spent encoding
+     */
+    void messageEncoded( int bytes, long duration );
+
+
+    /**
+     * Some bytes have been read from the wire and decoded
+     *
+     * @param bytes The number of received bytes
+     * @param messages The number of fully decoded messages, may be 0 if the bytes are only a part of a PDU
+     * @param duration The time spent decoding
+     */
+    void bytesDecoded( int bytes, int messages, long duration );
+}
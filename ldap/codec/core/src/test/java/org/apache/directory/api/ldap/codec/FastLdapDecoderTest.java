@@ -0,0 +1,416 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.codec;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.asn1.ber.Asn1Decoder;
+import org.apache.directory.api.asn1.ber.tlv.TLVStateEnum;
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.FastLdapDecoder;
+import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.api.ldap.codec.osgi.AbstractCodecServiceTest;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.ModificationOperation;
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.BindResponse;
+import org.apache.directory.api.ldap.model.message.BindResponseImpl;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.apache.directory.api.ldap.model.message.ModifyRequestImpl;
+import org.apache.directory.api.ldap.model.message.ReferralImpl;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.ChangeType;
+import org.apache.directory.api.ldap.model.message.controls.EntryChange;
+import org.apache.directory.api.ldap.model.message.controls.EntryChangeImpl;
+import org.apache.directory.api.ldap.model.message.controls.OpaqueControl;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the FastLdapDecoder class, comparing what it decodes with what the grammar decodes.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class FastLdapDecoderTest extends AbstractCodecServiceTest
+{
+    private List<Message> createMessages() throws Exception
+    {
+        List<Message> messages = new ArrayList<>();
+
+        SearchResultEntry entry = new SearchResultEntryImpl( 2 );
+        entry.setEntry( new DefaultEntry( "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: person",
+            "cn: test",
+            "sn: Test",
+            "description:",
+            "jpegPhoto:: AAECAwQ=" ) );
+        messages.add( entry );
+
+        SearchResultEntry emptyEntry = new SearchResultEntryImpl( 128 );
+        emptyEntry.setObjectName( Dn.EMPTY_DN );
+        messages.add( emptyEntry );
+
+        SearchResultEntry entryWithControls = new SearchResultEntryImpl( 70000 );
+        entryWithControls.setEntry( new DefaultEntry( "ou=a\\,b + cn=\"c\",dc=example,dc=com",
+            "objectClass: top",
+            "ou: a,b" ) );
+        EntryChange entryChange = new EntryChangeImpl();
+        entryChange.setChangeType( ChangeType.MODDN );
+        entryChange.setPreviousDn( new Dn( "ou=previous,dc=example,dc=com" ) );
+        entryChange.setChangeNumber( 12 );
+        entryChange.setCritical( true );
+        entryWithControls.addControl( entryChange );
+        messages.add( entryWithControls );
+
+        SearchResultDone done = new SearchResultDoneImpl( 3 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        PagedResultsImpl pagedResults = new PagedResultsImpl();
+        pagedResults.setSize( 10 );
+        pagedResults.setCookie( Strings.getBytesUtf8( "cookie" ) );
+        done.addControl( pagedResults );
+        messages.add( done );
+
+        SearchResultDone noSuchObject = new SearchResultDoneImpl( 4 );
+        noSuchObject.getLdapResult().setResultCode( ResultCodeEnum.NO_SUCH_OBJECT );
+        noSuchObject.getLdapResult().setMatchedDn( new Dn( "ou=system" ) );
+        noSuchObject.getLdapResult().setDiagnosticMessage( "No such object" );
+        messages.add( noSuchObject );
+
+        BindResponse bindResponse = new BindResponseImpl( 1 );
+        bindResponse.getLdapResult().setResultCode( ResultCodeEnum.SASL_BIND_IN_PROGRESS );
+        bindResponse.setServerSaslCreds( new byte[] { 'a', 'b', 'c' } );
+        messages.add( bindResponse );
+
+        BindResponse simpleBindResponse = new BindResponseImpl( 1 );
+        simpleBindResponse.getLdapResult().setResultCode( ResultCodeEnum.INVALID_CREDENTIALS );
+        simpleBindResponse.getLdapResult().setDiagnosticMessage( "Invalid credentials" );
+        messages.add( simpleBindResponse );
+
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setMessageId( 5 );
+        searchRequest.setBase( new Dn( "dc=example,dc=com" ) );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setDerefAliases( AliasDerefMode.DEREF_FINDING_BASE_OBJ );
+        searchRequest.setSizeLimit( 1000 );
+        searchRequest.setTimeLimit( 30 );
+        searchRequest.setFilter(
+            "(&(objectClass=person)(|(cn=a*b*c)(sn~=test)(cn=*x)(cn=y*))(!(uid>=10))(uid<=20)(mail=*))" );
+        searchRequest.addAttributes( "cn", "sn", "+" );
+        searchRequest.addControl( new PagedResultsImpl() );
+        messages.add( searchRequest );
+
+        SearchRequest rootDseRequest = new SearchRequestImpl();
+        rootDseRequest.setMessageId( 6 );
+        rootDseRequest.setBase( Dn.EMPTY_DN );
+        rootDseRequest.setScope( SearchScope.OBJECT );
+        rootDseRequest.setTypesOnly( true );
+        rootDseRequest.setFilter( "(objectClass=*)" );
+        messages.add( rootDseRequest );
+
+        ModifyRequest modifyRequest = new ModifyRequestImpl();
+        modifyRequest.setMessageId( 7 );
+        modifyRequest.setName( new Dn( "cn=test,ou=system" ) );
+        modifyRequest.add( "description", "added" );
+        modifyRequest.replace( "sn", "a", "b" );
+        modifyRequest.remove( "cn" );
+        modifyRequest.addModification( new DefaultAttribute( "userPassword", new byte[] { 0x00, 0x01 } ),
+            ModificationOperation.REPLACE_ATTRIBUTE );
+        messages.add( modifyRequest );
+
+        return messages;
+    }
+
+
+    private byte[] encode( Message message ) throws Exception
+    {
+        Asn1Buffer buffer = new Asn1Buffer();
+        LdapEncoder.encodeMessage( buffer, codec, message );
+
+        return buffer.getBytes().array();
+    }
+
+
+    /**
+     * Encode a decoded message, returning null if it can't be encoded (like an opaque control)
+     */
+    private byte[] encodeDecoded( Message message )
+    {
+        try
+        {
+            return encode( message );
+        }
+        catch ( Exception e )
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     * Decode the PDU with the grammar, returning null if it fails.
+     */
+    private Message decodeWithGrammar( byte[] pdu )
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+
+        try
+        {
+            Asn1Decoder.decode( ByteBuffer.wrap( pdu ), container );
+        }
+        catch ( Exception e )
+        {
+            return null;
+        }
+
+        if ( container.getState() != TLVStateEnum.PDU_DECODED )
+        {
+            return null;
+        }
+
+        return container.getMessage();
+    }
+
+
+    private void assertSameMessage( Message expected, Message decoded ) throws Exception
+    {
+        assertEquals( expected.getClass(), decoded.getClass() );
+        assertEquals( expected.getMessageId(), decoded.getMessageId() );
+        assertEquals( expected.toString(), decoded.toString() );
+        assertEquals( expected.getControls().keySet(), decoded.getControls().keySet() );
+        assertArrayEquals( encodeDecoded( expected ), encodeDecoded( decoded ) );
+    }
+
+
+    @Test
+    public void testDecodeSameAsGrammar() throws Exception
+    {
+        for ( Message message : createMessages() )
+        {
+            byte[] pdu = encode( message );
+            ByteBuffer buffer = ByteBuffer.wrap( pdu );
+            LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+
+            assertTrue( FastLdapDecoder.decode( buffer, container ), message.toString() );
+            assertEquals( TLVStateEnum.PDU_DECODED, container.getState() );
+            assertEquals( pdu.length, buffer.position() );
+
+            Message decoded = container.getMessage();
+
+            assertSameMessage( decodeWithGrammar( pdu ), decoded );
+        }
+    }
+
+
+    @Test
+    public void testDecodeSeveralPdus() throws Exception
+    {
+        List<Message> messages = createMessages();
+        ByteBuffer buffer = ByteBuffer.allocate( 4096 );
+
+        for ( Message message : messages )
+        {
+            buffer.put( encode( message ) );
+        }
+
+        buffer.flip();
+
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+
+        for ( Message message : messages )
+        {
+            assertTrue( FastLdapDecoder.decode( buffer, container ) );
+            assertSameMessage( decodeWithGrammar( encode( message ) ), container.getMessage() );
+            container.clean();
+        }
+
+        assertFalse( buffer.hasRemaining() );
+    }
+
+
+    @Test
+    public void testFragmentedPdu() throws Exception
+    {
+        byte[] pdu = encode( createMessages().get( 0 ) );
+        ByteBuffer buffer = ByteBuffer.allocate( pdu.length );
+        buffer.put( pdu, 0, pdu.length / 2 );
+        buffer.flip();
+
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+
+        // The first half is left to the grammar
+        assertFalse( FastLdapDecoder.decode( buffer, container ) );
+        assertEquals( 0, buffer.position() );
+
+        Asn1Decoder.decode( buffer, container );
+        assertFalse( container.getState() == TLVStateEnum.PDU_DECODED );
+
+        // The container is decoding a PDU, the second half must be decoded by the grammar too
+        buffer.clear();
+        buffer.put( pdu, pdu.length / 2, pdu.length - pdu.length / 2 );
+        buffer.flip();
+
+        assertFalse( FastLdapDecoder.decode( buffer, container ) );
+        Asn1Decoder.decode( buffer, container );
+        assertEquals( TLVStateEnum.PDU_DECODED, container.getState() );
+    }
+
+
+    @Test
+    public void testDecodeOpaqueControl() throws Exception
+    {
+        byte[] pdu = new byte[]
+            {
+                0x30, 0x1F,
+                  0x02, 0x01, 0x01,
+                  0x65, 0x07,
+                    0x0A, 0x01, 0x00,
+                    0x04, 0x00,
+                    0x04, 0x00,
+                  ( byte ) 0xA0, 0x11,
+                    0x30, 0x0F,
+                      0x04, 0x07, '1', '.', '2', '.', '3', '.', '4',
+                      0x01, 0x01, ( byte ) 0xFF,
+                      0x04, 0x01, 0x05
+            };
+
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+
+        assertTrue( FastLdapDecoder.decode( ByteBuffer.wrap( pdu ), container ) );
+
+        Message expected = decodeWithGrammar( pdu );
+        Message decoded = container.getMessage();
+
+        assertEquals( expected.toString(), decoded.toString() );
+
+        OpaqueControl control = ( OpaqueControl ) decoded.getControl( "1.2.3.4" );
+
+        assertTrue( control.isCritical() );
+        assertArrayEquals( new byte[] { 0x05 }, control.getEncodedValue() );
+        assertEquals( expected.getControl( "1.2.3.4" ).isCritical(), control.isCritical() );
+        assertArrayEquals( ( ( OpaqueControl ) expected.getControl( "1.2.3.4" ) ).getEncodedValue(),
+            control.getEncodedValue() );
+    }
+
+
+    @Test
+    public void testUnsupportedPdusAreLeftToTheGrammar() throws Exception
+    {
+        // An AbandonRequest
+        byte[] pdu = new byte[] { 0x30, 0x06, 0x02, 0x01, 0x03, 0x50, 0x01, 0x02 };
+        ByteBuffer buffer = ByteBuffer.wrap( pdu );
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+
+        assertFalse( FastLdapDecoder.decode( buffer, container ) );
+        assertEquals( 0, buffer.position() );
+        assertEquals( TLVStateEnum.TAG_STATE_START, container.getState() );
+        assertTrue( decodeWithGrammar( pdu ) != null );
+
+        // A SearchResultDone with a referral
+        SearchResultDone referral = new SearchResultDoneImpl( 3 );
+        referral.getLdapResult().setResultCode( ResultCodeEnum.REFERRAL );
+        referral.getLdapResult().setReferral( new ReferralImpl() );
+        referral.getLdapResult().getReferral().addLdapUrl( "ldap://localhost:10389/dc=example,dc=com" );
+        pdu = encode( referral );
+
+        assertFalse( FastLdapDecoder.decode( ByteBuffer.wrap( pdu ), container ) );
+        assertTrue( decodeWithGrammar( pdu ) != null );
+    }
+
+
+    /**
+     * Alter each byte of the PDUs : whenever the fast decoder decodes the altered PDU, the
+     * grammar must decode the very same message.
+     */
+    @Test
+    public void testAlteredPdus() throws Exception
+    {
+        byte[] replacements = new byte[] { 0x00, 0x01, 0x30, ( byte ) 0x80, ( byte ) 0xFF };
+
+        for ( Message message : createMessages() )
+        {
+            byte[] pdu = encode( message );
+
+            for ( int i = 0; i < pdu.length; i++ )
+            {
+                for ( byte replacement : replacements )
+                {
+                    byte[] altered = pdu.clone();
+                    altered[i] = replacement;
+
+                    checkAltered( altered );
+                }
+            }
+
+            // Truncated PDUs
+            for ( int i = 1; i < pdu.length; i++ )
+            {
+                byte[] truncated = new byte[i];
+                System.arraycopy( pdu, 0, truncated, 0, i );
+
+                checkAltered( truncated );
+            }
+        }
+    }
+
+
+    private void checkAltered( byte[] altered ) throws Exception
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        ByteBuffer buffer = ByteBuffer.wrap( altered );
+
+        if ( FastLdapDecoder.decode( buffer, container ) )
+        {
+            Message expected = decodeWithGrammar( altered );
+
+            assertTrue( expected != null, Strings.dumpBytes( altered ) );
+            assertSameMessage( expected, container.getMessage() );
+        }
+        else
+        {
+            assertEquals( 0, buffer.position() );
+            assertEquals( TLVStateEnum.TAG_STATE_START, container.getState() );
+        }
+    }
+}
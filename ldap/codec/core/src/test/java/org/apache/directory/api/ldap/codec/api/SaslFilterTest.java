@@ -0,0 +1,391 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.codec.api;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.security.sasl.Sasl;
+import javax.security.sasl.SaslClient;
+import javax.security.sasl.SaslException;
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilter.NextFilter;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.DefaultWriteRequest;
+import org.apache.mina.core.write.WriteRequest;
+import org.apache.mina.filter.FilterEvent;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the SaslFilter wrapping and unwrapping, using a stand-in SASL mechanism which
+ * negotiated a confidentiality layer.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class SaslFilterTest
+{
+    /** The max buffer size negotiated by the stand-in mechanism */
+    private static final int MAX_BUFFER = 1024;
+
+    /**
+     * A SASL client "encrypting" the data with a XOR, and prepending a marker byte,
+     * so that the wrapped and unwrapped data have different sizes.
+     */
+    private static class XorSaslClient implements SaslClient
+    {
+        @Override
+        public String getMechanismName()
+        {
+            return "XOR";
+        }
+
+
+        @Override
+        public boolean hasInitialResponse()
+        {
+            return false;
+        }
+
+
+        @Override
+        public byte[] evaluateChallenge( byte[] challenge )
+        {
+            return null;
+        }
+
+
+        @Override
+        public boolean isComplete()
+        {
+            return true;
+        }
+
+
+        @Override
+        public byte[] unwrap( byte[] incoming, int offset, int len ) throws SaslException
+        {
+            if ( incoming[offset] != 'X' )
+            {
+                throw new SaslException( "Bad marker" );
+            }
+
+            byte[] result = new byte[len - 1];
+
+            for ( int i = 0; i < result.length; i++ )
+            {
+                result[i] = ( byte ) ( incoming[offset + 1 + i] ^ 0x5A );
+            }
+
+            return result;
+        }
+
+
+        @Override
+        public byte[] wrap( byte[] outgoing, int offset, int len )
+        {
+            byte[] result = new byte[len + 1];
+            result[0] = 'X';
+
+            for ( int i = 0; i < len; i++ )
+            {
+                result[i + 1] = ( byte ) ( outgoing[offset + i] ^ 0x5A );
+            }
+
+            return result;
+        }
+
+
+        @Override
+        public Object getNegotiatedProperty( String propName )
+        {
+            if ( Sasl.QOP.equals( propName ) )
+            {
+                return "auth-conf";
+            }
+            else if ( Sasl.MAX_BUFFER.equals( propName ) )
+            {
+                return Integer.toString( MAX_BUFFER );
+            }
+
+            return null;
+        }
+
+
+        @Override
+        public void dispose()
+        {
+        }
+    }
+
+    /**
+     * A NextFilter collecting the received messages and the written messages
+     */
+    private static class CollectingFilter implements NextFilter
+    {
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        private final List<IoBuffer> written = new ArrayList<>();
+
+
+        @Override
+        public void messageReceived( IoSession session, Object message )
+        {
+            IoBuffer buffer = ( IoBuffer ) message;
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get( bytes );
+            received.write( bytes, 0, bytes.length );
+        }
+
+
+        @Override
+        public void filterWrite( IoSession session, WriteRequest writeRequest )
+        {
+            written.add( ( IoBuffer ) writeRequest.getMessage() );
+        }
+
+
+        @Override
+        public void sessionCreated( IoSession session )
+        {
+        }
+
+
+        @Override
+        public void sessionOpened( IoSession session )
+        {
+        }
+
+
+        @Override
+        public void sessionClosed( IoSession session )
+        {
+        }
+
+
+        @Override
+        public void sessionIdle( IoSession session, IdleStatus status )
+        {
+        }
+
+
+        @Override
+        public void exceptionCaught( IoSession session, Throwable cause )
+        {
+        }
+
+
+        @Override
+        public void inputClosed( IoSession session )
+        {
+        }
+
+
+        @Override
+        public void messageSent( IoSession session, WriteRequest writeRequest )
+        {
+        }
+
+
+        @Override
+        public void filterClose( IoSession session )
+        {
+        }
+
+
+        @Override
+        public void event( IoSession session, FilterEvent event )
+        {
+        }
+    }
+
+
+    private static byte[] createData( int length )
+    {
+        byte[] data = new byte[length];
+
+        for ( int i = 0; i < length; i++ )
+        {
+            data[i] = ( byte ) i;
+        }
+
+        return data;
+    }
+
+
+    /**
+     * Wraps the data, and returns the SASL messages as a stream of bytes
+     */
+    private static byte[] wrapAll( SaslFilter filter, IoSession session, byte[] data, boolean direct )
+        throws SaslException
+    {
+        CollectingFilter collector = new CollectingFilter();
+        IoBuffer message = IoBuffer.allocate( data.length, direct );
+        message.put( data ).flip();
+
+        filter.filterWrite( collector, session, new DefaultWriteRequest( message ) );
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        for ( IoBuffer buffer : collector.written )
+        {
+            assertEquals( buffer.getInt( 0 ) + 4, buffer.remaining() );
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get( bytes );
+            stream.write( bytes, 0, bytes.length );
+        }
+
+        return stream.toByteArray();
+    }
+
+
+    /**
+     * Feeds the received bytes to the filter, split in reads of the given size
+     */
+    private static byte[] unwrapAll( SaslFilter filter, IoSession session, byte[] stream, int readSize,
+        boolean direct ) throws SaslException
+    {
+        CollectingFilter collector = new CollectingFilter();
+
+        for ( int offset = 0; offset < stream.length; offset += readSize )
+        {
+            int length = Math.min( readSize, stream.length - offset );
+            IoBuffer read = IoBuffer.allocate( length, direct );
+            read.put( stream, offset, length ).flip();
+
+            filter.messageReceived( collector, session, read );
+        }
+
+        return collector.received.toByteArray();
+    }
+
+
+    @Test
+    public void testWrapInChunks() throws Exception
+    {
+        SaslFilter filter = new SaslFilter( new XorSaslClient() );
+        IoSession session = new DummySession();
+        byte[] data = createData( 3000 );
+
+        for ( boolean direct : new boolean[] { false, true } )
+        {
+            byte[] stream = wrapAll( filter, session, data, direct );
+
+            // 4 chunks of at most MAX_BUFFER - 200 bytes, each with a length and a marker
+            assertEquals( data.length + 4 * 5, stream.length );
+            assertArrayEquals( data, unwrapAll( filter, session, stream, stream.length, false ) );
+        }
+    }
+
+
+    @Test
+    public void testUnwrapSplitMessages() throws Exception
+    {
+        SaslFilter filter = new SaslFilter( new XorSaslClient() );
+        IoSession session = new DummySession();
+        byte[] data = createData( 5000 );
+        byte[] stream = wrapAll( filter, session, data, false );
+
+        // Reads splitting the lengths, the messages, or containing several messages
+        for ( int readSize : new int[] { 1, 3, 7, 100, 823, 829, 2000, stream.length } )
+        {
+            assertArrayEquals( data, unwrapAll( filter, session, stream, readSize, false ) );
+            assertArrayEquals( data, unwrapAll( filter, session, stream, readSize, true ) );
+        }
+    }
+
+
+    @Test
+    public void testUnwrapTooLargeMessage() throws Exception
+    {
+        SaslFilter filter = new SaslFilter( new XorSaslClient() );
+        IoSession session = new DummySession();
+        IoBuffer read = IoBuffer.allocate( 8 );
+        read.putInt( MAX_BUFFER + 1 ).putInt( 0 ).flip();
+
+        assertThrows( IllegalStateException.class,
+            () -> filter.messageReceived( new CollectingFilter(), session, read ) );
+    }
+
+
+    /**
+     * Measures the throughput of a search response stream, with a 300 bytes entry per
+     * SASL message.
+     */
+    @Test
+    @Disabled
+    public void testUnwrapPerf() throws Exception
+    {
+        SaslFilter filter = new SaslFilter( new XorSaslClient() );
+        IoSession session = new DummySession();
+        byte[] stream = new byte[0];
+
+        for ( int i = 0; i < 50; i++ )
+        {
+            byte[] message = wrapAll( filter, session, createData( 300 ), false );
+            byte[] newStream = new byte[stream.length + message.length];
+            System.arraycopy( stream, 0, newStream, 0, stream.length );
+            System.arraycopy( message, 0, newStream, stream.length, message.length );
+            stream = newStream;
+        }
+
+        int nbLoops = 100_000;
+        NextFilter nextFilter = new CollectingFilter()
+        {
+            @Override
+            public void messageReceived( IoSession session, Object message )
+            {
+                // Nothing to do
+            }
+        };
+
+        for ( int j = 0; j < 10; j++ )
+        {
+            long t0 = System.nanoTime();
+
+            for ( int i = 0; i < nbLoops; i++ )
+            {
+                // 1460 bytes reads, like TCP segments
+                for ( int offset = 0; offset < stream.length; offset += 1460 )
+                {
+                    int length = Math.min( 1460, stream.length - offset );
+                    filter.messageReceived( nextFilter, session, IoBuffer.wrap( stream, offset, length ) );
+                }
+            }
+
+            long t1 = System.nanoTime();
+            System.out.println( "SaslFilter unwrap, " + ( nbLoops * 50L ) + " messages, "
+                + ( ( t1 - t0 ) / 1_000_000L ) + " ms" );
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.codec.metrics;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the LatencyHistogram and HistogramLdapMetrics classes
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class HistogramLdapMetricsTest
+{
+    @Test
+    public void testBuckets()
+    {
+        // The small values are exact
+        for ( long value = 0L; value < 64L; value++ )
+        {
+            assertEquals( value, LatencyHistogram.bucketIndex( value ) );
+            assertEquals( value, LatencyHistogram.bucketHighestValue( ( int ) value ) );
+        }
+
+        // Each value is in a bucket which bounds are within 1/32 of the value
+        Random random = new Random( 42L );
+        int previousIndex = 63;
+
+        for ( long value = 64L; value < 100000L; value++ )
+        {
+            int index = LatencyHistogram.bucketIndex( value );
+            assertTrue( ( index == previousIndex ) || ( index == previousIndex + 1 ) );
+            previousIndex = index;
+
+            assertTrue( LatencyHistogram.bucketHighestValue( index ) >= value );
+            assertTrue( LatencyHistogram.bucketHighestValue( index - 1 ) < value );
+        }
+
+        for ( int i = 0; i < 10000; i++ )
+        {
+            long value = random.nextLong() >>> 1;
+            int index = LatencyHistogram.bucketIndex( value );
+            long highest = LatencyHistogram.bucketHighestValue( index );
+
+            assertTrue( highest >= value );
+            assertTrue( highest - value <= value / 32L );
+        }
+
+        assertEquals( Long.MAX_VALUE, LatencyHistogram.bucketHighestValue( LatencyHistogram.bucketIndex( Long.MAX_VALUE ) ) );
+    }
+
+
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals( 0L, histogram.getValueAtPercentile( 99d ) );
+        assertEquals( 0d, histogram.getMean() );
+
+        for ( long value = 1L; value <= 10000L; value++ )
+        {
+            histogram.record( value * 1000L );
+        }
+
+        assertEquals( 10000L, histogram.getCount() );
+        assertEquals( 10000000L, histogram.getMax() );
+        assertEquals( 5000500d, histogram.getMean() );
+
+        long p50 = histogram.getValueAtPercentile( 50d );
+        long p99 = histogram.getValueAtPercentile( 99d );
+
+        assertTrue( ( p50 >= 5000000L ) && ( p50 <= 5000000L + 5000000L / 32L ), Long.toString( p50 ) );
+        assertTrue( ( p99 >= 9900000L ) && ( p99 <= 9900000L + 9900000L / 32L ), Long.toString( p99 ) );
+        assertEquals( 10000000L, histogram.getValueAtPercentile( 100d ) );
+    }
+
+
+    @Test
+    public void testMetrics()
+    {
+        assertFalse( LdapMetrics.NOOP.isEnabled() );
+
+        HistogramLdapMetrics metrics = new HistogramLdapMetrics();
+        assertTrue( metrics.isEnabled() );
+
+        metrics.operationStarted( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.operationStarted( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.operationStarted( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.operationStarted( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.operationStarted( MessageTypeEnum.BIND_REQUEST );
+        assertEquals( 4, metrics.getInFlight( MessageTypeEnum.SEARCH_REQUEST ) );
+        assertEquals( 5, metrics.getInFlight() );
+
+        metrics.operationCompleted( MessageTypeEnum.SEARCH_REQUEST, ResultCodeEnum.SUCCESS, 1000L );
+        metrics.operationTimedOut( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.operationAbandoned( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.operationFailed( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.operationCompleted( MessageTypeEnum.BIND_REQUEST, ResultCodeEnum.INVALID_CREDENTIALS, 2000L );
+
+        assertEquals( 0, metrics.getInFlight() );
+        assertEquals( 1L, metrics.getTimeouts( MessageTypeEnum.SEARCH_REQUEST ) );
+        assertEquals( 1L, metrics.getAbandons( MessageTypeEnum.SEARCH_REQUEST ) );
+        assertEquals( 1L, metrics.getFailures( MessageTypeEnum.SEARCH_REQUEST ) );
+        assertEquals( 0L, metrics.getTimeouts( MessageTypeEnum.BIND_REQUEST ) );
+
+        assertEquals( 1L, metrics.getLatency( MessageTypeEnum.SEARCH_REQUEST, ResultCodeEnum.SUCCESS ).getCount() );
+        assertEquals( 2000L, metrics.getLatency( MessageTypeEnum.BIND_REQUEST, ResultCodeEnum.INVALID_CREDENTIALS )
+            .getMax() );
+        assertNull( metrics.getLatency( MessageTypeEnum.BIND_REQUEST, ResultCodeEnum.SUCCESS ) );
+        assertEquals( 1, metrics.getLatencies( MessageTypeEnum.SEARCH_REQUEST ).size() );
+        assertTrue( metrics.getLatencies( MessageTypeEnum.MODIFY_REQUEST ).isEmpty() );
+
+        metrics.connectionBorrowed( 500L );
+        metrics.messageEncoded( 100, 300L );
+        metrics.bytesDecoded( 1000, 3, 700L );
+        metrics.bytesDecoded( 10, 0, 100L );
+
+        assertEquals( 1L, metrics.getPoolWait().getCount() );
+        assertEquals( 100L, metrics.getBytesSent() );
+        assertEquals( 1010L, metrics.getBytesReceived() );
+        assertEquals( 3L, metrics.getMessagesReceived() );
+        assertEquals( 2L, metrics.getDecoding().getCount() );
+        assertEquals( 300L, metrics.getEncoding().getMax() );
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.codec.search;
+
+
+import java.nio.ByteBuffer;
+
+import org.apache.directory.api.asn1.ber.Asn1Decoder;
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.FastLdapDecoder;
+import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.api.ldap.codec.osgi.AbstractCodecServiceTest;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+/**
+ * Compare the SearchResultEntry decoding using the grammar and the FastLdapDecoder
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution( ExecutionMode.CONCURRENT)
+@Disabled("Performance tests: should not be run with the unit tests")
+public class SearchResultEntryDecoderPerfTest extends AbstractCodecServiceTest
+{
+    @Test
+    public void testDecodeSearchResultEntryPerf() throws Exception
+    {
+        int nbLoops = 1_000_000;
+
+        SearchResultEntry searchResultEntry = new SearchResultEntryImpl( 12 );
+        searchResultEntry.setEntry( new DefaultEntry( "uid=akarasulu,ou=users,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: person",
+            "objectClass: inetOrgPerson",
+            "uid: akarasulu",
+            "cn: Alex Karasulu",
+            "sn: Karasulu",
+            "mail: akarasulu@example.com",
+            "description: A description",
+            "telephoneNumber: +1 123 456 7890" ) );
+
+        Asn1Buffer buffer = new Asn1Buffer();
+        LdapEncoder.encodeMessage( buffer, codec, searchResultEntry );
+        byte[] pdu = buffer.getBytes().array();
+
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+
+        for ( int j = 0; j < 5; j++ )
+        {
+            long t0 = System.currentTimeMillis();
+
+            for ( int i = 0; i < nbLoops; i++ )
+            {
+                Asn1Decoder.decode( ByteBuffer.wrap( pdu ), container );
+                container.clean();
+            }
+
+            long t1 = System.currentTimeMillis();
+
+            for ( int i = 0; i < nbLoops; i++ )
+            {
+                FastLdapDecoder.decode( ByteBuffer.wrap( pdu ), container );
+                container.clean();
+            }
+
+            long t2 = System.currentTimeMillis();
+
+            System.out.println( "SearchResultEntry decoding, " + nbLoops + " loops, grammar = " + ( t1 - t0 )
+                + ", fast decoder = " + ( t2 - t1 ) );
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.aci;
+
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+
+
+/**
+ * Takes access control decisions using the ACIItems of many access control subentries.
+ * The ACIItems of each subentry are parsed and compiled once into an {@link ACIDecisionTable},
+ * which is cached using the subentry Dn, until the subentry is modified.
+ * <br>
+ * The entryACI of an entry can be handled the same way, using the entry Dn as a key.
+ * <br>
+ * This class is thread safe.
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ACIDecisionEngine
+{
+    /** The schema manager */
+    private final SchemaManager schemaManager;
+
+    /** The parsers used to parse the ACIItems */
+    private final ACIItemParserPool parsers;
+
+    /** The compiled tables, by subentry */
+    private final Map<Dn, ACIDecisionTable> tables = new ConcurrentHashMap<>();
+
+
+    /**
+     * Creates a new ACIDecisionEngine instance
+     *
+     * @param schemaManager The SchemaManager used to parse the ACIItems
+     */
+    public ACIDecisionEngine( SchemaManager schemaManager )
+    {
+        this.schemaManager = schemaManager;
+        this.parsers = new ACIItemParserPool( schemaManager );
+    }
+
+
+    /**
+     * Parses and compiles the prescriptiveACI (or entryACI) values of a subentry, and
+     * caches the resulting table.
+     *
+     * @param subentryDn The subentry Dn
+     * @param aciAttribute The attribute containing the ACIItems
+     * @return The compiled table
+     * @throws ParseException If one of the values is not a valid ACIItem
+     */
+    public ACIDecisionTable compile( Dn subentryDn, Attribute aciAttribute ) throws ParseException
+    {
+        List<ACIItem> items = new ArrayList<>( aciAttribute.size() );
+
+        for ( Value value : aciAttribute )
+        {
+            ACIItem item = parsers.parse( value.getString() );
+
+            if ( item != null )
+            {
+                items.add( item );
+            }
+        }
+
+        return compile( subentryDn, items );
+    }
+
+
+    /**
+     * Compiles the ACIItems of a subentry, and caches the resulting table.
+     *
+     * @param subentryDn The subentry Dn
+     * @param items The ACIItems
+     * @return The compiled table
+     */
+    public ACIDecisionTable compile( Dn subentryDn, Collection<ACIItem> items )
+    {
+        List<ACITuple> tuples = new ArrayList<>();
+
+        for ( ACIItem item : items )
+        {
+            tuples.addAll( item.toTuples() );
+        }
+
+        ACIDecisionTable table = new ACIDecisionTable( schemaManager, tuples );
+        tables.put( subentryDn, table );
+
+        return table;
+    }
+
+
+    /**
+     * Gets the table compiled for a subentry
+     *
+     * @param subentryDn The subentry Dn
+     * @return The compiled table, or null if the subentry has not been compiled
+     */
+    public ACIDecisionTable getTable( Dn subentryDn )
+    {
+        return tables.get( subentryDn );
+    }
+
+
+    /**
+     * Removes the table compiled for a subentry, when the subentry is modified or deleted
+     *
+     * @param subentryDn The subentry Dn
+     */
+    public void invalidate( Dn subentryDn )
+    {
+        tables.remove( subentryDn );
+    }
+
+
+    /**
+     * Removes all the compiled tables
+     */
+    public void clear()
+    {
+        tables.clear();
+    }
+
+
+    /**
+     * @return The number of compiled tables
+     */
+    public int size()
+    {
+        return tables.size();
+    }
+
+
+    /**
+     * Tells if a user may perform an operation on an entry, or on one of its attributes or
+     * values, using the tuples of all the subentries controlling the entry. The subentries
+     * which have not been compiled are ignored. If no tuple applies, the access is denied.
+     *
+     * @param requester The user requesting the access
+     * @param operation The requested operation
+     * @param entryDn The protected entry
+     * @param attributeType The protected attribute type, or null if the entry itself is protected
+     * @param value The protected value, or null if the whole attribute type is protected
+     * @param subentryDns The subentries controlling the entry
+     * @return <code>true</code> if the access is granted
+     */
+    public boolean isPermitted( ACIRequester requester, MicroOperation operation, Dn entryDn,
+        AttributeType attributeType, Value value, Collection<Dn> subentryDns )
+    {
+        int decision = ACIDecisionTable.NOT_APPLICABLE;
+
+        for ( Dn subentryDn : subentryDns )
+        {
+            ACIDecisionTable table = tables.get( subentryDn );
+
+            if ( table != null )
+            {
+                decision = Math.max( decision, table.evaluate( requester, operation, entryDn, attributeType, value ) );
+            }
+        }
+
+        return ACIDecisionTable.isGranted( decision );
+    }
+}
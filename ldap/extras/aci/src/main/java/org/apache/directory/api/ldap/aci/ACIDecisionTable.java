@@ -0,0 +1,669 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.aci;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.directory.api.ldap.aci.protectedItem.AbstractAttributeTypeProtectedItem;
+import org.apache.directory.api.ldap.aci.protectedItem.AllAttributeValuesItem;
+import org.apache.directory.api.ldap.aci.protectedItem.AllUserAttributeTypesAndValuesItem;
+import org.apache.directory.api.ldap.aci.protectedItem.AllUserAttributeTypesItem;
+import org.apache.directory.api.ldap.aci.protectedItem.AttributeTypeItem;
+import org.apache.directory.api.ldap.aci.protectedItem.AttributeValueItem;
+import org.apache.directory.api.ldap.aci.protectedItem.EntryItem;
+import org.apache.directory.api.ldap.aci.protectedItem.SelfValueItem;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification;
+import org.apache.directory.api.ldap.model.subtree.SubtreeEvaluator;
+import org.apache.directory.api.ldap.model.subtree.SubtreeSpecification;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * A set of {@link ACITuple}s compiled into decision tables, indexed by {@link MicroOperation}
+ * and by attribute type, so that an access control decision only looks at the tuples which
+ * may apply to the requested operation and attribute.
+ * <br>
+ * The decision follows the X.501 access control decision function :
+ * <ul>
+ *   <li>only the tuples applying to the requested operation, protected item and requester are kept</li>
+ *   <li>a grant is only kept if the requester authentication level is at least the tuple one</li>
+ *   <li>the tuples with the highest precedence win, and a denial wins over a grant of the same precedence</li>
+ *   <li>if no tuple is left, the access is denied</li>
+ * </ul>
+ * The user classes and protected items specificity rules are not applied. The protected
+ * items which depend on the content of the entry or of other entries (<em>classes</em>,
+ * <em>rangeOfValues</em>, <em>maxValueCount</em>, <em>maxImmSub</em> and <em>restrictedBy</em>),
+ * as well as the <em>subtree</em> user classes with a refinement, can't be decided by the
+ * tables : such a denial is assumed to always apply, and such a grant to never apply.
+ * <br>
+ * A table is immutable, and can be shared by many threads.
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ACIDecisionTable
+{
+    /** The result of an evaluation when no tuple applies */
+    public static final int NOT_APPLICABLE = -1;
+
+    /** The rule protects the entry */
+    private static final int ENTRY = 0;
+
+    /** The rule protects an attribute type */
+    private static final int ATTRIBUTE_TYPE = 1;
+
+    /** The rule protects all the values of an attribute type */
+    private static final int ALL_VALUES = 2;
+
+    /** The rule protects some values of an attribute type */
+    private static final int VALUES = 3;
+
+    /** The rule protects the values of an attribute type equal to the requester name */
+    private static final int SELF_VALUE = 4;
+
+    /** The rule protects all the user attribute types */
+    private static final int ALL_USER_TYPES = 5;
+
+    /** The rule protects all the user attribute types and their values */
+    private static final int ALL_USER_TYPES_AND_VALUES = 6;
+
+    /** The rule protects an item which can't be evaluated, and always applies */
+    private static final int ANY = 7;
+
+    /** An empty set of rules */
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    /** The schema manager, if any */
+    private final SchemaManager schemaManager;
+
+    /** The rules protecting the entries, by MicroOperation */
+    private final Rule[][] entryRules;
+
+    /** The rules protecting given attribute types and their values, by MicroOperation and attribute type */
+    private final Map<String, Rule[]>[] attributeRules;
+
+    /** The rules protecting all the user attribute types, by MicroOperation */
+    private final Rule[][] allUserAttributeRules;
+
+    /** The rules which always apply, by MicroOperation */
+    private final Rule[][] anyRules;
+
+    /** The number of compiled tuples */
+    private final int size;
+
+
+    /**
+     * A compiled tuple : the grant or denial, and the user classes it applies to
+     */
+    private static final class CompiledTuple
+    {
+        /** The tuple precedence */
+        private final int precedence;
+
+        /** Tells if the tuple grants an access */
+        private final boolean grant;
+
+        /** The required authentication level, for a grant */
+        private final int authenticationLevel;
+
+        /** Tells if the tuple applies to all the users */
+        private boolean allUsers;
+
+        /** Tells if the tuple applies to the user which is the protected entry */
+        private boolean thisEntry;
+
+        /** Tells if the tuple applies to the user which is the parent of the protected entry */
+        private boolean parentOfEntry;
+
+        /** The normalized names of the users the tuple applies to */
+        private final Set<String> names = new HashSet<>();
+
+        /** The normalized names of the groups the tuple applies to */
+        private final Set<String> groups = new HashSet<>();
+
+        /** The subtrees of the users the tuple applies to */
+        private final List<CompiledSubtreeSpecification> subtrees = new ArrayList<>();
+
+        /** Tells if the tuple contains a user class which can't be evaluated */
+        private boolean undecidableUsers;
+
+
+        private CompiledTuple( ACITuple tuple, SubtreeEvaluator subtreeEvaluator )
+        {
+            precedence = tuple.getPrecedence();
+            grant = tuple.isGrant();
+            authenticationLevel = tuple.getAuthenticationLevel().getLevel();
+
+            for ( UserClass userClass : tuple.getUserClasses() )
+            {
+                if ( userClass instanceof UserClass.AllUsers )
+                {
+                    allUsers = true;
+                }
+                else if ( userClass instanceof UserClass.ThisEntry )
+                {
+                    thisEntry = true;
+                }
+                else if ( userClass instanceof UserClass.ParentOfEntry )
+                {
+                    parentOfEntry = true;
+                }
+                else if ( userClass instanceof UserClass.Name )
+                {
+                    names.addAll( ( ( UserClass.Name ) userClass ).getNames() );
+                }
+                else if ( userClass instanceof UserClass.UserGroup )
+                {
+                    groups.addAll( ( ( UserClass.UserGroup ) userClass ).getNames() );
+                }
+                else if ( userClass instanceof UserClass.Subtree )
+                {
+                    for ( SubtreeSpecification subtree : ( ( UserClass.Subtree ) userClass ).getSubtreeSpecifications() )
+                    {
+                        if ( subtree.getRefinement() == null )
+                        {
+                            try
+                            {
+                                // The subtree base is relative to the root
+                                subtrees.add( subtreeEvaluator.compile( subtree, Dn.ROOT_DSE ) );
+                            }
+                            catch ( LdapInvalidDnException lide )
+                            {
+                                undecidableUsers = true;
+                            }
+                        }
+                        else
+                        {
+                            undecidableUsers = true;
+                        }
+                    }
+                }
+            }
+        }
+
+
+        /**
+         * Tells if the tuple applies to the requester
+         */
+        private boolean matches( ACIRequester requester, Dn entryDn )
+        {
+            if ( grant && ( requester.getAuthenticationLevel().getLevel() < authenticationLevel ) )
+            {
+                return false;
+            }
+
+            if ( allUsers || ( undecidableUsers && !grant ) )
+            {
+                return true;
+            }
+
+            Dn user = requester.getName();
+
+            if ( thisEntry && user.equals( entryDn ) )
+            {
+                return true;
+            }
+
+            if ( parentOfEntry && ( entryDn != null ) && !entryDn.isEmpty() && user.equals( entryDn.getParent() ) )
+            {
+                return true;
+            }
+
+            if ( names.contains( user.getNormName() ) )
+            {
+                return true;
+            }
+
+            for ( String group : groups )
+            {
+                if ( requester.isMemberOf( group ) )
+                {
+                    return true;
+                }
+            }
+
+            for ( CompiledSubtreeSpecification subtree : subtrees )
+            {
+                if ( subtree.contains( user, null ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+
+    /**
+     * A tuple, with the scope of one of its protected items
+     */
+    private static final class Rule
+    {
+        /** The compiled tuple */
+        private final CompiledTuple tuple;
+
+        /** The protected item scope */
+        private final int scope;
+
+        /** The protected values, for a VALUES scope */
+        private final Set<Value> values;
+
+
+        private Rule( CompiledTuple tuple, int scope, Set<Value> values )
+        {
+            this.tuple = tuple;
+            this.scope = scope;
+            this.values = values;
+        }
+    }
+
+
+    /**
+     * Compiles a set of ACITuples without a SchemaManager. The attribute types are
+     * compared using their OID, or their name if they have no OID.
+     *
+     * @param tuples The tuples to compile
+     */
+    public ACIDecisionTable( Collection<ACITuple> tuples )
+    {
+        this( null, tuples );
+    }
+
+
+    /**
+     * Compiles a set of ACITuples. The SchemaManager is used to resolve the attribute
+     * types of the <em>attributeValue</em> protected items, and to normalize their values.
+     *
+     * @param schemaManager The SchemaManager, if any
+     * @param tuples The tuples to compile
+     */
+    @SuppressWarnings("unchecked")
+    public ACIDecisionTable( SchemaManager schemaManager, Collection<ACITuple> tuples )
+    {
+        this.schemaManager = schemaManager;
+
+        int nbOperations = MicroOperation.values().length;
+        List<List<Rule>> entryLists = newLists( nbOperations );
+        List<List<Rule>> allUserAttributeLists = newLists( nbOperations );
+        List<List<Rule>> anyLists = newLists( nbOperations );
+        List<Map<String, List<Rule>>> attributeLists = new ArrayList<>( nbOperations );
+
+        for ( int i = 0; i < nbOperations; i++ )
+        {
+            attributeLists.add( new HashMap<String, List<Rule>>() );
+        }
+
+        SubtreeEvaluator subtreeEvaluator = new SubtreeEvaluator( schemaManager );
+
+        for ( ACITuple tuple : tuples )
+        {
+            CompiledTuple compiled = new CompiledTuple( tuple, subtreeEvaluator );
+
+            if ( compiled.grant && compiled.subtrees.isEmpty() && compiled.names.isEmpty() && compiled.groups.isEmpty()
+                && !compiled.allUsers && !compiled.thisEntry && !compiled.parentOfEntry )
+            {
+                // This grant can never apply
+                continue;
+            }
+
+            for ( MicroOperation operation : tuple.getMicroOperations() )
+            {
+                int op = operation.ordinal();
+
+                for ( ProtectedItem item : tuple.getProtectedItems() )
+                {
+                    if ( item instanceof EntryItem )
+                    {
+                        entryLists.get( op ).add( new Rule( compiled, ENTRY, null ) );
+                    }
+                    else if ( item instanceof AllUserAttributeTypesItem )
+                    {
+                        allUserAttributeLists.get( op ).add( new Rule( compiled, ALL_USER_TYPES, null ) );
+                    }
+                    else if ( item instanceof AllUserAttributeTypesAndValuesItem )
+                    {
+                        allUserAttributeLists.get( op ).add( new Rule( compiled, ALL_USER_TYPES_AND_VALUES, null ) );
+                    }
+                    else if ( item instanceof AbstractAttributeTypeProtectedItem )
+                    {
+                        int scope = ATTRIBUTE_TYPE;
+
+                        if ( item instanceof AllAttributeValuesItem )
+                        {
+                            scope = ALL_VALUES;
+                        }
+                        else if ( item instanceof SelfValueItem )
+                        {
+                            scope = SELF_VALUE;
+                        }
+                        else if ( !( item instanceof AttributeTypeItem ) )
+                        {
+                            if ( compiled.grant )
+                            {
+                                continue;
+                            }
+
+                            scope = ANY;
+                        }
+
+                        Rule rule = new Rule( compiled, scope, null );
+
+                        Iterator<AttributeType> attributeTypes = ( ( AbstractAttributeTypeProtectedItem ) item ).iterator();
+
+                        while ( attributeTypes.hasNext() )
+                        {
+                            addRule( attributeLists.get( op ), getKey( attributeTypes.next() ), rule );
+                        }
+                    }
+                    else if ( item instanceof AttributeValueItem )
+                    {
+                        Iterator<Attribute> attributes = ( ( AttributeValueItem ) item ).iterator();
+
+                        while ( attributes.hasNext() )
+                        {
+                            Attribute attribute = attributes.next();
+                            AttributeType attributeType = getAttributeType( attribute );
+                            Set<Value> values = new HashSet<>();
+
+                            for ( Value value : attribute )
+                            {
+                                values.add( normalize( attributeType, value ) );
+                            }
+
+                            String key = attributeType == null ? Strings.toLowerCaseAscii( attribute.getId() )
+                                : getKey( attributeType );
+                            addRule( attributeLists.get( op ), key, new Rule( compiled, VALUES, values ) );
+                        }
+                    }
+                    else if ( !compiled.grant )
+                    {
+                        // A denial we can't evaluate : it always applies
+                        anyLists.get( op ).add( new Rule( compiled, ANY, null ) );
+                    }
+                }
+            }
+        }
+
+        entryRules = toArrays( entryLists );
+        allUserAttributeRules = toArrays( allUserAttributeLists );
+        anyRules = toArrays( anyLists );
+        attributeRules = new Map[nbOperations];
+
+        for ( int i = 0; i < nbOperations; i++ )
+        {
+            Map<String, Rule[]> rules = new HashMap<>();
+
+            for ( Map.Entry<String, List<Rule>> entry : attributeLists.get( i ).entrySet() )
+            {
+                rules.put( entry.getKey(), entry.getValue().toArray( NO_RULES ) );
+            }
+
+            attributeRules[i] = rules;
+        }
+
+        size = tuples.size();
+    }
+
+
+    private static List<List<Rule>> newLists( int nb )
+    {
+        List<List<Rule>> lists = new ArrayList<>( nb );
+
+        for ( int i = 0; i < nb; i++ )
+        {
+            lists.add( new ArrayList<Rule>() );
+        }
+
+        return lists;
+    }
+
+
+    private static Rule[][] toArrays( List<List<Rule>> lists )
+    {
+        Rule[][] arrays = new Rule[lists.size()][];
+
+        for ( int i = 0; i < arrays.length; i++ )
+        {
+            arrays[i] = lists.get( i ).toArray( NO_RULES );
+        }
+
+        return arrays;
+    }
+
+
+    private static void addRule( Map<String, List<Rule>> rules, String key, Rule rule )
+    {
+        List<Rule> list = rules.get( key );
+
+        if ( list == null )
+        {
+            list = new ArrayList<>();
+            rules.put( key, list );
+        }
+
+        list.add( rule );
+    }
+
+
+    private static String getKey( AttributeType attributeType )
+    {
+        return Strings.toLowerCaseAscii( attributeType.getOid() );
+    }
+
+
+    private AttributeType getAttributeType( Attribute attribute )
+    {
+        if ( attribute.getAttributeType() != null )
+        {
+            return attribute.getAttributeType();
+        }
+
+        if ( schemaManager != null )
+        {
+            return schemaManager.getAttributeType( attribute.getId() );
+        }
+
+        return null;
+    }
+
+
+    private Value normalize( AttributeType attributeType, Value value )
+    {
+        if ( ( schemaManager == null ) || ( attributeType == null ) || value.isSchemaAware() )
+        {
+            return value;
+        }
+
+        try
+        {
+            return new Value( attributeType, value );
+        }
+        catch ( LdapException le )
+        {
+            return value;
+        }
+    }
+
+
+    /**
+     * Evaluates the rules applying to a request, and keeps the strongest decision
+     */
+    private int evaluate( Rule[] rules, int decision, ACIRequester requester, Dn entryDn,
+        AttributeType attributeType, Value value )
+    {
+        int result = decision;
+
+        for ( Rule rule : rules )
+        {
+            CompiledTuple tuple = rule.tuple;
+            int candidate = ( tuple.precedence << 1 ) | ( tuple.grant ? 0 : 1 );
+
+            if ( ( candidate <= result ) || !appliesTo( rule, attributeType, value, requester ) )
+            {
+                continue;
+            }
+
+            if ( tuple.matches( requester, entryDn ) )
+            {
+                result = candidate;
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Tells if a rule protected item covers the requested attribute type or value
+     */
+    private boolean appliesTo( Rule rule, AttributeType attributeType, Value value, ACIRequester requester )
+    {
+        switch ( rule.scope )
+        {
+            case ENTRY:
+            case ALL_USER_TYPES_AND_VALUES:
+            case ANY:
+                return true;
+
+            case ATTRIBUTE_TYPE:
+            case ALL_USER_TYPES:
+                return value == null;
+
+            case ALL_VALUES:
+                return value != null;
+
+            case VALUES:
+                return ( value != null ) && rule.values.contains( normalize( attributeType, value ) );
+
+            case SELF_VALUE:
+                return ( value != null ) && isRequesterName( value, requester );
+
+            default:
+                return false;
+        }
+    }
+
+
+    private boolean isRequesterName( Value value, ACIRequester requester )
+    {
+        try
+        {
+            return new Dn( schemaManager, value.getString() ).getNormName().equals( requester.getName().getNormName() );
+        }
+        catch ( LdapException le )
+        {
+            return false;
+        }
+    }
+
+
+    /**
+     * Evaluates the tuples applying to a request, without taking a decision. The results
+     * of several tables can be combined by keeping the highest one, which allows an entry
+     * to be protected by the tuples of many subentries and of its own entryACI.
+     *
+     * @param requester The user requesting the access
+     * @param operation The requested operation
+     * @param entryDn The protected entry
+     * @param attributeType The protected attribute type, or null if the entry itself is protected
+     * @param value The protected value, or null if the whole attribute type is protected
+     * @return {@link #NOT_APPLICABLE} if no tuple applies, otherwise twice the precedence of
+     * the winning tuples, plus one if they deny the access
+     */
+    public int evaluate( ACIRequester requester, MicroOperation operation, Dn entryDn, AttributeType attributeType,
+        Value value )
+    {
+        int op = operation.ordinal();
+        int decision = evaluate( anyRules[op], NOT_APPLICABLE, requester, entryDn, attributeType, value );
+
+        if ( attributeType == null )
+        {
+            return evaluate( entryRules[op], decision, requester, entryDn, null, null );
+        }
+
+        Rule[] rules = attributeRules[op].get( getKey( attributeType ) );
+
+        if ( rules != null )
+        {
+            decision = evaluate( rules, decision, requester, entryDn, attributeType, value );
+        }
+
+        if ( attributeType.isUser() )
+        {
+            decision = evaluate( allUserAttributeRules[op], decision, requester, entryDn, attributeType, value );
+        }
+
+        return decision;
+    }
+
+
+    /**
+     * Tells if the result of one or many evaluations grants the access
+     *
+     * @param decision The highest result of the evaluations
+     * @return <code>true</code> if the access is granted
+     */
+    public static boolean isGranted( int decision )
+    {
+        return ( decision != NOT_APPLICABLE ) && ( ( decision & 1 ) == 0 );
+    }
+
+
+    /**
+     * Tells if a user may perform an operation on an entry, or on one of its attributes
+     * or values.
+     *
+     * @param requester The user requesting the access
+     * @param operation The requested operation
+     * @param entryDn The protected entry
+     * @param attributeType The protected attribute type, or null if the entry itself is protected
+     * @param value The protected value, or null if the whole attribute type is protected
+     * @return <code>true</code> if the access is granted
+     */
+    public boolean isPermitted( ACIRequester requester, MicroOperation operation, Dn entryDn,
+        AttributeType attributeType, Value value )
+    {
+        return isGranted( evaluate( requester, operation, entryDn, attributeType, value ) );
+    }
+
+
+    /**
+     * @return The number of compiled tuples
+     */
+    public int size()
+    {
+        return size;
+    }
+}
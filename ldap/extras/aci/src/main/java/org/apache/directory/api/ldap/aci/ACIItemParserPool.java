@@ -0,0 +1,122 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.aci;
+
+
+import java.text.ParseException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.model.schema.normalizers.NameComponentNormalizer;
+
+
+/**
+ * A thread safe ACIItem parser, backed by a pool of {@link ACIItemParser}s. An
+ * ACIItemParser wraps a single antlr parser/lexer pair, and serializes all the
+ * parsing threads on it. The pool lends each parsing thread its own parser, so
+ * that parsing many prescriptiveACI or entryACI values concurrently does not
+ * contend on a single lock.
+ * <br>
+ * The pool grows up to the number of threads parsing at the same time, and the
+ * parsers are then reused.
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ACIItemParserPool
+{
+    /** The idle parsers */
+    private final Queue<ACIItemParser> parsers = new ConcurrentLinkedQueue<>();
+
+    /** The schema manager */
+    private final SchemaManager schemaManager;
+
+    /** The normalizer, if the parsers are normalizing */
+    private final NameComponentNormalizer normalizer;
+
+
+    /**
+     * Creates a pool of ACIItem parsers.
+     *
+     * @param schemaManager the schema manager
+     */
+    public ACIItemParserPool( SchemaManager schemaManager )
+    {
+        this( null, schemaManager );
+    }
+
+
+    /**
+     * Creates a pool of normalizing ACIItem parsers.
+     *
+     * @param normalizer the normalizer
+     * @param schemaManager the schema manager
+     */
+    public ACIItemParserPool( NameComponentNormalizer normalizer, SchemaManager schemaManager )
+    {
+        this.normalizer = normalizer;
+        this.schemaManager = schemaManager;
+    }
+
+
+    /**
+     * Parses an ACIItem, using a parser that no other thread is using.
+     * 
+     * @param spec the specification to be parsed
+     * @return the specification bean
+     * @throws ParseException if there are any recognition errors (bad syntax)
+     */
+    public ACIItem parse( String spec ) throws ParseException
+    {
+        ACIItemParser parser = parsers.poll();
+
+        if ( parser == null )
+        {
+            if ( normalizer == null )
+            {
+                parser = new ACIItemParser( schemaManager );
+            }
+            else
+            {
+                parser = new ACIItemParser( normalizer, schemaManager );
+            }
+        }
+
+        try
+        {
+            return parser.parse( spec );
+        }
+        finally
+        {
+            parsers.offer( parser );
+        }
+    }
+
+
+    /**
+     * Tests to see if the pooled parsers are normalizing.
+     * 
+     * @return true if they normalize false otherwise
+     */
+    public boolean isNormalizing()
+    {
+        return normalizer != null;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.aci;
+
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.AuthenticationLevel;
+import org.apache.directory.api.ldap.model.name.Dn;
+
+
+/**
+ * The user requesting an access, as seen by an {@link ACIDecisionTable} : its name,
+ * the groups it belongs to, and the level of authentication it used. A requester is
+ * meant to be created once per bound user, and reused for all its access checks.
+ * <br>
+ * The names must be normalized the same way the ACIItems were, which means they
+ * must be schema aware if the ACIItems were parsed with a SchemaManager.
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ACIRequester
+{
+    /** The user name */
+    private final Dn name;
+
+    /** The normalized names of the user groups */
+    private final Set<String> groups;
+
+    /** The authentication level */
+    private final AuthenticationLevel authenticationLevel;
+
+
+    /**
+     * Creates a new ACIRequester instance, for a user which does not belong to any group
+     *
+     * @param name The user name
+     * @param authenticationLevel The level of authentication the user used
+     */
+    public ACIRequester( Dn name, AuthenticationLevel authenticationLevel )
+    {
+        this( name, Collections.<Dn>emptySet(), authenticationLevel );
+    }
+
+
+    /**
+     * Creates a new ACIRequester instance
+     *
+     * @param name The user name
+     * @param groups The names of the groups the user belongs to
+     * @param authenticationLevel The level of authentication the user used
+     */
+    public ACIRequester( Dn name, Collection<Dn> groups, AuthenticationLevel authenticationLevel )
+    {
+        if ( authenticationLevel == null )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_07003_NULL_AUTHENTICATION_LEVEL ) );
+        }
+
+        this.name = name == null ? Dn.EMPTY_DN : name;
+        this.authenticationLevel = authenticationLevel;
+        this.groups = new HashSet<>();
+
+        for ( Dn group : groups )
+        {
+            this.groups.add( group.getNormName() );
+        }
+    }
+
+
+    /**
+     * @return The user name
+     */
+    public Dn getName()
+    {
+        return name;
+    }
+
+
+    /**
+     * Tells if the user belongs to a group
+     *
+     * @param groupNormName The normalized group name
+     * @return <code>true</code> if the user belongs to the group
+     */
+    public boolean isMemberOf( String groupNormName )
+    {
+        return groups.contains( groupNormName );
+    }
+
+
+    /**
+     * @return The level of authentication the user used
+     */
+    public AuthenticationLevel getAuthenticationLevel()
+    {
+        return authenticationLevel;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return name.getName() + " " + groups + " (" + authenticationLevel + ")";
+    }
+}
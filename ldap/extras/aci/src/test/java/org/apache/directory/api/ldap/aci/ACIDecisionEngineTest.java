@@ -0,0 +1,123 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.aci;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.constants.AuthenticationLevel;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Unit tests class for the ACIDecisionEngine and the ACIItemParserPool.
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution( ExecutionMode.CONCURRENT )
+public class ACIDecisionEngineTest
+{
+    private static final String GRANT_READ = "{ identificationTag \"readers\", precedence 10, "
+        + "authenticationLevel none, itemOrUserFirst userFirst: { userClasses { allUsers }, "
+        + "userPermissions { { protectedItems { entry }, grantsAndDenials { grantRead, grantBrowse } } } } }";
+
+    private static final String DENY_READ = "{ identificationTag \"restricted\", precedence 20, "
+        + "authenticationLevel none, itemOrUserFirst userFirst: { userClasses { allUsers }, "
+        + "userPermissions { { protectedItems { entry }, grantsAndDenials { denyRead } } } } }";
+
+
+    @Test
+    public void testParserPool() throws Exception
+    {
+        final ACIItemParserPool pool = new ACIItemParserPool( null );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        try
+        {
+            List<Future<ACIItem>> futures = executor.invokeAll( Collections.nCopies( 100,
+                () -> pool.parse( GRANT_READ ) ) );
+
+            for ( Future<ACIItem> future : futures )
+            {
+                assertEquals( "readers", future.get().getIdentificationTag() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination( 10, TimeUnit.SECONDS );
+        }
+
+        assertNull( pool.parse( " " ) );
+        assertFalse( pool.isNormalizing() );
+        assertThrows( ParseException.class, () -> pool.parse( "{ invalid }" ) );
+    }
+
+
+    @Test
+    public void testEngine() throws Exception
+    {
+        ACIDecisionEngine engine = new ACIDecisionEngine( null );
+        Dn readers = new Dn( "cn=readers,dc=example,dc=com" );
+        Dn restricted = new Dn( "cn=restricted,dc=example,dc=com" );
+        Dn entryDn = new Dn( "cn=entry,dc=example,dc=com" );
+        ACIRequester anonymous = new ACIRequester( Dn.EMPTY_DN, AuthenticationLevel.NONE );
+
+        engine.compile( readers, new DefaultAttribute( "prescriptiveACI", GRANT_READ ) );
+        ACIDecisionTable table = engine.compile( restricted, new DefaultAttribute( "prescriptiveACI", DENY_READ ) );
+
+        assertEquals( 2, engine.size() );
+        assertEquals( table, engine.getTable( restricted ) );
+        assertNotNull( engine.getTable( readers ) );
+
+        List<Dn> readersOnly = Collections.singletonList( readers );
+        List<Dn> both = Arrays.asList( readers, restricted );
+
+        assertTrue( engine.isPermitted( anonymous, MicroOperation.READ, entryDn, null, null, readersOnly ) );
+        assertTrue( engine.isPermitted( anonymous, MicroOperation.BROWSE, entryDn, null, null, both ) );
+        assertFalse( engine.isPermitted( anonymous, MicroOperation.READ, entryDn, null, null, both ) );
+
+        // An invalidated subentry no longer applies
+        engine.invalidate( restricted );
+        assertTrue( engine.isPermitted( anonymous, MicroOperation.READ, entryDn, null, null, both ) );
+
+        engine.clear();
+        assertEquals( 0, engine.size() );
+        assertFalse( engine.isPermitted( anonymous, MicroOperation.READ, entryDn, null, null, both ) );
+    }
+}
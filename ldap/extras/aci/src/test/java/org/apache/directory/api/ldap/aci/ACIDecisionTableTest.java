@@ -0,0 +1,200 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.aci;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.directory.api.ldap.aci.protectedItem.AllAttributeValuesItem;
+import org.apache.directory.api.ldap.aci.protectedItem.AllUserAttributeTypesAndValuesItem;
+import org.apache.directory.api.ldap.aci.protectedItem.AttributeTypeItem;
+import org.apache.directory.api.ldap.aci.protectedItem.AttributeValueItem;
+import org.apache.directory.api.ldap.aci.protectedItem.ClassesItem;
+import org.apache.directory.api.ldap.aci.protectedItem.EntryItem;
+import org.apache.directory.api.ldap.model.constants.AuthenticationLevel;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.subtree.BaseSubtreeSpecification;
+import org.apache.directory.api.ldap.model.subtree.SubtreeSpecification;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Unit tests class for the ACIDecisionTable.
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution( ExecutionMode.CONCURRENT )
+public class ACIDecisionTableTest
+{
+    private static final AttributeType CN = new AttributeType( "cn" );
+    private static final AttributeType SN = new AttributeType( "sn" );
+
+
+    private static ACITuple tuple( UserClass userClass, AuthenticationLevel level, ProtectedItem item,
+        boolean grant, int precedence, MicroOperation... operations )
+    {
+        return new ACITuple( Collections.singleton( userClass ), level, Collections.singleton( item ),
+            Arrays.asList( operations ), grant, precedence );
+    }
+
+
+    private static ACITuple tuple( UserClass userClass, ProtectedItem item, boolean grant, int precedence,
+        MicroOperation... operations )
+    {
+        return tuple( userClass, AuthenticationLevel.NONE, item, grant, precedence, operations );
+    }
+
+
+    @Test
+    public void testDecisions() throws Exception
+    {
+        Dn bobDn = new Dn( "uid=bob,ou=people,dc=example,dc=com" );
+        Dn entryDn = new Dn( "cn=entry,ou=data,dc=example,dc=com" );
+        Attribute secret = new DefaultAttribute( "cn", "secret" );
+        UserClass bob = new UserClass.Name( Collections.singleton( bobDn.getNormName() ) );
+
+        List<ACITuple> tuples = new ArrayList<>();
+        tuples.add( tuple( UserClass.ALL_USERS, ProtectedItem.ENTRY, true, 10, MicroOperation.BROWSE,
+            MicroOperation.READ ) );
+        tuples.add( tuple( bob, AuthenticationLevel.SIMPLE,
+            new AttributeTypeItem( Collections.singleton( SN ) ), true, 20, MicroOperation.READ,
+            MicroOperation.COMPARE ) );
+        tuples.add( tuple( bob, AuthenticationLevel.SIMPLE,
+            new AllAttributeValuesItem( Collections.singleton( SN ) ), true, 20, MicroOperation.READ ) );
+        tuples.add( tuple( UserClass.ALL_USERS, new AttributeValueItem( Collections.singleton( secret ) ), false,
+            30, MicroOperation.READ ) );
+        tuples.add( tuple( UserClass.ALL_USERS, ProtectedItem.ALL_USER_ATTRIBUTE_TYPES_AND_VALUES, true, 5,
+            MicroOperation.READ ) );
+        tuples.add( tuple( UserClass.ALL_USERS, new AttributeTypeItem( Collections.singleton( SN ) ), false, 15,
+            MicroOperation.COMPARE ) );
+
+        ACIDecisionTable table = new ACIDecisionTable( tuples );
+        assertEquals( 6, table.size() );
+
+        ACIRequester anonymous = new ACIRequester( Dn.EMPTY_DN, AuthenticationLevel.NONE );
+        ACIRequester bobSimple = new ACIRequester( bobDn, AuthenticationLevel.SIMPLE );
+        ACIRequester bobAnonymous = new ACIRequester( bobDn, AuthenticationLevel.NONE );
+
+        // Entry level
+        assertTrue( table.isPermitted( anonymous, MicroOperation.READ, entryDn, null, null ) );
+        assertTrue( table.isPermitted( anonymous, MicroOperation.BROWSE, entryDn, null, null ) );
+        assertFalse( table.isPermitted( anonymous, MicroOperation.RENAME, entryDn, null, null ) );
+
+        // Attribute level, granted to all the users by the allUserAttributeTypesAndValues tuple
+        assertTrue( table.isPermitted( anonymous, MicroOperation.READ, entryDn, SN, null ) );
+        assertTrue( table.isPermitted( anonymous, MicroOperation.READ, entryDn, SN, new Value( "Doe" ) ) );
+
+        // The higher precedence grant wins over the denial, if Bob is authenticated
+        assertTrue( table.isPermitted( bobSimple, MicroOperation.COMPARE, entryDn, SN, null ) );
+        assertFalse( table.isPermitted( bobAnonymous, MicroOperation.COMPARE, entryDn, SN, null ) );
+        assertFalse( table.isPermitted( anonymous, MicroOperation.COMPARE, entryDn, SN, null ) );
+
+        // Value level denial
+        assertFalse( table.isPermitted( bobSimple, MicroOperation.READ, entryDn, CN, new Value( "secret" ) ) );
+        assertTrue( table.isPermitted( bobSimple, MicroOperation.READ, entryDn, CN, new Value( "public" ) ) );
+        assertTrue( table.isPermitted( bobSimple, MicroOperation.READ, entryDn, CN, null ) );
+    }
+
+
+    @Test
+    public void testPrecedenceAndUndecidableItems() throws Exception
+    {
+        Dn entryDn = new Dn( "cn=entry,ou=data,dc=example,dc=com" );
+        ACIRequester anonymous = new ACIRequester( Dn.EMPTY_DN, AuthenticationLevel.NONE );
+
+        List<ACITuple> tuples = new ArrayList<>();
+
+        // A denial wins over a grant with the same precedence
+        tuples.add( tuple( UserClass.ALL_USERS, ProtectedItem.ENTRY, true, 10, MicroOperation.MODIFY,
+            MicroOperation.EXPORT ) );
+        tuples.add( tuple( UserClass.ALL_USERS, ProtectedItem.ENTRY, false, 10, MicroOperation.MODIFY ) );
+
+        // A denial on classes always applies, a grant on classes never applies
+        tuples.add( tuple( UserClass.ALL_USERS, new ClassesItem( null ), false, 20, MicroOperation.EXPORT ) );
+        tuples.add( tuple( UserClass.ALL_USERS, new ClassesItem( null ), true, 20, MicroOperation.IMPORT ) );
+
+        ACIDecisionTable table = new ACIDecisionTable( tuples );
+
+        assertFalse( table.isPermitted( anonymous, MicroOperation.MODIFY, entryDn, null, null ) );
+        assertFalse( table.isPermitted( anonymous, MicroOperation.EXPORT, entryDn, null, null ) );
+        assertFalse( table.isPermitted( anonymous, MicroOperation.IMPORT, entryDn, null, null ) );
+        assertEquals( ACIDecisionTable.NOT_APPLICABLE,
+            table.evaluate( anonymous, MicroOperation.IMPORT, entryDn, null, null ) );
+        assertEquals( 41, table.evaluate( anonymous, MicroOperation.EXPORT, entryDn, null, null ) );
+    }
+
+
+    @Test
+    public void testUserClasses() throws Exception
+    {
+        Dn entryDn = new Dn( "uid=alice,ou=people,dc=example,dc=com" );
+        Dn parentDn = new Dn( "ou=people,dc=example,dc=com" );
+        Dn groupDn = new Dn( "cn=admins,ou=groups,dc=example,dc=com" );
+        Dn carolDn = new Dn( "uid=carol,ou=staff,ou=people,dc=example,dc=com" );
+
+        SubtreeSpecification staff = new BaseSubtreeSpecification( new Dn( "ou=people,dc=example,dc=com" ), 1,
+            SubtreeSpecification.UNBOUNDED_MAX, new HashSet<Dn>(), Collections.singleton( new Dn( "ou=guests" ) ) );
+
+        Collection<ACITuple> tuples = new ArrayList<>();
+        tuples.add( tuple( UserClass.THIS_ENTRY, ProtectedItem.ENTRY, true, 0, MicroOperation.MODIFY ) );
+        tuples.add( tuple( UserClass.PARENT_OF_ENTRY, ProtectedItem.ENTRY, true, 0, MicroOperation.RENAME ) );
+        tuples.add( tuple( new UserClass.UserGroup( Collections.singleton( groupDn.getNormName() ) ),
+            ProtectedItem.ENTRY, true, 0, MicroOperation.ADD ) );
+        tuples.add( tuple( new UserClass.Subtree( Collections.singleton( staff ) ), ProtectedItem.ENTRY, true, 0,
+            MicroOperation.BROWSE ) );
+
+        ACIDecisionTable table = new ACIDecisionTable( tuples );
+
+        ACIRequester alice = new ACIRequester( entryDn, AuthenticationLevel.SIMPLE );
+        ACIRequester parent = new ACIRequester( parentDn, AuthenticationLevel.SIMPLE );
+        ACIRequester admin = new ACIRequester( carolDn, Collections.singleton( groupDn ), AuthenticationLevel.SIMPLE );
+        ACIRequester guest = new ACIRequester( new Dn( "uid=dave,ou=guests,ou=people,dc=example,dc=com" ),
+            AuthenticationLevel.SIMPLE );
+
+        assertTrue( table.isPermitted( alice, MicroOperation.MODIFY, entryDn, null, null ) );
+        assertFalse( table.isPermitted( parent, MicroOperation.MODIFY, entryDn, null, null ) );
+
+        assertTrue( table.isPermitted( parent, MicroOperation.RENAME, entryDn, null, null ) );
+        assertFalse( table.isPermitted( alice, MicroOperation.RENAME, entryDn, null, null ) );
+
+        assertTrue( table.isPermitted( admin, MicroOperation.ADD, entryDn, null, null ) );
+        assertFalse( table.isPermitted( alice, MicroOperation.ADD, entryDn, null, null ) );
+
+        assertTrue( table.isPermitted( admin, MicroOperation.BROWSE, entryDn, null, null ) );
+        assertTrue( table.isPermitted( alice, MicroOperation.BROWSE, entryDn, null, null ) );
+        assertFalse( table.isPermitted( parent, MicroOperation.BROWSE, entryDn, null, null ) );
+        assertFalse( table.isPermitted( guest, MicroOperation.BROWSE, entryDn, null, null ) );
+    }
+}
@@ -20,10 +20,18 @@
 package org.apache.directory.api.ldap.util.tree;
 
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.exception.LdapException;
@@ -44,6 +52,11 @@ import org.slf4j.LoggerFactory;
  * nodes of the tree from the root. <br>
  * A node may also have no attached element.<br>
  * Each child node is referenced by a Rdn, and holds the full Dn corresponding to its position<br>
+ * <br>
+ * The tree is meant to be read far more often than it is modified : the read operations
+ * don't take any lock. The children of a node are stored in an immutable sorted array,
+ * replaced on each modification, and in a ConcurrentHashMap when a node has many children.
+ * The modifications are serialized on the tree root node.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  * @param <N> The type of node we store
@@ -53,23 +66,356 @@ public class DnNode<N>
     /** The logger for this class */
     private static final Logger LOG = LoggerFactory.getLogger( DnNode.class );
 
+    /** The number of children above which they are stored in a hash table */
+    private static final int MAX_ARRAY_CHILDREN = 32;
+
+    /** The children of a node without children */
+    @SuppressWarnings("rawtypes")
+    private static final Children NO_CHILDREN = new ArrayChildren( new String[0], new DnNode[0] );
+
     /** The stored element */
-    private N nodeElement;
+    private volatile N nodeElement;
 
     /** The node's key */
-    private Rdn nodeRdn;
+    private volatile Rdn nodeRdn;
 
     /** The node's Dn */
-    private Dn nodeDn;
+    private volatile Dn nodeDn;
 
     /** The node's depth in the tree */
-    private int depth;
+    private volatile int depth;
 
     /** The parent, if any */
-    private DnNode<N> parent;
+    private volatile DnNode<N> parent;
 
     /** Stores the list of all the descendant */
-    private Map<String, DnNode<N>> children;
+    private volatile Children<N> children;
+
+
+    /**
+     * The children of a node, indexed by their normalized Rdn. An instance is
+     * either immutable, or thread safe.
+     *
+     * @param <N> The type of node we store
+     */
+    private abstract static class Children<N>
+    {
+        /**
+         * @param key The child normalized Rdn
+         * @return The child, or null if absent
+         */
+        abstract DnNode<N> get( String key );
+
+
+        /**
+         * @param key The child normalized Rdn
+         * @param node The child
+         * @return The children to use after the addition, which may be this instance
+         */
+        abstract Children<N> put( String key, DnNode<N> node );
+
+
+        /**
+         * @param key The child normalized Rdn
+         * @return The children to use after the removal, which may be this instance
+         */
+        abstract Children<N> remove( String key );
+
+
+        /**
+         * @return The number of children
+         */
+        abstract int size();
+
+
+        /**
+         * @return The children nodes
+         */
+        abstract Iterable<DnNode<N>> nodes();
+
+
+        /**
+         * Copies the children into a Map
+         *
+         * @param map The Map to fill
+         */
+        abstract void copyTo( Map<String, DnNode<N>> map );
+    }
+
+
+    /**
+     * A small set of children, stored in arrays sorted on the normalized Rdns. The
+     * arrays are never modified, a copy is created on each modification.
+     *
+     * @param <N> The type of node we store
+     */
+    private static final class ArrayChildren<N> extends Children<N>
+    {
+        /** The sorted normalized Rdns */
+        private final String[] keys;
+
+        /** The children, in the keys order */
+        private final DnNode<N>[] nodes;
+
+
+        ArrayChildren( String[] keys, DnNode<N>[] nodes )
+        {
+            this.keys = keys;
+            this.nodes = nodes;
+        }
+
+
+        @Override
+        DnNode<N> get( String key )
+        {
+            int pos = Arrays.binarySearch( keys, key );
+
+            return pos < 0 ? null : nodes[pos];
+        }
+
+
+        @Override
+        Children<N> put( String key, DnNode<N> node )
+        {
+            int pos = Arrays.binarySearch( keys, key );
+
+            if ( pos >= 0 )
+            {
+                DnNode<N>[] newNodes = nodes.clone();
+                newNodes[pos] = node;
+
+                return new ArrayChildren<>( keys, newNodes );
+            }
+
+            if ( keys.length >= MAX_ARRAY_CHILDREN )
+            {
+                HashChildren<N> hashChildren = new HashChildren<>();
+                copyTo( hashChildren.map );
+                hashChildren.map.put( key, node );
+
+                return hashChildren;
+            }
+
+            int insert = -pos - 1;
+            String[] newKeys = new String[keys.length + 1];
+            DnNode<N>[] newNodes = newArray( keys.length + 1 );
+
+            System.arraycopy( keys, 0, newKeys, 0, insert );
+            System.arraycopy( nodes, 0, newNodes, 0, insert );
+            newKeys[insert] = key;
+            newNodes[insert] = node;
+            System.arraycopy( keys, insert, newKeys, insert + 1, keys.length - insert );
+            System.arraycopy( nodes, insert, newNodes, insert + 1, keys.length - insert );
+
+            return new ArrayChildren<>( newKeys, newNodes );
+        }
+
+
+        @Override
+        Children<N> remove( String key )
+        {
+            int pos = Arrays.binarySearch( keys, key );
+
+            if ( pos < 0 )
+            {
+                return this;
+            }
+
+            String[] newKeys = new String[keys.length - 1];
+            DnNode<N>[] newNodes = newArray( keys.length - 1 );
+
+            System.arraycopy( keys, 0, newKeys, 0, pos );
+            System.arraycopy( nodes, 0, newNodes, 0, pos );
+            System.arraycopy( keys, pos + 1, newKeys, pos, keys.length - pos - 1 );
+            System.arraycopy( nodes, pos + 1, newNodes, pos, keys.length - pos - 1 );
+
+            return new ArrayChildren<>( newKeys, newNodes );
+        }
+
+
+        @Override
+        int size()
+        {
+            return keys.length;
+        }
+
+
+        @Override
+        Iterable<DnNode<N>> nodes()
+        {
+            return Arrays.asList( nodes );
+        }
+
+
+        @Override
+        void copyTo( Map<String, DnNode<N>> map )
+        {
+            for ( int i = 0; i < keys.length; i++ )
+            {
+                map.put( keys[i], nodes[i] );
+            }
+        }
+
+
+        @SuppressWarnings("unchecked")
+        private static <N> DnNode<N>[] newArray( int size )
+        {
+            return new DnNode[size];
+        }
+    }
+
+
+    /**
+     * A large set of children, stored in a ConcurrentHashMap, modified in place.
+     *
+     * @param <N> The type of node we store
+     */
+    private static final class HashChildren<N> extends Children<N>
+    {
+        /** The children, indexed by their normalized Rdn */
+        private final Map<String, DnNode<N>> map = new ConcurrentHashMap<>();
+
+
+        @Override
+        DnNode<N> get( String key )
+        {
+            return map.get( key );
+        }
+
+
+        @Override
+        Children<N> put( String key, DnNode<N> node )
+        {
+            map.put( key, node );
+
+            return this;
+        }
+
+
+        @Override
+        Children<N> remove( String key )
+        {
+            map.remove( key );
+
+            if ( map.size() > MAX_ARRAY_CHILDREN / 2 )
+            {
+                return this;
+            }
+
+            // Back to a compact storage
+            Map<String, DnNode<N>> sorted = new TreeMap<>( map );
+            String[] keys = sorted.keySet().toArray( new String[sorted.size()] );
+            DnNode<N>[] nodes = ArrayChildren.newArray( sorted.size() );
+            int i = 0;
+
+            for ( DnNode<N> node : sorted.values() )
+            {
+                nodes[i++] = node;
+            }
+
+            return new ArrayChildren<>( keys, nodes );
+        }
+
+
+        @Override
+        int size()
+        {
+            return map.size();
+        }
+
+
+        @Override
+        Iterable<DnNode<N>> nodes()
+        {
+            return map.values();
+        }
+
+
+        @Override
+        void copyTo( Map<String, DnNode<N>> target )
+        {
+            target.putAll( map );
+        }
+    }
+
+
+    /**
+     * An Iterator over the elements stored below a node. When a node has an element, its
+     * descendants are not visited. The nodes to visit are kept in a stack, the tree is not
+     * copied.
+     *
+     * @param <N> The type of node we store
+     */
+    private static final class DescendantElementIterator<N> implements Iterator<N>
+    {
+        /** The nodes to visit */
+        private final Deque<DnNode<N>> stack = new ArrayDeque<>();
+
+        /** The next element to return */
+        private N next;
+
+
+        DescendantElementIterator( DnNode<N> node )
+        {
+            if ( node != null )
+            {
+                pushChildren( node );
+                advance();
+            }
+        }
+
+
+        private void pushChildren( DnNode<N> node )
+        {
+            for ( DnNode<N> child : node.children.nodes() )
+            {
+                stack.push( child );
+            }
+        }
+
+
+        private void advance()
+        {
+            next = null;
+
+            while ( !stack.isEmpty() )
+            {
+                DnNode<N> node = stack.pop();
+                N element = node.nodeElement;
+
+                if ( element != null )
+                {
+                    next = element;
+
+                    return;
+                }
+
+                pushChildren( node );
+            }
+        }
+
+
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+
+        @Override
+        public N next()
+        {
+            if ( next == null )
+            {
+                throw new NoSuchElementException();
+            }
+
+            N element = next;
+            advance();
+
+            return element;
+        }
+    }
 
 
     //-------------------------------------------------------------------------
@@ -78,9 +424,10 @@ public class DnNode<N>
     /**
      * Creates a new instance of DnNode.
      */
+    @SuppressWarnings("unchecked")
     public DnNode()
     {
-        children = new HashMap<>();
+        children = NO_CHILDREN;
         nodeDn = Dn.EMPTY_DN;
         nodeRdn = Rdn.EMPTY_RDN;
     }
@@ -91,10 +438,11 @@ public class DnNode<N>
      *
      * @param element the element to store
      */
+    @SuppressWarnings("unchecked")
     public DnNode( N element )
     {
         this.nodeElement = element;
-        children = new HashMap<>();
+        children = NO_CHILDREN;
     }
 
 
@@ -104,11 +452,12 @@ public class DnNode<N>
      * @param dn the node's Dn
      * @param element the element to store
      */
+    @SuppressWarnings("unchecked")
     public DnNode( Dn dn, N element )
     {
         if ( ( dn == null ) || ( dn.isEmpty() ) )
         {
-            children = new HashMap<>();
+            children = NO_CHILDREN;
             this.nodeDn = Dn.EMPTY_DN;
 
             return;
@@ -125,6 +474,11 @@ public class DnNode<N>
             this.nodeElement = rootNode.nodeElement;
             this.nodeRdn = rootNode.nodeRdn;
             this.parent = null;
+
+            for ( DnNode<N> child : children.nodes() )
+            {
+                child.parent = this;
+            }
         }
         catch ( LdapException le )
         {
@@ -139,7 +493,7 @@ public class DnNode<N>
     //-------------------------------------------------------------------------
     /**
      * Check that the Dn is not null
-     * 
+     *
      * @param dn The Dn to check
      * @throws LdapException If teh Dn is null or empty
      */
@@ -154,6 +508,22 @@ public class DnNode<N>
     }
 
 
+    /**
+     * @return The root of the tree this node belongs to, which is used as the modifications lock
+     */
+    private DnNode<N> getRoot()
+    {
+        DnNode<N> root = this;
+
+        while ( root.parent != null )
+        {
+            root = root.parent;
+        }
+
+        return root;
+    }
+
+
     /**
      * Create a new DnNode, recursively creating all the intermediate nodes.
      *
@@ -195,7 +565,7 @@ public class DnNode<N>
                 node.nodeDn = rootNode.nodeDn.getParent();
                 node.depth = node.nodeDn.size() + depth;
                 rootNode.parent = node;
-                node.children.put( rootNode.nodeRdn.getNormName(), rootNode );
+                node.children = node.children.put( rootNode.nodeRdn.getNormName(), rootNode );
                 rootNode = node;
             }
 
@@ -208,12 +578,15 @@ public class DnNode<N>
 
     /**
      * Store the given element into the node
-     * 
+     *
      * @param element The element to set
      */
-    public synchronized void setElement( N element )
+    public void setElement( N element )
     {
-        this.nodeElement = element;
+        synchronized ( getRoot() )
+        {
+            this.nodeElement = element;
+        }
     }
 
 
@@ -223,7 +596,7 @@ public class DnNode<N>
      *
      * @return <code>true</code> if the class is a leaf node, false otherwise.
      */
-    public synchronized boolean isLeaf()
+    public boolean isLeaf()
     {
         return !hasChildren();
     }
@@ -236,7 +609,7 @@ public class DnNode<N>
      * @param dn The Dn we want to check
      * @return <code>true</code> if this is a leaf node, false otherwise.
      */
-    public synchronized boolean isLeaf( Dn dn )
+    public boolean isLeaf( Dn dn )
     {
         DnNode<N> node = getNode( dn );
 
@@ -255,18 +628,15 @@ public class DnNode<N>
      *
      * @return The number of descendents
      */
-    public synchronized int size()
+    public int size()
     {
         // The node itself
         int size = 1;
 
         // Iterate through the children if any
-        if ( children.size() != 0 )
+        for ( DnNode<N> node : children.nodes() )
         {
-            for ( DnNode<N> node : children.values() )
-            {
-                size += node.size();
-            }
+            size += node.size();
         }
 
         return size;
@@ -276,7 +646,7 @@ public class DnNode<N>
     /**
      * @return Return the stored element, if any
      */
-    public synchronized N getElement()
+    public N getElement()
     {
         return nodeElement;
     }
@@ -286,7 +656,7 @@ public class DnNode<N>
      * @return Return the stored element, if any
      * @param dn The Dn we want to get the element for
      */
-    public synchronized N getElement( Dn dn )
+    public N getElement( Dn dn )
     {
         DnNode<N> node = getNode( dn );
 
@@ -303,7 +673,7 @@ public class DnNode<N>
      * @return True if the Node stores an element. BranchNode may not hold any
      * element.
      */
-    public synchronized boolean hasElement()
+    public boolean hasElement()
     {
         return nodeElement != null;
     }
@@ -314,7 +684,7 @@ public class DnNode<N>
      * element.
      * @param dn The Dn we want to get the element for
      */
-    public synchronized boolean hasElement( Dn dn )
+    public boolean hasElement( Dn dn )
     {
         DnNode<N> node = getNode( dn );
 
@@ -328,130 +698,55 @@ public class DnNode<N>
 
 
     /**
-     * Recursively check if the node has a descendant having an element
-     * 
-     * @param node The node to start from
-     * @return <tt>true</tt> if the node has some descendant
-     */
-    private synchronized boolean hasDescendantElement( DnNode<N> node )
-    {
-        if ( node == null )
-        {
-            return false;
-        }
-
-        if ( node.hasElement() )
-        {
-            return true;
-        }
-
-        for ( DnNode<N> child : node.getChildren().values() )
-        {
-            if ( hasDescendantElement( child ) )
-            {
-                return true;
-            }
-        }
-
-        // Nothing found ...
-        return false;
-    }
-
-
-    /**
-     * @return True if one of the node below the current node has one element, 
+     * @return True if one of the node below the current node has one element,
      * False otherwise
      * @param dn The Dn we want to get the element for
      */
-    public synchronized boolean hasDescendantElement( Dn dn )
+    public boolean hasDescendantElement( Dn dn )
     {
-        DnNode<N> node = getNode( dn );
-
-        if ( node == null )
-        {
-            return false;
-        }
-
-        // We must be at the right place in the tree
-        if ( node.getDn().size() != dn.size() )
-        {
-            return false;
-        }
-
-        if ( node.hasChildren() )
-        {
-            for ( DnNode<N> child : node.getChildren().values() )
-            {
-                if ( hasDescendantElement( child ) )
-                {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return descendantElements( dn ).hasNext();
     }
 
 
     /**
-     * Recursively get all the elements from nodes having an element
-     * 
-     * @param node The node to start with
-     * @param descendants The list of descendant to fulfill
+     * @return True if one of the node below the current node has one element,
+     * False otherwise
+     * @param dn The Dn we want to get the element for
      */
-    private synchronized void getDescendantElements( DnNode<N> node, List<N> descendants )
+    public List<N> getDescendantElements( Dn dn )
     {
-        if ( node == null )
-        {
-            return;
-        }
+        List<N> descendants = new ArrayList<>();
+        Iterator<N> elements = descendantElements( dn );
 
-        if ( node.hasElement() )
+        while ( elements.hasNext() )
         {
-            descendants.add( node.getElement() );
-
-            // Stop here
-            return;
+            descendants.add( elements.next() );
         }
 
-        for ( DnNode<N> child : node.getChildren().values() )
-        {
-            getDescendantElements( child, descendants );
-        }
+        return descendants;
     }
 
 
     /**
-     * @return True if one of the node below the current node has one element, 
-     * False otherwise
-     * @param dn The Dn we want to get the element for
+     * Iterates over the elements stored below a given Dn, without copying them. For each
+     * branch, only the element of the node closest to the Dn is returned : the descendants
+     * of a node having an element are skipped. The iteration reflects the tree at the time
+     * each node is visited.
+     *
+     * @param dn The Dn we want to get the descendant elements for
+     * @return An Iterator over the descendant elements, empty if the Dn is not in the tree
      */
-    public synchronized List<N> getDescendantElements( Dn dn )
+    public Iterator<N> descendantElements( Dn dn )
     {
-        List<N> descendants = new ArrayList<>();
-
         DnNode<N> node = getNode( dn );
 
-        if ( node == null )
-        {
-            return descendants;
-        }
-
         // We must be at the right place in the tree
-        if ( node.getDn().size() != dn.size() )
-        {
-            return descendants;
-        }
-
-        if ( node.hasChildren() )
+        if ( ( node != null ) && ( node.getDn().size() != dn.size() ) )
         {
-            for ( DnNode<N> child : node.getChildren().values() )
-            {
-                getDescendantElements( child, descendants );
-            }
+            node = null;
         }
 
-        return descendants;
+        return new DescendantElementIterator<>( node );
     }
 
 
@@ -460,9 +755,9 @@ public class DnNode<N>
      *
      * @return <code>true</code> if the node has some children
      */
-    public synchronized boolean hasChildren()
+    public boolean hasChildren()
     {
-        return ( children != null ) && children.size() != 0;
+        return children.size() != 0;
     }
 
 
@@ -473,7 +768,7 @@ public class DnNode<N>
      * @return <code>true</code> if the node has some children
      * @throws LdapException if the Dn is null or empty
      */
-    public synchronized boolean hasChildren( Dn dn ) throws LdapException
+    public boolean hasChildren( Dn dn ) throws LdapException
     {
         checkDn( dn );
 
@@ -484,18 +779,21 @@ public class DnNode<N>
 
 
     /**
-     * @return The list of DnNode
+     * @return A read only snapshot of the children DnNode, indexed by their normalized Rdn
      */
-    public synchronized Map<String, DnNode<N>> getChildren()
+    public Map<String, DnNode<N>> getChildren()
     {
-        return children;
+        Map<String, DnNode<N>> map = new LinkedHashMap<>();
+        children.copyTo( map );
+
+        return Collections.unmodifiableMap( map );
     }
 
 
     /**
      * @return The parent DnNode, if any
      */
-    public synchronized DnNode<N> getParent()
+    public DnNode<N> getParent()
     {
         return parent;
     }
@@ -504,7 +802,7 @@ public class DnNode<N>
     /**
      * @return True if the current DnNode has a parent
      */
-    public synchronized boolean hasParent()
+    public boolean hasParent()
     {
         return parent != null;
     }
@@ -520,7 +818,7 @@ public class DnNode<N>
      * @param dn the normalized distinguished name to resolve to a parent
      * @return true if there is a parent associated with the normalized dn
      */
-    public synchronized boolean hasParent( Dn dn )
+    public boolean hasParent( Dn dn )
     {
         List<Rdn> rdns = dn.getRdns();
 
@@ -536,7 +834,7 @@ public class DnNode<N>
             {
                 parentNode = currentNode;
             }
-            else if ( currentNode.hasChildren() )
+            else
             {
                 currentNode = currentNode.children.get( rdn.getNormName() );
 
@@ -547,10 +845,6 @@ public class DnNode<N>
 
                 parentNode = currentNode;
             }
-            else
-            {
-                break;
-            }
         }
 
         return parentNode != null;
@@ -564,7 +858,7 @@ public class DnNode<N>
      * @return the corresponding node
      * @throws LdapException if the Dn is null or empty
      */
-    public synchronized DnNode<N> add( Dn dn ) throws LdapException
+    public DnNode<N> add( Dn dn ) throws LdapException
     {
         return add( dn, null );
     }
@@ -579,24 +873,25 @@ public class DnNode<N>
      * @return the corresponding node
      * @throws LdapException if the Dn is null or empty
      */
-    public synchronized DnNode<N> add( Dn dn, N element ) throws LdapException
+    public DnNode<N> add( Dn dn, N element ) throws LdapException
     {
         checkDn( dn );
 
-        // We first have to find the Node which will be the parent
-        DnNode<N> parentNode = getNode( dn );
-
-        if ( parentNode == null )
-        {
-            // No parent : add a new node to the root
-            DnNode<N> childNode = createNode( dn, element, dn.size() );
-            childNode.parent = this;
-            children.put( childNode.nodeRdn.getNormName(), childNode );
-            
-            return childNode;
-        }
-        else
+        synchronized ( getRoot() )
         {
+            // We first have to find the Node which will be the parent
+            DnNode<N> parentNode = getNode( dn );
+
+            if ( parentNode == null )
+            {
+                // No parent : add a new node to the root
+                DnNode<N> childNode = createNode( dn, element, dn.size() );
+                childNode.parent = this;
+                children = children.put( childNode.nodeRdn.getNormName(), childNode );
+
+                return childNode;
+            }
+
             // We have a parent. Add the new node to the found parent
             int nbRdns = dn.size() - parentNode.depth;
 
@@ -619,8 +914,8 @@ public class DnNode<N>
                 // All is fine : we are just injecting some data into an existing node
                 else
                 {
-                    parentNode.setElement( element );
-                    
+                    parentNode.nodeElement = element;
+
                     return parentNode;
                 }
             }
@@ -628,9 +923,10 @@ public class DnNode<N>
             {
                 DnNode<N> childNode = createNode( dn, element, nbRdns );
 
-                // done. now, add the newly created tree to the parent node
+                // done. now, add the newly created tree to the parent node. The
+                // new nodes are fully built before being visible to the readers
                 childNode.parent = parentNode;
-                parentNode.children.put( childNode.nodeRdn.getNormName(), childNode );
+                parentNode.children = parentNode.children.put( childNode.nodeRdn.getNormName(), childNode );
 
                 return childNode;
             }
@@ -639,45 +935,50 @@ public class DnNode<N>
 
 
     /**
-     * Removes a node from the tree.
+     * Removes a node from the tree. The ancestors which don't have an element
+     * nor other children are also removed.
      *
      * @param dn the node's Dn
      * @throws LdapException if the Dn is null or empty
      */
-    public synchronized void remove( Dn dn ) throws LdapException
+    public void remove( Dn dn ) throws LdapException
     {
         checkDn( dn );
 
-        // Find the parent first : we won't be able to remove
-        // a node if it's not present in the tree !
-        DnNode<N> parentNode = getNode( dn );
-
-        if ( parentNode == null )
-        {
-            return;
-        }
-
-        // Now, check that this parent has the same Dn than the one
-        // we gave and that there is no children
-        if ( ( dn.size() != parentNode.depth ) || parentNode.hasChildren() )
+        synchronized ( getRoot() )
         {
-            return;
-        }
-
-        // Ok, no children, same Dn, let's remove what we can.
-        parentNode = parentNode.getParent();
+            // Find the parent first : we won't be able to remove
+            // a node if it's not present in the tree !
+            DnNode<N> parentNode = getNode( dn );
 
-        for ( Rdn rdn : dn.getRdns() )
-        {
-            parentNode.children.remove( rdn.getNormName() );
+            if ( parentNode == null )
+            {
+                return;
+            }
 
-            if ( parentNode.children.size() > 0 )
+            // Now, check that this parent has the same Dn than the one
+            // we gave and that there is no children
+            if ( ( dn.size() != parentNode.depth ) || parentNode.hasChildren() )
             {
-                // We have to stop here, because the parent's node is shared with other Node.
-                break;
+                return;
             }
 
+            // Ok, no children, same Dn, let's remove what we can.
             parentNode = parentNode.getParent();
+
+            for ( Rdn rdn : dn.getRdns() )
+            {
+                parentNode.children = parentNode.children.remove( rdn.getNormName() );
+
+                if ( ( parentNode.children.size() > 0 ) || parentNode.hasElement() || !parentNode.hasParent() )
+                {
+                    // We have to stop here, because the parent's node is shared with other Node,
+                    // or holds its own element.
+                    break;
+                }
+
+                parentNode = parentNode.getParent();
+            }
         }
     }
 
@@ -689,9 +990,9 @@ public class DnNode<N>
      * @param rdn The name we are looking for
      * @return <code>true</code> if the tree instance contains this name
      */
-    public synchronized boolean contains( Rdn rdn )
+    public boolean contains( Rdn rdn )
     {
-        return children.containsKey( rdn.getNormName() );
+        return children.get( rdn.getNormName() ) != null;
     }
 
 
@@ -701,21 +1002,16 @@ public class DnNode<N>
      * @param rdn the rdn to use as the node key
      * @return the child node corresponding to the rdn.
      */
-    public synchronized DnNode<N> getChild( Rdn rdn )
+    public DnNode<N> getChild( Rdn rdn )
     {
-        if ( children.containsKey( rdn.getNormName() ) )
-        {
-            return children.get( rdn.getNormName() );
-        }
-
-        return null;
+        return children.get( rdn.getNormName() );
     }
 
 
     /**
      * @return The Node's Rdn
      */
-    public synchronized Rdn getRdn()
+    public Rdn getRdn()
     {
         return nodeRdn;
     }
@@ -731,7 +1027,7 @@ public class DnNode<N>
      * @param dn the normalized distinguished name to resolve to a parent
      * @return the Node associated with the normalized dn
      */
-    public synchronized DnNode<N> getNode( Dn dn )
+    public DnNode<N> getNode( Dn dn )
     {
         DnNode<N> currentNode = this;
         DnNode<N> parentNode = null;
@@ -739,23 +1035,14 @@ public class DnNode<N>
         // Iterate through all the Rdn until we find the associated partition
         for ( int i = dn.size() - 1; i >= 0; i-- )
         {
-            Rdn rdn = dn.getRdn( i );
+            currentNode = currentNode.children.get( dn.getRdn( i ).getNormName() );
 
-            if ( currentNode.hasChildren() )
-            {
-                currentNode = currentNode.children.get( rdn.getNormName() );
-
-                if ( currentNode == null )
-                {
-                    break;
-                }
-
-                parentNode = currentNode;
-            }
-            else
+            if ( currentNode == null )
             {
                 break;
             }
+
+            parentNode = currentNode;
         }
 
         return parentNode;
@@ -763,50 +1050,33 @@ public class DnNode<N>
 
 
     /**
-     * Get the closest Node for a given Dn which has an element, if present in the tree.<br>
-     * For instance, if we have stored dc=acme, dc=org into the tree,
-     * the Dn: ou=example, dc=acme, dc=org will have a parent, and
-     * dc=acme, dc=org will be returned if it has an associated element.
-     * <br>For the Dn ou=apache, dc=org, there is no parent, so null will be returned.
+     * Walks down the tree following the Dn, and returns the deepest node having an element
      *
-     * @param dn the normalized distinguished name to resolve to a parent
-     * @return the Node associated with the normalized dn
+     * @param dn The Dn to follow
+     * @param last The index of the last Rdn to follow
+     * @return The deepest node having an element, or null
      */
-    public synchronized boolean hasParentElement( Dn dn )
+    private DnNode<N> getDeepestNodeWithElement( Dn dn, int last )
     {
-        List<Rdn> rdns = dn.getRdns();
-
         DnNode<N> currentNode = this;
-        boolean hasElement = false;
+        DnNode<N> element = null;
 
-        // Iterate through all the Rdn until we find the associated partition
-        for ( int i = rdns.size() - 1; i >= 0; i-- )
+        for ( int i = dn.size() - 1; i >= last; i-- )
         {
-            Rdn rdn = rdns.get( i );
+            currentNode = currentNode.children.get( dn.getRdn( i ).getNormName() );
 
-            if ( currentNode.hasChildren() )
+            if ( currentNode == null )
             {
-                currentNode = currentNode.children.get( rdn.getNormName() );
-
-                if ( currentNode == null )
-                {
-                    break;
-                }
-
-                if ( currentNode.hasElement() )
-                {
-                    hasElement = true;
-                }
-
-                parent = currentNode;
+                break;
             }
-            else
+
+            if ( currentNode.nodeElement != null )
             {
-                break;
+                element = currentNode;
             }
         }
 
-        return hasElement;
+        return element;
     }
 
 
@@ -820,41 +1090,41 @@ public class DnNode<N>
      * @param dn the normalized distinguished name to resolve to a parent
      * @return the Node associated with the normalized dn
      */
-    public synchronized DnNode<N> getParentWithElement( Dn dn )
+    public boolean hasParentElement( Dn dn )
     {
-        List<Rdn> rdns = dn.getRdns();
-
-        DnNode<N> currentNode = this;
-        DnNode<N> element = null;
-
-        // Iterate through all the Rdn until we find the associated partition
-        for ( int i = rdns.size() - 1; i >= 1; i-- )
-        {
-            Rdn rdn = rdns.get( i );
-
-            if ( currentNode.hasChildren() )
-            {
-                currentNode = currentNode.children.get( rdn.getNormName() );
+        return getDeepestNodeWithElement( dn, 0 ) != null;
+    }
 
-                if ( currentNode == null )
-                {
-                    break;
-                }
 
-                if ( currentNode.hasElement() )
-                {
-                    element = currentNode;
-                }
+    /**
+     * Get the closest Node for a given Dn which has an element, if present in the tree.<br>
+     * For instance, if we have stored dc=acme, dc=org into the tree,
+     * the Dn: ou=example, dc=acme, dc=org will have a parent, and
+     * dc=acme, dc=org will be returned if it has an associated element.
+     * <br>For the Dn ou=apache, dc=org, there is no parent, so null will be returned.
+     *
+     * @param dn the normalized distinguished name to resolve to a parent
+     * @return the Node associated with the normalized dn
+     */
+    public DnNode<N> getParentWithElement( Dn dn )
+    {
+        return getDeepestNodeWithElement( dn, 1 );
+    }
 
-                parent = currentNode;
-            }
-            else
-            {
-                break;
-            }
-        }
 
-        return element;
+    /**
+     * Get the Node having an element which is the longest prefix of a given Dn : the node
+     * for the Dn itself if it has an element, otherwise the closest ancestor having an element.
+     * <br>
+     * For instance, if we have stored dc=acme, dc=org into the tree, with an element, it will be
+     * returned for the Dn dc=acme, dc=org and for the Dn ou=example, dc=acme, dc=org.
+     *
+     * @param dn the normalized distinguished name to look for
+     * @return the Node with an element associated with the longest prefix of the Dn, or null
+     */
+    public DnNode<N> getNodeWithElement( Dn dn )
+    {
+        return getDeepestNodeWithElement( dn, 0 );
     }
 
 
@@ -867,7 +1137,7 @@ public class DnNode<N>
      *
      * @return the Node associated with the normalized dn
      */
-    public synchronized DnNode<N> getParentWithElement()
+    public DnNode<N> getParentWithElement()
     {
         DnNode<N> currentNode = parent;
 
@@ -887,27 +1157,29 @@ public class DnNode<N>
 
     /**
      * rename the DnNode's Dn
-     * 
+     *
      * @param newRdn the new Rdn of this node
      * @throws LdapException If the rename failed
      */
-    public synchronized void rename( Rdn newRdn ) throws LdapException
+    public void rename( Rdn newRdn ) throws LdapException
     {
-        Dn temp = nodeDn.getParent();
-        temp = temp.add( newRdn );
+        synchronized ( getRoot() )
+        {
+            Dn temp = nodeDn.getParent();
+            temp = temp.add( newRdn );
 
-        Rdn oldRdn = nodeRdn;
+            Rdn oldRdn = nodeRdn;
 
-        nodeRdn = temp.getRdn();
-        nodeDn = temp;
+            nodeRdn = temp.getRdn();
+            nodeDn = temp;
 
-        if ( parent != null )
-        {
-            parent.children.remove( oldRdn.getNormName() );
-            parent.children.put( nodeRdn.getNormName(), this );
-        }
+            if ( parent != null )
+            {
+                parent.children = parent.children.remove( oldRdn.getNormName() ).put( nodeRdn.getNormName(), this );
+            }
 
-        updateAfterModDn( nodeDn );
+            updateAfterModDn( nodeDn );
+        }
     }
 
 
@@ -917,73 +1189,67 @@ public class DnNode<N>
      * @param newParent the new parent Dn
      * @throws LdapException If the move failed
      */
-    public synchronized void move( Dn newParent ) throws LdapException
+    public void move( Dn newParent ) throws LdapException
     {
-        DnNode<N> tmp = null;
-
-        Dn tmpDn = null;
-
-        // check if the new parent Dn is child of the parent
-        if ( newParent.isDescendantOf( parent.nodeDn ) )
+        synchronized ( getRoot() )
         {
-            tmp = parent;
-            tmpDn = parent.nodeDn;
-        }
+            DnNode<N> tmp = null;
 
-        // if yes, then drill for the new parent node
-        if ( tmpDn != null )
-        {
-            int parentNodeSize = tmpDn.size();
-            int count = newParent.size() - parentNodeSize;
+            Dn tmpDn = null;
 
-            while ( count-- > 0 )
+            // check if the new parent Dn is child of the parent
+            if ( newParent.isDescendantOf( parent.nodeDn ) )
             {
-                tmp = tmp.getChild( newParent.getRdn( parentNodeSize++ ) );
+                tmp = parent;
+                tmpDn = parent.nodeDn;
             }
-        }
 
-        // if not, we have to traverse all the way up to the 
-        // root node and then find the new parent node
-        if ( tmp == null )
-        {
-            tmp = this;
-            while ( tmp.parent != null )
+            // if yes, then drill for the new parent node
+            if ( tmpDn != null )
             {
-                tmp = tmp.parent;
+                int parentNodeSize = tmpDn.size();
+                int count = newParent.size() - parentNodeSize;
+
+                while ( count-- > 0 )
+                {
+                    tmp = tmp.getChild( newParent.getRdn( parentNodeSize++ ) );
+                }
             }
 
-            tmp = tmp.getNode( newParent );
-        }
+            // if not, we have to traverse all the way up to the
+            // root node and then find the new parent node
+            if ( tmp == null )
+            {
+                tmp = getRoot().getNode( newParent );
+            }
 
-        nodeDn = newParent.add( nodeRdn );
-        updateAfterModDn( nodeDn );
+            nodeDn = newParent.add( nodeRdn );
+            updateAfterModDn( nodeDn );
 
-        if ( parent != null )
-        {
-            parent.children.remove( nodeRdn.getNormName() );
-        }
+            if ( parent != null )
+            {
+                parent.children = parent.children.remove( nodeRdn.getNormName() );
+            }
 
-        parent = tmp;
-        parent.children.put( nodeRdn.getNormName(), this );
+            parent = tmp;
+            parent.children = parent.children.put( nodeRdn.getNormName(), this );
+        }
     }
 
 
     /**
      * update the children's Dn based on the new parent Dn created
      * after a rename or move operation
-     * 
+     *
      * @param newParentDn The new parent's Dn
      * @throws LdapInvalidDnException The parent DN is invalid
      */
-    private synchronized void updateAfterModDn( Dn newParentDn ) throws LdapInvalidDnException
+    private void updateAfterModDn( Dn newParentDn ) throws LdapInvalidDnException
     {
-        if ( children != null )
+        for ( DnNode<N> child : children.nodes() )
         {
-            for ( DnNode<N> child : children.values() )
-            {
-                child.nodeDn = newParentDn.add( child.nodeRdn );
-                child.updateAfterModDn( child.nodeDn );
-            }
+            child.nodeDn = newParentDn.add( child.nodeRdn );
+            child.updateAfterModDn( child.nodeDn );
         }
     }
 
@@ -998,8 +1264,6 @@ public class DnNode<N>
         StringBuilder sb = new StringBuilder();
         sb.append( tabs );
 
-        boolean hasChildren = hasChildren();
-
         if ( isLeaf() )
         {
             sb.append( "Leaf[" ).append( nodeDn ).append( "]: " ).append( "'" ).append( nodeElement ).append( "'" );
@@ -1019,23 +1283,18 @@ public class DnNode<N>
 
         boolean isFirst = true;
 
-        if ( hasChildren )
+        for ( DnNode<N> child : children.nodes() )
         {
-            for ( Map.Entry<String, DnNode<N>> entry : children.entrySet() )
+            if ( isFirst )
             {
-                if ( isFirst )
-                {
-                    isFirst = false;
-                }
-                else
-                {
-                    sb.append( "\n" );
-                }
-
-                DnNode<N> child = entry.getValue();
-
-                sb.append( child.toString( tabs ) );
+                isFirst = false;
+            }
+            else
+            {
+                sb.append( "\n" );
             }
+
+            sb.append( child.toString( tabs ) );
         }
 
         return sb.toString();
@@ -1055,7 +1314,7 @@ public class DnNode<N>
     /**
      * @return the dn
      */
-    public synchronized Dn getDn()
+    public Dn getDn()
     {
         return nodeDn;
     }
@@ -0,0 +1,280 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.util.tree;
+
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification;
+import org.apache.directory.api.ldap.model.subtree.SubtreeEvaluator;
+import org.apache.directory.api.ldap.model.subtree.SubtreeSpecification;
+
+
+/**
+ * An index of the subentries controlling the entries, like the collective attributes or the
+ * access control subentries. The subtree specifications are compiled, and stored in a
+ * {@link DnNode} tree using their absolute base : finding all the subentries applying to an
+ * entry only walks down the tree along the entry Dn, and evaluates the subtrees found on
+ * the way. The entry objectClasses are only converted once to a bitset, which is used to
+ * evaluate all the refinements.
+ * <br>
+ * The subentries Dn, and the looked up entries Dn, must be normalized the same way.
+ * <br>
+ * The index can be updated while it's being read : the subtrees of a given base are
+ * replaced as a whole on each update.
+ *
+ * @param <S> The type of the subentries
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SubtreeIndex<S>
+{
+    /** The evaluator compiling the subtree specifications */
+    private final SubtreeEvaluator evaluator;
+
+    /** The subtrees, by absolute base */
+    private final DnNode<List<Subtree<S>>> tree = new DnNode<>();
+
+    /** The subtrees based on the root */
+    private volatile List<Subtree<S>> rootSubtrees = Collections.emptyList();
+
+    /** The subtrees, by subentry Dn */
+    private final Map<Dn, Subtree<S>> subentries = new HashMap<>();
+
+    /** Tells if one of the subtrees has a refinement */
+    private volatile boolean hasRefinements;
+
+
+    /**
+     * A compiled subtree, and the subentry it belongs to
+     */
+    private static final class Subtree<S>
+    {
+        /** The compiled subtree specification */
+        private final CompiledSubtreeSpecification subtreeSpecification;
+
+        /** The subentry */
+        private final S subentry;
+
+
+        private Subtree( CompiledSubtreeSpecification subtreeSpecification, S subentry )
+        {
+            this.subtreeSpecification = subtreeSpecification;
+            this.subentry = subentry;
+        }
+    }
+
+
+    /**
+     * Creates a new SubtreeIndex instance
+     *
+     * @param schemaManager The SchemaManager used to resolve the objectClasses of the refinements, may be null
+     */
+    public SubtreeIndex( SchemaManager schemaManager )
+    {
+        evaluator = new SubtreeEvaluator( schemaManager );
+    }
+
+
+    /**
+     * Adds a subentry to the index, replacing the previous version of the subentry if any.
+     * The subentry administrative point is its parent.
+     *
+     * @param subentryDn The subentry Dn
+     * @param subtreeSpecification The subentry subtree specification
+     * @param subentry The subentry
+     * @throws LdapException If the subtree specification can't be compiled
+     */
+    public synchronized void add( Dn subentryDn, SubtreeSpecification subtreeSpecification, S subentry )
+        throws LdapException
+    {
+        Subtree<S> subtree = new Subtree<>( evaluator.compile( subtreeSpecification, subentryDn.getParent() ),
+            subentry );
+
+        remove( subentryDn );
+
+        Dn base = subtree.subtreeSpecification.getBase();
+        List<Subtree<S>> subtrees = new ArrayList<>( getSubtrees( base ) );
+        subtrees.add( subtree );
+        setSubtrees( base, subtrees );
+
+        subentries.put( subentryDn, subtree );
+
+        if ( subtree.subtreeSpecification.hasRefinement() )
+        {
+            hasRefinements = true;
+        }
+    }
+
+
+    /**
+     * Removes a subentry from the index
+     *
+     * @param subentryDn The subentry Dn
+     * @throws LdapException If the subentry can't be removed
+     */
+    public synchronized void remove( Dn subentryDn ) throws LdapException
+    {
+        Subtree<S> subtree = subentries.remove( subentryDn );
+
+        if ( subtree == null )
+        {
+            return;
+        }
+
+        Dn base = subtree.subtreeSpecification.getBase();
+        List<Subtree<S>> subtrees = new ArrayList<>( getSubtrees( base ) );
+        subtrees.remove( subtree );
+        setSubtrees( base, subtrees );
+    }
+
+
+    private List<Subtree<S>> getSubtrees( Dn base )
+    {
+        if ( base.isRootDse() )
+        {
+            return rootSubtrees;
+        }
+
+        DnNode<List<Subtree<S>>> node = tree.getNode( base );
+
+        if ( ( node == null ) || ( node.getDn().size() != base.size() ) || !node.hasElement() )
+        {
+            return Collections.emptyList();
+        }
+
+        return node.getElement();
+    }
+
+
+    private void setSubtrees( Dn base, List<Subtree<S>> subtrees ) throws LdapException
+    {
+        List<Subtree<S>> element = subtrees.isEmpty() ? null : Collections.unmodifiableList( subtrees );
+
+        if ( base.isRootDse() )
+        {
+            rootSubtrees = element == null ? Collections.<Subtree<S>>emptyList() : element;
+
+            return;
+        }
+
+        DnNode<List<Subtree<S>>> node = tree.getNode( base );
+
+        if ( ( node != null ) && ( node.getDn().size() == base.size() ) )
+        {
+            node.setElement( element );
+
+            if ( ( element == null ) && node.isLeaf() )
+            {
+                // Prune the node, and its ancestors without subtrees
+                tree.remove( base );
+            }
+        }
+        else if ( element != null )
+        {
+            tree.add( base, element );
+        }
+    }
+
+
+    /**
+     * Gets all the subentries applying to an entry, in no particular order.
+     *
+     * @param entry The entry
+     * @return The subentries applying to the entry
+     */
+    public List<S> getSubentries( Entry entry )
+    {
+        return getSubentries( entry.getDn(), entry );
+    }
+
+
+    /**
+     * Gets all the subentries applying to an entry, in no particular order.
+     *
+     * @param entryDn The entry Dn
+     * @param entry The entry, used to evaluate the refinements. If null, the subentries with
+     * a refinement never apply.
+     * @return The subentries applying to the entry
+     */
+    public List<S> getSubentries( Dn entryDn, Entry entry )
+    {
+        BitSet objectClasses = null;
+
+        if ( hasRefinements )
+        {
+            objectClasses = evaluator.getObjectClasses( entry );
+        }
+
+        List<S> found = new ArrayList<>();
+
+        collect( rootSubtrees, entryDn, objectClasses, found );
+
+        DnNode<List<Subtree<S>>> node = tree;
+
+        for ( int i = entryDn.size() - 1; i >= 0; i-- )
+        {
+            node = node.getChild( entryDn.getRdn( i ) );
+
+            if ( node == null )
+            {
+                break;
+            }
+
+            List<Subtree<S>> subtrees = node.getElement();
+
+            if ( subtrees != null )
+            {
+                collect( subtrees, entryDn, objectClasses, found );
+            }
+        }
+
+        return found;
+    }
+
+
+    private static <S> void collect( List<Subtree<S>> subtrees, Dn entryDn, BitSet objectClasses, List<S> found )
+    {
+        for ( Subtree<S> subtree : subtrees )
+        {
+            if ( subtree.subtreeSpecification.containsDescendant( entryDn, objectClasses ) )
+            {
+                found.add( subtree.subentry );
+            }
+        }
+    }
+
+
+    /**
+     * @return The number of indexed subentries
+     */
+    public synchronized int size()
+    {
+        return subentries.size();
+    }
+}
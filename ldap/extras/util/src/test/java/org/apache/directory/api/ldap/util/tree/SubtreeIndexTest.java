@@ -0,0 +1,94 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.util.tree;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.filter.EqualityNode;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.subtree.BaseSubtreeSpecification;
+import org.apache.directory.api.ldap.model.subtree.SubtreeSpecification;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the SubtreeIndex class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution( ExecutionMode.CONCURRENT)
+public class SubtreeIndexTest
+{
+    @Test
+    public void testGetSubentries() throws Exception
+    {
+        SubtreeIndex<String> index = new SubtreeIndex<>( null );
+
+        // The whole example.com area
+        index.add( new Dn( "cn=all,dc=example,dc=com" ), new BaseSubtreeSpecification(), "all" );
+
+        // The people, but not the admins
+        index.add( new Dn( "cn=people,dc=example,dc=com" ), new BaseSubtreeSpecification( new Dn( "ou=people" ), 1,
+            SubtreeSpecification.UNBOUNDED_MAX, new HashSet<Dn>(), Collections.singleton( new Dn( "ou=admins" ) ) ),
+            "people" );
+
+        // The groups only
+        index.add( new Dn( "cn=groups,dc=example,dc=com" ), new BaseSubtreeSpecification(
+            new EqualityNode<String>( "objectClass", "groupOfNames" ) ), "groups" );
+
+        // Another area
+        index.add( new Dn( "cn=other,dc=other,dc=com" ), new BaseSubtreeSpecification(), "other" );
+
+        assertEquals( 4, index.size() );
+
+        Entry user = new DefaultEntry( "uid=a,ou=people,dc=example,dc=com",
+            "objectClass: person" );
+        Entry admin = new DefaultEntry( "uid=b,ou=admins,ou=people,dc=example,dc=com",
+            "objectClass: person" );
+        Entry group = new DefaultEntry( "cn=g,ou=groups,dc=example,dc=com",
+            "objectClass: groupOfNames" );
+
+        assertEquals( new HashSet<String>( Arrays.asList( "all", "people" ) ), new HashSet<>( index.getSubentries( user ) ) );
+        assertEquals( Collections.singletonList( "all" ), index.getSubentries( admin ) );
+        assertEquals( new HashSet<String>( Arrays.asList( "all", "groups" ) ), new HashSet<>( index.getSubentries( group ) ) );
+        assertEquals( Collections.singletonList( "all" ), index.getSubentries( new Dn( "dc=example,dc=com" ), null ) );
+        assertTrue( index.getSubentries( new Dn( "dc=com" ), null ).isEmpty() );
+
+        // Replace and remove subentries
+        index.add( new Dn( "cn=people,dc=example,dc=com" ), new BaseSubtreeSpecification( new Dn( "ou=people" ) ),
+            "people2" );
+        assertEquals( new HashSet<String>( Arrays.asList( "all", "people2" ) ), new HashSet<>( index.getSubentries( admin ) ) );
+
+        index.remove( new Dn( "cn=all,dc=example,dc=com" ) );
+        assertEquals( 3, index.size() );
+        assertEquals( Collections.singletonList( "people2" ), index.getSubentries( user ) );
+        assertTrue( index.getSubentries( new Dn( "dc=example,dc=com" ), null ).isEmpty() );
+    }
+}
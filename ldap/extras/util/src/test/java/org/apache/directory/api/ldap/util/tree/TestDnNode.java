@@ -27,6 +27,8 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -953,4 +955,144 @@ public class TestDnNode
         assertEquals( new Dn( "dc=vysper,dc=mina,dc=directory,dc=kayyagari,dc=apache,dc=org" ),
             directoryNode.getChild( new Rdn( "dc=mina" ) ).getChild( new Rdn( "dc=vysper" ) ).getDn() );
     }
+
+
+    @Test
+    public void testGetNodeWithElement() throws Exception
+    {
+        DnNode<Dn> dnLookupTree = new DnNode<Dn>();
+        Dn org = new Dn( "dc=org" );
+        Dn directory = new Dn( "dc=directory,dc=apache,dc=org" );
+
+        dnLookupTree.add( org, org );
+        dnLookupTree.add( directory, directory );
+
+        assertEquals( org, dnLookupTree.getNodeWithElement( org ).getElement() );
+        assertEquals( org, dnLookupTree.getNodeWithElement( new Dn( "dc=apache,dc=org" ) ).getElement() );
+        assertEquals( directory, dnLookupTree.getNodeWithElement( directory ).getElement() );
+        assertEquals( directory, dnLookupTree.getNodeWithElement( new Dn( "ou=people,dc=directory,dc=apache,dc=org" ) )
+            .getElement() );
+        assertNull( dnLookupTree.getNodeWithElement( new Dn( "dc=com" ) ) );
+    }
+
+
+    @Test
+    public void testDescendantElements() throws Exception
+    {
+        DnNode<Dn> dnLookupTree = new DnNode<Dn>();
+        Dn org = new Dn( "dc=org" );
+        Dn dn1 = new Dn( "dc=directory,dc=apache,dc=org" );
+        Dn dn2 = new Dn( "dc=mina,dc=apache,dc=org" );
+        Dn dn3 = new Dn( "dc=elem,dc=mina,dc=apache,dc=org" );
+
+        dnLookupTree.add( dn1, dn1 );
+        dnLookupTree.add( dn2, dn2 );
+        dnLookupTree.add( dn3, dn3 );
+
+        List<Dn> dns = new ArrayList<>();
+        Iterator<Dn> elements = dnLookupTree.descendantElements( org );
+
+        while ( elements.hasNext() )
+        {
+            dns.add( elements.next() );
+        }
+
+        // dn3 is below dn2, which has an element
+        assertEquals( 2, dns.size() );
+        assertTrue( dns.contains( dn1 ) );
+        assertTrue( dns.contains( dn2 ) );
+
+        assertFalse( dnLookupTree.descendantElements( dn3 ).hasNext() );
+        assertFalse( dnLookupTree.descendantElements( new Dn( "dc=com" ) ).hasNext() );
+    }
+
+
+    @Test
+    public void testRemoveKeepsAncestorsWithElement() throws Exception
+    {
+        DnNode<Dn> dnLookupTree = new DnNode<Dn>();
+        Dn org = new Dn( "dc=org" );
+        Dn dn1 = new Dn( "dc=directory,dc=apache,dc=org" );
+
+        dnLookupTree.add( org, org );
+        dnLookupTree.add( dn1, dn1 );
+        assertEquals( 4, dnLookupTree.size() );
+
+        // dc=apache has no element, but dc=org has one : it must stay in the tree
+        dnLookupTree.remove( dn1 );
+        assertEquals( 2, dnLookupTree.size() );
+        assertEquals( org, dnLookupTree.getElement( org ) );
+        assertFalse( dnLookupTree.hasChildren( org ) );
+    }
+
+
+    @Test
+    public void testManyChildren() throws Exception
+    {
+        DnNode<Dn> dnLookupTree = new DnNode<Dn>();
+        Dn org = new Dn( "dc=org" );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            Dn dn = new Dn( "ou=child" + i + ",dc=org" );
+            dnLookupTree.add( dn, dn );
+        }
+
+        assertEquals( 100, dnLookupTree.getChild( new Rdn( "dc=org" ) ).getChildren().size() );
+        assertEquals( 100, dnLookupTree.getDescendantElements( org ).size() );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            Dn dn = new Dn( "ou=child" + i + ",dc=org" );
+            assertEquals( dn, dnLookupTree.getElement( dn ) );
+        }
+
+        for ( int i = 0; i < 95; i++ )
+        {
+            dnLookupTree.remove( new Dn( "ou=child" + i + ",dc=org" ) );
+        }
+
+        assertEquals( 5, dnLookupTree.getDescendantElements( org ).size() );
+        assertNull( dnLookupTree.getChild( new Rdn( "dc=org" ) ).getChild( new Rdn( "ou=child0" ) ) );
+        assertNotNull( dnLookupTree.getChild( new Rdn( "dc=org" ) ).getChild( new Rdn( "ou=child99" ) ) );
+    }
+
+
+    @Test
+    public void testConcurrentReads() throws Exception
+    {
+        final DnNode<Dn> dnLookupTree = new DnNode<Dn>();
+        final Dn org = new Dn( "dc=org" );
+        dnLookupTree.add( org, org );
+
+        Thread writer = new Thread( () ->
+        {
+            try
+            {
+                for ( int i = 0; i < 200; i++ )
+                {
+                    Dn dn = new Dn( "ou=child" + i + ",dc=org" );
+                    dnLookupTree.add( dn, dn );
+                }
+            }
+            catch ( LdapException le )
+            {
+                throw new IllegalStateException( le );
+            }
+        } );
+
+        writer.start();
+
+        Dn entryDn = new Dn( "cn=entry,ou=child10,dc=org" );
+
+        while ( writer.isAlive() )
+        {
+            // The closest element is either dc=org or ou=child10, never null
+            assertNotNull( dnLookupTree.getNodeWithElement( entryDn ) );
+        }
+
+        writer.join();
+
+        assertEquals( 200, dnLookupTree.getDescendantElements( org ).size() );
+    }
 }
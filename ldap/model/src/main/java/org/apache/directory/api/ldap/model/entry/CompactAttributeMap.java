@@ -0,0 +1,633 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.entry;
+
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * A Map storing an entry's attributes in two small open-addressed arrays, instead of a
+ * HashMap table plus one node per attribute. The keys are compared by reference first : the
+ * AttributeType OIDs used as keys by schema aware entries are shared, so most lookups don't
+ * need to call equals().
+ * <br>
+ * The single valued attributes can also be stored inline, as their only {@link Value} and
+ * their user provided ID, without the DefaultAttribute and its Set of values. Reading them
+ * returns a new DefaultAttribute each time, without modifying the map : the inlined
+ * attributes are only stored back by {@link #getForUpdate(Object)}, before being modified.
+ * <br>
+ * This class is not thread safe, but it can be read concurrently.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class CompactAttributeMap extends AbstractMap<String, Attribute>
+{
+    /** The marker for removed keys */
+    private static final Object REMOVED = new Object();
+
+    /** The smallest table we create */
+    private static final int MIN_CAPACITY = 4;
+
+    /** The keys, either a String, null for an empty slot, or REMOVED */
+    private Object[] keys;
+
+    /** The attributes, or the Value of an inlined attribute, stored at the same position than their key */
+    private Object[] values;
+
+    /** The user provided IDs of the inlined attributes, created when the first attribute is inlined */
+    private String[] upIds;
+
+    /** The number of stored attributes */
+    private int size;
+
+    /** The number of used slots, including the removed ones */
+    private int used;
+
+    /** Incremented each time an attribute is added or removed */
+    private int modCount;
+
+
+    /**
+     * Creates a new CompactAttributeMap instance
+     *
+     * @param expectedSize The expected number of attributes
+     */
+    CompactAttributeMap( int expectedSize )
+    {
+        int capacity = MIN_CAPACITY;
+
+        // Keep the table at most 3/4 full
+        while ( capacity * 3 < expectedSize * 4 )
+        {
+            capacity <<= 1;
+        }
+
+        keys = new Object[capacity];
+        values = new Object[capacity];
+    }
+
+
+    private static int hash( Object key )
+    {
+        int h = key.hashCode();
+
+        return h ^ ( h >>> 16 );
+    }
+
+
+    /**
+     * @return The position of the key, or -1 if it's not present
+     */
+    private int find( Object key )
+    {
+        if ( key == null )
+        {
+            return -1;
+        }
+
+        int mask = keys.length - 1;
+        int pos = hash( key ) & mask;
+
+        while ( true )
+        {
+            Object current = keys[pos];
+
+            if ( current == null )
+            {
+                return -1;
+            }
+
+            if ( ( current == key ) || ( ( current != REMOVED ) && current.equals( key ) ) )
+            {
+                return pos;
+            }
+
+            pos = ( pos + 1 ) & mask;
+        }
+    }
+
+
+    /**
+     * Tells if an attribute can be stored as its only value : it must be possible to
+     * materialize an identical attribute from the value, its user provided ID and its key.
+     */
+    private static boolean isInlineable( Object key, Attribute attribute )
+    {
+        if ( ( attribute == null ) || ( attribute.getClass() != DefaultAttribute.class ) || ( attribute.size() != 1 ) )
+        {
+            return false;
+        }
+
+        Value value = attribute.get();
+
+        return ( value != null ) && !value.isNull() && ( value.getAttributeType() == attribute.getAttributeType() )
+            && ( value.isHumanReadable() == attribute.isHumanReadable() ) && key.equals( attribute.getId() );
+    }
+
+
+    /**
+     * Stores the single valued attributes inline. The attributes previously read from this
+     * map are not part of it anymore.
+     */
+    void inline()
+    {
+        for ( int i = 0; i < keys.length; i++ )
+        {
+            Object value = values[i];
+
+            if ( ( value instanceof Attribute ) && isInlineable( keys[i], ( Attribute ) value ) )
+            {
+                Attribute attribute = ( Attribute ) value;
+
+                if ( upIds == null )
+                {
+                    upIds = new String[keys.length];
+                }
+
+                upIds[i] = attribute.getUpId();
+                values[i] = attribute.get();
+            }
+        }
+    }
+
+
+    /**
+     * @return The number of inlined attributes
+     */
+    int inlined()
+    {
+        int inlined = 0;
+
+        for ( Object value : values )
+        {
+            if ( value instanceof Value )
+            {
+                inlined++;
+            }
+        }
+
+        return inlined;
+    }
+
+
+    /**
+     * Gets the attribute stored at a position. An inlined attribute is materialized, but
+     * not stored back : modifying it does not modify this map.
+     */
+    private Attribute attributeAt( int pos )
+    {
+        Object value = values[pos];
+
+        if ( value instanceof Value )
+        {
+            Value inlined = ( Value ) value;
+
+            return new DefaultAttribute( inlined.getAttributeType(), upIds[pos], ( String ) keys[pos],
+                inlined.isHumanReadable(), 0, inlined );
+        }
+
+        return ( Attribute ) value;
+    }
+
+
+    /**
+     * Gets an attribute which is about to be modified : if it was inlined, it is
+     * materialized and stored back in this map.
+     *
+     * @param key The attribute key
+     * @return The attribute, or <code>null</code> if it's not present
+     */
+    Attribute getForUpdate( Object key )
+    {
+        int pos = find( key );
+
+        if ( pos < 0 )
+        {
+            return null;
+        }
+
+        Attribute attribute = attributeAt( pos );
+
+        if ( values[pos] != attribute )
+        {
+            values[pos] = attribute;
+            upIds[pos] = null;
+        }
+
+        return attribute;
+    }
+
+
+    /**
+     * Creates a deep copy of this map : the attributes are cloned, the inlined ones are
+     * shared, as their value and ID are immutable.
+     *
+     * @return The copy
+     */
+    CompactAttributeMap copy()
+    {
+        CompactAttributeMap copy = new CompactAttributeMap( 0 );
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.upIds = upIds == null ? null : upIds.clone();
+        copy.size = size;
+        copy.used = used;
+
+        for ( int i = 0; i < copy.values.length; i++ )
+        {
+            if ( copy.values[i] instanceof Attribute )
+            {
+                copy.values[i] = ( ( Attribute ) copy.values[i] ).clone();
+            }
+        }
+
+        return copy;
+    }
+
+
+    private void resize( int capacity )
+    {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        String[] oldUpIds = upIds;
+
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        upIds = oldUpIds == null ? null : new String[capacity];
+        used = 0;
+        int mask = capacity - 1;
+
+        for ( int i = 0; i < oldKeys.length; i++ )
+        {
+            Object key = oldKeys[i];
+
+            if ( ( key != null ) && ( key != REMOVED ) )
+            {
+                int pos = hash( key ) & mask;
+
+                while ( keys[pos] != null )
+                {
+                    pos = ( pos + 1 ) & mask;
+                }
+
+                keys[pos] = key;
+                values[pos] = oldValues[i];
+
+                if ( oldUpIds != null )
+                {
+                    upIds[pos] = oldUpIds[i];
+                }
+
+                used++;
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey( Object key )
+    {
+        return find( key ) >= 0;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute get( Object key )
+    {
+        int pos = find( key );
+
+        return pos >= 0 ? attributeAt( pos ) : null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute put( String key, Attribute value )
+    {
+        if ( key == null )
+        {
+            throw new NullPointerException();
+        }
+
+        int pos = find( key );
+
+        if ( pos >= 0 )
+        {
+            Attribute previous = attributeAt( pos );
+            values[pos] = value;
+
+            if ( upIds != null )
+            {
+                upIds[pos] = null;
+            }
+
+            return previous;
+        }
+
+        if ( ( used + 1 ) * 4 > keys.length * 3 )
+        {
+            // Grow the table, unless we just have to get rid of the removed keys
+            resize( ( size + 1 ) * 4 > keys.length * 2 ? keys.length << 1 : keys.length );
+        }
+
+        int mask = keys.length - 1;
+        pos = hash( key ) & mask;
+
+        while ( ( keys[pos] != null ) && ( keys[pos] != REMOVED ) )
+        {
+            pos = ( pos + 1 ) & mask;
+        }
+
+        if ( keys[pos] == null )
+        {
+            used++;
+        }
+
+        keys[pos] = key;
+        values[pos] = value;
+        size++;
+        modCount++;
+
+        return null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attribute remove( Object key )
+    {
+        int pos = find( key );
+
+        if ( pos < 0 )
+        {
+            return null;
+        }
+
+        Attribute previous = attributeAt( pos );
+        removeAt( pos );
+
+        return previous;
+    }
+
+
+    private void removeAt( int pos )
+    {
+        keys[pos] = REMOVED;
+        values[pos] = null;
+
+        if ( upIds != null )
+        {
+            upIds[pos] = null;
+        }
+
+        size--;
+        modCount++;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        if ( used > 0 )
+        {
+            keys = new Object[MIN_CAPACITY];
+            values = new Object[MIN_CAPACITY];
+            upIds = null;
+            size = 0;
+            used = 0;
+            modCount++;
+        }
+    }
+
+
+    /**
+     * An iterator over the used slots
+     */
+    private abstract class SlotIterator<E> implements Iterator<E>
+    {
+        /** The next slot to return */
+        private int next;
+
+        /** The last returned slot */
+        private int current = -1;
+
+        /** The expected modification count */
+        private int expectedModCount = modCount;
+
+
+        SlotIterator()
+        {
+            next = advance( 0 );
+        }
+
+
+        private int advance( int pos )
+        {
+            while ( ( pos < keys.length ) && ( ( keys[pos] == null ) || ( keys[pos] == REMOVED ) ) )
+            {
+                pos++;
+            }
+
+            return pos;
+        }
+
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < keys.length;
+        }
+
+
+        protected int nextSlot()
+        {
+            if ( expectedModCount != modCount )
+            {
+                throw new ConcurrentModificationException();
+            }
+
+            if ( next >= keys.length )
+            {
+                throw new NoSuchElementException();
+            }
+
+            current = next;
+            next = advance( next + 1 );
+
+            return current;
+        }
+
+
+        @Override
+        public void remove()
+        {
+            if ( current < 0 )
+            {
+                throw new IllegalStateException();
+            }
+
+            if ( expectedModCount != modCount )
+            {
+                throw new ConcurrentModificationException();
+            }
+
+            // Removing does not move any other element, so the iteration can go on
+            removeAt( current );
+            current = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Attribute> values()
+    {
+        return new AbstractCollection<Attribute>()
+        {
+            @Override
+            public Iterator<Attribute> iterator()
+            {
+                return new SlotIterator<Attribute>()
+                {
+                    @Override
+                    public Attribute next()
+                    {
+                        return attributeAt( nextSlot() );
+                    }
+                };
+            }
+
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <br>
+     * Iterating over the keys does not materialize the inlined attributes.
+     */
+    @Override
+    public Set<String> keySet()
+    {
+        return new AbstractSet<String>()
+        {
+            @Override
+            public Iterator<String> iterator()
+            {
+                return new SlotIterator<String>()
+                {
+                    @Override
+                    public String next()
+                    {
+                        return ( String ) keys[nextSlot()];
+                    }
+                };
+            }
+
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+
+
+            @Override
+            public boolean contains( Object key )
+            {
+                return containsKey( key );
+            }
+        };
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Map.Entry<String, Attribute>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String, Attribute>>()
+        {
+            @Override
+            public Iterator<Map.Entry<String, Attribute>> iterator()
+            {
+                return new SlotIterator<Map.Entry<String, Attribute>>()
+                {
+                    @Override
+                    public Map.Entry<String, Attribute> next()
+                    {
+                        int slot = nextSlot();
+
+                        return new SimpleImmutableEntry<>( ( String ) keys[slot], attributeAt( slot ) );
+                    }
+                };
+            }
+
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+}
@@ -260,7 +260,7 @@ public final class DefaultEntry implements Entry
         DefaultEntry entry = ( DefaultEntry ) createEntry( schemaManager, elements );
 
         this.dn = dn;
-        this.attributes = entry.attributes;
+        this.attributes.putAll( entry.attributes );
         this.schemaManager = schemaManager;
 
         if ( schemaManager != null )
@@ -344,6 +344,23 @@ public final class DefaultEntry implements Entry
     //-------------------------------------------------------------------------
     // Helper methods
     //-------------------------------------------------------------------------
+    /**
+     * Creates a Map using the same storage than the current attributes Map
+     *
+     * @param expectedSize The expected number of attributes
+     * @return A new, empty, Map
+     */
+    private Map<String, Attribute> createAttributeMap( int expectedSize )
+    {
+        if ( attributes instanceof CompactAttributeMap )
+        {
+            return new CompactAttributeMap( expectedSize );
+        }
+
+        return new HashMap<>( expectedSize );
+    }
+
+
     private Entry createEntry( SchemaManager schemaManager, Object... elements )
         throws LdapInvalidAttributeValueException, LdapLdifException
     {
@@ -663,7 +680,7 @@ public final class DefaultEntry implements Entry
             throw new UnsupportedOperationException( message );
         }
 
-        Attribute attribute = attributes.get( attributeType.getOid() );
+        Attribute attribute = getForUpdate( attributeType.getOid() );
 
         if ( attribute != null )
         {
@@ -696,7 +713,7 @@ public final class DefaultEntry implements Entry
             throw new IllegalArgumentException( message );
         }
 
-        Attribute attribute = attributes.get( attributeType.getOid() );
+        Attribute attribute = getForUpdate( attributeType.getOid() );
 
         if ( attribute != null )
         {
@@ -729,7 +746,7 @@ public final class DefaultEntry implements Entry
             throw new IllegalArgumentException( message );
         }
 
-        Attribute attribute = attributes.get( attributeType.getOid() );
+        Attribute attribute = getForUpdate( attributeType.getOid() );
 
         if ( attribute != null )
         {
@@ -763,7 +780,7 @@ public final class DefaultEntry implements Entry
             throw new UnsupportedOperationException( message );
         }
 
-        Attribute attribute = attributes.get( attributeType.getOid() );
+        Attribute attribute = getForUpdate( attributeType.getOid() );
 
         String id = getUpId( upId, attributeType );
 
@@ -800,7 +817,7 @@ public final class DefaultEntry implements Entry
 
         String id = getUpId( upId, attributeType );
 
-        Attribute attribute = attributes.get( attributeType.getOid() );
+        Attribute attribute = getForUpdate( attributeType.getOid() );
 
         if ( attribute != null )
         {
@@ -833,7 +850,7 @@ public final class DefaultEntry implements Entry
 
         String id = getUpId( upId, attributeType );
 
-        Attribute attribute = attributes.get( attributeType.getOid() );
+        Attribute attribute = getForUpdate( attributeType.getOid() );
 
         if ( attribute != null )
         {
@@ -872,7 +889,7 @@ public final class DefaultEntry implements Entry
                 {
                     // We already have an attribute with the same AttributeType
                     // Just add the new values into it.
-                    Attribute existingAttribute = this.attributes.get( oid );
+                    Attribute existingAttribute = getForUpdate( oid );
 
                     for ( Value value : attribute )
                     {
@@ -893,7 +910,7 @@ public final class DefaultEntry implements Entry
                 // If the attribute already exist, we will add the new values.
                 if ( contains( attribute ) )
                 {
-                    Attribute existingAttribute = get( attribute.getId() );
+                    Attribute existingAttribute = getForUpdate( attribute.getId() );
 
                     // Loop on all the values, and add them to the existing attribute
                     for ( Value value : attribute )
@@ -936,7 +953,7 @@ public final class DefaultEntry implements Entry
         else
         {
             // Now, check to see if we already have such an attribute
-            Attribute attribute = attributes.get( id );
+            Attribute attribute = getForUpdate( id );
 
             if ( attribute != null )
             {
@@ -981,7 +998,7 @@ public final class DefaultEntry implements Entry
         else
         {
             // Now, check to see if we already have such an attribute
-            Attribute attribute = attributes.get( id );
+            Attribute attribute = getForUpdate( id );
 
             if ( attribute != null )
             {
@@ -1026,7 +1043,7 @@ public final class DefaultEntry implements Entry
         else
         {
             // Now, check to see if we already have such an attribute
-            Attribute attribute = attributes.get( id );
+            Attribute attribute = getForUpdate( id );
 
             if ( attribute != null )
             {
@@ -1048,6 +1065,61 @@ public final class DefaultEntry implements Entry
     }
 
 
+    /**
+     * Switches this entry to a compact attribute storage, which uses less memory than
+     * the default one. This is worth doing when a large number of entries are kept in
+     * memory. Entries cloned from a compact entry are compact too.
+     * <br>
+     * The single valued attributes are stored as their only value, and a new Attribute is
+     * materialized each time they are read, so that the entry can still be read concurrently.
+     * Hence the single valued Attribute instances read from a compact entry, or read before
+     * it is compacted, are not part of it : modifying them does not modify the entry, which
+     * must be modified using its own methods. This method can be called again, to compact
+     * the attributes added or modified since.
+     *
+     * @return This entry
+     */
+    public DefaultEntry compact()
+    {
+        if ( !( attributes instanceof CompactAttributeMap ) )
+        {
+            Map<String, Attribute> compactAttributes = new CompactAttributeMap( attributes.size() );
+            compactAttributes.putAll( attributes );
+            attributes = compactAttributes;
+        }
+
+        ( ( CompactAttributeMap ) attributes ).inline();
+
+        return this;
+    }
+
+
+    /**
+     * Gets an attribute which is about to be modified. The single valued attributes of a
+     * compact entry are stored back in the entry first.
+     */
+    private Attribute getForUpdate( String key )
+    {
+        if ( attributes instanceof CompactAttributeMap )
+        {
+            return ( ( CompactAttributeMap ) attributes ).getForUpdate( key );
+        }
+
+        return attributes.get( key );
+    }
+
+
+    /**
+     * Tells if this entry uses the compact attribute storage
+     *
+     * @return <code>true</code> if {@link #compact()} has been called on this entry
+     */
+    public boolean isCompact()
+    {
+        return attributes instanceof CompactAttributeMap;
+    }
+
+
     /**
      * Clone an entry. All the element are duplicated, so a modification on
      * the original object won't affect the cloned object, as a modification
@@ -1056,6 +1128,22 @@ public final class DefaultEntry implements Entry
     @Override
     public Entry clone()
     {
+        if ( attributes instanceof CompactAttributeMap )
+        {
+            // Copy the map without materializing the inlined attributes
+            try
+            {
+                DefaultEntry clone = ( DefaultEntry ) super.clone();
+                clone.attributes = ( ( CompactAttributeMap ) attributes ).copy();
+
+                return clone;
+            }
+            catch ( CloneNotSupportedException cnse )
+            {
+                return null;
+            }
+        }
+
         // First, clone the structure
         DefaultEntry clone = ( DefaultEntry ) shallowClone();
 
@@ -1123,7 +1211,6 @@ public final class DefaultEntry implements Entry
     /**
      * Shallow clone an entry. We don't clone the Attributes
      */
-    @SuppressWarnings("unchecked")
     @Override
     public Entry shallowClone()
     {
@@ -1137,8 +1224,8 @@ public final class DefaultEntry implements Entry
             clone.dn = dn;
 
             // then clone the ClientAttribute Map.
-            clone.attributes = ( Map<String, Attribute> ) ( ( ( HashMap<String, Attribute> ) attributes )
-                .clone() );
+            clone.attributes = createAttributeMap( attributes.size() );
+            clone.attributes.putAll( attributes );
 
             // We are done !
             return clone;
@@ -1898,7 +1985,7 @@ public final class DefaultEntry implements Entry
 
         try
         {
-            Attribute attribute = attributes.get( attributeType.getOid() );
+            Attribute attribute = getForUpdate( attributeType.getOid() );
 
             if ( attribute == null )
             {
@@ -1942,7 +2029,7 @@ public final class DefaultEntry implements Entry
 
         try
         {
-            Attribute attribute = attributes.get( attributeType.getOid() );
+            Attribute attribute = getForUpdate( attributeType.getOid() );
 
             if ( attribute == null )
             {
@@ -1986,7 +2073,7 @@ public final class DefaultEntry implements Entry
 
         try
         {
-            Attribute attribute = attributes.get( attributeType.getOid() );
+            Attribute attribute = getForUpdate( attributeType.getOid() );
 
             if ( attribute == null )
             {
@@ -2145,7 +2232,7 @@ public final class DefaultEntry implements Entry
         {
             String id = getId( upId );
 
-            Attribute attribute = get( id );
+            Attribute attribute = getForUpdate( id );
 
             if ( attribute == null )
             {
@@ -2229,7 +2316,7 @@ public final class DefaultEntry implements Entry
         {
             String id = getId( upId );
 
-            Attribute attribute = get( id );
+            Attribute attribute = getForUpdate( id );
 
             if ( attribute == null )
             {
@@ -2312,7 +2399,7 @@ public final class DefaultEntry implements Entry
         {
             String id = getId( upId );
 
-            Attribute attribute = get( id );
+            Attribute attribute = getForUpdate( id );
 
             if ( attribute == null )
             {
@@ -0,0 +1,806 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.entry;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * An index over the values of a very large multi-valued attribute, like the member
+ * attribute of a big group. The values are sorted on their normalized form, which is
+ * packed into a single byte array, so that checking for a value costs a binary search
+ * on bytes, without any Comparator or Normalizer call.
+ * <br>
+ * The Values themselves are not kept : their user provided form is packed after their
+ * normalized form, and they are created again when they are read.
+ * <br>
+ * Values are best added and removed in bulk : each bulk operation costs a single merge
+ * of the sorted values. The index can also compute the {@link Modification}s needed to
+ * turn an attribute into another one, walking both sorted value lists once.
+ * <br>
+ * This class is not thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ValueIndex implements Iterable<Value>
+{
+    /** The key prefix for a null value */
+    private static final byte NULL_KEY = 0;
+
+    /** The key prefix for a human readable value */
+    private static final byte STRING_KEY = 1;
+
+    /** The key prefix for a binary value */
+    private static final byte BINARY_KEY = 2;
+
+    /** The header of a user provided form identical to the normalized one, or of a binary null value */
+    private static final byte SAME_FORM = 0;
+
+    /** The header of a user provided form following the normalized one, or of a human readable null value */
+    private static final byte OTHER_FORM = 1;
+
+    /** The attribute ID */
+    private final String upId;
+
+    /** The attribute AttributeType, if any */
+    private final AttributeType attributeType;
+
+    /** The sorted values, packed : the key of each value, followed by its user provided form */
+    private byte[] data;
+
+    /**
+     * The start of each value key in the data array, at an even position, followed by the
+     * start of its user provided form. The last element is the data length
+     */
+    private int[] offsets;
+
+    /** The number of values */
+    private int size;
+
+    /**
+     * A packed value, used while sorting values
+     */
+    private static final class KeyedValue implements Comparable<KeyedValue>
+    {
+        /** The key, followed by the user provided form */
+        private final byte[] packed;
+
+        /** The key length */
+        private final int keyLength;
+
+
+        private KeyedValue( Value value )
+        {
+            byte[] key = keyOf( value );
+            byte[] form = formOf( value, key );
+            keyLength = key.length;
+            packed = Arrays.copyOf( key, key.length + form.length );
+            System.arraycopy( form, 0, packed, key.length, form.length );
+        }
+
+
+        @Override
+        public int compareTo( KeyedValue other )
+        {
+            return compare( packed, 0, keyLength, other.packed, 0, other.keyLength );
+        }
+    }
+
+    /**
+     * Accumulates sorted packed values into arrays
+     */
+    private static final class Packer
+    {
+        /** The packed values */
+        private byte[] data;
+
+        /** The keys and forms offsets */
+        private int[] offsets;
+
+        /** The number of stored values */
+        private int size;
+
+
+        private Packer( int capacity, int dataCapacity )
+        {
+            data = new byte[dataCapacity];
+            offsets = new int[2 * capacity + 1];
+        }
+
+
+        private void append( byte[] packed, int start, int formStart, int end )
+        {
+            int position = offsets[2 * size];
+            System.arraycopy( packed, start, data, position, end - start );
+            offsets[2 * size + 1] = position + formStart - start;
+            size++;
+            offsets[2 * size] = position + end - start;
+        }
+
+
+        private void append( KeyedValue keyedValue )
+        {
+            append( keyedValue.packed, 0, keyedValue.keyLength, keyedValue.packed.length );
+        }
+    }
+
+
+    /**
+     * Creates a new ValueIndex instance containing all the values of an attribute
+     *
+     * @param attribute The attribute to index
+     */
+    public ValueIndex( Attribute attribute )
+    {
+        this( attribute.getUpId(), attribute.getAttributeType(), attribute );
+    }
+
+
+    /**
+     * Creates a new ValueIndex instance
+     *
+     * @param upId The attribute ID
+     * @param attributeType The attribute AttributeType, if any
+     * @param values The values to index. Duplicated values are only stored once
+     */
+    public ValueIndex( String upId, AttributeType attributeType, Iterable<Value> values )
+    {
+        this.upId = upId;
+        this.attributeType = attributeType;
+
+        KeyedValue[] sorted = sort( values );
+        int dataLength = 0;
+
+        for ( KeyedValue keyedValue : sorted )
+        {
+            dataLength += keyedValue.packed.length;
+        }
+
+        Packer packer = new Packer( sorted.length, dataLength );
+
+        for ( KeyedValue keyedValue : sorted )
+        {
+            packer.append( keyedValue );
+        }
+
+        install( packer );
+    }
+
+
+    /**
+     * Computes the key of a value : a prefix telling if the value is null, human
+     * readable or binary, followed by the normalized value bytes
+     */
+    private static byte[] keyOf( Value value )
+    {
+        byte[] bytes;
+        byte prefix;
+
+        if ( value.isNull() )
+        {
+            return new byte[]
+                { NULL_KEY };
+        }
+        else if ( value.isHumanReadable() )
+        {
+            bytes = Strings.getBytesUtf8( value.getNormalized() );
+            prefix = STRING_KEY;
+        }
+        else
+        {
+            bytes = value.getBytes();
+            prefix = BINARY_KEY;
+        }
+
+        byte[] key = new byte[bytes.length + 1];
+        key[0] = prefix;
+        System.arraycopy( bytes, 0, key, 1, bytes.length );
+
+        return key;
+    }
+
+
+    /**
+     * Computes the user provided form of a value, stored after its key : a header telling
+     * if it differs from the key, followed by the user provided value if it does. A binary
+     * value has no form, as its key contains its bytes. A null value only has a header,
+     * telling if it's human readable.
+     */
+    private static byte[] formOf( Value value, byte[] key )
+    {
+        if ( value.isNull() )
+        {
+            return new byte[]
+                { value.isHumanReadable() ? OTHER_FORM : SAME_FORM };
+        }
+
+        if ( !value.isHumanReadable() )
+        {
+            return Strings.EMPTY_BYTES;
+        }
+
+        byte[] bytes = Strings.getBytesUtf8( value.getString() );
+
+        if ( compare( bytes, 0, bytes.length, key, 1, key.length ) == 0 )
+        {
+            return new byte[]
+                { SAME_FORM };
+        }
+
+        byte[] form = new byte[bytes.length + 1];
+        form[0] = OTHER_FORM;
+        System.arraycopy( bytes, 0, form, 1, bytes.length );
+
+        return form;
+    }
+
+
+    /**
+     * Creates again the value stored at a position
+     */
+    private Value valueAt( int pos )
+    {
+        return valueAt( data, offsets, pos );
+    }
+
+
+    /**
+     * Creates again the value stored at a position of the given packed values
+     */
+    private Value valueAt( byte[] data, int[] offsets, int pos )
+    {
+        int keyStart = offsets[2 * pos];
+        int formStart = offsets[2 * pos + 1];
+        int end = offsets[2 * pos + 2];
+
+        try
+        {
+            switch ( data[keyStart] )
+            {
+                case NULL_KEY:
+                    boolean humanReadable = data[formStart] == OTHER_FORM;
+
+                    if ( attributeType != null )
+                    {
+                        return humanReadable ? new Value( attributeType, ( String ) null ) : new Value(
+                            attributeType, ( byte[] ) null );
+                    }
+
+                    return humanReadable ? new Value( ( String ) null ) : new Value( ( byte[] ) null );
+
+                case BINARY_KEY:
+                    byte[] bytes = Arrays.copyOfRange( data, keyStart + 1, formStart );
+
+                    return attributeType == null ? new Value( bytes ) : new Value( attributeType, bytes );
+
+                default:
+                    String normValue = Strings.utf8ToString( data, keyStart + 1, formStart - keyStart - 1 );
+                    String upValue = data[formStart] == SAME_FORM ? normValue
+                        : Strings.utf8ToString( data, formStart + 1, end - formStart - 1 );
+
+                    return attributeType == null ? new Value( upValue ) : new Value( attributeType, upValue,
+                        normValue );
+            }
+        }
+        catch ( LdapInvalidAttributeValueException liave )
+        {
+            // The value was valid when it was indexed
+            throw new IllegalStateException( liave.getMessage(), liave );
+        }
+    }
+
+
+    /**
+     * Compares two byte arrays slices, using an unsigned lexicographic order
+     */
+    private static int compare( byte[] b1, int start1, int end1, byte[] b2, int start2, int end2 )
+    {
+        int length1 = end1 - start1;
+        int length2 = end2 - start2;
+        int length = Math.min( length1, length2 );
+
+        for ( int i = 0; i < length; i++ )
+        {
+            int c1 = b1[start1 + i] & 0xFF;
+            int c2 = b2[start2 + i] & 0xFF;
+
+            if ( c1 != c2 )
+            {
+                return c1 - c2;
+            }
+        }
+
+        return length1 - length2;
+    }
+
+
+    /**
+     * Sorts the given values on their keys, removing the duplicated ones
+     */
+    private static KeyedValue[] sort( Iterable<Value> values )
+    {
+        List<KeyedValue> keyedValues = new ArrayList<>();
+
+        for ( Value value : values )
+        {
+            keyedValues.add( new KeyedValue( value ) );
+        }
+
+        KeyedValue[] sorted = keyedValues.toArray( new KeyedValue[0] );
+        Arrays.sort( sorted );
+
+        int count = 0;
+
+        for ( int i = 0; i < sorted.length; i++ )
+        {
+            if ( ( count == 0 ) || ( sorted[i].compareTo( sorted[count - 1] ) != 0 ) )
+            {
+                sorted[count++] = sorted[i];
+            }
+        }
+
+        return count == sorted.length ? sorted : Arrays.copyOf( sorted, count );
+    }
+
+
+    private void install( Packer packer )
+    {
+        data = packer.data;
+        offsets = packer.offsets;
+        size = packer.size;
+    }
+
+
+    /**
+     * Search for a key
+     *
+     * @return The key position if found, or (-(insertion point) - 1)
+     */
+    private int search( byte[] key )
+    {
+        int low = 0;
+        int high = size - 1;
+
+        while ( low <= high )
+        {
+            int middle = ( low + high ) >>> 1;
+            int result = compare( data, offsets[2 * middle], offsets[2 * middle + 1], key, 0, key.length );
+
+            if ( result < 0 )
+            {
+                low = middle + 1;
+            }
+            else if ( result > 0 )
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+
+        return -( low + 1 );
+    }
+
+
+    /**
+     * @return The number of indexed values
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Tells if a value is present in the index
+     *
+     * @param value The value to look for
+     * @return <code>true</code> if the value is present
+     */
+    public boolean contains( Value value )
+    {
+        return ( value != null ) && ( search( keyOf( value ) ) >= 0 );
+    }
+
+
+    /**
+     * Tells if all the given values are present in the index
+     *
+     * @param values The values to look for
+     * @return <code>true</code> if all the values are present
+     */
+    public boolean containsAll( Value... values )
+    {
+        for ( Value value : values )
+        {
+            if ( !contains( value ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Adds a value to the index. Use {@link #addAll(Iterable)} when adding many values.
+     *
+     * @param value The value to add
+     * @return <code>true</code> if the value was not already present
+     */
+    public boolean add( Value value )
+    {
+        return addAll( Collections.singletonList( value ) ) == 1;
+    }
+
+
+    /**
+     * Adds some values to the index. The values already present are ignored.
+     *
+     * @param newValues The values to add
+     * @return The number of added values
+     */
+    public int addAll( Iterable<Value> newValues )
+    {
+        KeyedValue[] sorted = sort( newValues );
+
+        if ( sorted.length == 0 )
+        {
+            return 0;
+        }
+
+        int dataLength = offsets[2 * size];
+
+        for ( KeyedValue keyedValue : sorted )
+        {
+            dataLength += keyedValue.packed.length;
+        }
+
+        Packer packer = new Packer( size + sorted.length, dataLength );
+        int pos = 0;
+        int added = 0;
+
+        for ( KeyedValue keyedValue : sorted )
+        {
+            int result = -1;
+
+            // Copy the smaller existing values
+            while ( ( pos < size ) && ( ( result = compare( data, offsets[2 * pos], offsets[2 * pos + 1],
+                keyedValue.packed, 0, keyedValue.keyLength ) ) < 0 ) )
+            {
+                appendAt( packer, pos );
+                pos++;
+            }
+
+            if ( ( pos < size ) && ( result == 0 ) )
+            {
+                // Already present, we keep the existing value
+                continue;
+            }
+
+            packer.append( keyedValue );
+            added++;
+        }
+
+        while ( pos < size )
+        {
+            appendAt( packer, pos );
+            pos++;
+        }
+
+        install( packer );
+
+        return added;
+    }
+
+
+    /**
+     * Removes a value from the index. Use {@link #removeAll(Iterable)} when removing many values.
+     *
+     * @param value The value to remove
+     * @return <code>true</code> if the value was present
+     */
+    public boolean remove( Value value )
+    {
+        return removeAll( Collections.singletonList( value ) ) == 1;
+    }
+
+
+    /**
+     * Removes some values from the index
+     *
+     * @param removedValues The values to remove
+     * @return The number of removed values
+     */
+    public int removeAll( Iterable<Value> removedValues )
+    {
+        KeyedValue[] sorted = sort( removedValues );
+
+        if ( ( sorted.length == 0 ) || ( size == 0 ) )
+        {
+            return 0;
+        }
+
+        Packer packer = new Packer( size, offsets[2 * size] );
+        int next = 0;
+
+        for ( int pos = 0; pos < size; pos++ )
+        {
+            int result = 1;
+
+            while ( next < sorted.length )
+            {
+                result = compare( data, offsets[2 * pos], offsets[2 * pos + 1], sorted[next].packed, 0,
+                    sorted[next].keyLength );
+
+                if ( result <= 0 )
+                {
+                    break;
+                }
+
+                // This removed value is not present
+                next++;
+            }
+
+            if ( result == 0 )
+            {
+                next++;
+            }
+            else
+            {
+                appendAt( packer, pos );
+            }
+        }
+
+        int removed = size - packer.size;
+
+        if ( removed > 0 )
+        {
+            install( packer );
+        }
+
+        return removed;
+    }
+
+
+    /**
+     * Appends the value stored at a position to a packer, without creating it again
+     */
+    private void appendAt( Packer packer, int pos )
+    {
+        packer.append( data, offsets[2 * pos], offsets[2 * pos + 1], offsets[2 * pos + 2] );
+    }
+
+
+    /**
+     * Computes the modifications to apply to the attribute this index represents so
+     * that it contains the same values as the target index.
+     *
+     * @see #createModifications(Function, Supplier, int, List, List, int)
+     * @param target The index of the expected values
+     * @return The modifications, in the order they must be applied. Empty if the indexes
+     * contain the same values.
+     */
+    public List<Modification> diff( ValueIndex target )
+    {
+        List<Value> added = new ArrayList<>();
+        List<Value> removed = new ArrayList<>();
+        int pos = 0;
+        int targetPos = 0;
+
+        while ( ( pos < size ) && ( targetPos < target.size ) )
+        {
+            int result = compare( data, offsets[2 * pos], offsets[2 * pos + 1],
+                target.data, target.offsets[2 * targetPos], target.offsets[2 * targetPos + 1] );
+
+            if ( result < 0 )
+            {
+                removed.add( valueAt( pos++ ) );
+            }
+            else if ( result > 0 )
+            {
+                added.add( target.valueAt( targetPos++ ) );
+            }
+            else
+            {
+                pos++;
+                targetPos++;
+            }
+        }
+
+        while ( pos < size )
+        {
+            removed.add( valueAt( pos++ ) );
+        }
+
+        while ( targetPos < target.size )
+        {
+            added.add( target.valueAt( targetPos++ ) );
+        }
+
+        return createModifications( this::createAttribute, target::toAttribute, size, added, removed,
+            target.size );
+    }
+
+
+    /**
+     * Chooses the modifications to apply to an attribute so that it contains the expected
+     * values, once the added and removed values are known. We produce at most two
+     * modifications : an ADD followed by a REMOVE, so that a required attribute is never
+     * left without values, or a single REPLACE when it transmits fewer values. A target
+     * without values produces a REMOVE of the whole attribute.
+     *
+     * @param attributeFactory Creates an attribute with the current attribute ID and the given values
+     * @param targetFactory Creates an attribute containing all the expected values
+     * @param size The number of current values
+     * @param added The values to add
+     * @param removed The values to remove
+     * @param targetSize The number of expected values
+     * @return The modifications, in the order they must be applied. Empty if there is no
+     * value to add or remove.
+     */
+    public static List<Modification> createModifications( Function<List<Value>, Attribute> attributeFactory,
+        Supplier<Attribute> targetFactory, int size, List<Value> added, List<Value> removed, int targetSize )
+    {
+        List<Modification> modifications = new ArrayList<>( 2 );
+
+        if ( added.isEmpty() && removed.isEmpty() )
+        {
+            return modifications;
+        }
+
+        if ( targetSize == 0 )
+        {
+            modifications.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE,
+                attributeFactory.apply( Collections.<Value>emptyList() ) ) );
+        }
+        else if ( size == 0 )
+        {
+            modifications.add( new DefaultModification( ModificationOperation.ADD_ATTRIBUTE,
+                attributeFactory.apply( added ) ) );
+        }
+        else if ( added.size() + removed.size() > targetSize )
+        {
+            // Sending all the new values is cheaper
+            modifications.add( new DefaultModification( ModificationOperation.REPLACE_ATTRIBUTE,
+                targetFactory.get() ) );
+        }
+        else
+        {
+            if ( !added.isEmpty() )
+            {
+                modifications.add( new DefaultModification( ModificationOperation.ADD_ATTRIBUTE,
+                    attributeFactory.apply( added ) ) );
+            }
+
+            if ( !removed.isEmpty() )
+            {
+                modifications.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE,
+                    attributeFactory.apply( removed ) ) );
+            }
+        }
+
+        return modifications;
+    }
+
+
+    /**
+     * Computes the modifications to apply to an attribute so that it contains the same
+     * values as another attribute.
+     *
+     * @see #diff(ValueIndex)
+     * @param from The current attribute
+     * @param to The expected attribute
+     * @return The modifications, in the order they must be applied
+     */
+    public static List<Modification> diff( Attribute from, Attribute to )
+    {
+        return new ValueIndex( from ).diff( new ValueIndex( to ) );
+    }
+
+
+    private DefaultAttribute createAttribute( Iterable<Value> attributeValues )
+    {
+        DefaultAttribute attribute;
+
+        if ( attributeType == null )
+        {
+            attribute = new DefaultAttribute( upId );
+        }
+        else
+        {
+            attribute = new DefaultAttribute( upId, attributeType );
+        }
+
+        for ( Value value : attributeValues )
+        {
+            attribute.add( value );
+        }
+
+        return attribute;
+    }
+
+
+    /**
+     * @return A new attribute containing all the indexed values
+     */
+    public Attribute toAttribute()
+    {
+        return createAttribute( this );
+    }
+
+
+    /**
+     * @return An iterator over the values, in their normalized form order. The values are
+     * created again when they are read. It does not support removal.
+     */
+    @Override
+    public Iterator<Value> iterator()
+    {
+        return new Iterator<Value>()
+        {
+            /** The current position */
+            private int pos;
+
+            /** The values when the iterator was created */
+            private final byte[] iteratedData = data;
+
+            /** The offsets when the iterator was created */
+            private final int[] iteratedOffsets = offsets;
+
+            /** The number of values when the iterator was created */
+            private final int count = size;
+
+
+            @Override
+            public boolean hasNext()
+            {
+                return pos < count;
+            }
+
+
+            @Override
+            public Value next()
+            {
+                if ( pos >= count )
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return valueAt( iteratedData, iteratedOffsets, pos++ );
+            }
+        };
+    }
+}
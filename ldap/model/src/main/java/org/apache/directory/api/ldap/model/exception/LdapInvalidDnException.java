@@ -20,6 +20,10 @@
 package org.apache.directory.api.ldap.model.exception;
 
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.function.Supplier;
+
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
 
@@ -35,6 +39,12 @@ public class LdapInvalidDnException extends LdapOperationException
     /** The serial version UUID */
     static final long serialVersionUID = 1L;
 
+    /** The message, built when it is first read */
+    private transient volatile Supplier<String> lazyMessage;
+
+    /** The message built from the lazy message */
+    private volatile String message;
+
 
     /**
      * To be used by some special exceptions like LdapInvalidDnException
@@ -101,6 +111,66 @@ public class LdapInvalidDnException extends LdapOperationException
     }
 
 
+    /**
+     * Creates a new instance of LdapInvalidDnException, with a message which is only built
+     * if it is read. This is useful for the exceptions which are often caught and ignored,
+     * like the Dn parsing errors when checking if a String is a valid Dn.
+     *
+     * @param resultCode The LDAP result code
+     * @param message The exception message supplier
+     */
+    public LdapInvalidDnException( ResultCodeEnum resultCode, Supplier<String> message )
+    {
+        this( resultCode );
+        this.lazyMessage = message;
+    }
+
+
+    /**
+     * Creates a new instance of LdapInvalidDnException, with a message which is only built
+     * if it is read.
+     *
+     * @param resultCode The LDAP result code
+     * @param message The exception message supplier
+     * @param cause The root cause for this exception
+     */
+    public LdapInvalidDnException( ResultCodeEnum resultCode, Supplier<String> message, Throwable cause )
+    {
+        this( resultCode, ( String ) null, cause );
+        this.lazyMessage = message;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getMessage()
+    {
+        Supplier<String> supplier = lazyMessage;
+
+        if ( supplier != null )
+        {
+            message = supplier.get();
+            lazyMessage = null;
+        }
+
+        String result = message;
+
+        return result == null ? super.getMessage() : result;
+    }
+
+
+    /**
+     * Builds the lazy message before the exception is serialized
+     */
+    private void writeObject( ObjectOutputStream out ) throws IOException
+    {
+        getMessage();
+        out.defaultWriteObject();
+    }
+
+
     /**
      * Checks to make sure the resultCode value is right for this exception
      * type.
@@ -0,0 +1,397 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.ldif;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.DefaultModification;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Modification;
+import org.apache.directory.api.ldap.model.entry.ModificationOperation;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.entry.ValueIndex;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.apache.directory.api.ldap.model.message.ModifyRequestImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+
+
+/**
+ * Computes the changes needed to turn an entry into another one, or a set of entries
+ * into another one. When a SchemaManager is provided, the entries are made schema aware,
+ * and the values are compared using their AttributeType equality matching rule.
+ * <br>
+ * Two sets of entries, like two LDIF exports read with a {@link LdifReader}, are compared
+ * in a single merge pass, as long as both are sorted on their Dn, using the same order
+ * ({@link #DN_ORDER} by default). Only the current entry of each set is kept in memory.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdifDiffer
+{
+    /** The default order of the compared entries : the normalized Dn string order */
+    public static final Comparator<Dn> DN_ORDER = new Comparator<Dn>()
+    {
+        @Override
+        public int compare( Dn dn1, Dn dn2 )
+        {
+            return dn1.getNormName().compareTo( dn2.getNormName() );
+        }
+    };
+
+    /** The SchemaManager, if any */
+    private final SchemaManager schemaManager;
+
+    /**
+     * A handler receiving the changes computed when comparing two sets of entries
+     */
+    public interface ChangeHandler
+    {
+        /**
+         * Handles a change
+         *
+         * @param change The change, either an Add, a Delete or a Modify LDIF change
+         * @throws LdapException If the change can't be handled. It stops the comparison.
+         */
+        void handle( LdifEntry change ) throws LdapException;
+    }
+
+
+    /**
+     * Creates a new LdifDiffer instance, which compares values without a schema
+     */
+    public LdifDiffer()
+    {
+        this( null );
+    }
+
+
+    /**
+     * Creates a new LdifDiffer instance
+     *
+     * @param schemaManager The SchemaManager used to compare the values
+     */
+    public LdifDiffer( SchemaManager schemaManager )
+    {
+        this.schemaManager = schemaManager;
+    }
+
+
+    private Entry normalize( Entry entry ) throws LdapException
+    {
+        if ( ( schemaManager == null ) || entry.isSchemaAware() )
+        {
+            return entry;
+        }
+
+        return new DefaultEntry( schemaManager, entry );
+    }
+
+
+    private static Attribute find( Entry entry, Attribute attribute )
+    {
+        if ( attribute.getAttributeType() != null )
+        {
+            return entry.get( attribute.getAttributeType() );
+        }
+
+        return entry.get( attribute.getId() );
+    }
+
+
+    private static Attribute createAttribute( Attribute attribute, List<Value> values )
+    {
+        DefaultAttribute created;
+
+        if ( attribute.getAttributeType() == null )
+        {
+            created = new DefaultAttribute( attribute.getUpId() );
+        }
+        else
+        {
+            created = new DefaultAttribute( attribute.getUpId(), attribute.getAttributeType() );
+        }
+
+        for ( Value value : values )
+        {
+            created.add( value );
+        }
+
+        return created;
+    }
+
+
+    /**
+     * Compares the values of two versions of an attribute, using hashed sets of values
+     */
+    private static void diff( Attribute from, Attribute to, List<Modification> modifications )
+    {
+        Set<Value> fromValues = new HashSet<>();
+        Set<Value> toValues = new HashSet<>();
+
+        for ( Value value : from )
+        {
+            fromValues.add( value );
+        }
+
+        List<Value> added = new ArrayList<>();
+
+        for ( Value value : to )
+        {
+            toValues.add( value );
+
+            if ( !fromValues.contains( value ) )
+            {
+                added.add( value );
+            }
+        }
+
+        List<Value> removed = new ArrayList<>();
+
+        for ( Value value : fromValues )
+        {
+            if ( !toValues.contains( value ) )
+            {
+                removed.add( value );
+            }
+        }
+
+        modifications.addAll( ValueIndex.createModifications( values -> createAttribute( from, values ), to::clone,
+            fromValues.size(), added, removed, toValues.size() ) );
+    }
+
+
+    /**
+     * Computes the modifications to apply to an entry to get another entry. The Dn of
+     * the entries is not compared. For each attribute, we produce either a REPLACE, or
+     * an ADD and a REMOVE, whichever sends fewer values.
+     *
+     * @param from The current entry
+     * @param to The expected entry
+     * @return The list of modifications, empty if the entries have the same attributes
+     * @throws LdapException If the entries can't be made schema aware
+     */
+    public List<Modification> diff( Entry from, Entry to ) throws LdapException
+    {
+        Entry fromEntry = normalize( from );
+        Entry toEntry = normalize( to );
+        List<Modification> modifications = new ArrayList<>();
+
+        for ( Attribute fromAttribute : fromEntry )
+        {
+            Attribute toAttribute = find( toEntry, fromAttribute );
+
+            if ( toAttribute == null )
+            {
+                modifications.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE,
+                    createAttribute( fromAttribute, new ArrayList<Value>() ) ) );
+            }
+            else
+            {
+                diff( fromAttribute, toAttribute, modifications );
+            }
+        }
+
+        for ( Attribute toAttribute : toEntry )
+        {
+            if ( find( fromEntry, toAttribute ) == null )
+            {
+                modifications.add( new DefaultModification( ModificationOperation.ADD_ATTRIBUTE, toAttribute.clone() ) );
+            }
+        }
+
+        return modifications;
+    }
+
+
+    /**
+     * Creates the ModifyRequest that turns an entry into another one.
+     *
+     * @param from The current entry
+     * @param to The expected entry
+     * @return The ModifyRequest, using the expected entry Dn, or null if there is nothing to modify
+     * @throws LdapException If the entries can't be made schema aware
+     */
+    public ModifyRequest createModifyRequest( Entry from, Entry to ) throws LdapException
+    {
+        List<Modification> modifications = diff( from, to );
+
+        if ( modifications.isEmpty() )
+        {
+            return null;
+        }
+
+        ModifyRequest modifyRequest = new ModifyRequestImpl();
+        modifyRequest.setName( to.getDn() );
+
+        for ( Modification modification : modifications )
+        {
+            modifyRequest.addModification( modification );
+        }
+
+        return modifyRequest;
+    }
+
+
+    /**
+     * Compares two sets of entries sorted using {@link #DN_ORDER}.
+     *
+     * @see #diff(Iterator, Iterator, Comparator, ChangeHandler)
+     * @param from The current entries
+     * @param to The expected entries
+     * @param handler The handler receiving the changes
+     * @return The number of changes
+     * @throws LdapException If the entries are not sorted, or if the handler failed
+     */
+    public long diff( Iterator<LdifEntry> from, Iterator<LdifEntry> to, ChangeHandler handler )
+        throws LdapException
+    {
+        return diff( from, to, DN_ORDER, handler );
+    }
+
+
+    /**
+     * Compares two sets of entries, both sorted on their Dn using the given Comparator,
+     * in a single pass. The handler receives, in the Dn order :
+     * <ul>
+     *   <li>an Add change for each entry only present in the expected entries</li>
+     *   <li>a Delete change for each entry only present in the current entries</li>
+     *   <li>a Modify change for each entry present on both sides with different attributes</li>
+     * </ul>
+     *
+     * @param from The current entries
+     * @param to The expected entries
+     * @param comparator The Comparator used to sort both sets of entries
+     * @param handler The handler receiving the changes
+     * @return The number of changes
+     * @throws LdapException If the entries are not sorted, or if the handler failed
+     */
+    public long diff( Iterator<LdifEntry> from, Iterator<LdifEntry> to, Comparator<Dn> comparator,
+        ChangeHandler handler ) throws LdapException
+    {
+        Entry fromEntry = nextEntry( from, null, comparator );
+        Entry toEntry = nextEntry( to, null, comparator );
+        long changes = 0L;
+
+        while ( ( fromEntry != null ) || ( toEntry != null ) )
+        {
+            int result;
+
+            if ( fromEntry == null )
+            {
+                result = 1;
+            }
+            else if ( toEntry == null )
+            {
+                result = -1;
+            }
+            else
+            {
+                result = comparator.compare( fromEntry.getDn(), toEntry.getDn() );
+            }
+
+            if ( result < 0 )
+            {
+                LdifEntry deletion = new LdifEntry();
+                deletion.setDn( fromEntry.getDn() );
+                deletion.setChangeType( ChangeType.Delete );
+                handler.handle( deletion );
+                changes++;
+
+                fromEntry = nextEntry( from, fromEntry, comparator );
+            }
+            else if ( result > 0 )
+            {
+                LdifEntry addition = new LdifEntry( toEntry );
+                addition.setChangeType( ChangeType.Add );
+                handler.handle( addition );
+                changes++;
+
+                toEntry = nextEntry( to, toEntry, comparator );
+            }
+            else
+            {
+                List<Modification> modifications = diff( fromEntry, toEntry );
+
+                if ( !modifications.isEmpty() )
+                {
+                    LdifEntry modification = new LdifEntry();
+                    modification.setDn( toEntry.getDn() );
+                    modification.setChangeType( ChangeType.Modify );
+
+                    for ( Modification mod : modifications )
+                    {
+                        modification.addModification( mod );
+                    }
+
+                    handler.handle( modification );
+                    changes++;
+                }
+
+                fromEntry = nextEntry( from, fromEntry, comparator );
+                toEntry = nextEntry( to, toEntry, comparator );
+            }
+        }
+
+        return changes;
+    }
+
+
+    /**
+     * Reads the next entry, checking that it comes after the previous one
+     */
+    private static Entry nextEntry( Iterator<LdifEntry> entries, Entry previous, Comparator<Dn> comparator )
+        throws LdapException
+    {
+        if ( !entries.hasNext() )
+        {
+            return null;
+        }
+
+        LdifEntry ldifEntry = entries.next();
+
+        if ( ( ldifEntry == null ) || !ldifEntry.isLdifContent() )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_13876_LDIF_DIFF_NOT_AN_ENTRY,
+                ldifEntry == null ? null : ldifEntry.getDn() ) );
+        }
+
+        Entry entry = ldifEntry.getEntry();
+
+        if ( ( previous != null ) && ( comparator.compare( previous.getDn(), entry.getDn() ) >= 0 ) )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_13875_LDIF_DIFF_UNSORTED_STREAM, previous.getDn(),
+                entry.getDn() ) );
+        }
+
+        return entry;
+    }
+}
@@ -93,12 +93,19 @@ public class Dn implements Iterable<Rdn>, Externalizable
      */
     protected transient List<Rdn> rdns = new ArrayList<>( 5 );
 
-    /** The user provided name */
-    private String upName;
+    /**
+     * The user provided name. It's null until it has been computed when the Dn has been
+     * derived from another Dn (a parent, an ancestor, a descendant...), and is
+     * written after the normalized name, so that both are visible once it's set.
+     */
+    private volatile String upName;
 
     /** The normalized name */
     private String normName;
 
+    /** The cached hash code */
+    private transient volatile int h;
+
     /** A null Dn */
     public static final Dn EMPTY_DN = new Dn();
 
@@ -180,6 +187,20 @@ public class Dn implements Iterable<Rdn>, Externalizable
     }
 
 
+    /**
+     * Creates a Dn sharing the given RDNs, which must not be modified. The user provided
+     * and normalized names are computed when needed.
+     *
+     * @param schemaManager The SchemaManager to use
+     * @param rdns The RDNs, which may be a view over another Dn RDNs
+     */
+    private Dn( SchemaManager schemaManager, List<Rdn> rdns )
+    {
+        this.schemaManager = schemaManager;
+        this.rdns = rdns;
+    }
+
+
     /**
      * Construct an empty Schema aware Dn object
      *
@@ -200,8 +221,6 @@ public class Dn implements Iterable<Rdn>, Externalizable
         {
             this.rdns.add( new Rdn( schemaManager, rdn ) );
         }
-
-        upName = toUpName();
     }
 
 
@@ -340,8 +359,6 @@ public class Dn implements Iterable<Rdn>, Externalizable
         {
             this.rdns.add( rdn );
         }
-
-        toUpName();
     }
 
 
@@ -359,14 +376,9 @@ public class Dn implements Iterable<Rdn>, Externalizable
             throw new IllegalArgumentException( I18n.err( I18n.ERR_13622_DN_OR_RDN_NULL ) );
         }
 
-        for ( Rdn rdnParent : dn )
-        {
-            rdns.add( 0, rdnParent );
-        }
-
-        rdns.add( 0, rdn );
-
-        toUpName();
+        rdns = new ArrayList<>( dn.size() + 1 );
+        rdns.add( rdn );
+        rdns.addAll( dn.rdns );
     }
 
 
@@ -397,8 +409,6 @@ public class Dn implements Iterable<Rdn>, Externalizable
                 this.rdns.add( new Rdn( schemaManager, rdn ) );
             }
         }
-
-        toUpName();
     }
 
 
@@ -414,7 +424,8 @@ public class Dn implements Iterable<Rdn>, Externalizable
 
 
     /**
-     * Return the User Provided Dn as a String,
+     * Return the User Provided Dn as a String, computing the user provided and
+     * normalized names from the RDNs
      *
      * @return A String representing the User Provided Dn
      */
@@ -422,39 +433,54 @@ public class Dn implements Iterable<Rdn>, Externalizable
     {
         if ( rdns.isEmpty() )
         {
-            upName = "";
             normName = "";
+            upName = "";
         }
         else
         {
-            StringBuilder sbUpName = new StringBuilder();
-            StringBuilder sbNormName = new StringBuilder();
-            boolean isFirst = true;
+            int size = rdns.size();
+            Rdn rdn = rdns.get( 0 );
 
-            for ( Rdn rdn : rdns )
+            if ( size == 1 )
             {
-                if ( isFirst )
-                {
-                    isFirst = false;
-                }
-                else
-                {
-                    sbUpName.append( ',' );
-                    sbNormName.append( ',' );
-                }
+                normName = String.valueOf( rdn.getNormName() );
+                upName = String.valueOf( rdn.getName() );
 
-                sbUpName.append( rdn.getName() );
-                sbNormName.append( rdn.getNormName() );
+                return upName;
+            }
+
+            StringBuilder sbUpName = new StringBuilder().append( rdn.getName() );
+            StringBuilder sbNormName = new StringBuilder().append( rdn.getNormName() );
+
+            for ( int i = 1; i < size; i++ )
+            {
+                rdn = rdns.get( i );
+                sbUpName.append( ',' ).append( rdn.getName() );
+                sbNormName.append( ',' ).append( rdn.getNormName() );
             }
 
-            upName = sbUpName.toString();
             normName = sbNormName.toString();
+            upName = sbUpName.toString();
         }
 
         return upName;
     }
 
 
+    /**
+     * @return The normalized name, computed if needed. It may be null.
+     */
+    private String normName()
+    {
+        if ( upName == null )
+        {
+            toUpName();
+        }
+
+        return normName;
+    }
+
+
     /**
      * Gets the hash code of this Dn.
      *
@@ -464,11 +490,18 @@ public class Dn implements Iterable<Rdn>, Externalizable
     @Override
     public int hashCode()
     {
-        int result = 37;
+        int result = h;
 
-        for ( Rdn rdn : rdns )
+        if ( result == 0 )
         {
-            result = result * 17 + rdn.hashCode();
+            result = 37;
+
+            for ( Rdn rdn : rdns )
+            {
+                result = result * 17 + rdn.hashCode();
+            }
+
+            h = result;
         }
 
         return result;
@@ -482,7 +515,14 @@ public class Dn implements Iterable<Rdn>, Externalizable
      */
     public String getName()
     {
-        return upName == null ? "" : upName;
+        String name = upName;
+
+        if ( name == null )
+        {
+            name = toUpName();
+        }
+
+        return name;
     }
 
 
@@ -493,7 +533,9 @@ public class Dn implements Iterable<Rdn>, Externalizable
      */
     public String getNormName()
     {
-        return normName == null ? "" : normName;
+        String name = normName();
+
+        return name == null ? "" : name;
     }
 
 
@@ -636,19 +678,36 @@ public class Dn implements Iterable<Rdn>, Externalizable
             return true;
         }
 
-        if ( dn.size() > size() )
+        int size = rdns.size();
+        int dnSize = dn.rdns.size();
+
+        if ( dnSize > size )
         {
             // The name is longer than the current Dn.
             return false;
         }
 
+        // The RDN hash codes are computed when they are parsed, and are only
+        // comparable if both Dn are schema aware, or if none of them is.
+        boolean compareHashCodes = isSchemaAware() == dn.isSchemaAware();
+
         // Ok, iterate through all the Rdn of the name,
         // starting a the end of the current list.
-
-        for ( int i = dn.size() - 1; i >= 0; i-- )
+        for ( int i = dnSize; i > 0; i-- )
         {
-            Rdn nameRdn = dn.rdns.get( dn.rdns.size() - i - 1 );
-            Rdn ldapRdn = rdns.get( rdns.size() - i - 1 );
+            Rdn nameRdn = dn.rdns.get( dnSize - i );
+            Rdn ldapRdn = rdns.get( size - i );
+
+            if ( nameRdn == ldapRdn )
+            {
+                // Dn derived from the same Dn share their RDNs
+                continue;
+            }
+
+            if ( compareHashCodes && ( nameRdn.hashCode() != ldapRdn.hashCode() ) )
+            {
+                return false;
+            }
 
             if ( !nameRdn.equals( ldapRdn ) )
             {
@@ -797,8 +856,7 @@ public class Dn implements Iterable<Rdn>, Externalizable
             throw new ArrayIndexOutOfBoundsException( message );
         }
 
-        Dn newDn = new Dn( schemaManager );
-        List<Rdn> rdnsAncestor = ancestor.getRdns();
+        List<Rdn> rdnsAncestor = ancestor.rdns;
 
         for ( int i = 0; i < ancestor.size(); i++ )
         {
@@ -814,17 +872,10 @@ public class Dn implements Iterable<Rdn>, Externalizable
         // Short cut: if the last RDNs are equal, return ""
         if ( rdns.get( 0 ).equals( rdnsAncestor.get( 0 ) ) )
         {
-            return newDn;
-        }
-        
-        for ( int i = 0; i < rdns.size() - length; i++ )
-        {
-            newDn.rdns.add( rdns.get( i ) );
+            return new Dn( schemaManager );
         }
 
-        newDn.toUpName();
-
-        return newDn;
+        return new Dn( schemaManager, rdns.subList( 0, rdns.size() - length ) );
     }
 
 
@@ -891,8 +942,7 @@ public class Dn implements Iterable<Rdn>, Externalizable
             throw new ArrayIndexOutOfBoundsException( message );
         }
         
-        Dn newDn = new Dn( schemaManager );
-        List<Rdn> rdnsDescendant = descendant.getRdns();
+        List<Rdn> rdnsDescendant = descendant.rdns;
 
         for ( int i = 0; i < descendant.size(); i++ )
         {
@@ -904,17 +954,8 @@ public class Dn implements Iterable<Rdn>, Externalizable
                 throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX );
             }
         }
-        
-        for ( int i = length; i < rdns.size(); i++ )
-        {
-            newDn.rdns.add( rdns.get( i ) );
-        }
-        
-        newDn.toUpName();
 
-        //newDn.upName = upName.substring( descendant.upName.length() + 1 );
-
-        return newDn;
+        return new Dn( schemaManager, rdns.subList( length, rdns.size() ) );
     }
 
 
@@ -935,25 +976,12 @@ public class Dn implements Iterable<Rdn>, Externalizable
             return this;
         }
 
-        Dn clonedDn = copy();
-
         // Concatenate the rdns
-        clonedDn.rdns.addAll( 0, rdns.rdns );
+        List<Rdn> newRdns = new ArrayList<>( rdns.size() + size() );
+        newRdns.addAll( rdns.rdns );
+        newRdns.addAll( this.rdns );
 
-        // Regenerate the normalized name and the original string
-        if ( clonedDn.isSchemaAware() && rdns.isSchemaAware() )
-        {
-            if ( clonedDn.size() != 0 )
-            {
-                clonedDn.upName = rdns.getName() + "," + upName;
-            }
-        }
-        else
-        {
-            clonedDn.toUpName();
-        }
-
-        return clonedDn;
+        return new Dn( schemaManager, newRdns );
     }
 
 
@@ -974,16 +1002,8 @@ public class Dn implements Iterable<Rdn>, Externalizable
             return this;
         }
 
-        Dn clonedDn = copy();
-
         // We have to parse the nameComponent which is given as an argument
-        Rdn newRdn = new Rdn( schemaManager, rdn );
-
-        clonedDn.rdns.add( 0, newRdn );
-
-        clonedDn.toUpName();
-
-        return clonedDn;
+        return add( new Rdn( schemaManager, rdn ), rdns );
     }
 
 
@@ -1001,19 +1021,30 @@ public class Dn implements Iterable<Rdn>, Externalizable
             return this;
         }
 
-        Dn clonedDn = copy();
+        return add( new Rdn( schemaManager, newRdn ), rdns );
+    }
+
 
-        clonedDn.rdns.add( 0, new Rdn( schemaManager, newRdn ) );
-        clonedDn.toUpName();
+    /**
+     * Creates a Dn with a new leaf Rdn. The RDNs of the parent Dn are not copied,
+     * only the references.
+     */
+    private Dn add( Rdn newRdn, List<Rdn> parentRdns )
+    {
+        List<Rdn> newRdns = new ArrayList<>( parentRdns.size() + 1 );
+        newRdns.add( newRdn );
+        newRdns.addAll( parentRdns );
 
-        return clonedDn;
+        return new Dn( schemaManager, newRdns );
     }
 
 
     /**
      * Gets the parent Dn of this Dn. Null if this Dn doesn't have a parent, i.e. because it
      * is the empty Dn.<br>
-     * The Parent is the right part of the Dn, when the Rdn has been removed.
+     * The Parent is the right part of the Dn, when the Rdn has been removed. It shares
+     * the RDNs of this Dn, and its names are only computed when needed, so walking up
+     * a Dn doesn't copy anything.
      *
      * @return the parent Dn of this Dn
      */
@@ -1024,18 +1055,7 @@ public class Dn implements Iterable<Rdn>, Externalizable
             return this;
         }
 
-        int posn = rdns.size() - 1;
-
-        Dn newDn = new Dn( schemaManager );
-
-        for ( int i = rdns.size() - posn; i < rdns.size(); i++ )
-        {
-            newDn.rdns.add( rdns.get( i ) );
-        }
-
-        newDn.toUpName();
-
-        return newDn;
+        return new Dn( schemaManager, rdns.subList( 1, rdns.size() ) );
     }
     
     
@@ -1069,25 +1089,6 @@ public class Dn implements Iterable<Rdn>, Externalizable
     }
 
 
-    /**
-     * Create a copy of the current Dn
-     *
-     * @return The copied Dn
-     */
-    private Dn copy()
-    {
-        Dn dn = new Dn( schemaManager );
-        dn.rdns = new ArrayList<>();
-
-        for ( Rdn rdn : rdns )
-        {
-            dn.rdns.add( rdn );
-        }
-
-        return dn;
-    }
-
-
     /**
      * @see java.lang.Object#equals(java.lang.Object)
      * @return <code>true</code> if the two instances are equals
@@ -1125,12 +1126,15 @@ public class Dn implements Iterable<Rdn>, Externalizable
         // Shortcut if the Dn is normalized
         if ( isSchemaAware() )
         {
-            if ( normName == null )
+            String thisNormName = normName();
+            String otherNormName = other.normName();
+
+            if ( thisNormName == null )
             {
                 // equals() should never NPE
-                return other.normName == null;
+                return otherNormName == null;
             }
-            return normName.equals( other.normName );
+            return thisNormName.equals( otherNormName );
         }
 
         for ( int i = 0; i < this.size(); i++ )
@@ -1254,15 +1258,7 @@ public class Dn implements Iterable<Rdn>, Externalizable
      */
     private static String parseInternal( SchemaManager schemaManager, String name, List<Rdn> rdns ) throws LdapInvalidDnException
     {
-        try
-        {
-            return FastDnParser.parseDn( schemaManager, name, rdns );
-        }
-        catch ( TooComplexDnException e )
-        {
-            rdns.clear();
-            return new ComplexDnParser().parseDn( schemaManager, name, rdns );
-        }
+        return FastDnParser.parseDn( schemaManager, name, rdns );
     }
 
 
@@ -1297,7 +1293,9 @@ public class Dn implements Iterable<Rdn>, Externalizable
     @Override
     public void writeExternal( ObjectOutput out ) throws IOException
     {
-        if ( upName == null )
+        String name = getName();
+
+        if ( name == null )
         {
             String message = I18n.err( I18n.ERR_13624_CANNOT_SERIALIZE_NULL_DN );
             LOG.error( message );
@@ -1305,7 +1303,7 @@ public class Dn implements Iterable<Rdn>, Externalizable
         }
 
         // Write the UPName
-        out.writeUTF( upName );
+        out.writeUTF( name );
 
         // Write the RDNs.
         // First the number of RDNs
@@ -20,21 +20,31 @@
 package org.apache.directory.api.ldap.model.name;
 
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.entry.Value;
 import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
 import org.apache.directory.api.ldap.model.schema.AttributeType;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.util.Chars;
+import org.apache.directory.api.util.ExpansibleByteBuffer;
+import org.apache.directory.api.util.Hex;
 import org.apache.directory.api.util.Position;
 import org.apache.directory.api.util.Strings;
 
 
 /**
- * A fast LDAP Dn parser that handles only simple DNs. If the Dn contains
- * any special character an {@link LdapInvalidDnException} is thrown.
+ * A fast LDAP Dn parser, covering the whole RFC 4514 grammar in one pass over the
+ * Dn chars. The simple RDNs (no escaped char, no multi-valued RDN, no quoted value,
+ * no hexstring and no "oid." prefix) are parsed on the fly, the other ones are parsed
+ * by a second method which builds the RDNs exactly as the ANTLR based
+ * {@link ComplexDnParser} does. This one is only kept for diagnostics.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -110,7 +120,7 @@ import org.apache.directory.api.util.Strings;
         while ( true )
         {
             Rdn rdn = new Rdn( schemaManager );
-            parseRdnInternal( schemaManager, name, pos, rdn );
+            parseRdnInternal( schemaManager, name, chars, pos, rdn );
             sb.append( rdn.getNormName() );
             rdns.add( rdn );
 
@@ -131,7 +141,7 @@ import org.apache.directory.api.util.Strings;
                     break;
 
                 default:
-                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13601_EXPECTED_COMMA_SEMI_COLON, c,
+                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.lazyErr( I18n.ERR_13601_EXPECTED_COMMA_SEMI_COLON, c,
                         pos.start ) );
             }
         }
@@ -160,34 +170,48 @@ import org.apache.directory.api.util.Strings;
         pos.start = 0;
         pos.length = name.length();
 
-        parseRdnInternal( schemaManager, name, pos, rdn );
+        parseRdnInternal( schemaManager, name, name.toCharArray(), pos, rdn );
     }
 
 
-    private static void parseRdnInternal( SchemaManager schemaManager, String name, Position pos, Rdn rdn ) throws LdapInvalidDnException
+    private static void parseRdnInternal( SchemaManager schemaManager, String name, char[] chars, Position pos, Rdn rdn )
+        throws LdapInvalidDnException
     {
         StringBuilder sbNormName = new StringBuilder();
         int rdnStart = pos.start;
-        char[] chars = name.toCharArray();
 
         // SPACE*
         matchSpaces( chars, pos );
 
         // attributeType: ALPHA (ALPHA|DIGIT|HYPEN) | NUMERICOID
+        // A null type means we have an "oid." prefix
         String type = matchAttributeType( chars, pos );
+        String upValue = null;
 
-        // SPACE*
-        matchSpaces( chars, pos );
+        if ( type != null )
+        {
+            // SPACE*
+            matchSpaces( chars, pos );
 
-        // EQUALS
-        matchEquals( chars, pos );
+            // EQUALS
+            matchEquals( chars, pos );
 
-        // SPACE*
-        matchSpaces( chars, pos );
+            // SPACE*
+            matchSpaces( chars, pos );
+
+            // here we only match "simple" values
+            // stops at \ + # " -> null
+            upValue = matchValue( chars, pos );
+        }
 
-        // here we only match "simple" values
-        // stops at \ + # " -> Too Complex Exception
-        String upValue = matchValue( chars, pos );
+        if ( upValue == null )
+        {
+            // Not a simple RDN : parse it again, the complex way
+            pos.start = rdnStart;
+            parseComplexRdn( schemaManager, name, chars, pos, rdn );
+
+            return;
+        }
 
         if ( rdn != null )
         {
@@ -227,6 +251,513 @@ import org.apache.directory.api.util.Strings;
     }
 
 
+    /**
+     * Parses a RDN which is not a simple RDN : it may be multi-valued, or contain escaped
+     * chars, quoted values, hexstrings or "oid." prefixed attribute types. The RDN is built
+     * the same way the ANTLR grammar builds it.
+     *
+     * @param schemaManager The SchemaManager
+     * @param name the name to parse
+     * @param chars the name chars
+     * @param pos the position of the RDN first char
+     * @param rdn the Rdn to fill, may be null
+     * @throws LdapInvalidDnException If the RDN is invalid
+     */
+    private static void parseComplexRdn( SchemaManager schemaManager, String name, char[] chars, Position pos, Rdn rdn )
+        throws LdapInvalidDnException
+    {
+        int rdnStart = pos.start;
+        ExpansibleByteBuffer bytes = new ExpansibleByteBuffer( chars.length - rdnStart );
+        List<Ava> avas = new ArrayList<>();
+
+        while ( true )
+        {
+            Ava ava = parseComplexAva( schemaManager, name, chars, pos, bytes );
+            ava.hashCode();
+            Rdn.addOrdered( avas, ava );
+
+            if ( hasMoreChars( pos ) && ( chars[pos.start] == '+' ) )
+            {
+                pos.start++;
+                bytes.clear();
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if ( rdn == null )
+        {
+            return;
+        }
+
+        rdn.upName = name.substring( rdnStart, pos.start );
+
+        if ( avas.size() == 1 )
+        {
+            Ava ava = avas.get( 0 );
+            rdn.normName = createNormAva( ava );
+            rdn.ava = ava;
+            rdn.avaType = ava.getType();
+            rdn.nbAvas = 1;
+        }
+        else
+        {
+            StringBuilder sbNormName = new StringBuilder();
+            rdn.nbAvas = avas.size();
+            rdn.avaTypes = new HashMap<>();
+            boolean isFirst = true;
+
+            for ( Ava ava : avas )
+            {
+                if ( isFirst )
+                {
+                    isFirst = false;
+                }
+                else
+                {
+                    sbNormName.append( '+' );
+                }
+
+                String type;
+
+                if ( schemaManager != null )
+                {
+                    type = ava.getAttributeType().getOid();
+                }
+                else
+                {
+                    type = ava.normType;
+                }
+
+                sbNormName.append( type ).append( '=' );
+                Value value = ava.getValue();
+
+                if ( value.getNormalized() != null )
+                {
+                    sbNormName.append( value.getNormalized() );
+                }
+                else
+                {
+                    sbNormName.append( value.getUpValue() );
+                }
+
+                List<Ava> avaList = rdn.avaTypes.get( type );
+
+                if ( avaList == null )
+                {
+                    avaList = new ArrayList<>();
+                    rdn.avaTypes.put( type, avaList );
+                }
+
+                avaList.add( ava );
+            }
+
+            rdn.normName = sbNormName.toString();
+            rdn.avas = avas;
+        }
+
+        rdn.hashCode();
+    }
+
+
+    /**
+     * Parses an AVA, up to the next '+', ',' or ';'. The AVA user provided name is
+     * kept as is, including the spaces around the type and the value, except the
+     * spaces following a quoted value or a hexstring.
+     *
+     * @param schemaManager The SchemaManager
+     * @param name the name to parse
+     * @param chars the name chars
+     * @param pos the position of the AVA first char
+     * @param bytes the buffer used to store the unescaped value
+     * @return The parsed Ava
+     * @throws LdapInvalidDnException If the AVA is invalid
+     */
+    private static Ava parseComplexAva( SchemaManager schemaManager, String name, char[] chars, Position pos,
+        ExpansibleByteBuffer bytes ) throws LdapInvalidDnException
+    {
+        int avaStart = pos.start;
+        int avaEnd;
+
+        // SPACE* attributeType SPACE* EQUALS SPACE*
+        matchSpaces( chars, pos );
+        String type = matchComplexAttributeType( chars, pos );
+        matchSpaces( chars, pos );
+        matchEquals( chars, pos );
+        matchSpaces( chars, pos );
+
+        // attributeValue = quotestring / hexstring / string
+        boolean isHR = true;
+
+        if ( hasMoreChars( pos ) )
+        {
+            switch ( chars[pos.start] )
+            {
+                case '"':
+                    matchQuotedValue( chars, pos, bytes );
+                    avaEnd = pos.start;
+                    matchEndOfValue( chars, pos );
+                    break;
+
+                case '#':
+                    matchHexstringValue( chars, pos, bytes );
+                    avaEnd = pos.start;
+                    matchEndOfValue( chars, pos );
+                    isHR = false;
+                    break;
+
+                default:
+                    // The trailing spaces are part of the AVA user provided name
+                    matchStringValue( chars, pos, bytes );
+                    avaEnd = pos.start;
+                    break;
+            }
+        }
+        else
+        {
+            avaEnd = pos.start;
+        }
+
+        Ava ava = new Ava( schemaManager );
+        AttributeType attributeType = null;
+
+        if ( schemaManager != null )
+        {
+            if ( type.startsWith( "oid." ) || type.startsWith( "OID." ) )
+            {
+                type = type.substring( 4 );
+            }
+
+            try
+            {
+                attributeType = schemaManager.lookupAttributeTypeRegistry( type );
+            }
+            catch ( LdapException le )
+            {
+                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX,
+                    I18n.err( I18n.ERR_13600_TYPE_IS_NULL_OR_EMPTY ), le );
+            }
+
+            ava.attributeType = attributeType;
+            ava.upType = type;
+            ava.normType = attributeType.getOid();
+        }
+        else
+        {
+            ava.upType = type;
+            ava.normType = Strings.toLowerCaseAscii( type );
+        }
+
+        ava.upName = name.substring( avaStart, avaEnd );
+
+        if ( ( ( attributeType != null ) && attributeType.isHR() ) || isHR )
+        {
+            String value = Strings.utf8ToString( bytes.copyOfUsedBytes() );
+
+            if ( attributeType != null )
+            {
+                try
+                {
+                    ava.value = new Value( attributeType, value );
+                }
+                catch ( LdapInvalidAttributeValueException liave )
+                {
+                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, liave.getMessage(), liave );
+                }
+            }
+            else
+            {
+                ava.value = new Value( value );
+            }
+        }
+        else
+        {
+            ava.value = new Value( bytes.copyOfUsedBytes() );
+        }
+
+        return ava;
+    }
+
+
+    /**
+     * Matches an attribute type, which may have an "oid." prefix.
+     *
+     * @param chars the name chars
+     * @param pos the pos
+     * @return the attribute type, with its "oid." prefix if any
+     * @throws LdapInvalidDnException If the attribute type is invalid
+     */
+    private static String matchComplexAttributeType( char[] chars, Position pos ) throws LdapInvalidDnException
+    {
+        int start = pos.start;
+        String type = matchAttributeType( chars, pos );
+
+        if ( type != null )
+        {
+            return type;
+        }
+
+        // We have found a '.' in a descr : this must be an "oid." prefix
+        if ( ( pos.start - start != 4 ) || !"oid".equalsIgnoreCase( new String( chars, start, 3 ) ) )
+        {
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.lazyErr(
+                I18n.ERR_13605_START_AT_DESCR_EXPECTED, '.', pos.start - 1 ) );
+        }
+
+        matchAttributeTypeNumericOid( chars, pos );
+
+        return new String( chars, start, pos.start - start );
+    }
+
+
+    /**
+     * Matches a string value, up to the next unescaped '+', ',' or ';'. The
+     * unescaped trailing spaces are not part of the value.
+     *
+     * @param chars the name chars
+     * @param pos the pos
+     * @param bytes the buffer storing the unescaped value
+     * @throws LdapInvalidDnException If the value is invalid
+     */
+    private static void matchStringValue( char[] chars, Position pos, ExpansibleByteBuffer bytes )
+        throws LdapInvalidDnException
+    {
+        int valueLength = 0;
+
+        while ( hasMoreChars( pos ) )
+        {
+            char c = chars[pos.start];
+
+            switch ( c )
+            {
+                case '+':
+                case ',':
+                case ';':
+                    bytes.position( valueLength );
+
+                    return;
+
+                case '"':
+                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX,
+                        I18n.err( I18n.ERR_13615_UNESCAPED_CHARS_NOT_ALLOWED ) );
+
+                case '\\':
+                    matchPair( chars, pos, bytes );
+                    valueLength = bytes.position();
+                    break;
+
+                case ' ':
+                    bytes.append( ( byte ) ' ' );
+                    pos.start++;
+                    break;
+
+                default:
+                    appendUtf8( chars, pos, bytes );
+                    valueLength = bytes.position();
+                    break;
+            }
+        }
+
+        bytes.position( valueLength );
+    }
+
+
+    /**
+     * Matches a quoted value : DQUOTE *( quotechar / pair ) DQUOTE
+     *
+     * @param chars the name chars
+     * @param pos the pos, on the opening DQUOTE
+     * @param bytes the buffer storing the unquoted value
+     * @throws LdapInvalidDnException If the value is invalid
+     */
+    private static void matchQuotedValue( char[] chars, Position pos, ExpansibleByteBuffer bytes )
+        throws LdapInvalidDnException
+    {
+        int start = pos.start;
+        pos.start++;
+
+        while ( hasMoreChars( pos ) )
+        {
+            switch ( chars[pos.start] )
+            {
+                case '"':
+                    pos.start++;
+
+                    return;
+
+                case '\\':
+                    matchPair( chars, pos, bytes );
+                    break;
+
+                default:
+                    appendUtf8( chars, pos, bytes );
+                    break;
+            }
+        }
+
+        throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX,
+            I18n.lazyErr( I18n.ERR_13878_UNTERMINATED_QUOTED_VALUE, start ) );
+    }
+
+
+    /**
+     * Matches a hexstring value : SHARP 1*hexpair
+     *
+     * @param chars the name chars
+     * @param pos the pos, on the SHARP
+     * @param bytes the buffer storing the decoded value
+     * @throws LdapInvalidDnException If the value is invalid
+     */
+    private static void matchHexstringValue( char[] chars, Position pos, ExpansibleByteBuffer bytes )
+        throws LdapInvalidDnException
+    {
+        int start = pos.start;
+        pos.start++;
+
+        while ( ( pos.start + 1 < pos.length ) && Chars.isHex( chars[pos.start] ) && Chars.isHex( chars[pos.start + 1] ) )
+        {
+            bytes.append( Hex.getHexValue( chars[pos.start], chars[pos.start + 1] ) );
+            pos.start += 2;
+        }
+
+        if ( pos.start == start + 1 )
+        {
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX,
+                I18n.lazyErr( I18n.ERR_13879_INVALID_HEXSTRING, start ) );
+        }
+    }
+
+
+    /**
+     * Matches the spaces after a quoted value or a hexstring. They must be followed
+     * by a '+', a ',', a ';' or by the end of the name.
+     *
+     * @param chars the name chars
+     * @param pos the pos
+     * @throws LdapInvalidDnException If some other char is found
+     */
+    private static void matchEndOfValue( char[] chars, Position pos ) throws LdapInvalidDnException
+    {
+        matchSpaces( chars, pos );
+
+        if ( hasMoreChars( pos ) )
+        {
+            char c = chars[pos.start];
+
+            if ( ( c != '+' ) && ( c != ',' ) && ( c != ';' ) )
+            {
+                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX,
+                    I18n.lazyErr( I18n.ERR_13880_UNEXPECTED_CHAR_AFTER_VALUE, c, pos.start ) );
+            }
+        }
+    }
+
+
+    /**
+     * Matches a pair : ESC ( ESC / special / hexpair )
+     *
+     * @param chars the name chars
+     * @param pos the pos, on the ESC
+     * @param bytes the buffer storing the unescaped value
+     * @throws LdapInvalidDnException If the escaped char is invalid
+     */
+    private static void matchPair( char[] chars, Position pos, ExpansibleByteBuffer bytes ) throws LdapInvalidDnException
+    {
+        pos.start++;
+        char c = nextChar( chars, pos, false );
+
+        if ( Chars.isHex( c ) && ( pos.start + 1 < pos.length ) && Chars.isHex( chars[pos.start + 1] ) )
+        {
+            bytes.append( Hex.getHexValue( c, chars[pos.start + 1] ) );
+            pos.start += 2;
+
+            return;
+        }
+
+        switch ( c )
+        {
+            case '\\':
+            case '"':
+            case '+':
+            case ',':
+            case ';':
+            case '<':
+            case '>':
+            case ' ':
+            case '#':
+            case '=':
+                bytes.append( ( byte ) c );
+                pos.start++;
+                break;
+
+            default:
+                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX,
+                    I18n.lazyErr( I18n.ERR_13877_INVALID_ESCAPED_CHAR, c, pos.start ) );
+        }
+    }
+
+
+    /**
+     * Appends the UTF-8 bytes of the current char, or of the current surrogate pair.
+     *
+     * @param chars the name chars
+     * @param pos the pos
+     * @param bytes the buffer storing the value
+     */
+    private static void appendUtf8( char[] chars, Position pos, ExpansibleByteBuffer bytes )
+    {
+        char c = chars[pos.start++];
+
+        if ( c < 0x0080 )
+        {
+            bytes.append( ( byte ) c );
+        }
+        else if ( c < 0x0800 )
+        {
+            bytes.append( ( byte ) ( 0xC0 | ( c >> 6 ) ) );
+            bytes.append( ( byte ) ( 0x80 | ( c & 0x3F ) ) );
+        }
+        else if ( Character.isHighSurrogate( c ) && hasMoreChars( pos ) && Character.isLowSurrogate( chars[pos.start] ) )
+        {
+            int codePoint = Character.toCodePoint( c, chars[pos.start++] );
+            bytes.append( ( byte ) ( 0xF0 | ( codePoint >> 18 ) ) );
+            bytes.append( ( byte ) ( 0x80 | ( ( codePoint >> 12 ) & 0x3F ) ) );
+            bytes.append( ( byte ) ( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) ) );
+            bytes.append( ( byte ) ( 0x80 | ( codePoint & 0x3F ) ) );
+        }
+        else
+        {
+            bytes.append( ( byte ) ( 0xE0 | ( c >> 12 ) ) );
+            bytes.append( ( byte ) ( 0x80 | ( ( c >> 6 ) & 0x3F ) ) );
+            bytes.append( ( byte ) ( 0x80 | ( c & 0x3F ) ) );
+        }
+    }
+
+
+    /**
+     * Creates the normalized form of a single AVA RDN
+     */
+    private static String createNormAva( Ava ava )
+    {
+        StringBuilder sbNormName = new StringBuilder();
+        Value value = ava.getValue();
+        sbNormName.append( ava.getNormType() ).append( '=' );
+
+        if ( value.getNormalized() != null )
+        {
+            sbNormName.append( value.getNormalized() );
+        }
+        else
+        {
+            sbNormName.append( value.getUpValue() );
+        }
+
+        return sbNormName.toString();
+    }
+
+
     /**
      * Matches and forgets optional spaces.
      * 
@@ -335,7 +866,7 @@ import org.apache.directory.api.util.Strings;
 
             default:
                 // error
-                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13604_START_AT_EXPECTED, c,
+                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.lazyErr( I18n.ERR_13604_START_AT_EXPECTED, c,
                     pos.start ) );
         }
     }
@@ -347,7 +878,7 @@ import org.apache.directory.api.util.Strings;
      * @param name the name
      * @param pos the pos
      * 
-     * @return the attribute type descr
+     * @return the attribute type descr, or null if we have found a '.'
      * 
      * @throws LdapInvalidDnException the invalid name exception
      */
@@ -435,11 +966,11 @@ import org.apache.directory.api.util.Strings;
 
                 case '.':
                     // occurs for RDNs of form "oid.1.2.3=test"
-                    throw TooComplexDnException.INSTANCE;
+                    return null;
 
                 default:
                     // error
-                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13605_START_AT_DESCR_EXPECTED, c,
+                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.lazyErr( I18n.ERR_13605_START_AT_DESCR_EXPECTED, c,
                         pos.start ) );
             }
         }
@@ -485,7 +1016,7 @@ import org.apache.directory.api.util.Strings;
                             break;
 
                         default:
-                            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err(
+                            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.lazyErr(
                                 I18n.ERR_13606_EXPECTED_NUMERICOID, c, pos.start ) );
                     }
 
@@ -532,7 +1063,7 @@ import org.apache.directory.api.util.Strings;
                                 break;
 
                             default:
-                                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err(
+                                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.lazyErr(
                                     I18n.ERR_13606_EXPECTED_NUMERICOID, c, pos.start ) );
                         }
                     }
@@ -553,7 +1084,7 @@ import org.apache.directory.api.util.Strings;
                     }
 
                 default:
-                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13608_START_AT_NUMERICOID_EXPECTED, c,
+                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.lazyErr( I18n.ERR_13608_START_AT_NUMERICOID_EXPECTED, c,
                         pos.start ) );
             }
         }
@@ -574,7 +1105,7 @@ import org.apache.directory.api.util.Strings;
 
         if ( c != '=' )
         {
-            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13609_EQUAL_EXPECTED, c, pos.start ) );
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.lazyErr( I18n.ERR_13609_EQUAL_EXPECTED, c, pos.start ) );
         }
     }
 
@@ -582,12 +1113,12 @@ import org.apache.directory.api.util.Strings;
     /**
      * Matches the assertion value. This method only handles simple values.
      * If we find any special character (BACKSLASH, PLUS, SHARP or DQUOTE),
-     * a LdapInvalidDnException will be thrown.
+     * null is returned.
      * 
      * @param name the name
      * @param pos the pos
      * 
-     * @return the string
+     * @return the string, or null if the value is not a simple value
      * 
      * @throws LdapInvalidDnException the invalid name exception
      */
@@ -611,7 +1142,7 @@ import org.apache.directory.api.util.Strings;
                 case '+':
                 case '#':
                 case '"':
-                    throw TooComplexDnException.INSTANCE;
+                    return null;
 
                 case ',':
                 case ';':
@@ -643,7 +1174,7 @@ import org.apache.directory.api.util.Strings;
     {
         if ( !hasMoreChars( pos ) )
         {
-            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13610_NO_MORE_CHAR_AVAILABLE, pos.start ) );
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.lazyErr( I18n.ERR_13610_NO_MORE_CHAR_AVAILABLE, pos.start ) );
         }
 
         char c = name[pos.start];
@@ -1707,23 +1707,7 @@ public class Rdn implements Cloneable, Externalizable, Iterable<Ava>, Comparable
      */
     private static void parse( SchemaManager schemaManager, String rdnStr, Rdn rdn ) throws LdapInvalidDnException
     {
-        try
-        {
-            FastDnParser.parseRdn( schemaManager, rdnStr, rdn );
-        }
-        catch ( TooComplexDnException e )
-        {
-            if ( rdn != null )
-            {
-                rdn.clear();
-            }
-            else
-            {
-                rdn = new Rdn();
-            }
-            
-            new ComplexDnParser().parseRdn( schemaManager, rdnStr, rdn );
-        }
+        FastDnParser.parseRdn( schemaManager, rdnStr, rdn );
     }
 
 
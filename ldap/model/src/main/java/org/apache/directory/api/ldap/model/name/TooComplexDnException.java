@@ -27,7 +27,10 @@ import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
  * This exception is used to signal that the complex parser should be used.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ * @deprecated The Dn parser does not fall back on the complex parser through this exception
+ * anymore, it is neither thrown nor caught by the API. It will be removed in a future version.
  */
+@Deprecated
 public class TooComplexDnException extends LdapInvalidDnException
 {
     // The default serial version ID
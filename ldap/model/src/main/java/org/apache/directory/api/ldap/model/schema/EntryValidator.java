@@ -0,0 +1,165 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema;
+
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapSchemaViolationException;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.schema.registries.ObjectClassClosures;
+import org.apache.directory.api.ldap.model.schema.registries.ObjectClassClosures.Closure;
+
+
+/**
+ * Checks that an Entry contains all the AttributeTypes its ObjectClasses require, and only
+ * AttributeTypes they allow. Operational AttributeTypes are always accepted.
+ * <br>
+ * The check uses the precomputed {@link ObjectClassClosures} of the SchemaManager current
+ * Registries, so it costs a few lookups per attribute, whatever the depth of the ObjectClass
+ * hierarchy. This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class EntryValidator
+{
+    /** The SchemaManager */
+    private final SchemaManager schemaManager;
+
+
+    /**
+     * Creates a new EntryValidator instance
+     *
+     * @param schemaManager The SchemaManager to use
+     */
+    public EntryValidator( SchemaManager schemaManager )
+    {
+        this.schemaManager = schemaManager;
+    }
+
+
+    /**
+     * Tells if an entry is valid regarding its ObjectClasses
+     *
+     * @param entry The entry to check
+     * @return <code>true</code> if the entry is valid
+     */
+    public boolean isValid( Entry entry )
+    {
+        return validate( entry ) == null;
+    }
+
+
+    /**
+     * Checks an entry against its ObjectClasses
+     *
+     * @param entry The entry to check
+     * @throws LdapSchemaViolationException If the entry is missing a required AttributeType, or
+     * contains an AttributeType which is not allowed, or is using an unknown ObjectClass or AttributeType
+     */
+    public void check( Entry entry ) throws LdapSchemaViolationException
+    {
+        String error = validate( entry );
+
+        if ( error != null )
+        {
+            throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION, error );
+        }
+    }
+
+
+    /**
+     * Validates the entry.
+     *
+     * @return null if the entry is valid, an error message otherwise
+     */
+    private String validate( Entry entry )
+    {
+        ObjectClassClosures closures = schemaManager.getRegistries().getObjectClassClosures();
+        Attribute objectClass = entry.get( SchemaConstants.OBJECT_CLASS_AT );
+
+        if ( ( objectClass == null ) || ( objectClass.size() == 0 ) )
+        {
+            return I18n.err( I18n.ERR_13870_ENTRY_WITHOUT_OBJECT_CLASS, entry.getDn() );
+        }
+
+        List<String> objectClasses = new ArrayList<>( objectClass.size() );
+
+        for ( Value value : objectClass )
+        {
+            objectClasses.add( value.getString() );
+        }
+
+        Closure closure = closures.getClosure( objectClasses );
+
+        if ( !closure.getUnknownObjectClasses().isEmpty() )
+        {
+            return I18n.err( I18n.ERR_13871_ENTRY_UNKNOWN_OBJECT_CLASS, entry.getDn(),
+                closure.getUnknownObjectClasses().get( 0 ) );
+        }
+
+        BitSet present = new BitSet();
+
+        for ( Attribute attribute : entry )
+        {
+            AttributeType attributeType = attribute.getAttributeType();
+
+            if ( attributeType == null )
+            {
+                attributeType = schemaManager.getAttributeType( attribute.getId() );
+
+                if ( attributeType == null )
+                {
+                    return I18n.err( I18n.ERR_13872_ENTRY_UNKNOWN_ATTRIBUTE_TYPE, entry.getDn(), attribute.getUpId() );
+                }
+            }
+
+            int index = closures.indexOf( attributeType );
+
+            // Some ObjectClasses require operational attributes, like the subentry subtreeSpecification
+            if ( closure.isRequired( index ) )
+            {
+                present.set( index );
+            }
+            else if ( !attributeType.isOperational() && !closure.isAllowed( index ) )
+            {
+                return I18n.err( I18n.ERR_13873_ENTRY_ATTRIBUTE_NOT_ALLOWED, entry.getDn(), attribute.getUpId() );
+            }
+        }
+
+        if ( present.cardinality() < closure.getMustCount() )
+        {
+            BitSet missing = closure.getMusts();
+            missing.andNot( present );
+
+            return I18n.err( I18n.ERR_13874_ENTRY_MISSING_REQUIRED_ATTRIBUTE, entry.getDn(),
+                closures.getAttributeType( missing.nextSetBit( 0 ) ).getName() );
+        }
+
+        return null;
+    }
+}
@@ -54,6 +54,9 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
     /** a map of SchemaObject looked up by name */
     protected Map<String, T> byName;
 
+    /** A read-only copy of the byName map, built when the registry is published */
+    private volatile PerfectHashTable<T> byNameTable;
+
     /** The SchemaObject type, used by the toString() method  */
     protected SchemaObjectType schemaObjectType;
 
@@ -141,6 +144,13 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
     @Override
     public boolean contains( String oid )
     {
+        PerfectHashTable<T> table = byNameTable;
+
+        if ( table != null )
+        {
+            return table.containsKey( oid ) || table.containsKey( Strings.toLowerCaseAscii( oid ) );
+        }
+
         if ( !byName.containsKey( oid ) )
         {
             return byName.containsKey( Strings.toLowerCaseAscii( oid ) );
@@ -150,6 +160,38 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
     }
 
 
+    /**
+     * Gets a SchemaObject by its exact name or OID, using the lookup table if it has been built.
+     *
+     * @param name The name or OID to look for
+     * @return The found SchemaObject, or null
+     */
+    private T getByName( String name )
+    {
+        PerfectHashTable<T> table = byNameTable;
+
+        if ( table != null )
+        {
+            return table.get( name );
+        }
+
+        return byName.get( name );
+    }
+
+
+    /**
+     * Builds a compact, read-only lookup table for the names and OIDs this registry contains.
+     * Lookups will use this table until the registry is modified again. This is meant to be
+     * called once the registry has been fully loaded, and before it gets shared between
+     * threads.
+     */
+    public void buildLookupTable()
+    {
+        byNameTable = PerfectHashTable.build( byName );
+        oidRegistry.buildLookupTable();
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -168,7 +210,7 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
             throw new LdapException( msg );
         }
 
-        SchemaObject schemaObject = byName.get( oid );
+        SchemaObject schemaObject = getByName( oid );
 
         if ( schemaObject != null )
         {
@@ -240,12 +282,12 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
             return null;
         }
 
-        T schemaObject = byName.get( oid );
+        T schemaObject = getByName( oid );
 
         if ( schemaObject == null )
         {
             // let's try with trimming and lowercasing now
-            schemaObject = byName.get( Strings.trim( Strings.toLowerCaseAscii( oid ) ) );
+            schemaObject = getByName( Strings.trim( Strings.toLowerCaseAscii( oid ) ) );
 
             if ( schemaObject == null )
             {
@@ -276,6 +318,7 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
     public void register( T schemaObject ) throws LdapException
     {
         String oid = schemaObject.getOid();
+        byNameTable = null;
 
         if ( byName.containsKey( oid ) )
         {
@@ -345,6 +388,7 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
             throw new LdapException( msg );
         }
 
+        byNameTable = null;
         T schemaObject = byName.remove( numericOid );
 
         for ( String name : schemaObject.getNames() )
@@ -385,6 +429,7 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
         }
 
         // Remove the oid
+        byNameTable = null;
         T removed = byName.remove( oid );
 
         /*
@@ -438,14 +483,14 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
     @Override
 public String getOidByName( String name ) throws LdapException
     {
-        T schemaObject = byName.get( name );
+        T schemaObject = getByName( name );
 
         if ( schemaObject == null )
         {
             // last resort before giving up check with lower cased version
             String lowerCased = Strings.toLowerCaseAscii( name );
 
-            schemaObject = byName.get( lowerCased );
+            schemaObject = getByName( lowerCased );
 
             // ok this name is not for a schema object in the registry
             if ( schemaObject == null )
@@ -469,6 +514,8 @@ public String getOidByName( String name ) throws LdapException
     @SuppressWarnings("unchecked")
     public SchemaObjectRegistry<T> copy( SchemaObjectRegistry<T> original )
     {
+        byNameTable = null;
+
         // Fill the byName and OidRegistry maps, the type has already be copied
         for ( Map.Entry<String, T> entry : ( ( DefaultSchemaObjectRegistry<T> ) original ).byName.entrySet() )
         {
@@ -605,6 +652,7 @@ public String getOidByName( String name ) throws LdapException
         }
 
         // Remove the byName elements
+        byNameTable = null;
         byName.clear();
 
         // Clear the OidRegistry
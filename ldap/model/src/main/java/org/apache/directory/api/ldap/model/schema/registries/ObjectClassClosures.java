@@ -0,0 +1,398 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema.registries;
+
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.ObjectClass;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * The MUST and MAY closures of the ObjectClasses a Registries contains. Every AttributeType
+ * gets a dense index, and the required and allowed AttributeTypes of an ObjectClass, including
+ * the ones inherited from its superiors, are stored as BitSets using those indexes.
+ * <br>
+ * The closures are computed once per Registries instance, and the closures for a set of
+ * ObjectClasses are cached, so that checking an entry against its ObjectClasses does not
+ * require any graph traversal.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ObjectClassClosures
+{
+    /** The maximum number of ObjectClass sets we keep in the cache */
+    private static final int MAX_CACHED_SETS = 4096;
+
+    /** The index of each AttributeType, by OID */
+    private final Map<String, Integer> attributeTypeIndexes = new HashMap<>();
+
+    /** A read-only copy of the indexes map, null if it can't be built */
+    private final PerfectHashTable<Integer> attributeTypeIndexTable;
+
+    /** The indexed AttributeTypes */
+    private final AttributeType[] attributeTypes;
+
+    /** The closure of each ObjectClass, by name and OID */
+    private final Map<String, Closure> byObjectClass = new HashMap<>();
+
+    /** The closures of the ObjectClass sets already computed */
+    private final Map<String, Closure> byObjectClassSet = new ConcurrentHashMap<>();
+
+    /** The AttributeType registry size when the closures were computed */
+    private final int attributeTypeCount;
+
+    /** The ObjectClass registry size when the closures were computed */
+    private final int objectClassCount;
+
+
+    /**
+     * The closure of an ObjectClass, or of a set of ObjectClasses. It is immutable.
+     */
+    public static final class Closure
+    {
+        /** The required AttributeTypes indexes */
+        private final BitSet musts;
+
+        /** The allowed AttributeTypes indexes (MUST and MAY) */
+        private final BitSet allowed;
+
+        /** The number of required AttributeTypes */
+        private final int mustCount;
+
+        /** Set if extensibleObject is part of the ObjectClasses */
+        private final boolean extensible;
+
+        /** The ObjectClass names or OIDs that weren't found in the registries */
+        private final List<String> unknownObjectClasses;
+
+
+        private Closure( BitSet musts, BitSet allowed, boolean extensible, List<String> unknownObjectClasses )
+        {
+            this.musts = musts;
+            this.allowed = allowed;
+            this.mustCount = musts.cardinality();
+            this.extensible = extensible;
+            this.unknownObjectClasses = unknownObjectClasses;
+        }
+
+
+        /**
+         * Tells if an AttributeType is required
+         *
+         * @param index The AttributeType index
+         * @return <code>true</code> if the AttributeType is required
+         */
+        public boolean isRequired( int index )
+        {
+            return ( index >= 0 ) && musts.get( index );
+        }
+
+
+        /**
+         * Tells if an AttributeType is allowed, either because it's required, or
+         * because it's optional, or because the ObjectClasses contain extensibleObject
+         *
+         * @param index The AttributeType index
+         * @return <code>true</code> if the AttributeType is allowed
+         */
+        public boolean isAllowed( int index )
+        {
+            return extensible || ( ( index >= 0 ) && allowed.get( index ) );
+        }
+
+
+        /**
+         * @return The number of required AttributeTypes
+         */
+        public int getMustCount()
+        {
+            return mustCount;
+        }
+
+
+        /**
+         * @return <code>true</code> if the ObjectClasses contain extensibleObject
+         */
+        public boolean isExtensible()
+        {
+            return extensible;
+        }
+
+
+        /**
+         * @return The ObjectClass names or OIDs that weren't found in the registries
+         */
+        public List<String> getUnknownObjectClasses()
+        {
+            return unknownObjectClasses;
+        }
+
+
+        /**
+         * @return A copy of the required AttributeTypes indexes
+         */
+        public BitSet getMusts()
+        {
+            return ( BitSet ) musts.clone();
+        }
+    }
+
+
+    /**
+     * Computes the closures for all the ObjectClasses stored in the given Registries
+     *
+     * @param registries The Registries to process
+     */
+    public ObjectClassClosures( Registries registries )
+    {
+        AttributeTypeRegistry attributeTypeRegistry = registries.getAttributeTypeRegistry();
+        ObjectClassRegistry objectClassRegistry = registries.getObjectClassRegistry();
+        attributeTypeCount = attributeTypeRegistry.size();
+        objectClassCount = objectClassRegistry.size();
+
+        attributeTypes = new AttributeType[attributeTypeCount];
+        int index = 0;
+
+        for ( AttributeType attributeType : attributeTypeRegistry )
+        {
+            attributeTypes[index] = attributeType;
+            attributeTypeIndexes.put( attributeType.getOid(), index );
+            index++;
+        }
+
+        attributeTypeIndexTable = PerfectHashTable.build( attributeTypeIndexes );
+
+        Map<String, Closure> computed = new HashMap<>();
+
+        for ( ObjectClass objectClass : objectClassRegistry )
+        {
+            Closure closure = compute( objectClass, computed, new ArrayList<ObjectClass>() );
+
+            byObjectClass.put( objectClass.getOid(), closure );
+
+            for ( String name : objectClass.getNames() )
+            {
+                byObjectClass.put( Strings.toLowerCaseAscii( Strings.trim( name ) ), closure );
+            }
+        }
+    }
+
+
+    /**
+     * Compute the closure of an ObjectClass, reusing the already computed superiors closures
+     */
+    private Closure compute( ObjectClass objectClass, Map<String, Closure> computed, List<ObjectClass> processing )
+    {
+        Closure closure = computed.get( objectClass.getOid() );
+
+        if ( closure != null )
+        {
+            return closure;
+        }
+
+        BitSet musts = new BitSet( attributeTypes.length );
+        BitSet allowed = new BitSet( attributeTypes.length );
+        boolean extensible = SchemaConstants.EXTENSIBLE_OBJECT_OC_OID.equals( objectClass.getOid() );
+
+        for ( AttributeType must : objectClass.getMustAttributeTypes() )
+        {
+            int index = indexOf( must );
+
+            if ( index >= 0 )
+            {
+                musts.set( index );
+                allowed.set( index );
+            }
+        }
+
+        for ( AttributeType may : objectClass.getMayAttributeTypes() )
+        {
+            int index = indexOf( may );
+
+            if ( index >= 0 )
+            {
+                allowed.set( index );
+            }
+        }
+
+        // The registries checks prevent cycles, but we may be dealing with relaxed registries
+        processing.add( objectClass );
+
+        for ( ObjectClass superior : objectClass.getSuperiors() )
+        {
+            if ( !processing.contains( superior ) )
+            {
+                Closure superiorClosure = compute( superior, computed, processing );
+                musts.or( superiorClosure.musts );
+                allowed.or( superiorClosure.allowed );
+                extensible |= superiorClosure.extensible;
+            }
+        }
+
+        processing.remove( processing.size() - 1 );
+
+        closure = new Closure( musts, allowed, extensible, new ArrayList<String>() );
+        computed.put( objectClass.getOid(), closure );
+
+        return closure;
+    }
+
+
+    /**
+     * Gets the index of an AttributeType
+     *
+     * @param attributeType The AttributeType
+     * @return The AttributeType index, or -1 if it's not part of the registries
+     */
+    public int indexOf( AttributeType attributeType )
+    {
+        if ( attributeType == null )
+        {
+            return -1;
+        }
+
+        Integer index;
+
+        if ( attributeTypeIndexTable != null )
+        {
+            index = attributeTypeIndexTable.get( attributeType.getOid() );
+        }
+        else
+        {
+            index = attributeTypeIndexes.get( attributeType.getOid() );
+        }
+
+        return index == null ? -1 : index;
+    }
+
+
+    /**
+     * Gets the AttributeType stored at a given index
+     *
+     * @param index The index
+     * @return The AttributeType
+     */
+    public AttributeType getAttributeType( int index )
+    {
+        return attributeTypes[index];
+    }
+
+
+    /**
+     * Gets the closure of a single ObjectClass
+     *
+     * @param objectClass The ObjectClass name or OID
+     * @return The ObjectClass closure, or null if the ObjectClass is unknown
+     */
+    public Closure getClosure( String objectClass )
+    {
+        if ( objectClass == null )
+        {
+            return null;
+        }
+
+        Closure closure = byObjectClass.get( objectClass );
+
+        if ( closure == null )
+        {
+            closure = byObjectClass.get( Strings.toLowerCaseAscii( Strings.trim( objectClass ) ) );
+        }
+
+        return closure;
+    }
+
+
+    /**
+     * Gets the closure for a set of ObjectClasses, which is the union of all the ObjectClasses
+     * closures. Unknown ObjectClasses are listed in the resulting closure.
+     *
+     * @param objectClasses The ObjectClasses names or OIDs
+     * @return The closure
+     */
+    public Closure getClosure( Iterable<String> objectClasses )
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for ( String objectClass : objectClasses )
+        {
+            sb.append( objectClass ).append( '$' );
+        }
+
+        String key = sb.toString();
+        Closure closure = byObjectClassSet.get( key );
+
+        if ( closure != null )
+        {
+            return closure;
+        }
+
+        BitSet musts = new BitSet( attributeTypes.length );
+        BitSet allowed = new BitSet( attributeTypes.length );
+        boolean extensible = false;
+        List<String> unknown = new ArrayList<>();
+
+        for ( String objectClass : objectClasses )
+        {
+            Closure ocClosure = getClosure( objectClass );
+
+            if ( ocClosure == null )
+            {
+                unknown.add( objectClass );
+            }
+            else
+            {
+                musts.or( ocClosure.musts );
+                allowed.or( ocClosure.allowed );
+                extensible |= ocClosure.extensible;
+            }
+        }
+
+        closure = new Closure( musts, allowed, extensible, unknown );
+
+        if ( byObjectClassSet.size() < MAX_CACHED_SETS )
+        {
+            byObjectClassSet.put( key, closure );
+        }
+
+        return closure;
+    }
+
+
+    /**
+     * Tells if those closures still reflect the registries content.
+     *
+     * @param registries The Registries
+     * @return <code>true</code> if the AttributeType and ObjectClass registries have not changed size
+     */
+    /* No qualifier */boolean isUpToDate( Registries registries )
+    {
+        return ( attributeTypeCount == registries.getAttributeTypeRegistry().size() )
+            && ( objectClassCount == registries.getObjectClassRegistry().size() );
+    }
+}
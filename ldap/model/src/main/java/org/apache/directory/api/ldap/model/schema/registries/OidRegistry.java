@@ -52,6 +52,9 @@ public class OidRegistry<T extends SchemaObject> implements Iterable<T>
     /** Maps OID to a type of SchemaObject */
     private Map<String, T> byOid = new HashMap<>();
 
+    /** A read-only copy of the byOid map, built when the registry is published */
+    private volatile PerfectHashTable<T> byOidTable;
+
     /** A flag indicating that the Registry is relaxed or not */
     private boolean isRelaxed = Registries.STRICT;
 
@@ -65,10 +68,46 @@ public class OidRegistry<T extends SchemaObject> implements Iterable<T>
      */
     public boolean contains( String oid )
     {
+        PerfectHashTable<T> table = byOidTable;
+
+        if ( table != null )
+        {
+            return table.containsKey( oid );
+        }
+
         return byOid.containsKey( oid );
     }
 
 
+    /**
+     * Gets a SchemaObject by its OID, using the lookup table if it has been built.
+     *
+     * @param oid The OID to look for
+     * @return The found SchemaObject, or null
+     */
+    private T get( String oid )
+    {
+        PerfectHashTable<T> table = byOidTable;
+
+        if ( table != null )
+        {
+            return table.get( oid );
+        }
+
+        return byOid.get( oid );
+    }
+
+
+    /**
+     * Builds a compact, read-only lookup table for the OIDs this registry contains.
+     * Lookups will use this table until the registry is modified again.
+     */
+    public void buildLookupTable()
+    {
+        byOidTable = PerfectHashTable.build( byOid );
+    }
+
+
     /**
      * Gets the primary name associated with an OID.  The primary name is the
      * first name specified for the OID.
@@ -79,7 +118,7 @@ public class OidRegistry<T extends SchemaObject> implements Iterable<T>
      */
     public String getPrimaryName( String oid ) throws LdapException
     {
-        SchemaObject schemaObject = byOid.get( oid );
+        SchemaObject schemaObject = get( oid );
 
         if ( schemaObject != null )
         {
@@ -104,7 +143,7 @@ public class OidRegistry<T extends SchemaObject> implements Iterable<T>
      */
     public T getSchemaObject( String oid ) throws LdapException
     {
-        T schemaObject = byOid.get( oid );
+        T schemaObject = get( oid );
 
         if ( schemaObject != null )
         {
@@ -134,7 +173,7 @@ public class OidRegistry<T extends SchemaObject> implements Iterable<T>
      */
     public List<String> getNameSet( String oid ) throws LdapException
     {
-        SchemaObject schemaObject = byOid.get( oid );
+        SchemaObject schemaObject = get( oid );
 
         if ( null == schemaObject )
         {
@@ -286,6 +325,7 @@ public class OidRegistry<T extends SchemaObject> implements Iterable<T>
         }
         else
         {
+            byOidTable = null;
             byOid.put( oid, schemaObject );
 
             if ( LOG.isDebugEnabled() )
@@ -305,6 +345,7 @@ public class OidRegistry<T extends SchemaObject> implements Iterable<T>
      */
     /* No qualifier */void put( T schemaObject )
     {
+        byOidTable = null;
         byOid.put( schemaObject.getOid(), schemaObject );
     }
 
@@ -318,6 +359,7 @@ public class OidRegistry<T extends SchemaObject> implements Iterable<T>
     public void unregister( String oid ) throws LdapException
     {
         // Removes the <OID, names> from the byOID map
+        byOidTable = null;
         SchemaObject removed = byOid.remove( oid );
 
         if ( LOG.isDebugEnabled() )
@@ -358,6 +400,7 @@ public class OidRegistry<T extends SchemaObject> implements Iterable<T>
     public void clear()
     {
         // remove all the OID
+        byOidTable = null;
         byOid.clear();
     }
 
@@ -0,0 +1,330 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema.registries;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * An immutable String to value lookup table, built once from a Map using a
+ * hash-and-displace perfect hash function : every key is stored in its own slot,
+ * and a lookup mixes the key's cached {@link String#hashCode()} twice, then does
+ * a single key comparison, with no collision chain to walk. The key characters are
+ * never scanned again once the String hash code has been computed.
+ * <br>
+ * Keys sharing the same hash code can't be told apart by the hash function : only
+ * one of them gets a slot, the others are kept in a small overflow Map which is
+ * only checked when the slot does not contain the searched key.
+ * <br>
+ * The table is safe to share between threads once built, as it is never modified.
+ *
+ * @param <V> The type of stored values
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class PerfectHashTable<V>
+{
+    /** The maximum number of seeds we try for a bucket before giving up */
+    private static final int MAX_ATTEMPTS = 1 << 16;
+
+    /** The empty table */
+    private static final PerfectHashTable<Object> EMPTY = new PerfectHashTable<>( new int[0], new String[0],
+        new Object[0], Collections.emptyMap() );
+
+    /** The displacement seed for each bucket */
+    private final int[] seeds;
+
+    /** The keys, one per slot */
+    private final String[] keys;
+
+    /** The values, stored at the same position than their key */
+    private final Object[] values;
+
+    /** The keys having the same hash code than a key stored in the table */
+    private final Map<String, Object> overflow;
+
+    /** The number of stored keys */
+    private final int size;
+
+
+    private PerfectHashTable( int[] seeds, String[] keys, Object[] values, Map<String, Object> overflow )
+    {
+        this.seeds = seeds;
+        this.keys = keys;
+        this.values = values;
+        this.overflow = overflow;
+
+        int count = overflow.size();
+
+        for ( String key : keys )
+        {
+            if ( key != null )
+            {
+                count++;
+            }
+        }
+
+        size = count;
+    }
+
+
+    /**
+     * Builds a table containing all the given Map elements. The Map must not
+     * contain any null key.
+     *
+     * @param map The Map to copy
+     * @return The built table, or null if we weren't able to find a perfect hash
+     * function for the given keys
+     * @param <V> The type of stored values
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PerfectHashTable<V> build( Map<String, V> map )
+    {
+        int nbKeys = map.size();
+
+        if ( nbKeys == 0 )
+        {
+            return ( PerfectHashTable<V> ) EMPTY;
+        }
+
+        // Only one key per hash code can be stored in the table
+        List<String> allKeys = new ArrayList<>( nbKeys );
+        Set<Integer> keyHashes = new HashSet<>( nbKeys * 2 );
+        Map<String, Object> overflow = new HashMap<>();
+
+        for ( Map.Entry<String, V> entry : map.entrySet() )
+        {
+            if ( keyHashes.add( entry.getKey().hashCode() ) )
+            {
+                allKeys.add( entry.getKey() );
+            }
+            else
+            {
+                overflow.put( entry.getKey(), entry.getValue() );
+            }
+        }
+
+        nbKeys = allKeys.size();
+
+        // Roughly two keys per bucket, and a 80% filled table
+        int nbBuckets = ( nbKeys >> 1 ) + 1;
+        int tableSize = nbKeys + ( nbKeys >> 2 ) + 1;
+
+        List<List<String>> buckets = new ArrayList<>( nbBuckets );
+
+        for ( int i = 0; i < nbBuckets; i++ )
+        {
+            buckets.add( new ArrayList<>( 2 ) );
+        }
+
+        for ( String key : allKeys )
+        {
+            buckets.get( index( hash( key.hashCode(), 0 ), nbBuckets ) ).add( key );
+        }
+
+        // Process the biggest buckets first, while the table is still mostly empty
+        Integer[] order = new Integer[nbBuckets];
+
+        for ( int i = 0; i < nbBuckets; i++ )
+        {
+            order[i] = i;
+        }
+
+        Arrays.sort( order, ( b1, b2 ) -> buckets.get( b2 ).size() - buckets.get( b1 ).size() );
+
+        int[] seeds = new int[nbBuckets];
+        String[] keys = new String[tableSize];
+        Object[] values = new Object[tableSize];
+        int[] slots = new int[nbKeys];
+
+        for ( int bucketIndex : order )
+        {
+            List<String> bucket = buckets.get( bucketIndex );
+
+            if ( bucket.isEmpty() )
+            {
+                break;
+            }
+
+            int seed = findSeed( bucket, keys, slots );
+
+            if ( seed == 0 )
+            {
+                return null;
+            }
+
+            seeds[bucketIndex] = seed;
+
+            for ( int i = 0; i < bucket.size(); i++ )
+            {
+                String key = bucket.get( i );
+                keys[slots[i]] = key;
+                values[slots[i]] = map.get( key );
+            }
+        }
+
+        if ( overflow.isEmpty() )
+        {
+            overflow = Collections.emptyMap();
+        }
+
+        return new PerfectHashTable<>( seeds, keys, values, overflow );
+    }
+
+
+    /**
+     * Search for a seed that sends all the bucket's keys into free and distinct slots.
+     * The selected slots are stored into the given array.
+     *
+     * @return The seed, or 0 if none was found
+     */
+    private static int findSeed( List<String> bucket, String[] keys, int[] slots )
+    {
+        int tableSize = keys.length;
+
+        for ( int seed = 1; seed < MAX_ATTEMPTS; seed++ )
+        {
+            boolean found = true;
+
+            for ( int i = 0; i < bucket.size(); i++ )
+            {
+                int slot = index( hash( bucket.get( i ).hashCode(), seed ), tableSize );
+
+                if ( keys[slot] != null )
+                {
+                    found = false;
+                    break;
+                }
+
+                for ( int j = 0; j < i; j++ )
+                {
+                    if ( slots[j] == slot )
+                    {
+                        found = false;
+                        break;
+                    }
+                }
+
+                if ( !found )
+                {
+                    break;
+                }
+
+                slots[i] = slot;
+            }
+
+            if ( found )
+            {
+                return seed;
+            }
+        }
+
+        return 0;
+    }
+
+
+    /**
+     * Mixes a String hash code with a seed, using the Murmur3 finalization step
+     */
+    private static int hash( int keyHash, int seed )
+    {
+        int hash = keyHash ^ ( seed * 0x9E3779B9 );
+
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+
+        return hash;
+    }
+
+
+    private static int index( int hash, int length )
+    {
+        return ( hash & 0x7FFFFFFF ) % length;
+    }
+
+
+    /**
+     * Gets the value associated with a key
+     *
+     * @param key The key to look for
+     * @return The associated value, or null if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get( String key )
+    {
+        if ( ( key == null ) || ( size == 0 ) )
+        {
+            return null;
+        }
+
+        int keyHash = key.hashCode();
+        int seed = seeds[index( hash( keyHash, 0 ), seeds.length )];
+
+        if ( seed == 0 )
+        {
+            return null;
+        }
+
+        int slot = index( hash( keyHash, seed ), keys.length );
+
+        if ( key.equals( keys[slot] ) )
+        {
+            return ( V ) values[slot];
+        }
+
+        if ( overflow.isEmpty() )
+        {
+            return null;
+        }
+
+        return ( V ) overflow.get( key );
+    }
+
+
+    /**
+     * Tells if the table contains a key
+     *
+     * @param key The key to look for
+     * @return <code>true</code> if the key is present
+     */
+    public boolean containsKey( String key )
+    {
+        return get( key ) != null;
+    }
+
+
+    /**
+     * @return The number of stored keys
+     */
+    public int size()
+    {
+        return size;
+    }
+}
@@ -123,6 +123,9 @@ public class Registries implements SchemaLoaderListener, Cloneable
     /** A flag indicating that the Registries is relaxed or not */
     private boolean isRelaxed;
 
+    /** The ObjectClasses MUST and MAY closures, computed on demand */
+    private volatile ObjectClassClosures objectClassClosures;
+
     /** A flag indicating that disabled SchemaObject are accepted */
     private boolean disabledAccepted;
 
@@ -875,6 +878,8 @@ public class Registries implements SchemaLoaderListener, Cloneable
      */
     public void buildReferences()
     {
+        objectClassClosures = null;
+
         // The Comparator references
         buildComparatorReferences();
 
@@ -1522,6 +1527,8 @@ public class Registries implements SchemaLoaderListener, Cloneable
      */
     private void register( SchemaObject schemaObject ) throws LdapException
     {
+        objectClassClosures = null;
+
         if ( LOG.isDebugEnabled() )
         {
             LOG.debug( I18n.msg( I18n.MSG_13720_REGISTRING, schemaObject.getObjectType(), schemaObject.getOid() ) );
@@ -1751,6 +1758,8 @@ public class Registries implements SchemaLoaderListener, Cloneable
      */
     private SchemaObject unregister( SchemaObject schemaObject ) throws LdapException
     {
+        objectClassClosures = null;
+
         if ( LOG.isDebugEnabled() )
         {
             LOG.debug( I18n.msg( I18n.MSG_13741_UNREGISTRING, schemaObject.getObjectType(), schemaObject.getOid() ) );
@@ -2578,6 +2587,7 @@ public class Registries implements SchemaLoaderListener, Cloneable
     {
         // First clone the structure
         Registries clone = ( Registries ) super.clone();
+        clone.objectClassClosures = null;
 
         // Now, clone the oidRegistry
         clone.globalOidRegistry = globalOidRegistry.copy();
@@ -2696,6 +2706,49 @@ public class Registries implements SchemaLoaderListener, Cloneable
     }
 
 
+    /**
+     * Gets the MUST and MAY closures of the ObjectClasses stored in those Registries. They
+     * are computed once, and recomputed only if the Registries are modified.
+     *
+     * @return The ObjectClasses closures
+     */
+    public ObjectClassClosures getObjectClassClosures()
+    {
+        ObjectClassClosures closures = objectClassClosures;
+
+        if ( ( closures == null ) || !closures.isUpToDate( this ) )
+        {
+            closures = new ObjectClassClosures( this );
+            objectClassClosures = closures;
+        }
+
+        return closures;
+    }
+
+
+    /**
+     * Builds the read-only lookup tables of all the registries. Lookups by name or OID
+     * will use those tables until a registry gets modified. A Registries instance is
+     * expected to be left untouched after this call, so that it can be shared by
+     * concurrent readers without any locking.
+     */
+    public void buildLookupTables()
+    {
+        globalOidRegistry.buildLookupTable();
+        attributeTypeRegistry.buildLookupTable();
+        comparatorRegistry.buildLookupTable();
+        ditContentRuleRegistry.buildLookupTable();
+        ditStructureRuleRegistry.buildLookupTable();
+        ldapSyntaxRegistry.buildLookupTable();
+        matchingRuleRegistry.buildLookupTable();
+        matchingRuleUseRegistry.buildLookupTable();
+        nameFormRegistry.buildLookupTable();
+        normalizerRegistry.buildLookupTable();
+        objectClassRegistry.buildLookupTable();
+        syntaxCheckerRegistry.buildLookupTable();
+    }
+
+
     /**
      * Tells if the Registries is permissive or if it must be checked
      * against inconsistencies.
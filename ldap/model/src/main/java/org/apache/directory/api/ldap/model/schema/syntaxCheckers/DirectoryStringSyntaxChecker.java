@@ -138,17 +138,14 @@ public final class DirectoryStringSyntaxChecker extends SyntaxChecker
 
         // In any other case, we have to check that the
         // string does not contains the '0xFFFD' character
-        for ( char c : strValue.toCharArray() )
+        if ( strValue.indexOf( 0xFFFD ) >= 0 )
         {
-            if ( c == 0xFFFD )
+            if ( LOG.isDebugEnabled() )
             {
-                if ( LOG.isDebugEnabled() )
-                {
-                    LOG.debug( I18n.err( I18n.ERR_13210_SYNTAX_INVALID, value ) );
-                }
-                
-                return false;
+                LOG.debug( I18n.err( I18n.ERR_13210_SYNTAX_INVALID, value ) );
             }
+            
+            return false;
         }
 
         if ( LOG.isDebugEnabled() )
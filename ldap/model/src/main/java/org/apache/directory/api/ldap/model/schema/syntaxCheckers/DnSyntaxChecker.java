@@ -25,6 +25,7 @@ import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.api.ldap.model.name.Rdn;
 import org.apache.directory.api.ldap.model.schema.SyntaxChecker;
+import org.apache.directory.api.util.Chars;
 import org.apache.directory.api.util.Strings;
 
 
@@ -88,6 +89,101 @@ public final class DnSyntaxChecker extends SyntaxChecker
     }
 
 
+    /**
+     * Tells if a String is a simple Dn, like <code>uid=jdoe,ou=people,dc=example,dc=com</code> : a
+     * list of single valued RDNs separated by commas, with a descr attribute type, and a non empty
+     * value made of printable ASCII chars which don't need to be escaped, without leading or trailing
+     * spaces. Such a Dn is always valid. When this method returns <code>false</code>, the Dn may
+     * still be valid, and must be parsed.
+     *
+     * @param value The value to check
+     * @return <code>true</code> if the value is a simple, valid Dn
+     */
+    private static boolean isSimpleDn( String value )
+    {
+        int length = value.length();
+        int pos = 0;
+
+        while ( true )
+        {
+            // The attribute type : ALPHA *( ALPHA / DIGIT / '-' )
+            if ( ( pos == length ) || !Chars.isAlphaASCII( value, pos ) )
+            {
+                return false;
+            }
+
+            pos++;
+
+            while ( ( pos < length ) && Chars.isAlphaDigitMinus( value.charAt( pos ) ) )
+            {
+                pos++;
+            }
+
+            if ( ( pos == length ) || ( value.charAt( pos ) != '=' ) )
+            {
+                return false;
+            }
+
+            pos++;
+
+            // The value, which can't start or end with a space
+            int start = pos;
+
+            while ( ( pos < length ) && isSimpleValueChar( value.charAt( pos ) ) )
+            {
+                pos++;
+            }
+
+            if ( ( pos == start ) || ( value.charAt( start ) == ' ' ) || ( value.charAt( pos - 1 ) == ' ' ) )
+            {
+                return false;
+            }
+
+            if ( pos == length )
+            {
+                return true;
+            }
+
+            if ( value.charAt( pos ) != ',' )
+            {
+                return false;
+            }
+
+            pos++;
+        }
+    }
+
+
+    /**
+     * @param c The char to check
+     * @return <code>true</code> if the char is a printable ASCII char which has no special meaning in a Dn
+     */
+    private static boolean isSimpleValueChar( char c )
+    {
+        if ( ( c < ' ' ) || ( c > '~' ) )
+        {
+            return false;
+        }
+
+        switch ( c )
+        {
+            case '"':
+            case '#':
+            case '+':
+            case ',':
+            case ';':
+            case '<':
+            case '=':
+            case '>':
+            case '\\':
+                return false;
+
+            default:
+                return true;
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -132,8 +228,9 @@ public final class DnSyntaxChecker extends SyntaxChecker
             return true;
         }
 
-        // Check that the value is a valid Dn
-        boolean result = Dn.isValid( strValue );
+        // Check that the value is a valid Dn. The common simple DNs are checked
+        // without creating any Rdn, the others are parsed.
+        boolean result = isSimpleDn( strValue ) || Dn.isValid( strValue );
 
         if ( LOG.isDebugEnabled() )
         {
@@ -20,8 +20,6 @@
 package org.apache.directory.api.ldap.model.schema.syntaxCheckers;
 
 
-import java.util.regex.Pattern;
-
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.schema.SyntaxChecker;
@@ -70,30 +68,6 @@ import org.apache.directory.api.util.Strings;
 @SuppressWarnings("serial")
 public final class GeneralizedTimeSyntaxChecker extends SyntaxChecker
 {
-    /** The GeneralizedDate pattern matching */
-    private static final String GENERALIZED_TIME_PATTERN =
-        // century + year : 0000 to 9999
-        "^\\d{4}"
-            // month : 01 to 12
-            + "(0[1-9]|1[0-2])"
-            // day : 01 to 31
-            + "(0[1-9]|[12]\\d|3[01])"
-            // hour : 00 to 23
-            + "([01]\\d|2[0-3])"
-            + "("
-            // optional minute : 00 to 59
-            + "([0-5]\\d)"
-            // optional second | leap second
-            + "([0-5]\\d|60)?"
-            + ")?"
-            // fraction
-            + "([.,]\\d+)?"
-            // time-zone
-            + "(Z|[+-]([01]\\d|2[0-3])([0-5]\\d)?)$";
-
-    /** The date pattern. The regexp pattern is immutable, only one instance needed. */
-    private static final Pattern DATE_PATTERN = Pattern.compile( GENERALIZED_TIME_PATTERN );
-    
     /**
      * A static instance of GeneralizedTimeSyntaxChecker
      */
@@ -146,6 +120,167 @@ public final class GeneralizedTimeSyntaxChecker extends SyntaxChecker
     }
 
 
+    /**
+     * @param value The value to check
+     * @param pos The position of the char to check
+     * @return <code>true</code> if the char at the given position is a digit
+     */
+    private static boolean isDigit( String value, int pos )
+    {
+        char c = value.charAt( pos );
+
+        return ( c >= '0' ) && ( c <= '9' );
+    }
+
+
+    /**
+     * @param value The value to check
+     * @param pos The position of the first digit
+     * @return The value of the two digits at the given position, or -1 if they are not digits
+     */
+    private static int twoDigits( String value, int pos )
+    {
+        if ( ( pos + 1 >= value.length() ) || !isDigit( value, pos ) || !isDigit( value, pos + 1 ) )
+        {
+            return -1;
+        }
+
+        return ( value.charAt( pos ) - '0' ) * 10 + ( value.charAt( pos + 1 ) - '0' );
+    }
+
+
+    /**
+     * Checks a generalized time, without using a regexp :
+     * <pre>
+     * [0-9]{4} (0[1-9]|1[0-2]) (0[1-9]|[12][0-9]|3[01]) ([01][0-9]|2[0-3])
+     * ( [0-5][0-9] ( [0-5][0-9] | 60 )? )?
+     * ( [.,][0-9]+ )?
+     * ( Z | [+-] ( [01][0-9] | 2[0-3] ) ( [0-5][0-9] )? )
+     * </pre>
+     *
+     * @param value The value to check, at least 11 chars long
+     * @return <code>true</code> if the value is a valid generalized time
+     */
+    private static boolean isGeneralizedTime( String value )
+    {
+        int length = value.length();
+
+        // century + year : 0000 to 9999
+        if ( !isDigit( value, 0 ) || !isDigit( value, 1 ) || !isDigit( value, 2 ) || !isDigit( value, 3 ) )
+        {
+            return false;
+        }
+
+        // month : 01 to 12
+        int month = twoDigits( value, 4 );
+
+        if ( ( month < 1 ) || ( month > 12 ) )
+        {
+            return false;
+        }
+
+        // day : 01 to 31
+        int day = twoDigits( value, 6 );
+
+        if ( ( day < 1 ) || ( day > 31 ) )
+        {
+            return false;
+        }
+
+        // hour : 00 to 23
+        int hour = twoDigits( value, 8 );
+
+        if ( ( hour < 0 ) || ( hour > 23 ) )
+        {
+            return false;
+        }
+
+        int pos = 10;
+
+        // optional minute : 00 to 59
+        if ( isDigit( value, pos ) )
+        {
+            int minute = twoDigits( value, pos );
+
+            if ( ( minute < 0 ) || ( minute > 59 ) )
+            {
+                return false;
+            }
+
+            pos += 2;
+
+            // optional second | leap second
+            if ( ( pos < length ) && isDigit( value, pos ) )
+            {
+                int second = twoDigits( value, pos );
+
+                if ( ( second < 0 ) || ( second > 60 ) )
+                {
+                    return false;
+                }
+
+                pos += 2;
+            }
+        }
+
+        if ( pos == length )
+        {
+            // The time-zone is mandatory
+            return false;
+        }
+
+        // fraction
+        char c = value.charAt( pos );
+
+        if ( ( c == '.' ) || ( c == ',' ) )
+        {
+            pos++;
+            int start = pos;
+
+            while ( ( pos < length ) && isDigit( value, pos ) )
+            {
+                pos++;
+            }
+
+            if ( ( pos == start ) || ( pos == length ) )
+            {
+                return false;
+            }
+
+            c = value.charAt( pos );
+        }
+
+        // time-zone
+        if ( c == 'Z' )
+        {
+            return pos + 1 == length;
+        }
+
+        if ( ( c != '+' ) && ( c != '-' ) )
+        {
+            return false;
+        }
+
+        int tzHour = twoDigits( value, pos + 1 );
+
+        if ( ( tzHour < 0 ) || ( tzHour > 23 ) )
+        {
+            return false;
+        }
+
+        pos += 3;
+
+        if ( pos == length )
+        {
+            return true;
+        }
+
+        int tzMinute = twoDigits( value, pos );
+
+        return ( tzMinute >= 0 ) && ( tzMinute <= 59 ) && ( pos + 2 == length );
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -189,7 +324,7 @@ public final class GeneralizedTimeSyntaxChecker extends SyntaxChecker
         }
 
         // Start the date parsing
-        boolean result = DATE_PATTERN.matcher( strValue ).find();
+        boolean result = isGeneralizedTime( strValue );
 
         if ( LOG.isDebugEnabled() )
         {
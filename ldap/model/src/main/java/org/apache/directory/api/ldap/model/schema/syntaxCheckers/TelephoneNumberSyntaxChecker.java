@@ -56,6 +56,9 @@ public final class TelephoneNumberSyntaxChecker extends SyntaxChecker
     /** The compiled default pattern */
     private final Pattern defaultPattern;
 
+    /** Tells if the default regexp is used, in which case we don't need the Pattern */
+    private final boolean isDefaultRegexp;
+
     /**
      * A static instance of TelephoneNumberSyntaxChecker
      */
@@ -143,6 +146,7 @@ public final class TelephoneNumberSyntaxChecker extends SyntaxChecker
         
         this.defaultPattern = defaultPattern;
         this.defaultRegexp = defaultRegexp;
+        isDefaultRegexp = DEFAULT_REGEXP.equals( defaultPattern.pattern() );
     }
 
     
@@ -166,6 +170,92 @@ public final class TelephoneNumberSyntaxChecker extends SyntaxChecker
     }
 
 
+    /**
+     * Tells if a String is a TelephoneNumber, according to the default regexp. An optional
+     * '+' preceded by spaces is followed by a non empty sequence of characters in
+     * [0-9- ,;/#*] and of non empty groups of such characters between parenthesis.
+     *
+     * @param value The String to check
+     * @return <code>true</code> if the value matches the default regexp
+     */
+    private static boolean isTelephoneNumber( String value )
+    {
+        int length = value.length();
+        int pos = 0;
+
+        while ( ( pos < length ) && ( value.charAt( pos ) == ' ' ) )
+        {
+            pos++;
+        }
+
+        if ( ( pos < length ) && ( value.charAt( pos ) == '+' ) )
+        {
+            pos++;
+        }
+        else
+        {
+            // The leading spaces are part of the number
+            pos = 0;
+        }
+
+        if ( pos == length )
+        {
+            return false;
+        }
+
+        while ( pos < length )
+        {
+            char c = value.charAt( pos++ );
+
+            if ( c == '(' )
+            {
+                int start = pos;
+
+                while ( ( pos < length ) && isTelephoneChar( value.charAt( pos ) ) )
+                {
+                    pos++;
+                }
+
+                if ( ( pos == start ) || ( pos == length ) || ( value.charAt( pos ) != ')' ) )
+                {
+                    return false;
+                }
+
+                pos++;
+            }
+            else if ( !isTelephoneChar( c ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * @param c The char to check
+     * @return <code>true</code> if the char is in [0-9- ,;/#*]
+     */
+    private static boolean isTelephoneChar( char c )
+    {
+        switch ( c )
+        {
+            case '-':
+            case ' ':
+            case ',':
+            case ';':
+            case '/':
+            case '#':
+            case '*':
+                return true;
+
+            default:
+                return ( c >= '0' ) && ( c <= '9' );
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -207,12 +297,16 @@ public final class TelephoneNumberSyntaxChecker extends SyntaxChecker
             return false;
         }
 
-        // We will use a regexp to check the TelephoneNumber.
         boolean result;
-        
-        // Not sure this is 100% necessary...
-        synchronized ( defaultPattern )
+
+        if ( isDefaultRegexp )
+        {
+            // The default syntax is checked by hand, it's way faster than the regexp
+            result = isTelephoneNumber( strValue );
+        }
+        else
         {
+            // A Pattern is thread safe, each Matcher is used by one single thread
             result = defaultPattern.matcher( strValue ).matches();
         }
 
@@ -0,0 +1,337 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.model.subtree;
+
+
+import java.util.BitSet;
+
+import org.apache.directory.api.ldap.model.name.Dn;
+
+
+/**
+ * A {@link SubtreeSpecification} compiled by a {@link SubtreeEvaluator}, to quickly check
+ * if entries belong to the specified subtree : the base and the chop exclusions are made
+ * absolute, and the refinement is compiled to operations on the bitset of the entry
+ * objectClasses.
+ * <br>
+ * A compiled subtree specification is immutable, and can be shared by many threads.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CompiledSubtreeSpecification
+{
+    /** The compiled subtree specification */
+    private final SubtreeSpecification subtreeSpecification;
+
+    /** The absolute base */
+    private final Dn base;
+
+    /** The absolute chopBefore exclusions */
+    private final Dn[] chopBefore;
+
+    /** The absolute chopAfter exclusions */
+    private final Dn[] chopAfter;
+
+    /** The compiled refinement, null if there is none */
+    private final CompiledRefinement refinement;
+
+
+    /**
+     * A refinement, compiled to bit operations on the entry objectClasses
+     */
+    abstract static class CompiledRefinement
+    {
+        /**
+         * Tells if an entry matches the refinement
+         *
+         * @param objectClasses The entry objectClasses bitset
+         * @return <code>true</code> if the entry matches
+         */
+        abstract boolean matches( BitSet objectClasses );
+    }
+
+
+    /**
+     * An <em>item</em> refinement
+     */
+    static final class ItemRefinement extends CompiledRefinement
+    {
+        /** The objectClass bit */
+        private final int bit;
+
+
+        ItemRefinement( int bit )
+        {
+            this.bit = bit;
+        }
+
+
+        int getBit()
+        {
+            return bit;
+        }
+
+
+        @Override
+        boolean matches( BitSet objectClasses )
+        {
+            return objectClasses.get( bit );
+        }
+    }
+
+
+    /**
+     * An <em>or</em> refinement of items only : a single mask
+     */
+    static final class AnyOfRefinement extends CompiledRefinement
+    {
+        /** The objectClasses bits */
+        private final BitSet mask;
+
+
+        AnyOfRefinement( BitSet mask )
+        {
+            this.mask = mask;
+        }
+
+
+        @Override
+        boolean matches( BitSet objectClasses )
+        {
+            return mask.intersects( objectClasses );
+        }
+    }
+
+
+    /**
+     * An <em>and</em> refinement
+     */
+    static final class AndRefinement extends CompiledRefinement
+    {
+        /** The children */
+        private final CompiledRefinement[] children;
+
+
+        AndRefinement( CompiledRefinement[] children )
+        {
+            this.children = children;
+        }
+
+
+        @Override
+        boolean matches( BitSet objectClasses )
+        {
+            for ( CompiledRefinement child : children )
+            {
+                if ( !child.matches( objectClasses ) )
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+
+    /**
+     * An <em>or</em> refinement
+     */
+    static final class OrRefinement extends CompiledRefinement
+    {
+        /** The children */
+        private final CompiledRefinement[] children;
+
+
+        OrRefinement( CompiledRefinement[] children )
+        {
+            this.children = children;
+        }
+
+
+        @Override
+        boolean matches( BitSet objectClasses )
+        {
+            for ( CompiledRefinement child : children )
+            {
+                if ( child.matches( objectClasses ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+
+    /**
+     * A <em>not</em> refinement
+     */
+    static final class NotRefinement extends CompiledRefinement
+    {
+        /** The negated refinement */
+        private final CompiledRefinement child;
+
+
+        NotRefinement( CompiledRefinement child )
+        {
+            this.child = child;
+        }
+
+
+        @Override
+        boolean matches( BitSet objectClasses )
+        {
+            return !child.matches( objectClasses );
+        }
+    }
+
+
+    /**
+     * A refinement which can't be compiled, and never matches
+     */
+    static final class NoneRefinement extends CompiledRefinement
+    {
+        @Override
+        boolean matches( BitSet objectClasses )
+        {
+            return false;
+        }
+    }
+
+
+    /**
+     * Creates a new CompiledSubtreeSpecification instance
+     *
+     * @param subtreeSpecification The compiled subtree specification
+     * @param base The absolute base
+     * @param chopBefore The absolute chopBefore exclusions
+     * @param chopAfter The absolute chopAfter exclusions
+     * @param refinement The compiled refinement, if any
+     */
+    CompiledSubtreeSpecification( SubtreeSpecification subtreeSpecification, Dn base, Dn[] chopBefore,
+        Dn[] chopAfter, CompiledRefinement refinement )
+    {
+        this.subtreeSpecification = subtreeSpecification;
+        this.base = base;
+        this.chopBefore = chopBefore;
+        this.chopAfter = chopAfter;
+        this.refinement = refinement;
+    }
+
+
+    /**
+     * @return The compiled subtree specification
+     */
+    public SubtreeSpecification getSubtreeSpecification()
+    {
+        return subtreeSpecification;
+    }
+
+
+    /**
+     * @return The absolute base of the subtree
+     */
+    public Dn getBase()
+    {
+        return base;
+    }
+
+
+    /**
+     * @return <code>true</code> if the subtree specification has a refinement
+     */
+    public boolean hasRefinement()
+    {
+        return refinement != null;
+    }
+
+
+    /**
+     * Tells if an entry belongs to the subtree, without checking that it is below the base :
+     * this is for callers which already know it, like a Dn tree index.
+     *
+     * @param entryDn The entry Dn, a descendant of the base
+     * @param objectClasses The entry objectClasses bitset, as computed by the SubtreeEvaluator
+     * which compiled this specification. It may be null if there is no refinement.
+     * @return <code>true</code> if the entry belongs to the subtree
+     */
+    public boolean containsDescendant( Dn entryDn, BitSet objectClasses )
+    {
+        int distance = entryDn.size() - base.size();
+
+        if ( distance < subtreeSpecification.getMinBaseDistance() )
+        {
+            return false;
+        }
+
+        int maxDistance = subtreeSpecification.getMaxBaseDistance();
+
+        if ( ( maxDistance != SubtreeSpecification.UNBOUNDED_MAX ) && ( distance > maxDistance ) )
+        {
+            return false;
+        }
+
+        // The chopBefore exclusions exclude the named entry and its subordinates
+        for ( Dn excluded : chopBefore )
+        {
+            if ( entryDn.isDescendantOf( excluded ) )
+            {
+                return false;
+            }
+        }
+
+        // The chopAfter exclusions only exclude the subordinates of the named entry
+        for ( Dn excluded : chopAfter )
+        {
+            if ( ( entryDn.size() > excluded.size() ) && entryDn.isDescendantOf( excluded ) )
+            {
+                return false;
+            }
+        }
+
+        return ( refinement == null ) || ( ( objectClasses != null ) && refinement.matches( objectClasses ) );
+    }
+
+
+    /**
+     * Tells if an entry belongs to the subtree
+     *
+     * @param entryDn The entry Dn
+     * @param objectClasses The entry objectClasses bitset, as computed by the SubtreeEvaluator
+     * which compiled this specification. It may be null if there is no refinement.
+     * @return <code>true</code> if the entry belongs to the subtree
+     */
+    public boolean contains( Dn entryDn, BitSet objectClasses )
+    {
+        return entryDn.isDescendantOf( base ) && containsDescendant( entryDn, objectClasses );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return base + " : " + subtreeSpecification;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.model.subtree;
+
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.filter.AndNode;
+import org.apache.directory.api.ldap.model.filter.BranchNode;
+import org.apache.directory.api.ldap.model.filter.EqualityNode;
+import org.apache.directory.api.ldap.model.filter.ExprNode;
+import org.apache.directory.api.ldap.model.filter.NotNode;
+import org.apache.directory.api.ldap.model.filter.OrNode;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.ObjectClass;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification.AndRefinement;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification.AnyOfRefinement;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification.CompiledRefinement;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification.ItemRefinement;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification.NoneRefinement;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification.NotRefinement;
+import org.apache.directory.api.ldap.model.subtree.CompiledSubtreeSpecification.OrRefinement;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * Evaluates if entries belong to the subtrees defined by {@link SubtreeSpecification}s, as
+ * defined in X.501 : the base of a subtree is relative to its administrative point, the
+ * chopBefore exclusions remove an entry and its subordinates, the chopAfter exclusions only
+ * remove the subordinates of an entry, and the refinement is evaluated against the entry
+ * objectClasses.
+ * <br>
+ * The subtree specifications are compiled, so that they can be evaluated many times. The
+ * evaluator numbers all the objectClasses used in the compiled refinements, and the
+ * refinements are evaluated against the bitset of the entry objectClasses, which only has
+ * to be computed once per entry, whatever the number of evaluated subtrees. The refinement
+ * objectClasses are resolved against the schema when they are compiled, and registered under
+ * their OID and all their names : computing the bitset of an entry never looks up the schema.
+ * <br>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SubtreeEvaluator
+{
+    /** The schema manager, if any */
+    private final SchemaManager schemaManager;
+
+    /** The objectClasses bits, by lowercased name and OID */
+    private final Map<String, Integer> objectClassBits = new ConcurrentHashMap<>();
+
+    /** The number of numbered objectClasses */
+    private int nbObjectClasses;
+
+
+    /**
+     * Creates a new SubtreeEvaluator instance
+     *
+     * @param schemaManager The SchemaManager used to resolve the objectClasses names, may be null
+     */
+    public SubtreeEvaluator( SchemaManager schemaManager )
+    {
+        this.schemaManager = schemaManager;
+    }
+
+
+    /**
+     * Resolves an objectClass name, if it's known by the schema
+     */
+    private ObjectClass resolve( String name )
+    {
+        if ( schemaManager != null )
+        {
+            try
+            {
+                return schemaManager.lookupObjectClassRegistry( name );
+            }
+            catch ( LdapException le )
+            {
+                // Unknown objectClass, we use its name
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Gets the bit of an objectClass, numbering it if needed. The objectClass OID and
+     * all its names are associated with the bit.
+     */
+    private synchronized int register( String objectClass )
+    {
+        String name = Strings.toLowerCaseAscii( Strings.trim( objectClass ) );
+        Integer bit = objectClassBits.get( name );
+
+        if ( bit != null )
+        {
+            return bit;
+        }
+
+        ObjectClass resolved = resolve( name );
+
+        if ( resolved != null )
+        {
+            bit = objectClassBits.get( resolved.getOid() );
+        }
+
+        if ( bit == null )
+        {
+            bit = nbObjectClasses++;
+        }
+
+        objectClassBits.put( name, bit );
+
+        if ( resolved != null )
+        {
+            objectClassBits.put( resolved.getOid(), bit );
+
+            for ( String alias : resolved.getNames() )
+            {
+                objectClassBits.put( Strings.toLowerCaseAscii( alias ), bit );
+            }
+        }
+
+        return bit;
+    }
+
+
+    /**
+     * Compiles a refinement
+     */
+    private CompiledRefinement compile( ExprNode node )
+    {
+        if ( node instanceof EqualityNode )
+        {
+            Value value = ( ( EqualityNode<?> ) node ).getValue();
+
+            if ( value == null )
+            {
+                return new NoneRefinement();
+            }
+
+            return new ItemRefinement( register( value.getString() ) );
+        }
+
+        if ( node instanceof NotNode )
+        {
+            return new NotRefinement( compile( ( ( NotNode ) node ).getFirstChild() ) );
+        }
+
+        if ( ( node instanceof AndNode ) || ( node instanceof OrNode ) )
+        {
+            List<ExprNode> children = ( ( BranchNode ) node ).getChildren();
+            CompiledRefinement[] compiled = new CompiledRefinement[children.size()];
+            BitSet mask = new BitSet();
+            boolean onlyItems = true;
+
+            for ( int i = 0; i < compiled.length; i++ )
+            {
+                compiled[i] = compile( children.get( i ) );
+
+                if ( compiled[i] instanceof ItemRefinement )
+                {
+                    mask.set( ( ( ItemRefinement ) compiled[i] ).getBit() );
+                }
+                else
+                {
+                    onlyItems = false;
+                }
+            }
+
+            if ( node instanceof AndNode )
+            {
+                return new AndRefinement( compiled );
+            }
+
+            if ( onlyItems )
+            {
+                return new AnyOfRefinement( mask );
+            }
+
+            return new OrRefinement( compiled );
+        }
+
+        // Not a refinement
+        return new NoneRefinement();
+    }
+
+
+    private static Dn[] toAbsolute( Dn base, Set<Dn> relatives ) throws LdapInvalidDnException
+    {
+        Dn[] absolutes = new Dn[relatives.size()];
+        int i = 0;
+
+        for ( Dn relative : relatives )
+        {
+            absolutes[i++] = base.add( relative );
+        }
+
+        return absolutes;
+    }
+
+
+    /**
+     * Compiles a subtree specification.
+     *
+     * @param subtreeSpecification The subtree specification
+     * @param administrativePoint The Dn of the administrative point the subtree base is relative to
+     * @return The compiled subtree specification
+     * @throws LdapInvalidDnException If the absolute base or exclusions can't be computed
+     */
+    public CompiledSubtreeSpecification compile( SubtreeSpecification subtreeSpecification, Dn administrativePoint )
+        throws LdapInvalidDnException
+    {
+        Dn base = administrativePoint.add( subtreeSpecification.getBase() );
+        CompiledRefinement refinement = null;
+
+        if ( subtreeSpecification.getRefinement() != null )
+        {
+            refinement = compile( subtreeSpecification.getRefinement() );
+        }
+
+        return new CompiledSubtreeSpecification( subtreeSpecification, base,
+            toAbsolute( base, subtreeSpecification.getChopBeforeExclusions() ),
+            toAbsolute( base, subtreeSpecification.getChopAfterExclusions() ), refinement );
+    }
+
+
+    /**
+     * Computes the bitset of the objectClasses of an entry. The objectClasses which are not
+     * used by any compiled refinement are ignored : as the refinement objectClasses have been
+     * registered under their OID and all their names, they don't need to be resolved.
+     *
+     * @param objectClasses The entry objectClass attribute, may be null
+     * @return The bitset of the entry objectClasses
+     */
+    public BitSet getObjectClasses( Attribute objectClasses )
+    {
+        BitSet bits = new BitSet();
+
+        if ( objectClasses == null )
+        {
+            return bits;
+        }
+
+        for ( Value value : objectClasses )
+        {
+            String objectClass = value.getString();
+
+            if ( objectClass == null )
+            {
+                continue;
+            }
+
+            Integer bit = objectClassBits.get( Strings.toLowerCaseAscii( Strings.trim( objectClass ) ) );
+
+            if ( bit != null )
+            {
+                bits.set( bit );
+            }
+        }
+
+        return bits;
+    }
+
+
+    /**
+     * Computes the bitset of the objectClasses of an entry.
+     *
+     * @see #getObjectClasses(Attribute)
+     * @param entry The entry, may be null
+     * @return The bitset of the entry objectClasses
+     */
+    public BitSet getObjectClasses( Entry entry )
+    {
+        if ( entry == null )
+        {
+            return new BitSet();
+        }
+
+        return getObjectClasses( entry.get( SchemaConstants.OBJECT_CLASS_AT ) );
+    }
+
+
+    /**
+     * Tells if an entry belongs to a subtree. The subtree specification is compiled for
+     * this single evaluation : when many entries are evaluated, the specification should
+     * be compiled once.
+     *
+     * @param subtreeSpecification The subtree specification
+     * @param administrativePoint The Dn of the administrative point the subtree base is relative to
+     * @param entryDn The entry Dn
+     * @param entry The entry, used to evaluate the refinement. May be null if there is no refinement.
+     * @return <code>true</code> if the entry belongs to the subtree
+     * @throws LdapInvalidDnException If the absolute base or exclusions can't be computed
+     */
+    public boolean evaluate( SubtreeSpecification subtreeSpecification, Dn administrativePoint, Dn entryDn,
+        Entry entry ) throws LdapInvalidDnException
+    {
+        CompiledSubtreeSpecification compiled = compile( subtreeSpecification, administrativePoint );
+
+        if ( compiled.hasRefinement() )
+        {
+            return compiled.contains( entryDn, getObjectClasses( entry ) );
+        }
+
+        return compiled.contains( entryDn, null );
+    }
+}
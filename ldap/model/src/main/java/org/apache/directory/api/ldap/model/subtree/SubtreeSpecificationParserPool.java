@@ -0,0 +1,122 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.model.subtree;
+
+
+import java.text.ParseException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.directory.api.ldap.model.schema.NormalizerMappingResolver;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+
+
+/**
+ * A thread safe subtree specification parser, backed by a pool of
+ * {@link SubtreeSpecificationParser}s. Each parsing thread gets its own parser, instead
+ * of contending on the single antlr parser/lexer pair of a SubtreeSpecificationParser.
+ * <br>
+ * The pool grows up to the number of threads parsing at the same time, and the
+ * parsers are then reused.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SubtreeSpecificationParserPool
+{
+    /** The idle parsers */
+    private final Queue<SubtreeSpecificationParser> parsers = new ConcurrentLinkedQueue<>();
+
+    /** The schema manager */
+    private final SchemaManager schemaManager;
+
+    /** The normalizer mapping resolver, if the parsers are normalizing */
+    @SuppressWarnings("rawtypes")
+    private final NormalizerMappingResolver resolver;
+
+
+    /**
+     * Creates a pool of subtree specification parsers.
+     *
+     * @param schemaManager the schema manager
+     */
+    public SubtreeSpecificationParserPool( SchemaManager schemaManager )
+    {
+        this( null, schemaManager );
+    }
+
+
+    /**
+     * Creates a pool of normalizing subtree specification parsers.
+     *
+     * @param resolver the resolver
+     * @param schemaManager the schema manager
+     */
+    public SubtreeSpecificationParserPool( @SuppressWarnings("rawtypes") NormalizerMappingResolver resolver,
+        SchemaManager schemaManager )
+    {
+        this.resolver = resolver;
+        this.schemaManager = schemaManager;
+    }
+
+
+    /**
+     * Parses a subtree specification, using a parser that no other thread is using.
+     *
+     * @param spec the specification to be parsed
+     * @return the specification bean
+     * @throws ParseException if there are any recognition errors (bad syntax)
+     */
+    public SubtreeSpecification parse( String spec ) throws ParseException
+    {
+        SubtreeSpecificationParser parser = parsers.poll();
+
+        if ( parser == null )
+        {
+            if ( resolver == null )
+            {
+                parser = new SubtreeSpecificationParser( schemaManager );
+            }
+            else
+            {
+                parser = new SubtreeSpecificationParser( resolver, schemaManager );
+            }
+        }
+
+        try
+        {
+            return parser.parse( spec );
+        }
+        finally
+        {
+            parsers.offer( parser );
+        }
+    }
+
+
+    /**
+     * Tests to see if the pooled parsers are normalizing.
+     *
+     * @return true if they normalize false otherwise
+     */
+    public boolean isNormalizing()
+    {
+        return resolver != null;
+    }
+}
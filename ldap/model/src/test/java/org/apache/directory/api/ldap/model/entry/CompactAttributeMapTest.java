@@ -0,0 +1,253 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.entry;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the DefaultEntry compact attribute storage
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class CompactAttributeMapTest
+{
+    @Test
+    public void testEntryCreation() throws LdapException
+    {
+        DefaultEntry entry = new DefaultEntry().compact();
+
+        assertTrue( entry.isCompact() );
+        entry.setDn( "dc=example, dc=com" );
+        entry.add( "objectClass", "top", "domain" );
+        entry.add( "dc", "example" );
+
+        assertEquals( new Dn( "dc=example, dc=com" ), entry.getDn() );
+        assertEquals( 2, entry.size() );
+        assertTrue( entry.contains( "objectClass", "top", "domain" ) );
+        assertTrue( entry.contains( "dc", "example" ) );
+
+        Entry entry2 = new DefaultEntry( "dc=example, dc=com" );
+        entry2.add( "objectClass", "top", "domain" );
+        entry2.add( "dc", "example" );
+
+        assertEquals( entry2, entry );
+        assertEquals( entry, entry2 );
+
+        DefaultEntry entry3 = new DefaultEntry( "dc=example, dc=com",
+            "objectClass: top",
+            "objectClass: domain",
+            "dc: example" ).compact();
+
+        assertTrue( entry3.isCompact() );
+        assertEquals( entry, entry3 );
+    }
+
+
+    @Test
+    public void testCloneAndRemove() throws LdapException
+    {
+        DefaultEntry entry = new DefaultEntry( "dc=example, dc=com" ).compact();
+        entry.add( "objectClass", "top", "domain" );
+        entry.add( "dc", "example" );
+        entry.add( "description", "test" );
+
+        Entry clone = entry.clone();
+
+        assertTrue( ( ( DefaultEntry ) clone ).isCompact() );
+        assertTrue( ( ( DefaultEntry ) entry.shallowClone() ).isCompact() );
+        assertFalse( ( ( DefaultEntry ) new DefaultEntry().clone() ).isCompact() );
+        assertEquals( entry, clone );
+
+        clone.removeAttributes( "description" );
+        assertEquals( 2, clone.size() );
+        assertEquals( 3, entry.size() );
+        assertFalse( clone.containsAttribute( "description" ) );
+        assertTrue( entry.containsAttribute( "description" ) );
+
+        // Remove an attribute through the iterator
+        Iterator<Attribute> iterator = clone.iterator();
+
+        while ( iterator.hasNext() )
+        {
+            if ( "dc".equals( iterator.next().getId() ) )
+            {
+                iterator.remove();
+            }
+        }
+
+        assertEquals( 1, clone.size() );
+        assertNull( clone.get( "dc" ) );
+        assertTrue( clone.contains( "objectClass", "top", "domain" ) );
+    }
+
+
+    @Test
+    public void testAttributeMap()
+    {
+        CompactAttributeMap map = new CompactAttributeMap( 0 );
+        Map<String, Attribute> expected = new HashMap<>();
+
+        // Grow the map, remove half of the elements, and grow it again
+        for ( int i = 0; i < 200; i++ )
+        {
+            Attribute attribute = new DefaultAttribute( "at" + i );
+            assertNull( map.put( "at" + i, attribute ) );
+            expected.put( "at" + i, attribute );
+        }
+
+        for ( int i = 0; i < 200; i += 2 )
+        {
+            assertSame( expected.remove( "at" + i ), map.remove( "at" + i ) );
+        }
+
+        assertNull( map.remove( "at0" ) );
+
+        for ( int i = 200; i < 300; i++ )
+        {
+            Attribute attribute = new DefaultAttribute( "at" + i );
+            map.put( "at" + i, attribute );
+            expected.put( "at" + i, attribute );
+        }
+
+        assertEquals( expected.size(), map.size() );
+        assertEquals( expected, map );
+
+        for ( Map.Entry<String, Attribute> entry : expected.entrySet() )
+        {
+            assertSame( entry.getValue(), map.get( entry.getKey() ) );
+        }
+
+        Attribute replacement = new DefaultAttribute( "at1" );
+        assertSame( expected.get( "at1" ), map.put( "at1", replacement ) );
+        assertSame( replacement, map.get( "at1" ) );
+
+        map.clear();
+        assertEquals( 0, map.size() );
+        assertFalse( map.containsKey( "at1" ) );
+        assertFalse( map.values().iterator().hasNext() );
+    }
+
+
+    @Test
+    public void testInlinedAttributes() throws LdapException
+    {
+        CompactAttributeMap attributes = new CompactAttributeMap( 3 );
+        Attribute description = new DefaultAttribute( "description", "an example" );
+        attributes.put( "objectclass", new DefaultAttribute( "objectClass", "top", "domain" ) );
+        attributes.put( "dc", new DefaultAttribute( "DC", "example" ) );
+        attributes.put( "description", description );
+
+        // The single valued attributes are inlined
+        attributes.inline();
+        assertEquals( 2, attributes.inlined() );
+
+        // Copying does not materialize them
+        CompactAttributeMap copy = attributes.copy();
+        assertEquals( 2, copy.inlined() );
+        assertEquals( 2, attributes.inlined() );
+
+        // Iterating over the keys does not materialize them
+        assertEquals( 3, attributes.keySet().size() );
+        assertTrue( attributes.keySet().contains( "description" ) );
+        assertEquals( 2, attributes.inlined() );
+
+        // Reading one materializes a new attribute, with its user provided ID, without modifying the map
+        Attribute dc = attributes.get( "dc" );
+        assertEquals( "DC", dc.getUpId() );
+        assertEquals( new DefaultAttribute( "DC", "example" ), dc );
+        assertNotSame( dc, attributes.get( "dc" ) );
+        assertEquals( 3, attributes.values().size() );
+        attributes.values().forEach( Attribute::getUpId );
+        attributes.entrySet().forEach( Map.Entry::getValue );
+        assertEquals( 2, attributes.inlined() );
+
+        // Modifying the detached attribute does not modify the map
+        dc.add( "test" );
+        assertEquals( 1, attributes.get( "dc" ).size() );
+
+        // Reading it for an update stores it back
+        dc = attributes.getForUpdate( "dc" );
+        assertSame( dc, attributes.get( "dc" ) );
+        assertEquals( 1, attributes.inlined() );
+        assertEquals( 2, copy.inlined() );
+
+        // Inlining again only inlines the single valued attributes
+        dc.add( "test" );
+        attributes.inline();
+        assertEquals( 1, attributes.inlined() );
+
+        // Removing or replacing an inlined attribute returns it
+        assertEquals( description, attributes.remove( "description" ) );
+        assertEquals( new DefaultAttribute( "dc", "example" ), copy.put( "dc", new DefaultAttribute( "dc", "other" ) ) );
+        assertEquals( 0, attributes.inlined() );
+        assertEquals( 1, copy.inlined() );
+    }
+
+
+    @Test
+    public void testCompactEntryInlinedAttributes() throws LdapException
+    {
+        DefaultEntry entry = new DefaultEntry( "dc=example, dc=com",
+            "objectClass: top",
+            "objectClass: domain",
+            "DC: example",
+            "description: an example" );
+        Entry expected = entry.clone();
+        Attribute description = entry.get( "description" );
+
+        entry.compact();
+        assertEquals( expected, entry );
+
+        Entry clone = entry.clone();
+        assertEquals( expected, clone );
+
+        // The single valued attributes read from the entry, before or after compacting, are detached
+        entry.get( "dc" ).add( "ignored" );
+        description.add( "ignored" );
+        assertFalse( entry.contains( "dc", "ignored" ) );
+        assertFalse( entry.contains( "description", "ignored" ) );
+
+        // The entry is modified using its own methods
+        entry.add( "dc", "test" );
+        assertTrue( entry.contains( "dc", "example", "test" ) );
+        assertEquals( expected.get( "dc" ).getUpId(), entry.get( "dc" ).getUpId() );
+        assertTrue( entry.remove( "description", "an example" ) );
+        assertFalse( entry.containsAttribute( "description" ) );
+        assertEquals( 1, clone.get( "dc" ).size() );
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.entry;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.util.Strings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the ValueIndex class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class ValueIndexTest
+{
+    private static Attribute members( int from, int to ) throws LdapException
+    {
+        Attribute attribute = new DefaultAttribute( "member" );
+
+        for ( int i = from; i < to; i++ )
+        {
+            attribute.add( "uid=user" + i + ",ou=people,dc=example,dc=com" );
+        }
+
+        return attribute;
+    }
+
+
+    private static List<Value> memberValues( int from, int to )
+    {
+        List<Value> values = new ArrayList<>();
+
+        for ( int i = from; i < to; i++ )
+        {
+            values.add( new Value( "uid=user" + i + ",ou=people,dc=example,dc=com" ) );
+        }
+
+        return values;
+    }
+
+
+    @Test
+    public void testContains() throws LdapException
+    {
+        ValueIndex index = new ValueIndex( members( 0, 1000 ) );
+
+        assertEquals( 1000, index.size() );
+        assertTrue( index.contains( new Value( "uid=user0,ou=people,dc=example,dc=com" ) ) );
+        assertTrue( index.contains( new Value( "uid=user999,ou=people,dc=example,dc=com" ) ) );
+        assertFalse( index.contains( new Value( "uid=user1000,ou=people,dc=example,dc=com" ) ) );
+        assertFalse( index.contains( new Value( Strings.getBytesUtf8( "uid=user0,ou=people,dc=example,dc=com" ) ) ) );
+        assertFalse( index.contains( null ) );
+        assertTrue( index.containsAll( new Value( "uid=user1,ou=people,dc=example,dc=com" ),
+            new Value( "uid=user2,ou=people,dc=example,dc=com" ) ) );
+    }
+
+
+    @Test
+    public void testBulkAddAndRemove() throws LdapException
+    {
+        ValueIndex index = new ValueIndex( members( 0, 100 ) );
+
+        // 50 new values, 50 already present
+        assertEquals( 50, index.addAll( memberValues( 50, 150 ) ) );
+        assertEquals( 150, index.size() );
+
+        // 100 present values, 100 absent ones
+        assertEquals( 100, index.removeAll( memberValues( 50, 250 ) ) );
+        assertEquals( 50, index.size() );
+
+        for ( int i = 0; i < 150; i++ )
+        {
+            assertEquals( i < 50, index.contains( new Value( "uid=user" + i + ",ou=people,dc=example,dc=com" ) ) );
+        }
+
+        assertTrue( index.add( new Value( "uid=user500,ou=people,dc=example,dc=com" ) ) );
+        assertFalse( index.add( new Value( "uid=user500,ou=people,dc=example,dc=com" ) ) );
+        assertTrue( index.remove( new Value( "uid=user500,ou=people,dc=example,dc=com" ) ) );
+        assertFalse( index.remove( new Value( "uid=user500,ou=people,dc=example,dc=com" ) ) );
+
+        Attribute attribute = index.toAttribute();
+        assertEquals( "member", attribute.getUpId() );
+        assertEquals( members( 0, 50 ), attribute );
+    }
+
+
+    @Test
+    public void testDiff() throws LdapException
+    {
+        // Same values
+        assertTrue( ValueIndex.diff( members( 0, 10 ), members( 0, 10 ) ).isEmpty() );
+
+        // A few changes : ADD then REMOVE
+        List<Modification> modifications = ValueIndex.diff( members( 0, 100 ), members( 2, 103 ) );
+
+        assertEquals( 2, modifications.size() );
+        assertEquals( ModificationOperation.ADD_ATTRIBUTE, modifications.get( 0 ).getOperation() );
+        assertEquals( members( 100, 103 ), modifications.get( 0 ).getAttribute() );
+        assertEquals( ModificationOperation.REMOVE_ATTRIBUTE, modifications.get( 1 ).getOperation() );
+        assertEquals( members( 0, 2 ), modifications.get( 1 ).getAttribute() );
+
+        // Almost everything changes : REPLACE
+        modifications = ValueIndex.diff( members( 0, 10 ), members( 8, 12 ) );
+
+        assertEquals( 1, modifications.size() );
+        assertEquals( ModificationOperation.REPLACE_ATTRIBUTE, modifications.get( 0 ).getOperation() );
+        assertEquals( members( 8, 12 ), modifications.get( 0 ).getAttribute() );
+
+        // No more values : REMOVE the attribute
+        modifications = ValueIndex.diff( members( 0, 10 ), members( 0, 0 ) );
+
+        assertEquals( 1, modifications.size() );
+        assertEquals( ModificationOperation.REMOVE_ATTRIBUTE, modifications.get( 0 ).getOperation() );
+        assertEquals( 0, modifications.get( 0 ).getAttribute().size() );
+
+        // No values yet : ADD
+        modifications = ValueIndex.diff( members( 0, 0 ), members( 0, 3 ) );
+
+        assertEquals( 1, modifications.size() );
+        assertEquals( ModificationOperation.ADD_ATTRIBUTE, modifications.get( 0 ).getOperation() );
+        assertEquals( members( 0, 3 ), modifications.get( 0 ).getAttribute() );
+    }
+
+
+    @Test
+    public void testValuesAreCreatedAgain() throws LdapException
+    {
+        byte[] bytes = Strings.getBytesUtf8( "binary" );
+        ValueIndex index = new ValueIndex( "description", null, Arrays.asList( new Value( "Some Text" ),
+            new Value( bytes ), new Value( ( String ) null ) ) );
+        List<Value> values = new ArrayList<>();
+
+        for ( Value value : index )
+        {
+            values.add( value );
+        }
+
+        // The null value is first, then the human readable ones, then the binary ones
+        assertEquals( 3, values.size() );
+        assertTrue( values.get( 0 ).isNull() );
+        assertTrue( values.get( 0 ).isHumanReadable() );
+        assertEquals( "Some Text", values.get( 1 ).getString() );
+        assertTrue( values.get( 1 ).isHumanReadable() );
+        assertFalse( values.get( 2 ).isHumanReadable() );
+        assertTrue( Arrays.equals( bytes, values.get( 2 ).getBytes() ) );
+        assertEquals( new DefaultAttribute( "description", new Value( "Some Text" ), new Value( bytes ),
+            new Value( ( String ) null ) ), index.toAttribute() );
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.ldif;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Modification;
+import org.apache.directory.api.ldap.model.entry.ModificationOperation;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.entry.ValueIndex;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the LdifDiffer class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class LdifDifferTest
+{
+    @Test
+    public void testDiffEntries() throws LdapException
+    {
+        Entry from = new DefaultEntry( "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: person",
+            "cn: test",
+            "sn: Test",
+            "description: first",
+            "description: second",
+            "description: third",
+            "telephoneNumber: 123" );
+
+        Entry to = new DefaultEntry( "cn=test,ou=system",
+            "objectClass: top",
+            "objectClass: person",
+            "cn: test",
+            "sn: Tester",
+            "description: first",
+            "description: second",
+            "description: fourth",
+            "seeAlso: cn=other,ou=system" );
+
+        LdifDiffer differ = new LdifDiffer();
+        List<Modification> modifications = differ.diff( from, to );
+
+        assertEquals( 5, modifications.size() );
+
+        for ( Modification modification : modifications )
+        {
+            String id = modification.getAttribute().getId();
+
+            switch ( id )
+            {
+                case "sn":
+                    assertEquals( ModificationOperation.REPLACE_ATTRIBUTE, modification.getOperation() );
+                    assertEquals( new DefaultAttribute( "sn", "Tester" ), modification.getAttribute() );
+                    break;
+
+                case "description":
+                    if ( modification.getOperation() == ModificationOperation.ADD_ATTRIBUTE )
+                    {
+                        assertEquals( new DefaultAttribute( "description", "fourth" ), modification.getAttribute() );
+                    }
+                    else
+                    {
+                        assertEquals( ModificationOperation.REMOVE_ATTRIBUTE, modification.getOperation() );
+                        assertEquals( new DefaultAttribute( "description", "third" ), modification.getAttribute() );
+                    }
+
+                    break;
+
+                case "telephonenumber":
+                    assertEquals( ModificationOperation.REMOVE_ATTRIBUTE, modification.getOperation() );
+                    assertEquals( 0, modification.getAttribute().size() );
+                    break;
+
+                case "seealso":
+                    assertEquals( ModificationOperation.ADD_ATTRIBUTE, modification.getOperation() );
+                    assertEquals( 1, modification.getAttribute().size() );
+                    break;
+
+                default:
+                    throw new IllegalStateException( "Unexpected attribute " + id );
+            }
+        }
+
+        // Applying the modifications must give the expected entry
+        Entry modified = from.clone();
+
+        for ( Modification modification : modifications )
+        {
+            Attribute attribute = modification.getAttribute();
+            Value[] values = new Value[attribute.size()];
+            int i = 0;
+
+            for ( Value value : attribute )
+            {
+                values[i++] = value;
+            }
+
+            switch ( modification.getOperation() )
+            {
+                case ADD_ATTRIBUTE:
+                    modified.add( attribute.getUpId(), values );
+                    break;
+
+                case REMOVE_ATTRIBUTE:
+                    if ( values.length == 0 )
+                    {
+                        modified.removeAttributes( attribute.getId() );
+                    }
+                    else
+                    {
+                        modified.remove( attribute.getUpId(), values );
+                    }
+
+                    break;
+
+                default:
+                    modified.put( attribute );
+                    break;
+            }
+        }
+
+        assertEquals( to, modified );
+
+        ModifyRequest modifyRequest = differ.createModifyRequest( from, to );
+        assertEquals( to.getDn(), modifyRequest.getName() );
+        assertEquals( 5, modifyRequest.getModifications().size() );
+
+        assertTrue( differ.diff( from, from.clone() ).isEmpty() );
+        assertNull( differ.createModifyRequest( from, from.clone() ) );
+    }
+
+
+    @Test
+    public void testDiffStreams() throws Exception
+    {
+        String fromLdif =
+            "dn: cn=a,ou=system\n" +
+            "objectClass: person\n" +
+            "cn: a\n" +
+            "sn: a\n" +
+            "\n" +
+            "dn: cn=b,ou=system\n" +
+            "objectClass: person\n" +
+            "cn: b\n" +
+            "sn: b\n" +
+            "\n" +
+            "dn: cn=d,ou=system\n" +
+            "objectClass: person\n" +
+            "cn: d\n" +
+            "sn: d\n";
+
+        String toLdif =
+            "dn: cn=b,ou=system\n" +
+            "objectClass: person\n" +
+            "cn: b\n" +
+            "sn: b\n" +
+            "\n" +
+            "dn: cn=c,ou=system\n" +
+            "objectClass: person\n" +
+            "cn: c\n" +
+            "sn: c\n" +
+            "\n" +
+            "dn: cn=d,ou=system\n" +
+            "objectClass: person\n" +
+            "cn: d\n" +
+            "sn: dd\n";
+
+        final List<LdifEntry> changes = new ArrayList<>();
+
+        try ( LdifReader fromReader = new LdifReader(); LdifReader toReader = new LdifReader() )
+        {
+            long count = new LdifDiffer().diff( fromReader.parseLdif( fromLdif ).iterator(),
+                toReader.parseLdif( toLdif ).iterator(), new LdifDiffer.ChangeHandler()
+                {
+                    @Override
+                    public void handle( LdifEntry change )
+                    {
+                        changes.add( change );
+                    }
+                } );
+
+            assertEquals( 3, count );
+        }
+
+        assertEquals( 3, changes.size() );
+        assertEquals( ChangeType.Delete, changes.get( 0 ).getChangeType() );
+        assertEquals( "cn=a,ou=system", changes.get( 0 ).getDn().getName() );
+        assertEquals( ChangeType.Add, changes.get( 1 ).getChangeType() );
+        assertEquals( "cn=c,ou=system", changes.get( 1 ).getDn().getName() );
+        assertEquals( 3, changes.get( 1 ).getEntry().size() );
+        assertEquals( ChangeType.Modify, changes.get( 2 ).getChangeType() );
+        assertEquals( "cn=d,ou=system", changes.get( 2 ).getDn().getName() );
+        assertEquals( 1, changes.get( 2 ).getModifications().size() );
+    }
+
+
+    @Test
+    public void testDiffUnsortedStreams() throws Exception
+    {
+        String unsorted =
+            "dn: cn=b,ou=system\n" +
+            "cn: b\n" +
+            "\n" +
+            "dn: cn=a,ou=system\n" +
+            "cn: a\n";
+
+        try ( LdifReader fromReader = new LdifReader(); LdifReader toReader = new LdifReader() )
+        {
+            final List<LdifEntry> from = fromReader.parseLdif( unsorted );
+            final List<LdifEntry> to = toReader.parseLdif( "" );
+
+            assertThrows( LdapException.class, () ->
+            {
+                new LdifDiffer().diff( from.iterator(), to.iterator(), new LdifDiffer.ChangeHandler()
+                {
+                    @Override
+                    public void handle( LdifEntry change )
+                    {
+                        // Nothing to do
+                    }
+                } );
+            } );
+        }
+    }
+
+
+    @Test
+    public void testSameModificationsAsValueIndex() throws LdapException
+    {
+        Entry from = new DefaultEntry( "cn=test,ou=system",
+            "description: first",
+            "description: second",
+            "description: third",
+            "seeAlso: cn=first,ou=system" );
+
+        Entry to = new DefaultEntry( "cn=test,ou=system",
+            "description: first",
+            "description: fourth",
+            "seeAlso: cn=first,ou=system",
+            "seeAlso: cn=second,ou=system" );
+
+        List<Modification> modifications = new LdifDiffer().diff( from, to );
+        List<Modification> expected = new ArrayList<>();
+        expected.addAll( ValueIndex.diff( from.get( "description" ), to.get( "description" ) ) );
+        expected.addAll( ValueIndex.diff( from.get( "seeAlso" ), to.get( "seeAlso" ) ) );
+
+        // A REPLACE for the description, an ADD for the seeAlso
+        assertEquals( 2, expected.size() );
+        assertEquals( expected.size(), modifications.size() );
+        assertTrue( modifications.containsAll( expected ) );
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.model.name;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Compares the fast Dn parser with the ANTLR based parser on the DNs the fast parser
+ * used to delegate : escaped chars, multi-valued RDNs, quoted values and hexstrings.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Disabled("Performance tests: should not be run with the unit tests")
+public class DnParserPerfTest
+{
+    private static final int NB_LOOPS = 1_000_000;
+
+    private static final String[] NAMES =
+        {
+            "cn=Doe\\, John,ou=people,dc=example,dc=com",
+            "cn=John Doe+uid=jdoe,ou=people,dc=example,dc=com",
+            "cn=\"Doe, John\",ou=people,dc=example,dc=com",
+            "uid=#6A646F65,ou=people,dc=example,dc=com",
+            "SN=Lu\\C4\\8Di\\C4\\87,ou=people,dc=example,dc=com"
+        };
+
+    /**
+     * A parser to measure
+     */
+    private interface Parser
+    {
+        String parse( String name, List<Rdn> rdns ) throws LdapInvalidDnException;
+    }
+
+
+    private static void measure( String name, Parser parser ) throws LdapInvalidDnException
+    {
+        List<Rdn> rdns = new ArrayList<>();
+
+        // Warm up
+        for ( int i = 0; i < NB_LOOPS / 10; i++ )
+        {
+            rdns.clear();
+            parser.parse( NAMES[i % NAMES.length], rdns );
+        }
+
+        long t0 = System.nanoTime();
+
+        for ( int i = 0; i < NB_LOOPS; i++ )
+        {
+            rdns.clear();
+            parser.parse( NAMES[i % NAMES.length], rdns );
+        }
+
+        long t1 = System.nanoTime();
+
+        System.out.println( name + " : " + ( ( t1 - t0 ) / NB_LOOPS ) + " ns/Dn" );
+    }
+
+
+    @Test
+    public void testParseComplexDns() throws Exception
+    {
+        ComplexDnParser complexDnParser = new ComplexDnParser();
+
+        measure( "ComplexDnParser", ( name, rdns ) -> complexDnParser.parseDn( null, name, rdns ) );
+        measure( "FastDnParser", ( name, rdns ) -> FastDnParser.parseDn( null, name, rdns ) );
+    }
+}
@@ -21,6 +21,15 @@ package org.apache.directory.api.ldap.model.name;
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
 import org.junit.jupiter.api.Test;
@@ -61,4 +70,91 @@ public class DnTest
         Dn ancestor = group.getAncestorOf( "ou=group" );
         assertEquals( ancestor, base );
     }
+
+
+    @Test
+    public void testParentSharesRdns() throws LdapInvalidDnException
+    {
+        Dn dn = new Dn( "cn=a, ou=b,OU=C , dc=d" );
+        Dn parent = dn.getParent();
+
+        assertSame( dn.getRdn( 1 ), parent.getRdn() );
+        assertEquals( " ou=b,OU=C , dc=d", parent.getName() );
+        assertEquals( "ou=b,ou=C,dc=d", parent.getNormName() );
+        assertEquals( new Dn( "ou=b,ou=C,dc=d" ), parent );
+        assertEquals( new Dn( "ou=b,OU=C,dc=d" ).hashCode(), parent.hashCode() );
+
+        Dn grandParent = parent.getParent().getParent();
+
+        assertEquals( " dc=d", grandParent.getName() );
+        assertEquals( 1, grandParent.size() );
+        assertTrue( grandParent.getParent().isEmpty() );
+        assertEquals( "", grandParent.getParent().getName() );
+    }
+
+
+    @Test
+    public void testDerivedDns() throws LdapInvalidDnException
+    {
+        Dn dn = new Dn( "cn=a,ou=b,ou=c,dc=d" );
+
+        Dn descendant = dn.getDescendantOf( "ou=c,dc=d" );
+        assertEquals( "cn=a,ou=b", descendant.getName() );
+        assertEquals( 2, descendant.size() );
+
+        Dn ancestor = dn.getAncestorOf( "cn=a,ou=b" );
+        assertEquals( "ou=c,dc=d", ancestor.getName() );
+
+        Dn child = ancestor.add( "ou=e" ).add( new Rdn( "cn=f" ) );
+        assertEquals( "cn=f,ou=e,ou=c,dc=d", child.getName() );
+        assertEquals( "ou=c,dc=d", ancestor.getName() );
+        assertTrue( child.isDescendantOf( ancestor ) );
+
+        Dn concatenated = ancestor.add( descendant );
+        assertEquals( "cn=a,ou=b,ou=c,dc=d", concatenated.getName() );
+        assertEquals( dn, concatenated );
+        assertEquals( dn.hashCode(), concatenated.hashCode() );
+    }
+
+
+    @Test
+    public void testIsDescendantOf() throws LdapInvalidDnException
+    {
+        Dn dn = new Dn( "cn=a,ou=b,ou=c,dc=d" );
+
+        assertTrue( dn.isDescendantOf( dn.getParent().getParent() ) );
+        assertTrue( dn.isDescendantOf( new Dn( "OU=c,dc=d" ) ) );
+        assertTrue( dn.isDescendantOf( new Dn( "ou=c,  dc = d" ) ) );
+        assertTrue( dn.isDescendantOf( Dn.ROOT_DSE ) );
+        assertTrue( dn.isDescendantOf( dn ) );
+        assertFalse( dn.isDescendantOf( new Dn( "ou=x,dc=d" ) ) );
+        assertFalse( dn.isDescendantOf( new Dn( "ou=C,dc=d" ) ) );
+        assertFalse( dn.isDescendantOf( new Dn( "ou=b,ou=c,dc=e" ) ) );
+        assertFalse( dn.getParent().isDescendantOf( dn ) );
+    }
+
+
+    @Test
+    public void testSerializeParent() throws Exception
+    {
+        Dn parent = new Dn( "cn=a, ou=b,dc=c" ).getParent();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try ( ObjectOutputStream out = new ObjectOutputStream( baos ) )
+        {
+            parent.writeExternal( out );
+        }
+
+        Dn deserialized = new Dn();
+
+        try ( ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( baos.toByteArray() ) ) )
+        {
+            deserialized.readExternal( in );
+        }
+
+        assertEquals( parent, deserialized );
+        assertEquals( " ou=b,dc=c", deserialized.getName() );
+        assertEquals( "ou=b,dc=c", deserialized.getNormName() );
+    }
 }
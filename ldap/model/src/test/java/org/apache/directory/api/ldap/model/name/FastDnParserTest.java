@@ -26,11 +26,14 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.api.ldap.model.name.FastDnParser;
-import org.apache.directory.api.ldap.model.name.TooComplexDnException;
 import org.apache.directory.api.util.Strings;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
@@ -40,14 +43,70 @@ import org.junit.jupiter.api.parallel.ExecutionMode;
 /**
  * Tests the fast Dn parser.
  * 
- * The test cases are copied from DnParserTest and adjusted when an
- * TooComplexDnException is expected.
+ * The test cases are copied from DnParserTest. The DNs which used to be parsed
+ * by the ANTLR based parser are also checked against the {@link ComplexDnParser}.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
 @Execution(ExecutionMode.CONCURRENT)
 public class FastDnParserTest
 {
+    /**
+     * Tells if a RDN used to be parsed by the ANTLR based parser. The simple RDNs
+     * AVA names don't contain the spaces around the type and the value.
+     */
+    private static boolean isComplex( String rdnName )
+    {
+        return ( rdnName.indexOf( '\\' ) >= 0 ) || ( rdnName.indexOf( '"' ) >= 0 ) || ( rdnName.indexOf( '#' ) >= 0 )
+            || ( rdnName.indexOf( '+' ) >= 0 ) || Strings.toLowerCaseAscii( rdnName ).contains( "oid." );
+    }
+
+
+    /**
+     * Checks that the fast parser and the ANTLR based parser produce the same RDNs
+     */
+    private static void assertSameAsComplexParser( String name ) throws LdapException
+    {
+        List<Rdn> expected = new ArrayList<>();
+        List<Rdn> rdns = new ArrayList<>();
+
+        assertEquals( new ComplexDnParser().parseDn( null, name, expected ), FastDnParser.parseDn( null, name, rdns ) );
+        assertEquals( expected.size(), rdns.size() );
+
+        for ( int i = 0; i < expected.size(); i++ )
+        {
+            Rdn expectedRdn = expected.get( i );
+            Rdn rdn = rdns.get( i );
+
+            assertEquals( expectedRdn, rdn );
+            assertEquals( expectedRdn.getName(), rdn.getName() );
+            assertEquals( expectedRdn.getNormName(), rdn.getNormName() );
+            assertEquals( expectedRdn.hashCode(), rdn.hashCode() );
+            assertEquals( expectedRdn.size(), rdn.size() );
+
+            Iterator<Ava> expectedAvas = expectedRdn.iterator();
+            Iterator<Ava> avas = rdn.iterator();
+
+            while ( expectedAvas.hasNext() )
+            {
+                Ava expectedAva = expectedAvas.next();
+                Ava ava = avas.next();
+
+                assertEquals( expectedAva, ava );
+
+                if ( isComplex( rdn.getName() ) )
+                {
+                    assertEquals( expectedAva.getName(), ava.getName() );
+                }
+
+                assertEquals( expectedAva.getType(), ava.getType() );
+                assertEquals( expectedAva.getNormType(), ava.getNormType() );
+                assertEquals( expectedAva.getValue(), ava.getValue() );
+                assertEquals( expectedAva.getValue().isHumanReadable(), ava.getValue().isHumanReadable() );
+            }
+        }
+    }
+
 
     /**
      * test an empty Dn
@@ -232,10 +291,10 @@ public class FastDnParserTest
     @Test
     public void testLdapDNSimpleMultivaluedAttribute() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "a = b + c = d" );
-        } );
+        Dn dn = FastDnParser.parse( "a = b + c = d" );
+        assertEquals( "a=b+c=d", dn.getEscaped() );
+        assertEquals( "a = b + c = d", dn.getName() );
+        assertSameAsComplexParser( "a = b + c = d" );
     }
 
 
@@ -246,10 +305,10 @@ public class FastDnParserTest
     @Test
     public void testLdapDNCompositeMultivaluedAttribute() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "a=b+c=d, e=f + g=h + i=j" );
-        } );
+        Dn dn = FastDnParser.parse( "a=b+c=d, e=f + g=h + i=j" );
+        assertEquals( "a=b+c=d,e=f+g=h+i=j", dn.getEscaped() );
+        assertEquals( "a=b+c=d, e=f + g=h + i=j", dn.getName() );
+        assertSameAsComplexParser( "a=b+c=d, e=f + g=h + i=j" );
     }
 
 
@@ -259,10 +318,10 @@ public class FastDnParserTest
     @Test
     public void testLdapDNOidUpper() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "OID.12.34.56 = azerty" );
-        } );
+        Dn dn = FastDnParser.parse( "OID.12.34.56 = azerty" );
+        assertEquals( "OID.12.34.56=azerty", dn.getEscaped() );
+        assertEquals( "OID.12.34.56 = azerty", dn.getName() );
+        assertSameAsComplexParser( "OID.12.34.56 = azerty" );
     }
 
 
@@ -272,10 +331,10 @@ public class FastDnParserTest
     @Test
     public void testLdapDNOidLower() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "oid.12.34.56 = azerty" );
-        } );
+        Dn dn = FastDnParser.parse( "oid.12.34.56 = azerty" );
+        assertEquals( "oid.12.34.56=azerty", dn.getEscaped() );
+        assertEquals( "oid.12.34.56 = azerty", dn.getName() );
+        assertSameAsComplexParser( "oid.12.34.56 = azerty" );
     }
 
 
@@ -311,10 +370,10 @@ public class FastDnParserTest
     @Test
     public void testLdapDNPairCharAttributeValue() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "a = \\,\\=\\+\\<\\>\\#\\;\\\\\\\"\\C3\\A9" );
-        } );
+        Dn dn = FastDnParser.parse( "a = \\,\\=\\+\\<\\>\\#\\;\\\\\\\"\\C3\\A9" );
+        assertEquals( "a=\\,=\\+\\<\\>#\\;\\\\\\\"\u00e9", dn.getEscaped() );
+        assertEquals( "a = \\,\\=\\+\\<\\>\\#\\;\\\\\\\"\\C3\\A9", dn.getName() );
+        assertSameAsComplexParser( "a = \\,\\=\\+\\<\\>\\#\\;\\\\\\\"\\C3\\A9" );
     }
 
 
@@ -324,10 +383,10 @@ public class FastDnParserTest
     @Test
     public void testLdapDNHexStringAttributeValue() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "a = #0010A0AAFF" );
-        } );
+        Dn dn = FastDnParser.parse( "a = #0010A0AAFF" );
+        assertEquals( "a=\\00\u0010\\A0\\AA\\FF", dn.getEscaped() );
+        assertEquals( "a = #0010A0AAFF", dn.getName() );
+        assertSameAsComplexParser( "a = #0010A0AAFF" );
     }
 
 
@@ -337,7 +396,7 @@ public class FastDnParserTest
     @Test
     public void testBadLdapDNHexStringAttributeValue() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
+        assertThrows( LdapInvalidDnException.class, () -> 
         {
             FastDnParser.parse( "a=#zz" );
         } );
@@ -350,10 +409,11 @@ public class FastDnParserTest
     @Test
     public void testLdapDNQuotedAttributeValue() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "a = quoted \\\"value" );
-        } );
+        Dn dn = FastDnParser.parse( "a = quoted \\\"value" );
+        assertEquals( "a=quoted \\\"value", dn.getEscaped() );
+        assertEquals( "a = quoted \\\"value", dn.getName() );
+        assertSameAsComplexParser( "a = quoted \\\"value" );
+        assertSameAsComplexParser( "a = \"quoted, +value\" " );
     }
 
 
@@ -387,11 +447,12 @@ public class FastDnParserTest
     @Test
     public void testVsldapExtras() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser
-                .parse( "cn=Billy Bakers, OID.2.5.4.11=Corporate Tax, ou=Fin-Accounting, ou=Americas, ou=Search, o=IMC, c=US" );
-        } );
+        Dn name = FastDnParser
+            .parse( "cn=Billy Bakers, OID.2.5.4.11=Corporate Tax, ou=Fin-Accounting, ou=Americas, ou=Search, o=IMC, c=US" );
+
+        assertEquals(
+            "cn=Billy Bakers,OID.2.5.4.11=Corporate Tax,ou=Fin-Accounting,ou=Americas,ou=Search,o=IMC,c=US", name
+                .getEscaped() );
     }
 
 
@@ -454,10 +515,10 @@ public class FastDnParserTest
     @Test
     public final void testParseStringRFC2253_2() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "CN = Sales + CN =   J. Smith , O = Widget Inc. , C = US" );
-        } );
+        Dn nameRFC2253_2 = FastDnParser.parse( "OU = Sales + CN =   J. Smith , O = Widget Inc. , C = US" );
+
+        assertEquals( "CN=J. Smith+OU=Sales,O=Widget Inc.,C=US", nameRFC2253_2.getEscaped(), "RFC2253_2 : " );
+        assertSameAsComplexParser( "OU = Sales + CN =   J. Smith , O = Widget Inc. , C = US" );
     }
 
 
@@ -467,10 +528,10 @@ public class FastDnParserTest
     @Test
     public final void testParseStringRFC2253_3() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "CN=L. Eagle,   O=Sue\\, Grabbit and Runn, C=GB" );
-        } );
+        Dn nameRFC2253_3 = FastDnParser.parse( "CN=L. Eagle,   O=Sue\\, Grabbit and Runn, C=GB" );
+
+        assertEquals( "CN=L. Eagle,O=Sue\\, Grabbit and Runn,C=GB", nameRFC2253_3.getEscaped(), "RFC2253_3 : " );
+        assertSameAsComplexParser( "CN=L. Eagle,   O=Sue\\, Grabbit and Runn, C=GB" );
     }
 
 
@@ -480,10 +541,7 @@ public class FastDnParserTest
     @Test
     public final void testParseStringRFC2253_4() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "CN=Before\\0DAfter,O=Test,C=GB" );
-        } );
+        assertSameAsComplexParser( "CN=Before\\0DAfter,O=Test,C=GB" );
     }
 
 
@@ -493,10 +551,7 @@ public class FastDnParserTest
     @Test
     public final void testParseStringRFC2253_5() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "1.3.6.1.4.1.1466.0=#04024869,O=Test,C=GB" );
-        } );
+        assertSameAsComplexParser( "1.3.6.1.4.1.1466.0=#04024869,O=Test,C=GB" );
     }
 
 
@@ -506,10 +561,10 @@ public class FastDnParserTest
     @Test
     public final void testParseStringRFC2253_6() throws LdapException
     {
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( "SN=Lu\\C4\\8Di\\C4\\87" );
-        } );
+        Dn nameRFC2253_6 = FastDnParser.parse( "SN=Lu\\C4\\8Di\\C4\\87" );
+
+        assertEquals( "Lu\u010Di\u0107", nameRFC2253_6.getRdn().getValue() );
+        assertSameAsComplexParser( "SN=Lu\\C4\\8Di\\C4\\87" );
     }
 
 
@@ -542,10 +597,8 @@ public class FastDnParserTest
     {
         String input = "ou=some test\\,  something else";
 
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( input ).toString();
-        } );
+        assertEquals( "ou=some test\\,  something else", FastDnParser.parse( input ).toString() );
+        assertSameAsComplexParser( input );
     }
 
 
@@ -554,11 +607,11 @@ public class FastDnParserTest
     {
         // '\' should be escaped as stated in RFC 2253
         String path = "windowsFilePath=C:\\\\cygwin";
+        Dn result = FastDnParser.parse( path );
 
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( path );
-        } );
+        assertEquals( path, result.getName() );
+        assertEquals( "windowsFilePath=C:\\\\cygwin", result.getEscaped() );
+        assertSameAsComplexParser( path );
     }
 
 
@@ -619,10 +672,8 @@ public class FastDnParserTest
         String cn = new String( new byte[]
             { 'c', 'n', '=', ( byte ) 0xC3, ( byte ) 0x84, 0x5C, 0x32, 0x42 }, StandardCharsets.UTF_8 );
 
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( cn ).toString();
-        } );
+        assertEquals( "\u00C4+", FastDnParser.parse( cn ).getRdn().getValue() );
+        assertSameAsComplexParser( cn );
     }
 
 
@@ -636,10 +687,8 @@ public class FastDnParserTest
         String cn = new String( new byte[]
             { 'c', 'n', '=', ( byte ) 0xC3, ( byte ) 0x84, '\\', '+' }, StandardCharsets.UTF_8 );
 
-        assertThrows( TooComplexDnException.class, () -> 
-        {
-            FastDnParser.parse( cn ).toString();
-        } );
+        assertEquals( "\u00C4+", FastDnParser.parse( cn ).getRdn().getValue() );
+        assertSameAsComplexParser( cn );
     }
 
 
@@ -652,9 +701,64 @@ public class FastDnParserTest
     {
         String input = "ou=ou+test";
 
-        assertThrows( TooComplexDnException.class, () -> 
+        assertThrows( LdapInvalidDnException.class, () -> 
         {
             FastDnParser.parse( input ).toString();
         } );
     }
+
+
+    /**
+     * Compares the fast parser with the ANTLR based parser on escaped, quoted,
+     * hexstring and multi-valued RDNs
+     */
+    @Test
+    public void testSameAsComplexParser() throws LdapException
+    {
+        String[] names = 
+            {
+                "cn=a\\,b,dc=example,dc=com",
+                "cn = a\\2Cb ; dc=example",
+                "cn=\\#start,ou=\\ leading and trailing\\ ",
+                "cn=trailing spaces   , ou=x",
+                "cn=a#b=c",
+                "cn=\\C3\\A9t\\C3\\A9,ou=\u00e9t\u00e9",
+                "cn=\"a, b + c\" , ou = \"\\\"quoted\\\"\"",
+                "cn=#414243,ou=#00ff",
+                "cn=a+sn=b+uid=c,dc=com",
+                "uid=c + sn=b + cn=a",
+                "cn=a+cn=b",
+                " oid.2.5.4.3 = x + OID.2.5.4.4=y , dc=com",
+                "cn=127.0.0.1\\+1",
+                "cn=+sn=b",
+                "cn=a\\=b\\<c\\>d\\;e\\\\"
+            };
+
+        for ( String name : names )
+        {
+            assertSameAsComplexParser( name );
+        }
+
+        String[] invalidNames = 
+            {
+                "cn=a\\",
+                "cn=a\\x",
+                "cn=\"unterminated",
+                "cn=\"quoted\" value",
+                "cn=#0",
+                "cn=#4142 x",
+                "cn=a\"b",
+                "cn=a+b",
+                "foo.2.5=x",
+                "cn=a+cn=a"
+            };
+
+        for ( String name : invalidNames )
+        {
+            assertThrows( LdapInvalidDnException.class, () -> new ComplexDnParser().parseDn( null, name,
+                new ArrayList<Rdn>() ), name );
+            assertThrows( LdapInvalidDnException.class, () -> FastDnParser.parseDn( null, name, new ArrayList<Rdn>() ),
+                name );
+        }
+    }
 }
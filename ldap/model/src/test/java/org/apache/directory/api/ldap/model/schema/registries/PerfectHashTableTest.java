@@ -0,0 +1,105 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.schema.registries;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the PerfectHashTable class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class PerfectHashTableTest
+{
+    @Test
+    public void testEmpty()
+    {
+        PerfectHashTable<String> table = PerfectHashTable.build( new HashMap<String, String>() );
+
+        assertNotNull( table );
+        assertEquals( 0, table.size() );
+        assertNull( table.get( "cn" ) );
+        assertNull( table.get( null ) );
+    }
+
+
+    @Test
+    public void testSchemaLikeKeys()
+    {
+        Map<String, Integer> map = new HashMap<>();
+
+        for ( int i = 0; i < 5000; i++ )
+        {
+            map.put( "1.3.6.1.4.1.18060.0.4." + i, i );
+            map.put( "attribute" + i, i );
+        }
+
+        PerfectHashTable<Integer> table = PerfectHashTable.build( map );
+
+        assertNotNull( table );
+        assertEquals( map.size(), table.size() );
+
+        for ( Map.Entry<String, Integer> entry : map.entrySet() )
+        {
+            assertEquals( entry.getValue(), table.get( entry.getKey() ) );
+            assertTrue( table.containsKey( entry.getKey() ) );
+        }
+
+        assertNull( table.get( "1.3.6.1.4.1.18060.0.4.5000" ) );
+        assertFalse( table.containsKey( "attribute5000" ) );
+        assertFalse( table.containsKey( "" ) );
+    }
+
+
+    @Test
+    public void testSameHashCodeKeys()
+    {
+        // "Aa" and "BB" have the same String hashCode
+        Map<String, String> map = new HashMap<>();
+        map.put( "Aa", "first" );
+        map.put( "BB", "second" );
+        map.put( "AaAa", "third" );
+        map.put( "BBBB", "fourth" );
+
+        PerfectHashTable<String> table = PerfectHashTable.build( map );
+
+        assertNotNull( table );
+        assertEquals( 4, table.size() );
+        assertEquals( "first", table.get( "Aa" ) );
+        assertEquals( "second", table.get( "BB" ) );
+        assertEquals( "third", table.get( "AaAa" ) );
+        assertEquals( "fourth", table.get( "BBBB" ) );
+        assertNull( table.get( "AaBB" ) );
+    }
+}
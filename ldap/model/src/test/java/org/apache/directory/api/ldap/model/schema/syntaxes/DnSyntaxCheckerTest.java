@@ -20,9 +20,11 @@
 package org.apache.directory.api.ldap.model.schema.syntaxes;
 
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.api.ldap.model.schema.syntaxCheckers.DnSyntaxChecker;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
@@ -82,4 +84,18 @@ public class DnSyntaxCheckerTest
         assertTrue( checker.isValidSyntax( "a=b,c=d" ) );
         assertTrue( checker.isValidSyntax( "a=b\\,c \\= d, e=f" ) );
     }
+
+
+    @Test
+    public void testSimpleDN()
+    {
+        String[] values = { "uid=jdoe,ou=people,dc=example,dc=com", "cn=John Doe,o=acme", "cn= John", "cn=John ",
+            "cn=a=b", "2.5.4.3=x", "cn-1=x", "1cn=x", "cn=x,", ",cn=x", "cn=,o=a", "cn=x;o=a", "cn=#41",
+            "cn=x\\,y", "cn=\u00e9", "CN=Foo-Bar_Baz.1,DC=com", "cn=x,,o=a" };
+
+        for ( String value : values )
+        {
+            assertEquals( Dn.isValid( value ), checker.isValidSyntax( value ), value );
+        }
+    }
 }
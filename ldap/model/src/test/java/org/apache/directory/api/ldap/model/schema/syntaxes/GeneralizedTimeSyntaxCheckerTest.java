@@ -20,9 +20,12 @@
 package org.apache.directory.api.ldap.model.schema.syntaxes;
 
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.regex.Pattern;
+
 import org.apache.directory.api.ldap.model.schema.syntaxCheckers.GeneralizedTimeSyntaxChecker;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
@@ -92,4 +95,32 @@ public class GeneralizedTimeSyntaxCheckerTest
         assertTrue( checker.isValidSyntax( "20061205184527,123+0100" ) );
         assertTrue( checker.isValidSyntax( "2006120519Z" ) );
     }
+
+
+    @Test
+    public void testMatchesRegexp()
+    {
+        // The regexp used before the checker was written by hand
+        Pattern pattern = Pattern.compile( "^\\d{4}(0[1-9]|1[0-2])(0[1-9]|[12]\\d|3[01])([01]\\d|2[0-3])"
+            + "(([0-5]\\d)([0-5]\\d|60)?)?([.,]\\d+)?(Z|[+-]([01]\\d|2[0-3])([0-5]\\d)?)$" );
+
+        String[] dates = { "2006", "200612", "20061205", "2006120518", "200612051845", "20061205184560",
+            "20061205184561", "2006120518456", "200612051", "20061232", "20061301", "2006120524" };
+        String[] fractions = { "", ".", ",", ".1", ",123", ".1.2" };
+        String[] zones = { "", "Z", "z", "+01", "-0530", "+2400", "+0160", "+1", "Z1", "+01000", "-" };
+
+        for ( String date : dates )
+        {
+            for ( String fraction : fractions )
+            {
+                for ( String zone : zones )
+                {
+                    String value = date + fraction + zone;
+                    boolean expected = ( value.length() >= 11 ) && pattern.matcher( value ).matches();
+
+                    assertEquals( expected, checker.isValidSyntax( value ), value );
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.model.schema.syntaxes;
+
+
+import java.util.regex.Pattern;
+
+import org.apache.directory.api.asn1.DecoderException;
+import org.apache.directory.api.asn1.util.Oid;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.SyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.DirectoryStringSyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.DnSyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.GeneralizedTimeSyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.Ia5StringSyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.IntegerSyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.OidSyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.TelephoneNumberSyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.syntaxCheckers.UuidSyntaxChecker;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Compares the hand written syntax checkers with the regexp and parser based checks they
+ * replaced. Each check is run by 4 threads, to show the contention on the synchronized regexp.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Disabled("Performance tests: should not be run with the unit tests")
+public class SyntaxCheckerPerfTest
+{
+    private static final int NB_LOOPS = 10_000_000;
+
+    private static final int NB_THREADS = 4;
+
+    private static final Pattern TELEPHONE_PATTERN = Pattern.compile(
+        "^ *[+]? *((\\([0-9- ,;/#*]+\\))|[0-9- ,;/#*]+)+$" );
+
+    private static final Pattern GENERALIZED_TIME_PATTERN = Pattern.compile(
+        "^\\d{4}(0[1-9]|1[0-2])(0[1-9]|[12]\\d|3[01])([01]\\d|2[0-3])"
+            + "(([0-5]\\d)([0-5]\\d|60)?)?([.,]\\d+)?(Z|[+-]([01]\\d|2[0-3])([0-5]\\d)?)$" );
+
+    /**
+     * A check to measure
+     */
+    private interface Check
+    {
+        boolean check( String value );
+    }
+
+
+    private static void measure( String name, final String value, final Check check ) throws InterruptedException
+    {
+        // Warm up
+        for ( int i = 0; i < NB_LOOPS / 10; i++ )
+        {
+            check.check( value );
+        }
+
+        Thread[] threads = new Thread[NB_THREADS];
+        long t0 = System.nanoTime();
+
+        for ( int i = 0; i < NB_THREADS; i++ )
+        {
+            threads[i] = new Thread( () ->
+            {
+                for ( int j = 0; j < NB_LOOPS; j++ )
+                {
+                    check.check( value );
+                }
+            } );
+
+            threads[i].start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        long t1 = System.nanoTime();
+
+        System.out.println( name + " : " + ( ( t1 - t0 ) / ( ( long ) NB_LOOPS * NB_THREADS ) ) + " ns/check" );
+    }
+
+
+    private static void measure( SyntaxChecker checker, String value ) throws InterruptedException
+    {
+        measure( checker.getClass().getSimpleName(), value, checker::isValidSyntax );
+    }
+
+
+    @Test
+    public void testTelephoneNumber() throws Exception
+    {
+        String value = "+1 (555) 123-4567";
+
+        measure( "Telephone regexp", value, v ->
+        {
+            synchronized ( TELEPHONE_PATTERN )
+            {
+                return TELEPHONE_PATTERN.matcher( v ).matches();
+            }
+        } );
+        measure( TelephoneNumberSyntaxChecker.INSTANCE, value );
+    }
+
+
+    @Test
+    public void testGeneralizedTime() throws Exception
+    {
+        String value = "20240101120000.123Z";
+
+        measure( "GeneralizedTime regexp", value, v -> GENERALIZED_TIME_PATTERN.matcher( v ).find() );
+        measure( GeneralizedTimeSyntaxChecker.INSTANCE, value );
+    }
+
+
+    @Test
+    public void testDn() throws Exception
+    {
+        String value = "uid=jdoe,ou=people,dc=example,dc=com";
+
+        measure( "Dn.isValid", value, Dn::isValid );
+        measure( DnSyntaxChecker.INSTANCE, value );
+    }
+
+
+    @Test
+    public void testOid() throws Exception
+    {
+        String value = "1.3.6.1.4.1.1466.115.121.1.15";
+
+        measure( "Oid.fromString", value, v ->
+        {
+            try
+            {
+                Oid.fromString( v );
+
+                return true;
+            }
+            catch ( DecoderException de )
+            {
+                return false;
+            }
+        } );
+        measure( OidSyntaxChecker.INSTANCE, value );
+    }
+
+
+    @Test
+    public void testOtherSyntaxes() throws Exception
+    {
+        measure( Ia5StringSyntaxChecker.INSTANCE, "jdoe@example.com" );
+        measure( DirectoryStringSyntaxChecker.INSTANCE, "John Doe, Acme Corporation" );
+        measure( IntegerSyntaxChecker.INSTANCE, "-1234567890" );
+        measure( UuidSyntaxChecker.INSTANCE, "1f0e5c8a-2f5d-4d2b-9a3e-7b6c5d4e3f2a" );
+    }
+}
@@ -24,6 +24,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.regex.Pattern;
+
 import org.apache.directory.api.ldap.model.schema.syntaxCheckers.TelephoneNumberSyntaxChecker;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Execution;
@@ -111,4 +113,18 @@ public class TelephoneNumberSyntaxCheckerTest
         checker = TelephoneNumberSyntaxChecker.builder().build();
         assertTrue( checker.isValidSyntax( "1" ) );
     }
+
+
+    @Test
+    public void testMatchesDefaultRegexp()
+    {
+        Pattern pattern = Pattern.compile( checker.getRegexp() );
+        String[] values = { " ", "  +", "+1", " + 1", "++1", "1+", "()", "(1)", "((1))", "(1", "1)", "(1)(2)",
+            "( )", "+()", "+(1) 2", "12-34/56;78,90#*", " (1) ", "1 (2", "1(2)3(4)", "1 a", "\t1", "+ (1-2)" };
+
+        for ( String value : values )
+        {
+            assertEquals( pattern.matcher( value ).matches(), checker.isValidSyntax( value ), value );
+        }
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.model.subtree;
+
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.filter.AndNode;
+import org.apache.directory.api.ldap.model.filter.EqualityNode;
+import org.apache.directory.api.ldap.model.filter.ExprNode;
+import org.apache.directory.api.ldap.model.filter.NotNode;
+import org.apache.directory.api.ldap.model.filter.OrNode;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+
+/**
+ * Test the SubtreeEvaluator class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Execution(ExecutionMode.CONCURRENT)
+public class SubtreeEvaluatorTest
+{
+    private static final Dn AP = Dn.EMPTY_DN;
+
+
+    private static ExprNode item( String objectClass )
+    {
+        return new EqualityNode<String>( "objectClass", objectClass );
+    }
+
+
+    @Test
+    public void testBaseAndDistances() throws Exception
+    {
+        SubtreeEvaluator evaluator = new SubtreeEvaluator( null );
+        Dn ap = new Dn( "dc=example,dc=com" );
+
+        // The whole administrative area
+        SubtreeSpecification all = new BaseSubtreeSpecification();
+        assertTrue( evaluator.evaluate( all, ap, ap, null ) );
+        assertTrue( evaluator.evaluate( all, ap, new Dn( "uid=a,ou=people,dc=example,dc=com" ), null ) );
+        assertFalse( evaluator.evaluate( all, ap, new Dn( "dc=other,dc=com" ), null ) );
+
+        // The direct children of ou=people
+        SubtreeSpecification people = new BaseSubtreeSpecification( new Dn( "ou=people" ), 1, 1,
+            new HashSet<Dn>(), new HashSet<Dn>() );
+        assertFalse( evaluator.evaluate( people, ap, new Dn( "ou=people,dc=example,dc=com" ), null ) );
+        assertTrue( evaluator.evaluate( people, ap, new Dn( "uid=a,ou=people,dc=example,dc=com" ), null ) );
+        assertFalse( evaluator.evaluate( people, ap, new Dn( "cn=x,uid=a,ou=people,dc=example,dc=com" ), null ) );
+        assertFalse( evaluator.evaluate( people, ap, new Dn( "uid=a,ou=groups,dc=example,dc=com" ), null ) );
+    }
+
+
+    @Test
+    public void testChopExclusions() throws Exception
+    {
+        SubtreeEvaluator evaluator = new SubtreeEvaluator( null );
+        Dn ap = new Dn( "dc=example,dc=com" );
+
+        SubtreeSpecification spec = new BaseSubtreeSpecification( new Dn(), 0, SubtreeSpecification.UNBOUNDED_MAX,
+            Collections.singleton( new Dn( "ou=after" ) ), Collections.singleton( new Dn( "ou=before" ) ) );
+
+        assertFalse( evaluator.evaluate( spec, ap, new Dn( "ou=before,dc=example,dc=com" ), null ) );
+        assertFalse( evaluator.evaluate( spec, ap, new Dn( "cn=x,ou=before,dc=example,dc=com" ), null ) );
+        assertTrue( evaluator.evaluate( spec, ap, new Dn( "ou=after,dc=example,dc=com" ), null ) );
+        assertFalse( evaluator.evaluate( spec, ap, new Dn( "cn=x,ou=after,dc=example,dc=com" ), null ) );
+        assertTrue( evaluator.evaluate( spec, ap, new Dn( "cn=x,ou=other,dc=example,dc=com" ), null ) );
+    }
+
+
+    @Test
+    public void testRefinements() throws Exception
+    {
+        SubtreeEvaluator evaluator = new SubtreeEvaluator( null );
+
+        Entry person = new DefaultEntry( "cn=person,dc=com",
+            "objectClass: top",
+            "objectClass: Person" );
+        Entry group = new DefaultEntry( "cn=group,dc=com",
+            "objectClass: top",
+            "objectClass: groupOfNames" );
+        Entry device = new DefaultEntry( "cn=device,dc=com",
+            "objectClass: top",
+            "objectClass: device" );
+
+        // item: person
+        CompiledSubtreeSpecification persons = evaluator.compile( new BaseSubtreeSpecification( item( "person" ) ),
+            AP );
+        // or: { item: person, item: groupOfNames }
+        OrNode or = new OrNode( item( "person" ), item( "groupOfNames" ) );
+        CompiledSubtreeSpecification personsOrGroups = evaluator.compile( new BaseSubtreeSpecification( or ), AP );
+        // and: { item: top, not: item: device }
+        AndNode and = new AndNode( item( "top" ), new NotNode( item( "device" ) ) );
+        CompiledSubtreeSpecification notDevices = evaluator.compile( new BaseSubtreeSpecification( and ), AP );
+
+        BitSet personClasses = evaluator.getObjectClasses( person );
+        BitSet groupClasses = evaluator.getObjectClasses( group );
+        BitSet deviceClasses = evaluator.getObjectClasses( device );
+
+        assertTrue( persons.contains( person.getDn(), personClasses ) );
+        assertFalse( persons.contains( group.getDn(), groupClasses ) );
+        assertFalse( persons.contains( person.getDn(), null ) );
+
+        assertTrue( personsOrGroups.contains( person.getDn(), personClasses ) );
+        assertTrue( personsOrGroups.contains( group.getDn(), groupClasses ) );
+        assertFalse( personsOrGroups.contains( device.getDn(), deviceClasses ) );
+
+        assertTrue( notDevices.contains( person.getDn(), personClasses ) );
+        assertTrue( notDevices.contains( group.getDn(), groupClasses ) );
+        assertFalse( notDevices.contains( device.getDn(), deviceClasses ) );
+
+        assertTrue( evaluator.evaluate( new BaseSubtreeSpecification( or ), AP, group.getDn(), group ) );
+        assertFalse( evaluator.evaluate( new BaseSubtreeSpecification( or ), AP, device.getDn(), device ) );
+    }
+}
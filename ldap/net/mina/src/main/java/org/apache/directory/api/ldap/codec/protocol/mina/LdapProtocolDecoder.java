@@ -28,10 +28,12 @@ import org.apache.directory.api.asn1.DecoderException;
 import org.apache.directory.api.asn1.ber.Asn1Decoder;
 import org.apache.directory.api.asn1.ber.tlv.TLVStateEnum;
 import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.codec.api.FastLdapDecoder;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.codec.api.LdapDecoder;
 import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.api.ldap.codec.api.ResponseCarryingException;
+import org.apache.directory.api.ldap.codec.metrics.LdapMetrics;
 import org.apache.directory.api.ldap.model.constants.Loggers;
 import org.apache.directory.api.ldap.model.exception.ResponseCarryingMessageException;
 import org.apache.directory.api.ldap.model.message.AbstractMessage;
@@ -89,8 +91,21 @@ public class LdapProtocolDecoder implements ProtocolDecoder
 
         List<Message> decodedMessages = new ArrayList<>();
         ByteBuffer buf = in.buf();
+        LdapMetrics metrics = ( LdapMetrics ) session.getAttribute( LdapMetrics.SESSION_ATTR );
 
-        decode( buf, messageContainer, decodedMessages );
+        if ( ( metrics != null ) && metrics.isEnabled() )
+        {
+            int bytes = buf.remaining();
+            long start = System.nanoTime();
+
+            decode( buf, messageContainer, decodedMessages );
+
+            metrics.bytesDecoded( bytes, decodedMessages.size(), System.nanoTime() - start );
+        }
+        else
+        {
+            decode( buf, messageContainer, decodedMessages );
+        }
 
         for ( Message message : decodedMessages )
         {
@@ -141,7 +156,12 @@ public class LdapProtocolDecoder implements ProtocolDecoder
                     }
                 }
 
-                Asn1Decoder.decode( buffer, messageContainer );
+                // The most frequent messages are decoded without the grammar when
+                // the buffer contains the whole PDU
+                if ( !FastLdapDecoder.decode( buffer, messageContainer ) )
+                {
+                    Asn1Decoder.decode( buffer, messageContainer );
+                }
 
                 if ( messageContainer.getState() == TLVStateEnum.PDU_DECODED )
                 {
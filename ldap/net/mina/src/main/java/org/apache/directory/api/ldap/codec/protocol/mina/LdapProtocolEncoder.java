@@ -28,6 +28,7 @@ import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.codec.api.LdapApiServiceFactory;
 import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.codec.metrics.LdapMetrics;
 import org.apache.directory.api.ldap.model.constants.Loggers;
 import org.apache.directory.api.ldap.model.message.Message;
 import org.apache.directory.api.util.Strings;
@@ -89,6 +90,17 @@ public class LdapProtocolEncoder implements ProtocolEncoder
         }
 
         ByteBuffer encoded;
+        LdapMetrics metrics = ( LdapMetrics ) session.getAttribute( LdapMetrics.SESSION_ATTR );
+        long start = 0L;
+
+        if ( ( metrics != null ) && metrics.isEnabled() )
+        {
+            start = System.nanoTime();
+        }
+        else
+        {
+            metrics = null;
+        }
         
         try
         { 
@@ -105,6 +117,11 @@ public class LdapProtocolEncoder implements ProtocolEncoder
             asn1Buffer.clear();
         }
         
+        if ( metrics != null )
+        {
+            metrics.messageEncoded( encoded.remaining(), System.nanoTime() - start );
+        }
+
         IoBuffer ioBuffer = IoBuffer.wrap( encoded );
     
         if ( CODEC_LOG.isDebugEnabled() )
@@ -93,6 +93,12 @@ import org.slf4j.LoggerFactory;
 /**
  * The SchemaManager class : it handles all the schema operations (addition, removal,
  * modification).
+ * <br>
+ * In strict mode, the Registries are never modified once they have been published : every
+ * change is applied on a copy, which is checked and then atomically swapped in place of the
+ * current instance. Readers can therefore use the Registries returned by {@link #getRegistries()}
+ * without any locking, while writers are serialized on this SchemaManager. In relaxed mode, the
+ * changes are applied directly on the current Registries.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -249,6 +255,39 @@ public class DefaultSchemaManager implements SchemaManager
     }
 
 
+    /**
+     * Copy the registries, without relaxing it.
+     * 
+     * @return The copied Registries
+     * @throws LdapException If the Registries cannot be cloned
+     */
+    private Registries copyRegistries() throws LdapException
+    {
+        try
+        {
+            return registries.clone();
+        }
+        catch ( CloneNotSupportedException cnse )
+        {
+            throw new LdapOtherException( cnse.getMessage(), cnse );
+        }
+    }
+
+
+    /**
+     * Make the given Registries the current one. The Registries must not be modified
+     * after this call, as it may be read concurrently.
+     * 
+     * @param newRegistries The Registries to publish
+     */
+    private void publish( Registries newRegistries )
+    {
+        newRegistries.setErrorHandler( errorHandler );
+        newRegistries.buildLookupTables();
+        registries = newRegistries;
+    }
+
+
     /**
      * Transform a String[] array of schema to a Schema[]
      * 
@@ -345,7 +384,7 @@ public class DefaultSchemaManager implements SchemaManager
      * {@inheritDoc}
      */
     @Override
-    public boolean disable( Schema... schemas ) throws LdapException
+    public synchronized boolean disable( Schema... schemas ) throws LdapException
     {
         boolean disabled = false;
 
@@ -378,10 +417,12 @@ public class DefaultSchemaManager implements SchemaManager
             
             if ( !errorHandler.wasError() )
             {
-                // We are golden : let's apply the schemas in the real registries
+                // We are golden : let's apply the schemas in a copy of the real registries
+                Registries newRegistries = cloneRegistries();
+
                 for ( Schema schema : schemas )
                 {
-                    unload( registries, schema );
+                    unload( newRegistries, schema );
                     schema.disable();
                 }
                 
@@ -390,8 +431,9 @@ public class DefaultSchemaManager implements SchemaManager
                 errorHandler.reset();
 
                 // Build the cross references
-                registries.buildReferences();
-                registries.setStrict();
+                newRegistries.buildReferences();
+                newRegistries.setStrict();
+                publish( newRegistries );
 
                 disabled = true;
             }
@@ -460,7 +502,7 @@ public class DefaultSchemaManager implements SchemaManager
      * {@inheritDoc}
      */
     @Override
-    public boolean enable( Schema... schemas ) throws LdapException
+    public synchronized boolean enable( Schema... schemas ) throws LdapException
     {
         boolean enabled = false;
 
@@ -514,16 +556,19 @@ public class DefaultSchemaManager implements SchemaManager
 
             if ( !errorHandler.wasError() )
             {
-                // We are golden : let's apply the schemas in the real registries
+                // We are golden : let's apply the schemas in a copy of the real registries
+                Registries newRegistries = cloneRegistries();
+
                 for ( Schema schema : schemas )
                 {
                     schema.enable();
-                    load( registries, schema );
+                    load( newRegistries, schema );
                 }
 
                 // Build the cross references
-                registries.buildReferences();
-                registries.setStrict();
+                newRegistries.buildReferences();
+                newRegistries.setStrict();
+                publish( newRegistries );
 
                 enabled = true;
             }
@@ -642,7 +687,7 @@ public class DefaultSchemaManager implements SchemaManager
      * {@inheritDoc}
      */
     @Override
-    public boolean load( Schema... schemas ) throws LdapException
+    public synchronized boolean load( Schema... schemas ) throws LdapException
     {
         if ( schemas.length == 0 )
         {
@@ -680,14 +725,9 @@ public class DefaultSchemaManager implements SchemaManager
 
             if ( !errorHandler.wasError() )
             {
-                // We are golden : let's apply the schema in the real registries
-                registries.setRelaxed();
-
-                // Load the schemas
+                // We are golden : the checked registries becomes the real registries
                 for ( Schema schema : schemas )
                 {
-                    load( registries, schema );
-
                     // Update the schema dependences if needed
                     if ( schema.getDependencies() != null )
                     {
@@ -710,16 +750,18 @@ public class DefaultSchemaManager implements SchemaManager
                     schemaMap.put( schema.getSchemaName(), schema );
                 }
 
-                // Build the cross references
-                registries.buildReferences();
-                registries.setStrict();
+                clonedRegistries.setStrict();
+                publish( clonedRegistries );
 
                 loaded = true;
             }
         }
 
-        // clear the cloned registries
-        clonedRegistries.clear();
+        if ( !loaded )
+        {
+            // clear the cloned registries
+            clonedRegistries.clear();
+        }
 
         return loaded;
     }
@@ -1197,7 +1239,7 @@ public class DefaultSchemaManager implements SchemaManager
      * {@inheritDoc}
      */
     @Override
-    public boolean loadDisabled( Schema... schemas ) throws LdapException
+    public synchronized boolean loadDisabled( Schema... schemas ) throws LdapException
     {
         // Work on a cloned and relaxed registries
         Registries clonedRegistries = cloneRegistries();
@@ -1218,12 +1260,22 @@ public class DefaultSchemaManager implements SchemaManager
         // Apply the change to the correct registries if no errors
         if ( !errorHandler.wasError() )
         {
-            // No error, we can enable the schema in the real registries
+            // No error, we can enable the schema in a copy of the real registries
+            boolean wasStrict = registries.isStrict();
+            Registries newRegistries = cloneRegistries();
+
             for ( Schema schema : schemas )
             {
-                load( registries, schema );
+                load( newRegistries, schema );
             }
 
+            if ( wasStrict )
+            {
+                newRegistries.setStrict();
+            }
+
+            publish( newRegistries );
+
             return true;
         }
         else
@@ -1275,7 +1327,7 @@ public class DefaultSchemaManager implements SchemaManager
      * {@inheritDoc}
      */
     @Override
-    public boolean loadWithDeps( Schema... schemas ) throws LdapException
+    public synchronized boolean loadWithDeps( Schema... schemas ) throws LdapException
     {
         boolean loaded = false;
 
@@ -1303,8 +1355,8 @@ public class DefaultSchemaManager implements SchemaManager
             if ( !errorHandler.wasError() )
             {
                 // We are golden : let's apply the schema in the real registries
-                registries = clonedRegistries;
-                registries.setStrict();
+                clonedRegistries.setStrict();
+                publish( clonedRegistries );
                 loaded = true;
             }
         }
@@ -1316,8 +1368,8 @@ public class DefaultSchemaManager implements SchemaManager
         else
         {
             // Relaxed mode
-            registries = clonedRegistries;
-            registries.setRelaxed();
+            clonedRegistries.setRelaxed();
+            publish( clonedRegistries );
             loaded = true;
         }
 
@@ -1413,7 +1465,7 @@ public class DefaultSchemaManager implements SchemaManager
      * {@inheritDoc}
      */
     @Override
-    public boolean loadWithDepsRelaxed( Schema... schemas ) throws LdapException
+    public synchronized boolean loadWithDepsRelaxed( Schema... schemas ) throws LdapException
     {
         registries.setRelaxed();
 
@@ -1530,7 +1582,7 @@ public class DefaultSchemaManager implements SchemaManager
      * {@inheritDoc}
      */
     @Override
-    public boolean unload( Schema... schemas ) throws LdapException
+    public synchronized boolean unload( Schema... schemas ) throws LdapException
     {
         boolean unloaded = false;
 
@@ -1557,14 +1609,9 @@ public class DefaultSchemaManager implements SchemaManager
 
             if ( !errorHandler.wasError() )
             {
-                // We are golden : let's apply the schema in the real registries
-                registries.setRelaxed();
-
-                // Load the schemas
+                // We are golden : the checked registries becomes the real registries
                 for ( Schema schema : schemas )
                 {
-                    unload( registries, schema );
-
                     // Update the schema dependences
                     for ( String dep : schema.getDependencies() )
                     {
@@ -1579,16 +1626,18 @@ public class DefaultSchemaManager implements SchemaManager
                     schemaMap.remove( schema.getSchemaName() );
                 }
 
-                // Build the cross references
-                registries.buildReferences();
-                registries.setStrict();
+                clonedRegistries.setStrict();
+                publish( clonedRegistries );
 
                 unloaded = true;
             }
         }
 
-        // clear the cloned registries
-        clonedRegistries.clear();
+        if ( !unloaded )
+        {
+            // clear the cloned registries
+            clonedRegistries.clear();
+        }
 
         return unloaded;
     }
@@ -2024,7 +2073,7 @@ public class DefaultSchemaManager implements SchemaManager
      * {@inheritDoc}
      */
     @Override
-    public boolean add( SchemaObject schemaObject ) throws LdapException
+    public synchronized boolean add( SchemaObject schemaObject ) throws LdapException
     {
         // First, clear the errors
         errorHandler.reset();
@@ -2093,31 +2142,15 @@ public class DefaultSchemaManager implements SchemaManager
             if ( schema.isEnabled() && copy.isEnabled() )
             {
                 // As we may break the registries, work on a cloned registries
-                Registries clonedRegistries = null;
-
-                try
-                {
-                    clonedRegistries = registries.clone();
-                }
-                catch ( CloneNotSupportedException cnse )
-                {
-                    throw new LdapOtherException( cnse.getMessage(), cnse );
-                }
+                Registries clonedRegistries = copyRegistries();
 
                 // Inject the new SchemaObject in the cloned registries
                 clonedRegistries.add( copy, true );
 
-                // Remove the cloned registries
-                clonedRegistries.clear();
-
-                // If we didn't get any error, apply the addition to the real registries
+                // If we didn't get any error, the cloned registries becomes the real registries
                 if ( !errorHandler.wasError() )
                 {
-                    // Copy again as the clonedRegistries clear has removed the previous copy
-                    copy = copy( schemaObject );
-
-                    // Apply the addition to the real registries
-                    registries.add( copy, true );
+                    publish( clonedRegistries );
 
                     if ( LOG.isDebugEnabled() )
                     {
@@ -2128,6 +2161,9 @@ public class DefaultSchemaManager implements SchemaManager
                 }
                 else
                 {
+                    // Remove the cloned registries
+                    clonedRegistries.clear();
+
                     // We have some error : reject the addition and get out
                     errorHandler.handle( LOG, I18n.msg( I18n.MSG_16020_CANNOT_LOAD_SCHEMAOBJECT, 
                             copy.getOid(), Strings.listToString( errorHandler.getErrors() ) ), null );
@@ -2138,7 +2174,9 @@ public class DefaultSchemaManager implements SchemaManager
             {
                 // At least, we register the OID in the globalOidRegistry, and associates it with the
                 // schema
-                registries.associateWithSchema( copy );
+                Registries newRegistries = copyRegistries();
+                newRegistries.associateWithSchema( copy );
+                publish( newRegistries );
 
                 if ( LOG.isDebugEnabled() )
                 {
@@ -2155,7 +2193,7 @@ public class DefaultSchemaManager implements SchemaManager
      * {@inheritDoc}
      */
     @Override
-    public boolean delete( SchemaObject schemaObject ) throws LdapException
+    public synchronized boolean delete( SchemaObject schemaObject ) throws LdapException
     {
         // First, clear the errors
         errorHandler.reset();
@@ -2213,28 +2251,15 @@ public class DefaultSchemaManager implements SchemaManager
             if ( schema.isEnabled() && schemaObject.isEnabled() )
             {
                 // As we may break the registries, work on a cloned registries
-                Registries clonedRegistries = null;
-
-                try
-                {
-                    clonedRegistries = registries.clone();
-                }
-                catch ( CloneNotSupportedException cnse )
-                {
-                    throw new LdapOtherException( cnse.getMessage(), cnse );
-                }
+                Registries clonedRegistries = copyRegistries();
 
                 // Delete the SchemaObject from the cloned registries
                 clonedRegistries.delete( toDelete );
 
-                // Remove the cloned registries
-                clonedRegistries.clear();
-
-                // If we didn't get any error, apply the deletion to the real retistries
+                // If we didn't get any error, the cloned registries becomes the real registries
                 if ( !errorHandler.wasError() )
                 {
-                    // Apply the deletion to the real registries
-                    registries.delete( toDelete );
+                    publish( clonedRegistries );
 
                     if ( LOG.isDebugEnabled() )
                     {
@@ -2245,6 +2270,9 @@ public class DefaultSchemaManager implements SchemaManager
                 }
                 else
                 {
+                    // Remove the cloned registries
+                    clonedRegistries.clear();
+
                     // We have some error : reject the deletion and get out
                     errorHandler.handle( LOG, I18n.msg( I18n.MSG_16023_CANNOT_DELETE_SCHEMAOBJECT, 
                             schemaObject.getOid(), Strings.listToString( errorHandler.getErrors() ) ), null );
@@ -2256,7 +2284,9 @@ public class DefaultSchemaManager implements SchemaManager
             {
                 // At least, we register the OID in the globalOidRegistry, and associates it with the
                 // schema
-                registries.associateWithSchema( schemaObject );
+                Registries newRegistries = copyRegistries();
+                newRegistries.associateWithSchema( schemaObject );
+                publish( newRegistries );
 
                 if ( LOG.isDebugEnabled() )
                 {
@@ -23,6 +23,7 @@ package org.apache.directory.api.ldap.schema.loader;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -55,6 +56,7 @@ import org.apache.directory.api.ldap.model.schema.comparators.BooleanComparator;
 import org.apache.directory.api.ldap.model.schema.comparators.ComparableComparator;
 import org.apache.directory.api.ldap.model.schema.comparators.CsnComparator;
 import org.apache.directory.api.ldap.model.schema.normalizers.NoOpNormalizer;
+import org.apache.directory.api.ldap.model.schema.registries.Registries;
 import org.apache.directory.api.ldap.model.schema.syntaxCheckers.OctetStringSyntaxChecker;
 import org.apache.directory.api.ldap.model.schema.syntaxCheckers.RegexSyntaxChecker;
 import org.apache.directory.api.ldap.schema.extractor.SchemaLdifExtractor;
@@ -234,6 +236,42 @@ public class SchemaManagerAddTest
     }
 
 
+    /**
+     * Check that a successful addition publishes a new Registries, leaving the one
+     * readers may still be using untouched
+     */
+    @Test
+    public void testAddAttributeTypePublishesNewRegistries() throws Exception
+    {
+        SchemaManager schemaManager = loadSystem();
+        Registries previous = schemaManager.getRegistries();
+        int atrSize = previous.getAttributeTypeRegistry().size();
+
+        AttributeType attributeType = new AttributeType( "1.1.0" );
+        attributeType.setNames( "snapshotTest" );
+        attributeType.setEqualityOid( SchemaConstants.DISTINGUISHED_NAME_MATCH_MR_OID );
+        attributeType.setOrderingOid( null );
+        attributeType.setSubstringOid( null );
+        attributeType.setSyntaxOid( "1.3.6.1.4.1.1466.115.121.1.26" );
+
+        assertTrue( schemaManager.add( attributeType ) );
+
+        Registries current = schemaManager.getRegistries();
+        assertNotSame( previous, current );
+
+        // The previous Registries is not modified
+        assertEquals( atrSize, previous.getAttributeTypeRegistry().size() );
+        assertFalse( previous.getAttributeTypeRegistry().contains( "snapshotTest" ) );
+
+        // The new one contains the added AttributeType, which can be looked up by name or OID
+        assertEquals( atrSize + 1, current.getAttributeTypeRegistry().size() );
+        assertTrue( current.getAttributeTypeRegistry().contains( "SnapshotTest" ) );
+        assertEquals( "1.1.0", current.getAttributeTypeRegistry().lookup( "snapshottest" ).getOid() );
+        assertEquals( "1.1.0", current.getGlobalOidRegistry().getSchemaObject( "1.1.0" ).getOid() );
+        assertTrue( isATPresent( schemaManager, "snapshotTest" ) );
+    }
+
+
     /**
      * Try to inject an AttributeType which is Collective, and userApplication AT
      */
@@ -2148,9 +2148,9 @@ public final class Strings
         }
 
         // All the chars must be in [0x00, 0x7F]
-        for ( char c : str.toCharArray() )
+        for ( int i = 0; i < str.length(); i++ )
         {
-            if ( ( c < 0 ) || ( c > 0x7F ) )
+            if ( str.charAt( i ) > 0x7F )
             {
                 return false;
             }